@@ -76,6 +76,8 @@ public class AstBuilder extends FireflyBaseVisitor<AstNode> {
             result = (Declaration) visit(ctx.implDeclaration());
         } else if (ctx.exceptionDeclaration() != null) {
             result = (Declaration) visit(ctx.exceptionDeclaration());
+        } else if (ctx.supervisorDeclaration() != null) {
+            result = (Declaration) visit(ctx.supervisorDeclaration());
         }
         // Add other declaration types as needed
         
@@ -638,6 +640,22 @@ public class AstBuilder extends FireflyBaseVisitor<AstNode> {
         Expression right = (Expression) visit(ctx.expression(1));
         return new CoalesceExpr(left, right, loc);
     }
+
+    @Override
+    public Expression visitRangeExpr(FireflyParser.RangeExprContext ctx) {
+        SourceLocation loc = getLocation(ctx);
+        Expression left = (Expression) visit(ctx.expression(0));
+        Expression right = (Expression) visit(ctx.expression(1));
+        return new BinaryExpr(left, BinaryExpr.BinaryOp.RANGE, right, loc);
+    }
+    
+    @Override
+    public Expression visitRangeInclusiveExpr(FireflyParser.RangeInclusiveExprContext ctx) {
+        SourceLocation loc = getLocation(ctx);
+        Expression left = (Expression) visit(ctx.expression(0));
+        Expression right = (Expression) visit(ctx.expression(1));
+        return new BinaryExpr(left, BinaryExpr.BinaryOp.RANGE_INCLUSIVE, right, loc);
+    }
     
     @Override
     public Expression visitAssignmentExpr(FireflyParser.AssignmentExprContext ctx) {
@@ -770,7 +788,9 @@ public class AstBuilder extends FireflyBaseVisitor<AstNode> {
         SourceLocation loc = getLocation(ctx);
         
         Map<Expression, Expression> entries = new java.util.LinkedHashMap<>();
-        // For now, return empty map literal. Full implementation depends on grammar structure.
+        for (FireflyParser.MapEntryContext entry : ctx.mapEntry()) {
+            entries.put((Expression) visit(entry.expression(0)), (Expression) visit(entry.expression(1)));
+        }
         return new MapLiteralExpr(entries, loc);
     }
     
@@ -1924,6 +1944,23 @@ public class AstBuilder extends FireflyBaseVisitor<AstNode> {
         return new ExceptionDecl(name, superException, annotations, fields, methods, constructor, loc);
     }
     
+    @Override
+    public SupervisorDecl visitSupervisorDeclaration(FireflyParser.SupervisorDeclarationContext ctx) {
+        SourceLocation loc = getLocation(ctx);
+        
+        String name = ctx.TYPE_IDENTIFIER().getText();
+        
+        // Configuration fields (strategy, maxRestarts, within)
+        List<SupervisorDecl.Field> fields = ctx.supervisorConfig().supervisorField().stream()
+            .map(field -> new SupervisorDecl.Field(
+                field.IDENTIFIER().getText(),
+                (Expression) visit(field.expression()),
+                getLocation(field)))
+            .collect(Collectors.toList());
+        
+        return new SupervisorDecl(name, fields, loc);
+    }
+    
     // ============ Types ============
     
     @Override
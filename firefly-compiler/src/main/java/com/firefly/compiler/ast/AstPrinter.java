@@ -293,4 +293,9 @@ public class AstPrinter implements AstVisitor<String> {
         String superClass = decl.getSuperException().orElse("FlyException");
         return "Exception: " + decl.getName() + " extends " + superClass;
     }
+
+    @Override
+    public String visitSupervisorDecl(com.firefly.compiler.ast.decl.SupervisorDecl decl) {
+        return "Supervisor: " + decl.getName();
+    }
 }
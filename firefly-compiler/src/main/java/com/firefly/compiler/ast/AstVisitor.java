@@ -27,6 +27,7 @@ public interface AstVisitor<T> {
     T visitImplDecl(ImplDecl decl);
     T visitTypeAliasDecl(TypeAliasDecl decl);
     T visitExceptionDecl(ExceptionDecl decl);
+    T visitSupervisorDecl(SupervisorDecl decl);
     
     // Statements
     T visitLetStatement(LetStatement stmt);
@@ -0,0 +1,127 @@
+package com.firefly.compiler.ast.decl;
+
+import com.firefly.compiler.ast.AstVisitor;
+import com.firefly.compiler.ast.SourceLocation;
+import com.firefly.compiler.ast.expr.Expression;
+import com.firefly.compiler.ast.expr.IdentifierExpr;
+import com.firefly.compiler.ast.expr.LiteralExpr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Supervisor declaration AST node.
+ *
+ * <p>Declares an OTP-style supervisor: a restart strategy and a restart
+ * intensity. Actors spawned through the supervisor are restarted in place
+ * when they crash.</p>
+ *
+ * <h2>Syntax:</h2>
+ * <pre>
+ * supervisor Workers {
+ *     strategy: "one_for_all",
+ *     maxRestarts: 5,
+ *     within: 10000
+ * }
+ * </pre>
+ *
+ * @see com.firefly.runtime.actor.Supervisor
+ */
+public class SupervisorDecl extends Declaration {
+
+    /** Restart strategy: one_for_one (default), one_for_all or rest_for_one. */
+    public static final String STRATEGY = "strategy";
+    /** Restarts allowed within the window before the supervisor gives up. */
+    public static final String MAX_RESTARTS = "maxRestarts";
+    /** Length of the restart window, in milliseconds. */
+    public static final String WITHIN = "within";
+
+    private final String name;
+    private final List<Field> fields;
+
+    public SupervisorDecl(String name, List<Field> fields, SourceLocation location) {
+        super(location);
+        this.name = name;
+        this.fields = new ArrayList<>(fields);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the value of the named configuration field, if present.
+     */
+    public Optional<Expression> getField(String fieldName) {
+        return fields.stream()
+            .filter(field -> field.getName().equals(fieldName))
+            .map(Field::getValue)
+            .findFirst();
+    }
+
+    /**
+     * Returns the strategy as written, from a string literal or an identifier.
+     */
+    public Optional<String> getStrategyName() {
+        return getField(STRATEGY).flatMap(value -> {
+            if (value instanceof LiteralExpr
+                    && ((LiteralExpr) value).getKind() == LiteralExpr.LiteralKind.STRING) {
+                return Optional.of((String) ((LiteralExpr) value).getValue());
+            }
+            if (value instanceof IdentifierExpr) {
+                return Optional.of(((IdentifierExpr) value).getName());
+            }
+            return Optional.empty();
+        });
+    }
+
+    /**
+     * Returns the value of the named field if it is an integer literal.
+     */
+    public Optional<Integer> getIntField(String fieldName) {
+        return getField(fieldName).flatMap(value -> {
+            if (value instanceof LiteralExpr
+                    && ((LiteralExpr) value).getKind() == LiteralExpr.LiteralKind.INTEGER) {
+                return Optional.of(((Number) ((LiteralExpr) value).getValue()).intValue());
+            }
+            return Optional.empty();
+        });
+    }
+
+    @Override
+    public <T> T accept(AstVisitor<T> visitor) {
+        return visitor.visitSupervisorDecl(this);
+    }
+
+    /**
+     * One {@code name: value} entry of the supervisor's configuration.
+     */
+    public static class Field {
+        private final String name;
+        private final Expression value;
+        private final SourceLocation location;
+
+        public Field(String name, Expression value, SourceLocation location) {
+            this.name = name;
+            this.value = value;
+            this.location = location;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Expression getValue() {
+            return value;
+        }
+
+        public SourceLocation getLocation() {
+            return location;
+        }
+    }
+}
@@ -39,6 +39,7 @@ public class BytecodeGenerator implements AstVisitor<Void> {
     private boolean lastCallWasVoid = false;
     private VarType lastExpressionType = VarType.INT;
     private Class<?> lastExpressionClass = null;  // Track actual Java class for type inference
+    private Expression mutableBindingInitializer = null;  // Initializer of the `let mut` being generated
     private String currentFunctionName = null;
     private Label breakLabel = null;
     private Label continueLabel = null;
@@ -349,6 +350,11 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         mv.visitMaxs(0, 0);
         mv.visitEnd();
         
+        // Receive blocks with several type cases dispatch through a class-to-case table
+        if (usesMessageDispatch(decl)) {
+            generateActorDispatchTable(cw, decl, actorClassName);
+        }
+        
         // Generate init() method - returns initial state (this)
         generateActorInit(cw, decl, actorClassName);
         
@@ -1676,10 +1682,21 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         }
         structRegistry.put(decl.getName(), new StructMetadata(decl.getName(), sparkInternalName, fieldMetadata));
         
+        // @derive(Ord) sparks implement Comparable so runtime collections and
+        // Java APIs can order them by their natural ordering
+        String[] sparkInterfaces = derivedTraits(decl).contains("Ord")
+            ? new String[] { "java/lang/Comparable" }
+            : null;
+        
         // Generate generic signature if spark has type parameters
         String signature = null;
         if (!decl.getTypeParameters().isEmpty()) {
             signature = generateGenericSignature(decl.getTypeParameters(), null, null);
+            if (sparkInterfaces != null) {
+                signature += "Ljava/lang/Comparable<L" + sparkInternalName + ";>;";
+            }
+        } else if (sparkInterfaces != null) {
+            signature = "Ljava/lang/Object;Ljava/lang/Comparable<L" + sparkInternalName + ";>;";
         }
         
         // Start class (public final class - immutable record)
@@ -1690,7 +1707,7 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             sparkInternalName,
             signature,
             "java/lang/Object",
-            null
+            sparkInterfaces
         );
         
         // Generate fields (private final - immutable)
@@ -1748,6 +1765,12 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         // Store the generated spark bytecode
         generatedClasses.put(sparkInternalName, cw.toByteArray());
         
+        // Columnar row view and schema for SparkTable (type variables have no
+        // column representation, so generic sparks are stored as plain objects)
+        if (decl.getTypeParameters().isEmpty()) {
+            generateSparkTableClasses(sparkInternalName, decl);
+        }
+        
         return null;
     }
     
@@ -1824,21 +1847,11 @@ public class BytecodeGenerator implements AstVisitor<Void> {
     }
     
     private void generateSparkGetter(ClassWriter cw, String className, SparkDecl.SparkField field) {
-        String fieldName = field.getName();
         String descriptor = "()" + getTypeDescriptor(field.getType());
         
-        // JavaBean getter names for consistency with struct access and reflection-based users
-        String getterName;
-        VarType vt = getVarTypeFromType(field.getType());
-        if (vt == VarType.BOOLEAN) {
-            getterName = (fieldName.startsWith("is") ? fieldName : "is" + capitalize(fieldName));
-        } else {
-            getterName = "get" + capitalize(fieldName);
-        }
-        
         MethodVisitor mv = cw.visitMethod(
             ACC_PUBLIC,
-            getterName,
+            sparkGetterName(field),
             descriptor,
             null,
             null
@@ -1858,6 +1871,213 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         mv.visitEnd();
     }
     
+    /**
+     * JavaBean getter name of a spark field, for consistency with struct access
+     * and reflection-based users.
+     */
+    private String sparkGetterName(SparkDecl.SparkField field) {
+        String fieldName = field.getName();
+        if (getVarTypeFromType(field.getType()) == VarType.BOOLEAN) {
+            return fieldName.startsWith("is") ? fieldName : "is" + capitalize(fieldName);
+        }
+        return "get" + capitalize(fieldName);
+    }
+    
+    /**
+     * Generate the columnar companions of a spark used by
+     * {@code com.firefly.runtime.collections.SparkTable}:
+     * <ul>
+     *   <li>{@code Spark$Row} extends {@code SparkTable.Row} with the spark's getters,
+     *       reading the current row straight out of the column arrays</li>
+     *   <li>{@code Spark$Schema} implements {@code SparkTable.Schema}, storing and
+     *       loading sparks field by field into int[]/long[]/double[]/boolean[]/Object[]
+     *       columns, with a shared {@code INSTANCE}</li>
+     * </ul>
+     */
+    private void generateSparkTableClasses(String sparkInternalName, SparkDecl decl) {
+        String tableRow = "com/firefly/runtime/collections/SparkTable$Row";
+        String tableSchema = "com/firefly/runtime/collections/SparkTable$Schema";
+        String rowName = sparkInternalName + "$Row";
+        String schemaName = sparkInternalName + "$Schema";
+        List<SparkDecl.SparkField> fields = decl.getFields();
+        
+        // Row view: same getters as the spark, backed by columns[i][index]
+        ClassWriter rw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        rw.visit(V1_8, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, rowName, null, tableRow, null);
+        
+        MethodVisitor mv = rw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, tableRow, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        
+        for (int i = 0; i < fields.size(); i++) {
+            SparkDecl.SparkField field = fields.get(i);
+            String descriptor = getTypeDescriptor(field.getType());
+            mv = rw.visitMethod(ACC_PUBLIC, sparkGetterName(field), "()" + descriptor, null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, tableRow, "columns", "[Ljava/lang/Object;");
+            loadColumn(mv, i, descriptor);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, tableRow, "index", "I");
+            loadColumnElement(mv, descriptor);
+            mv.visitInsn(getReturnOpcode(field.getType()));
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        rw.visitEnd();
+        generatedClasses.put(rowName, rw.toByteArray());
+        
+        // Schema: column layout plus store/load between a spark and one row
+        ClassWriter sw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        sw.visit(V1_8, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, schemaName,
+            "Ljava/lang/Object;L" + tableSchema + "<L" + sparkInternalName + ";>;",
+            "java/lang/Object", new String[] { tableSchema });
+        sw.visitField(ACC_PUBLIC + ACC_STATIC + ACC_FINAL, "INSTANCE", "L" + schemaName + ";", null, null).visitEnd();
+        
+        mv = sw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, schemaName);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, schemaName, "<init>", "()V", false);
+        mv.visitFieldInsn(PUTSTATIC, schemaName, "INSTANCE", "L" + schemaName + ";");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        
+        mv = sw.visitMethod(ACC_PRIVATE, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        
+        mv = sw.visitMethod(ACC_PUBLIC, "columnNames", "()[Ljava/lang/String;", null, null);
+        mv.visitCode();
+        mv.visitIntInsn(BIPUSH, fields.size());
+        mv.visitTypeInsn(ANEWARRAY, "java/lang/String");
+        for (int i = 0; i < fields.size(); i++) {
+            mv.visitInsn(DUP);
+            mv.visitIntInsn(BIPUSH, i);
+            mv.visitLdcInsn(fields.get(i).getName());
+            mv.visitInsn(AASTORE);
+        }
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        
+        mv = sw.visitMethod(ACC_PUBLIC, "columnTypes", "()[Ljava/lang/Class;", "()[Ljava/lang/Class<*>;", null);
+        mv.visitCode();
+        mv.visitIntInsn(BIPUSH, fields.size());
+        mv.visitTypeInsn(ANEWARRAY, "java/lang/Class");
+        for (int i = 0; i < fields.size(); i++) {
+            mv.visitInsn(DUP);
+            mv.visitIntInsn(BIPUSH, i);
+            switch (getTypeDescriptor(fields.get(i).getType())) {
+                case "I": mv.visitFieldInsn(GETSTATIC, "java/lang/Integer", "TYPE", "Ljava/lang/Class;"); break;
+                case "J": mv.visitFieldInsn(GETSTATIC, "java/lang/Long", "TYPE", "Ljava/lang/Class;"); break;
+                case "D": mv.visitFieldInsn(GETSTATIC, "java/lang/Double", "TYPE", "Ljava/lang/Class;"); break;
+                case "Z": mv.visitFieldInsn(GETSTATIC, "java/lang/Boolean", "TYPE", "Ljava/lang/Class;"); break;
+                default: mv.visitLdcInsn(org.objectweb.asm.Type.getType(Object.class)); break;
+            }
+            mv.visitInsn(AASTORE);
+        }
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        
+        // store(Object spark, Object[] columns, int row): columns[i][row] = spark.getX()
+        mv = sw.visitMethod(ACC_PUBLIC, "store", "(Ljava/lang/Object;[Ljava/lang/Object;I)V", null, null);
+        mv.visitCode();
+        for (int i = 0; i < fields.size(); i++) {
+            SparkDecl.SparkField field = fields.get(i);
+            String descriptor = getTypeDescriptor(field.getType());
+            mv.visitVarInsn(ALOAD, 2);
+            loadColumn(mv, i, descriptor);
+            mv.visitVarInsn(ILOAD, 3);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, sparkInternalName);
+            mv.visitMethodInsn(INVOKEVIRTUAL, sparkInternalName, sparkGetterName(field), "()" + descriptor, false);
+            switch (descriptor) {
+                case "I": mv.visitInsn(IASTORE); break;
+                case "J": mv.visitInsn(LASTORE); break;
+                case "D": mv.visitInsn(DASTORE); break;
+                case "Z": mv.visitInsn(BASTORE); break;
+                default: mv.visitInsn(AASTORE); break;
+            }
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        
+        // load(Object[] columns, int row): new Spark(columns[0][row], columns[1][row], ...)
+        StringBuilder constructorDescriptor = new StringBuilder("(");
+        mv = sw.visitMethod(ACC_PUBLIC, "load", "([Ljava/lang/Object;I)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, sparkInternalName);
+        mv.visitInsn(DUP);
+        for (int i = 0; i < fields.size(); i++) {
+            String descriptor = getTypeDescriptor(fields.get(i).getType());
+            constructorDescriptor.append(descriptor);
+            mv.visitVarInsn(ALOAD, 1);
+            loadColumn(mv, i, descriptor);
+            mv.visitVarInsn(ILOAD, 2);
+            loadColumnElement(mv, descriptor);
+        }
+        constructorDescriptor.append(")V");
+        mv.visitMethodInsn(INVOKESPECIAL, sparkInternalName, "<init>", constructorDescriptor.toString(), false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        
+        mv = sw.visitMethod(ACC_PUBLIC, "newRow", "()L" + tableRow + ";", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, rowName);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, rowName, "<init>", "()V", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        
+        sw.visitEnd();
+        generatedClasses.put(schemaName, sw.toByteArray());
+    }
+    
+    /** JVM array type of the SparkTable column holding fields of the given descriptor. */
+    private static String columnArrayType(String descriptor) {
+        switch (descriptor) {
+            case "I": case "J": case "D": case "Z": return "[" + descriptor;
+            default: return "[Ljava/lang/Object;";
+        }
+    }
+    
+    /** Replaces the columns array on the stack with its typed column {@code index}. */
+    private static void loadColumn(MethodVisitor mv, int index, String descriptor) {
+        mv.visitIntInsn(BIPUSH, index);
+        mv.visitInsn(AALOAD);
+        mv.visitTypeInsn(CHECKCAST, columnArrayType(descriptor));
+    }
+    
+    /** With a typed column and a row on the stack, loads the field value of that row. */
+    private static void loadColumnElement(MethodVisitor mv, String descriptor) {
+        switch (descriptor) {
+            case "I": mv.visitInsn(IALOAD); break;
+            case "J": mv.visitInsn(LALOAD); break;
+            case "D": mv.visitInsn(DALOAD); break;
+            case "Z": mv.visitInsn(BALOAD); break;
+            default:
+                mv.visitInsn(AALOAD);
+                if (!"Ljava/lang/Object;".equals(descriptor)) {
+                    mv.visitTypeInsn(CHECKCAST, descriptor.substring(1, descriptor.length() - 1));
+                }
+                break;
+        }
+    }
+    
     private void generateSparkWithMethod(ClassWriter cw, String className, SparkDecl decl) {
         // Generate .with() method that takes optional new values and returns new instance
         // Method signature: with(field1: Type1, field2: Type2, ...) -> ClassName
@@ -3028,6 +3248,61 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         return null;
     }
     
+    @Override
+    public Void visitSupervisorDecl(SupervisorDecl decl) {
+        // Generate a subclass of the runtime Supervisor with the declared configuration
+        String supervisorClassName = className + "/" + decl.getName();
+        String superClass = "com/firefly/runtime/actor/Supervisor";
+        String strategyType = "com/firefly/runtime/actor/Supervisor$Strategy";
+        String systemType = "com/firefly/runtime/actor/Actor$ActorSystem";
+        
+        // Strategy and intensity are fixed at compile time
+        com.firefly.runtime.actor.Supervisor.Strategy strategy = decl.getStrategyName()
+            .map(com.firefly.runtime.actor.Supervisor.Strategy::parse)
+            .orElse(com.firefly.runtime.actor.Supervisor.Strategy.ONE_FOR_ONE);
+        int maxRestarts = decl.getIntField(SupervisorDecl.MAX_RESTARTS)
+            .orElse(com.firefly.runtime.actor.Supervisor.DEFAULT_MAX_RESTARTS);
+        long withinMillis = decl.getIntField(SupervisorDecl.WITHIN)
+            .map(Integer::longValue)
+            .orElse(com.firefly.runtime.actor.Supervisor.DEFAULT_WITHIN_MILLIS);
+        
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(
+            V1_8,
+            ACC_PUBLIC | ACC_SUPER,
+            supervisorClassName,
+            null,
+            superClass,
+            null
+        );
+        
+        // Workers() supervises on the global actor system, Workers(system) on the given one
+        for (boolean withSystem : new boolean[]{false, true}) {
+            String descriptor = withSystem ? "(L" + systemType + ";)V" : "()V";
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", descriptor, null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            if (withSystem) {
+                mv.visitVarInsn(ALOAD, 1);
+            }
+            mv.visitFieldInsn(GETSTATIC, strategyType, strategy.name(), "L" + strategyType + ";");
+            mv.visitLdcInsn(maxRestarts);
+            mv.visitLdcInsn(withinMillis);
+            String superDescriptor = withSystem
+                ? "(L" + systemType + ";L" + strategyType + ";IJ)V"
+                : "(L" + strategyType + ";IJ)V";
+            mv.visitMethodInsn(INVOKESPECIAL, superClass, "<init>", superDescriptor, false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        
+        cw.visitEnd();
+        generatedClasses.put(supervisorClassName, cw.toByteArray());
+        
+        return null;
+    }
+    
     @Override
     public Void visitExceptionDecl(ExceptionDecl decl) {
         // Generate exception class extending FlyException
@@ -3136,7 +3411,10 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             
             // Evaluate initializer if present
             if (stmt.getInitializer().isPresent()) {
+                lastExpressionClass = null;  // only classes produced by this initializer count
+                mutableBindingInitializer = stmt.isMutable() ? stmt.getInitializer().get() : null;
                 stmt.getInitializer().get().accept(this);
+                mutableBindingInitializer = null;
                 
                 // If value is OBJECT and declared type is primitive, unbox to match declared type
                 String declaredDesc = getTypeDescriptor(declaredType);
@@ -3185,8 +3463,10 @@ public class BytecodeGenerator implements AstVisitor<Void> {
                 // Increment by type size (1 for most types, 2 for long/double)
                 localVarIndex += getVarTypeSize(lastExpressionType);
                 
-                // Track actual Java class if available
-                if (lastExpressionClass != null) {
+                // Track actual Java class if available (array literals know their vector class statically)
+                if (stmt.getInitializer().get() instanceof ArrayLiteralExpr) {
+                    localVariableClasses.put(varName, inferExpressionType(stmt.getInitializer().get()));
+                } else if (lastExpressionClass != null) {
                     localVariableClasses.put(varName, lastExpressionClass);
                 }
                 
@@ -3216,7 +3496,10 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             
             // Evaluate initializer if present
             if (stmt.getInitializer().isPresent()) {
+                lastExpressionClass = null;  // only classes produced by this initializer count
+                mutableBindingInitializer = stmt.isMutable() ? stmt.getInitializer().get() : null;
                 stmt.getInitializer().get().accept(this);
+                mutableBindingInitializer = null;
                 
                 // Assign to local variable
                 int varIndex = localVarIndex;
@@ -3226,8 +3509,10 @@ public class BytecodeGenerator implements AstVisitor<Void> {
                 // Increment by type size (1 for most types, 2 for long/double)
                 localVarIndex += getVarTypeSize(lastExpressionType);
                 
-                // Track actual Java class if available
-                if (lastExpressionClass != null) {
+                // Track actual Java class if available (array literals know their vector class statically)
+                if (stmt.getInitializer().get() instanceof ArrayLiteralExpr) {
+                    localVariableClasses.put(varName, inferExpressionType(stmt.getInitializer().get()));
+                } else if (lastExpressionClass != null) {
                     localVariableClasses.put(varName, lastExpressionClass);
                 }
                 
@@ -3280,7 +3565,20 @@ public class BytecodeGenerator implements AstVisitor<Void> {
     @Override 
     public Void visitBinaryExpr(BinaryExpr expr) {
         if (methodVisitor == null) return null;
-        
+
+        if (expr.getOperator() == BinaryExpr.BinaryOp.RANGE
+                || expr.getOperator() == BinaryExpr.BinaryOp.RANGE_INCLUSIVE) {
+            // A range used as a value (loops over range literals never get here); Range has int bounds
+            expr.getLeft().accept(this);
+            convertToRangeBound(lastExpressionType);
+            expr.getRight().accept(this);
+            convertToRangeBound(lastExpressionType);
+            generateRangeCreation(expr.getOperator() == BinaryExpr.BinaryOp.RANGE_INCLUSIVE);
+            lastExpressionType = VarType.OBJECT;
+            lastExpressionClass = com.firefly.runtime.Range.class;
+            return null;
+        }
+
         // Visit left and right operands
         expr.getLeft().accept(this);
         VarType leftType = lastExpressionType;
@@ -3421,21 +3719,6 @@ public class BytecodeGenerator implements AstVisitor<Void> {
                 methodVisitor.visitLabel(orEnd);
                 break;
             
-            // Range operations
-            case RANGE:
-                // a..b - exclusive range [a, b)
-                // Create Range object (start, end, exclusive=true)
-                generateRangeCreation(false);
-                lastExpressionType = VarType.OBJECT;
-                break;
-                
-            case RANGE_INCLUSIVE:
-                // a..=b - inclusive range [a, b]
-                // Create Range object (start, end, exclusive=false)
-                generateRangeCreation(true);
-                lastExpressionType = VarType.OBJECT;
-                break;
-            
             // Null coalescing operations
             case COALESCE:
                 // a ?? b - returns a if not null, else b
@@ -3732,6 +4015,10 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             methodVisitor.visitInsn(I2F);
         } else if (actualType == VarType.INT && expectedType == long.class) {
             methodVisitor.visitInsn(I2L);
+        } else if (actualType == VarType.INT && expectedType == double.class) {
+            methodVisitor.visitInsn(I2D);
+        } else if (actualType == VarType.LONG && expectedType == double.class) {
+            methodVisitor.visitInsn(L2D);
         }
     }
     
@@ -3762,6 +4049,18 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         // Stack: [Range]
     }
     
+    /**
+     * Convert a range bound on the stack to the int that Range holds.
+     * A Long bound outside the int range throws ArithmeticException rather than wrapping.
+     */
+    private void convertToRangeBound(VarType type) {
+        if (type == VarType.LONG) {
+            methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "toIntExact", "(J)I", false);
+        } else {
+            applyTypeConversion(type, int.class);
+        }
+    }
+    
     /**
      * Convert mixed Int/Long or Int/Double operands for double operation.
      * Stack on entry: [left_value, right_value]
@@ -4440,6 +4739,52 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             false
         );
     }
+    /**
+     * Generate bytecode for built-in ask function.
+     * 
+     * ask(actorRef, message) or ask(actorRef, message, timeoutMillis) sends the
+     * message and returns a Future of the actor's reply: the value of the
+     * receive case that handles it. Without a timeout the runtime default applies.
+     * 
+     * @param arguments The arguments (actor ref, message, optional timeout)
+     */
+    private void generateBuiltinAskFunction(java.util.List<Expression> arguments) {
+        if (arguments.size() < 2 || arguments.size() > 3) {
+            throw new RuntimeException("ask() requires an actor ref, a message and an optional timeout in milliseconds");
+        }
+        
+        arguments.get(0).accept(this);
+        methodVisitor.visitTypeInsn(CHECKCAST, "com/firefly/runtime/actor/Actor$ActorRef");
+        
+        arguments.get(1).accept(this);
+        boxLastExpression();
+        
+        if (arguments.size() == 2) {
+            methodVisitor.visitMethodInsn(
+                INVOKEVIRTUAL,
+                "com/firefly/runtime/actor/Actor$ActorRef",
+                "ask",
+                "(Ljava/lang/Object;)Lcom/firefly/runtime/async/Future;",
+                false
+            );
+            return;
+        }
+        
+        arguments.get(2).accept(this);
+        if (lastExpressionType == VarType.INT) {
+            methodVisitor.visitInsn(I2L);
+        } else if (lastExpressionType != VarType.LONG) {
+            throw new RuntimeException("ask() timeout must be an Int or Long number of milliseconds");
+        }
+        methodVisitor.visitMethodInsn(
+            INVOKEVIRTUAL,
+            "com/firefly/runtime/actor/Actor$ActorRef",
+            "ask",
+            "(Ljava/lang/Object;J)Lcom/firefly/runtime/async/Future;",
+            false
+        );
+    }
+    
     @Override 
     public Void visitUnaryExpr(UnaryExpr expr) {
         if (methodVisitor == null) return null;
@@ -4929,10 +5274,26 @@ public class BytecodeGenerator implements AstVisitor<Void> {
                 }
             }
             
+            // Numeric array literals are unboxed vectors; the PersistentVector methods they
+            // have no overload for (map with a Function, filter with a Predicate, ...) run
+            // on a boxed copy, so a literal keeps the API of any other array
+            boolean boxVector = false;
+            if (!instanceMethod.isPresent() && isPrimitiveVectorClass(receiverType)) {
+                instanceMethod = methodResolver.resolveInstanceMethod(
+                    com.firefly.runtime.collections.PersistentVector.class, methodName, argTypes);
+                boxVector = instanceMethod.isPresent();
+            }
+            
             if (instanceMethod.isPresent()) {
                 MethodResolver.MethodCandidate candidate = instanceMethod.get();
                 
                 fieldAccess.getObject().accept(this);
+                if (boxVector) {
+                    String vectorInternalName = org.objectweb.asm.Type.getInternalName(receiverType);
+                    methodVisitor.visitTypeInsn(CHECKCAST, vectorInternalName);
+                    methodVisitor.visitMethodInsn(INVOKEVIRTUAL, vectorInternalName, "boxed",
+                        "()Lcom/firefly/runtime/collections/PersistentVector;", false);
+                }
                 // Insert cast so the verifier sees the exact receiver class
                 methodVisitor.visitTypeInsn(CHECKCAST, candidate.getInternalClassName());
                 
@@ -5071,6 +5432,11 @@ public class BytecodeGenerator implements AstVisitor<Void> {
                 lastCallWasVoid = false;
                 lastExpressionType = VarType.OBJECT;
                 return null;
+            } else if (funcName.equals("ask") && !functionSignatures.containsKey(funcName)) {
+                generateBuiltinAskFunction(expr.getArguments());
+                lastCallWasVoid = false;
+                lastExpressionType = VarType.OBJECT;
+                return null;
             } else if (functionSignatures.containsKey(funcName)) {
                 String descriptor = functionSignatures.get(funcName);
                 lastCallWasVoid = descriptor.endsWith("V");
@@ -5236,10 +5602,11 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         
         // Special case: .length on arrays/collections -> call size() method
         if ("length".equals(expr.getFieldName()) && objectType == VarType.OBJECT) {
-            // For PersistentVector, call size() method
+            // Any vector (PersistentVector or an unboxed Int/Long/DoubleVector): call size()
+            methodVisitor.visitTypeInsn(CHECKCAST, "com/firefly/runtime/collections/AbstractVector");
             methodVisitor.visitMethodInsn(
                 INVOKEVIRTUAL,
-                "com/firefly/runtime/collections/PersistentVector",
+                "com/firefly/runtime/collections/AbstractVector",
                 "size",
                 "()I",
                 false
@@ -5372,13 +5739,41 @@ public class BytecodeGenerator implements AstVisitor<Void> {
     public Void visitIndexAccessExpr(IndexAccessExpr expr) {
         if (methodVisitor == null) return null;
         
+        // Unboxed vectors return primitives from getInt/getLong/getDouble(int)
+        Class<?> receiverClass = inferExpressionType(expr.getObject());
+        
         // Visit the array/list expression
         expr.getObject().accept(this);
         VarType arrayType = lastExpressionType;
         
+        // Any other Firefly array may hold any kind of vector, so it is read through
+        // their common AbstractVector; cast before the index goes on the stack
+        String vectorInternalName = "com/firefly/runtime/collections/AbstractVector";
+        String getter = "get";
+        String getterDescriptor = "(I)Ljava/lang/Object;";
+        VarType elementType = VarType.OBJECT;
+        if (receiverClass == com.firefly.runtime.collections.IntVector.class) {
+            vectorInternalName = "com/firefly/runtime/collections/IntVector";
+            getter = "getInt";
+            getterDescriptor = "(I)I";
+            elementType = VarType.INT;
+        } else if (receiverClass == com.firefly.runtime.collections.LongVector.class) {
+            vectorInternalName = "com/firefly/runtime/collections/LongVector";
+            getter = "getLong";
+            getterDescriptor = "(I)J";
+            elementType = VarType.LONG;
+        } else if (receiverClass == com.firefly.runtime.collections.DoubleVector.class) {
+            vectorInternalName = "com/firefly/runtime/collections/DoubleVector";
+            getter = "getDouble";
+            getterDescriptor = "(I)D";
+            elementType = VarType.DOUBLE;
+        }
+        if (arrayType != VarType.STRING_ARRAY) {
+            methodVisitor.visitTypeInsn(CHECKCAST, vectorInternalName);
+        }
+        
         // Visit the index expression
         expr.getIndex().accept(this);
-        VarType indexType = lastExpressionType;
         
         // Check if we're accessing a native array or a collection
         if (arrayType == VarType.STRING_ARRAY) {
@@ -5386,31 +5781,11 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             // Stack: [array, index]
             methodVisitor.visitInsn(AALOAD);  // Load element from Object array
             lastExpressionType = VarType.STRING;
-        } else if (arrayType == VarType.OBJECT) {
-            // For Firefly arrays (PersistentVector), call get(int) -> Object
-            // Stack: [vector, index]
-            
-            // The index is already on the stack as int
-            // Call PersistentVector.get(int) -> Object (virtual method, not interface)
-            methodVisitor.visitMethodInsn(
-                INVOKEVIRTUAL,
-                "com/firefly/runtime/collections/PersistentVector",
-                "get",
-                "(I)Ljava/lang/Object;",
-                false  // not an interface
-            );
-            
-            lastExpressionType = VarType.OBJECT;
         } else {
-            // Fallback: treat as PersistentVector
-            methodVisitor.visitMethodInsn(
-                INVOKEVIRTUAL,
-                "com/firefly/runtime/collections/PersistentVector",
-                "get",
-                "(I)Ljava/lang/Object;",
-                false
-            );
-            lastExpressionType = VarType.OBJECT;
+            // Firefly arrays are persistent vectors
+            // Stack: [vector, index]
+            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, vectorInternalName, getter, getterDescriptor, false);
+            lastExpressionType = elementType;
         }
         
         return null;
@@ -6471,6 +6846,12 @@ public class BytecodeGenerator implements AstVisitor<Void> {
     public Void visitForExpr(ForExpr expr) {
         if (methodVisitor == null) return null;
         
+        // Range literals become counted loops; everything else goes through Iterable
+        if (generateCountedRangeLoop(expr) || generateIndexedForLoop(expr)) {
+            lastExpressionType = VarType.OBJECT; // Unit type
+            return null;
+        }
+        
         // Save old break/continue labels
         Label oldBreak = breakLabel;
         Label oldContinue = continueLabel;
@@ -6565,40 +6946,400 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         return null;
     }
     
-    @Override 
-    public Void visitWhileExpr(WhileExpr expr) {
-        if (methodVisitor == null) return null;
+    /**
+     * Lower `for x in a..b`, `for x in a..=b` and `for x in (a..b)::step(k)` to a counted
+     * loop over an unboxed int (or long, if any bound is Long) induction variable.
+     * No Range is allocated and the loop variable is a primitive local.
+     * Returns false, emitting nothing, when the iterable is not a range literal.
+     */
+    private boolean generateCountedRangeLoop(ForExpr expr) {
+        Expression iterable = expr.getIterable();
+        Expression stepExpr = null;
+        if (iterable instanceof CallExpr) {
+            CallExpr call = (CallExpr) iterable;
+            if (!(call.getFunction() instanceof FieldAccessExpr) || call.getArguments().size() != 1) {
+                return false;
+            }
+            FieldAccessExpr access = (FieldAccessExpr) call.getFunction();
+            if (!"step".equals(access.getFieldName())) {
+                return false;
+            }
+            iterable = access.getObject();
+            stepExpr = call.getArguments().get(0);
+        }
+        if (!(iterable instanceof BinaryExpr)) {
+            return false;
+        }
+        BinaryExpr range = (BinaryExpr) iterable;
+        boolean inclusive;
+        if (range.getOperator() == BinaryExpr.BinaryOp.RANGE) {
+            inclusive = false;
+        } else if (range.getOperator() == BinaryExpr.BinaryOp.RANGE_INCLUSIVE) {
+            inclusive = true;
+        } else {
+            return false;
+        }
+        
+        boolean isLong = inferNumericType(range.getLeft()) == VarType.LONG
+            || inferNumericType(range.getRight()) == VarType.LONG
+            || (stepExpr != null && inferNumericType(stepExpr) == VarType.LONG);
+        VarType counterType = isLong ? VarType.LONG : VarType.INT;
+        Class<?> counterClass = isLong ? long.class : int.class;
+        int load = isLong ? LLOAD : ILOAD;
+        int store = isLong ? LSTORE : ISTORE;
+        int slotSize = getVarTypeSize(counterType);
         
-        // Save old break/continue labels
         Label oldBreak = breakLabel;
         Label oldContinue = continueLabel;
-        
-        // Create loop labels
-        Label loopStart = new Label();
+        Label bodyStart = new Label();
         Label loopEnd = new Label();
-        Label conditionCheck = new Label();
-        
+        Label loopContinue = new Label();
         breakLabel = loopEnd;
-        continueLabel = conditionCheck;
-        
-        // Jump to condition check first
-        methodVisitor.visitJumpInsn(GOTO, conditionCheck);
+        continueLabel = loopContinue;
+        
+        // Bounds and step are evaluated once, in source order
+        int counterIndex = localVarIndex;
+        localVarIndex += slotSize;
+        range.getLeft().accept(this);
+        applyTypeConversion(lastExpressionType, counterClass);
+        methodVisitor.visitVarInsn(store, counterIndex);
+        
+        int endIndex = localVarIndex;
+        localVarIndex += slotSize;
+        range.getRight().accept(this);
+        applyTypeConversion(lastExpressionType, counterClass);
+        methodVisitor.visitVarInsn(store, endIndex);
+        
+        int stepIndex = -1;
+        if (stepExpr != null) {
+            stepIndex = localVarIndex;
+            localVarIndex += slotSize;
+            stepExpr.accept(this);
+            applyTypeConversion(lastExpressionType, counterClass);
+            methodVisitor.visitMethodInsn(INVOKESTATIC, "com/firefly/runtime/Range", "checkStep",
+                isLong ? "(J)J" : "(I)I", false);
+            methodVisitor.visitVarInsn(store, stepIndex);
+        }
+        
+        // Entry guard: skip empty ranges
+        methodVisitor.visitVarInsn(load, counterIndex);
+        methodVisitor.visitVarInsn(load, endIndex);
+        emitCompareJump(isLong, inclusive ? IF_ICMPGT : IF_ICMPGE, loopEnd);
+        
+        methodVisitor.visitLabel(bodyStart);
+        
+        // Bind the loop variable to a copy of the counter, so the body cannot disturb iteration
+        String varName = forLoopVariableName(expr);
+        if (varName != null) {
+            int varIndex = localVarIndex;
+            localVarIndex += slotSize;
+            localVariables.put(varName, varIndex);
+            localVariableTypes.put(varName, counterType);
+            localVariableClasses.remove(varName);
+            methodVisitor.visitVarInsn(load, counterIndex);
+            methodVisitor.visitVarInsn(store, varIndex);
+        }
         
-        // Loop body
-        methodVisitor.visitLabel(loopStart);
         expr.getBody().accept(this);
         
-        // Condition check
-        methodVisitor.visitLabel(conditionCheck);
-        expr.getCondition().accept(this);
-        
-        // If condition is true (non-zero), jump back to loop start
-        methodVisitor.visitJumpInsn(IFNE, loopStart);
+        methodVisitor.visitLabel(loopContinue);
+        if (stepExpr == null && !inclusive) {
+            // i++; if (i < end) repeat
+            emitCounterIncrement(isLong, counterIndex, -1);
+            methodVisitor.visitVarInsn(load, counterIndex);
+            methodVisitor.visitVarInsn(load, endIndex);
+            emitCompareJump(isLong, IF_ICMPLT, bodyStart);
+        } else if (stepExpr == null) {
+            // if (i == end) stop; i++; repeat (never increments past MAX_VALUE)
+            methodVisitor.visitVarInsn(load, counterIndex);
+            methodVisitor.visitVarInsn(load, endIndex);
+            emitCompareJump(isLong, IF_ICMPEQ, loopEnd);
+            emitCounterIncrement(isLong, counterIndex, -1);
+            methodVisitor.visitJumpInsn(GOTO, bodyStart);
+        } else {
+            // end - i is the true distance to the bound when read unsigned, so comparing it
+            // with the step decides whether i + step is still in range without overflowing
+            methodVisitor.visitVarInsn(load, endIndex);
+            methodVisitor.visitVarInsn(load, counterIndex);
+            methodVisitor.visitInsn(isLong ? LSUB : ISUB);
+            methodVisitor.visitVarInsn(load, stepIndex);
+            methodVisitor.visitMethodInsn(INVOKESTATIC, isLong ? "java/lang/Long" : "java/lang/Integer",
+                "compareUnsigned", isLong ? "(JJ)I" : "(II)I", false);
+            methodVisitor.visitJumpInsn(inclusive ? IFLT : IFLE, loopEnd);
+            emitCounterIncrement(isLong, counterIndex, stepIndex);
+            methodVisitor.visitJumpInsn(GOTO, bodyStart);
+        }
         
-        // Loop end
         methodVisitor.visitLabel(loopEnd);
         
-        // Restore break/continue labels
+        breakLabel = oldBreak;
+        continueLabel = oldContinue;
+        return true;
+    }
+    
+    /**
+     * Specialise `for x in xs` by the iterable's inferred static type, avoiding the
+     * Iterator calls and checkcasts of the generic loop:
+     * Persistent/Int/Long/DoubleVector walk their 32-element chunks with plain array
+     * loads, Java arrays use arraylength and indexed loads, and RandomAccess lists
+     * use get(i). Primitive elements are bound to an unboxed loop variable.
+     * Returns false, emitting nothing, for any other iterable.
+     */
+    private boolean generateIndexedForLoop(ForExpr expr) {
+        Class<?> iterableClass = inferExpressionType(expr.getIterable());
+        boolean isVector = iterableClass == com.firefly.runtime.collections.PersistentVector.class
+            || iterableClass == com.firefly.runtime.collections.IntVector.class
+            || iterableClass == com.firefly.runtime.collections.LongVector.class
+            || iterableClass == com.firefly.runtime.collections.DoubleVector.class;
+        boolean isList = iterableClass != null && !iterableClass.isArray()
+            && java.util.List.class.isAssignableFrom(iterableClass)
+            && java.util.RandomAccess.class.isAssignableFrom(iterableClass);
+        if (!isVector && !isList && (iterableClass == null || !iterableClass.isArray())) {
+            return false;
+        }
+        
+        Label oldBreak = breakLabel;
+        Label oldContinue = continueLabel;
+        Label loopEnd = new Label();
+        Label loopContinue = new Label();
+        breakLabel = loopEnd;
+        continueLabel = loopContinue;
+        
+        expr.getIterable().accept(this);
+        String iterableInternalName = org.objectweb.asm.Type.getInternalName(iterableClass);
+        int iterableIndex = localVarIndex++;
+        methodVisitor.visitTypeInsn(CHECKCAST, iterableInternalName);
+        methodVisitor.visitVarInsn(ASTORE, iterableIndex);
+        
+        // Length of the whole iterable: size() for vectors and lists, arraylength for arrays
+        int sizeIndex = localVarIndex++;
+        methodVisitor.visitVarInsn(ALOAD, iterableIndex);
+        if (isVector) {
+            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, iterableInternalName, "size", "()I", false);
+        } else if (isList) {
+            methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "size", "()I", true);
+        } else {
+            methodVisitor.visitInsn(ARRAYLENGTH);
+        }
+        methodVisitor.visitVarInsn(ISTORE, sizeIndex);
+        
+        // Element access: vectors read from their current chunk array, so an
+        // outer loop steps `base` one chunk at a time and an inner loop walks the chunk
+        Class<?> elementArrayClass;
+        if (isVector) {
+            elementArrayClass = iterableClass == com.firefly.runtime.collections.IntVector.class ? int[].class
+                : iterableClass == com.firefly.runtime.collections.LongVector.class ? long[].class
+                : iterableClass == com.firefly.runtime.collections.DoubleVector.class ? double[].class
+                : Object[].class;
+        } else {
+            elementArrayClass = isList ? null : iterableClass;
+        }
+        
+        int baseIndex = -1;
+        int arrayIndex = iterableIndex;
+        int limitIndex = sizeIndex;
+        int counterIndex = localVarIndex++;
+        Label outerStart = new Label();
+        Label innerStart = new Label();
+        
+        if (isVector) {
+            baseIndex = localVarIndex++;
+            arrayIndex = localVarIndex++;
+            limitIndex = localVarIndex++;
+            methodVisitor.visitInsn(ICONST_0);
+            methodVisitor.visitVarInsn(ISTORE, baseIndex);
+            methodVisitor.visitVarInsn(ILOAD, sizeIndex);
+            methodVisitor.visitJumpInsn(IFLE, loopEnd);
+            
+            // chunk = vector.chunkFor(base); limit = chunk.length; i = 0
+            methodVisitor.visitLabel(outerStart);
+            methodVisitor.visitVarInsn(ALOAD, iterableIndex);
+            methodVisitor.visitVarInsn(ILOAD, baseIndex);
+            String chunkDescriptor = org.objectweb.asm.Type.getDescriptor(elementArrayClass);
+            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, iterableInternalName, "chunkFor", "(I)" + chunkDescriptor, false);
+            methodVisitor.visitInsn(DUP);
+            methodVisitor.visitVarInsn(ASTORE, arrayIndex);
+            methodVisitor.visitInsn(ARRAYLENGTH);
+            methodVisitor.visitVarInsn(ISTORE, limitIndex);
+            methodVisitor.visitInsn(ICONST_0);
+            methodVisitor.visitVarInsn(ISTORE, counterIndex);
+        } else {
+            methodVisitor.visitInsn(ICONST_0);
+            methodVisitor.visitVarInsn(ISTORE, counterIndex);
+            methodVisitor.visitVarInsn(ILOAD, sizeIndex);
+            methodVisitor.visitJumpInsn(IFLE, loopEnd);
+        }
+        
+        methodVisitor.visitLabel(innerStart);
+        
+        // Load element i and bind it
+        VarType elementType;
+        methodVisitor.visitVarInsn(ALOAD, arrayIndex);
+        methodVisitor.visitVarInsn(ILOAD, counterIndex);
+        if (isList) {
+            methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;", true);
+            elementType = VarType.OBJECT;
+        } else {
+            elementType = emitArrayElementLoad(elementArrayClass.getComponentType());
+        }
+        String varName = forLoopVariableName(expr);
+        if (varName != null) {
+            int varIndex = localVarIndex;
+            localVarIndex += getVarTypeSize(elementType);
+            localVariables.put(varName, varIndex);
+            localVariableTypes.put(varName, elementType);
+            Class<?> componentType = elementArrayClass != null ? elementArrayClass.getComponentType() : null;
+            if (componentType != null && !componentType.isPrimitive() && componentType != Object.class) {
+                localVariableClasses.put(varName, componentType);
+            } else {
+                localVariableClasses.remove(varName);
+            }
+            methodVisitor.visitVarInsn(getStoreOpcodeForType(elementType), varIndex);
+        } else {
+            methodVisitor.visitInsn(getVarTypeSize(elementType) == 2 ? POP2 : POP);
+        }
+        
+        expr.getBody().accept(this);
+        
+        // i++; if (i < limit) repeat
+        methodVisitor.visitLabel(loopContinue);
+        methodVisitor.visitIincInsn(counterIndex, 1);
+        methodVisitor.visitVarInsn(ILOAD, counterIndex);
+        methodVisitor.visitVarInsn(ILOAD, limitIndex);
+        methodVisitor.visitJumpInsn(IF_ICMPLT, innerStart);
+        if (isVector) {
+            // base += chunk.length; if (base < size) next chunk
+            methodVisitor.visitVarInsn(ILOAD, baseIndex);
+            methodVisitor.visitVarInsn(ILOAD, limitIndex);
+            methodVisitor.visitInsn(IADD);
+            methodVisitor.visitInsn(DUP);
+            methodVisitor.visitVarInsn(ISTORE, baseIndex);
+            methodVisitor.visitVarInsn(ILOAD, sizeIndex);
+            methodVisitor.visitJumpInsn(IF_ICMPLT, outerStart);
+        }
+        
+        methodVisitor.visitLabel(loopEnd);
+        
+        breakLabel = oldBreak;
+        continueLabel = oldContinue;
+        return true;
+    }
+    
+    /**
+     * Load an element of an array with the given component type.
+     * Stack on entry: [array, index]
+     * Stack on exit: [element]
+     * Returns the VarType of the loaded element (narrow integer types widen to INT,
+     * float to DOUBLE).
+     */
+    private VarType emitArrayElementLoad(Class<?> componentType) {
+        if (componentType == int.class) {
+            methodVisitor.visitInsn(IALOAD);
+            return VarType.INT;
+        } else if (componentType == long.class) {
+            methodVisitor.visitInsn(LALOAD);
+            return VarType.LONG;
+        } else if (componentType == double.class) {
+            methodVisitor.visitInsn(DALOAD);
+            return VarType.DOUBLE;
+        } else if (componentType == float.class) {
+            methodVisitor.visitInsn(FALOAD);
+            methodVisitor.visitInsn(F2D);
+            return VarType.DOUBLE;
+        } else if (componentType == boolean.class) {
+            methodVisitor.visitInsn(BALOAD);
+            return VarType.BOOLEAN;
+        } else if (componentType == byte.class) {
+            methodVisitor.visitInsn(BALOAD);
+            return VarType.INT;
+        } else if (componentType == short.class) {
+            methodVisitor.visitInsn(SALOAD);
+            return VarType.INT;
+        } else if (componentType == char.class) {
+            methodVisitor.visitInsn(CALOAD);
+            return VarType.INT;
+        }
+        methodVisitor.visitInsn(AALOAD);
+        return componentType == String.class ? VarType.STRING : VarType.OBJECT;
+    }
+    
+    /**
+     * Name bound by a for-loop pattern, or null if the pattern binds nothing.
+     */
+    private String forLoopVariableName(ForExpr expr) {
+        if (expr.getPattern() instanceof com.firefly.compiler.ast.pattern.TypedVariablePattern) {
+            return ((com.firefly.compiler.ast.pattern.TypedVariablePattern) expr.getPattern()).getName();
+        } else if (expr.getPattern() instanceof VariablePattern) {
+            return ((VariablePattern) expr.getPattern()).getName();
+        }
+        return null;
+    }
+    
+    /**
+     * Compare the two int (or long) values on the stack and jump if the condition holds.
+     * The condition is given as an IF_ICMPxx opcode; for longs it is mapped to LCMP + IFxx.
+     */
+    private void emitCompareJump(boolean isLong, int intCompareOpcode, Label target) {
+        if (isLong) {
+            methodVisitor.visitInsn(LCMP);
+            methodVisitor.visitJumpInsn(intCompareOpcode - IF_ICMPEQ + IFEQ, target);
+        } else {
+            methodVisitor.visitJumpInsn(intCompareOpcode, target);
+        }
+    }
+    
+    /**
+     * Add 1 (stepIndex < 0) or the step local to the counter local.
+     */
+    private void emitCounterIncrement(boolean isLong, int counterIndex, int stepIndex) {
+        if (!isLong && stepIndex < 0) {
+            methodVisitor.visitIincInsn(counterIndex, 1);
+            return;
+        }
+        methodVisitor.visitVarInsn(isLong ? LLOAD : ILOAD, counterIndex);
+        if (stepIndex < 0) {
+            methodVisitor.visitInsn(LCONST_1);
+        } else {
+            methodVisitor.visitVarInsn(isLong ? LLOAD : ILOAD, stepIndex);
+        }
+        methodVisitor.visitInsn(isLong ? LADD : IADD);
+        methodVisitor.visitVarInsn(isLong ? LSTORE : ISTORE, counterIndex);
+    }
+    
+    @Override 
+    public Void visitWhileExpr(WhileExpr expr) {
+        if (methodVisitor == null) return null;
+        
+        // Save old break/continue labels
+        Label oldBreak = breakLabel;
+        Label oldContinue = continueLabel;
+        
+        // Create loop labels
+        Label loopStart = new Label();
+        Label loopEnd = new Label();
+        Label conditionCheck = new Label();
+        
+        breakLabel = loopEnd;
+        continueLabel = conditionCheck;
+        
+        // Jump to condition check first
+        methodVisitor.visitJumpInsn(GOTO, conditionCheck);
+        
+        // Loop body
+        methodVisitor.visitLabel(loopStart);
+        expr.getBody().accept(this);
+        
+        // Condition check
+        methodVisitor.visitLabel(conditionCheck);
+        expr.getCondition().accept(this);
+        
+        // If condition is true (non-zero), jump back to loop start
+        methodVisitor.visitJumpInsn(IFNE, loopStart);
+        
+        // Loop end
+        methodVisitor.visitLabel(loopEnd);
+        
+        // Restore break/continue labels
         breakLabel = oldBreak;
         continueLabel = oldContinue;
         
@@ -7314,62 +8055,105 @@ public class BytecodeGenerator implements AstVisitor<Void> {
     public Void visitArrayLiteralExpr(com.firefly.compiler.ast.expr.ArrayLiteralExpr expr) {
         if (methodVisitor == null) return null;
         
-        // Use PersistentVector for immutable array literals (native Firefly collections)
-        // Create Object array for varargs call to PersistentVector.of(...)
-        
-        int elementCount = expr.getElements().size();
-        
-        // Push array size
-        methodVisitor.visitIntInsn(BIPUSH, elementCount);
-        
-        // Create Object array
-        methodVisitor.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+        // Literals of Int/Long/Float elements use the unboxed IntVector/LongVector/DoubleVector:
+        // fill a primitive array and hand it to the vector's of(...) factory
+        VarType elementType = inferPrimitiveElementType(expr);
+        
+        // All-constant literals are built once per call site and reused (vectors are immutable)
+        Object[] constants = constantLiteralArguments(expr.getElements());
+        if (constants != null && constants.length > 0) {
+            String vectorInternalName = org.objectweb.asm.Type.getInternalName(
+                elementType != null ? vectorClassFor(elementType) : com.firefly.runtime.collections.PersistentVector.class);
+            methodVisitor.visitInvokeDynamicInsn(
+                "vector",
+                "()L" + vectorInternalName + ";",
+                literalBootstrap("vector"),
+                constants
+            );
+            lastExpressionType = VarType.OBJECT;
+            lastCallWasVoid = false;
+            return null;
+        }
         
-        // Fill array with elements
-        int index = 0;
-        for (com.firefly.compiler.ast.expr.Expression element : expr.getElements()) {
-            // Duplicate array reference
-            methodVisitor.visitInsn(DUP);
-            
-            // Push index
-            methodVisitor.visitIntInsn(BIPUSH, index);
-            
-            // Evaluate element
-            element.accept(this);
-            
-            // Box primitive types
-            switch (lastExpressionType) {
-                case INT:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
-                    break;
-                case LONG:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", false);
-                    break;
-                case FLOAT:
-                case DOUBLE:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", false);
-                    break;
-                case BOOLEAN:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", false);
-                    break;
-                // STRING and OBJECT don't need boxing
-            }
-            
-            // Store in array
-            methodVisitor.visitInsn(AASTORE);
-            
-            index++;
+        if (elementType != null) {
+            Class<?> vectorClass = vectorClassFor(elementType);
+            Class<?> componentType = varTypeToClass(elementType);
+            pushAndFillVarArgArray(componentType, expr.getElements());
+            String vectorInternalName = org.objectweb.asm.Type.getInternalName(vectorClass);
+            methodVisitor.visitMethodInsn(
+                INVOKESTATIC,
+                vectorInternalName,
+                "of",
+                "([" + org.objectweb.asm.Type.getDescriptor(componentType) + ")L" + vectorInternalName + ";",
+                false
+            );
+            lastExpressionType = VarType.OBJECT;
+            lastCallWasVoid = false;
+            return null;
         }
         
-        // Call PersistentVector.of(Object... elements) static method
+        // Use PersistentVector for immutable array literals (native Firefly collections).
+        // Elements are appended to a transient vector, so building the literal
+        // neither stages an Object[] nor publishes one vector per element.
         methodVisitor.visitMethodInsn(
             INVOKESTATIC,
             "com/firefly/runtime/collections/PersistentVector",
-            "of",
-            "([Ljava/lang/Object;)Lcom/firefly/runtime/collections/PersistentVector;",
+            "empty",
+            "()Lcom/firefly/runtime/collections/PersistentVector;",
             false
         );
         
+        if (!expr.getElements().isEmpty()) {
+            methodVisitor.visitMethodInsn(
+                INVOKEVIRTUAL,
+                "com/firefly/runtime/collections/PersistentVector",
+                "asTransient",
+                "()Lcom/firefly/runtime/collections/PersistentVector$Transient;",
+                false
+            );
+            
+            for (com.firefly.compiler.ast.expr.Expression element : expr.getElements()) {
+                // Evaluate element
+                element.accept(this);
+                
+                // Box primitive types
+                switch (lastExpressionType) {
+                    case INT:
+                        methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+                        break;
+                    case LONG:
+                        methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", false);
+                        break;
+                    case FLOAT:
+                    case DOUBLE:
+                        methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", false);
+                        break;
+                    case BOOLEAN:
+                        methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", false);
+                        break;
+                    // STRING and OBJECT don't need boxing
+                }
+                
+                // Transient.append returns the transient, keeping it on the stack
+                methodVisitor.visitMethodInsn(
+                    INVOKEVIRTUAL,
+                    "com/firefly/runtime/collections/PersistentVector$Transient",
+                    "append",
+                    "(Ljava/lang/Object;)Lcom/firefly/runtime/collections/PersistentVector$Transient;",
+                    false
+                );
+            }
+            
+            // Freeze the transient into the literal's PersistentVector
+            methodVisitor.visitMethodInsn(
+                INVOKEVIRTUAL,
+                "com/firefly/runtime/collections/PersistentVector$Transient",
+                "persistent",
+                "()Lcom/firefly/runtime/collections/PersistentVector;",
+                false
+            );
+        }
+        
         // PersistentVector reference is now on stack
         lastExpressionType = VarType.OBJECT;
         lastCallWasVoid = false;
@@ -7377,55 +8161,148 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         return null;
     }
     
+    /**
+     * Infer the unboxed element type of an array literal.
+     * Returns INT, LONG or DOUBLE when every element is statically numeric (mixed
+     * elements widen as in arithmetic), or null when the literal must stay a boxed
+     * PersistentVector (empty literals, strings, objects, unknown types).
+     */
+    private VarType inferPrimitiveElementType(com.firefly.compiler.ast.expr.ArrayLiteralExpr expr) {
+        if (expr.getElements().isEmpty()) {
+            return null;
+        }
+        VarType result = null;
+        for (Expression element : expr.getElements()) {
+            VarType elementType = inferNumericType(element);
+            if (elementType == null) {
+                return null;
+            }
+            result = result == null ? elementType : widerNumericType(result, elementType);
+        }
+        return result;
+    }
+    
+    /**
+     * Static numeric type of an expression (INT, LONG or DOUBLE), or null if it is
+     * not known to produce a primitive number.
+     */
+    private VarType inferNumericType(Expression expr) {
+        if (expr instanceof LiteralExpr) {
+            switch (((LiteralExpr) expr).getKind()) {
+                case INTEGER: return VarType.INT;
+                case FLOAT: return VarType.DOUBLE;
+                default: return null;
+            }
+        }
+        if (expr instanceof IdentifierExpr) {
+            VarType varType = localVariableTypes.get(((IdentifierExpr) expr).getName());
+            if (varType == VarType.INT || varType == VarType.LONG) return varType;
+            if (varType == VarType.FLOAT || varType == VarType.DOUBLE) return VarType.DOUBLE;
+            return null;
+        }
+        if (expr instanceof UnaryExpr && ((UnaryExpr) expr).getOperator() == UnaryExpr.UnaryOp.MINUS) {
+            return inferNumericType(((UnaryExpr) expr).getOperand());
+        }
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            switch (binary.getOperator()) {
+                case ADD:
+                case SUBTRACT:
+                case MULTIPLY:
+                case DIVIDE:
+                case MODULO:
+                    VarType left = inferNumericType(binary.getLeft());
+                    VarType right = inferNumericType(binary.getRight());
+                    return left == null || right == null ? null : widerNumericType(left, right);
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+    
+    private static VarType widerNumericType(VarType a, VarType b) {
+        if (a == VarType.DOUBLE || b == VarType.DOUBLE) return VarType.DOUBLE;
+        if (a == VarType.LONG || b == VarType.LONG) return VarType.LONG;
+        return VarType.INT;
+    }
+    
+    private static boolean isPrimitiveVectorClass(Class<?> type) {
+        return type == com.firefly.runtime.collections.IntVector.class
+            || type == com.firefly.runtime.collections.LongVector.class
+            || type == com.firefly.runtime.collections.DoubleVector.class;
+    }
+    
+    /**
+     * Runtime vector class used for array literals with the given element type.
+     */
+    private static Class<?> vectorClassFor(VarType elementType) {
+        switch (elementType) {
+            case INT: return com.firefly.runtime.collections.IntVector.class;
+            case LONG: return com.firefly.runtime.collections.LongVector.class;
+            case DOUBLE: return com.firefly.runtime.collections.DoubleVector.class;
+            default: return com.firefly.runtime.collections.PersistentVector.class;
+        }
+    }
+    
     public Void visitMapLiteralExpr(com.firefly.compiler.ast.expr.MapLiteralExpr expr) {
         if (methodVisitor == null) return null;
         
-        // Create HashMap
+        // All-constant literals are built once per call site and shared, read-only;
+        // only a literal bound by `let mut` gets a fresh copy of that template
+        java.util.List<Expression> keysAndValues = new java.util.ArrayList<>();
+        for (var entry : expr.getEntries().entrySet()) {
+            keysAndValues.add(entry.getKey());
+            keysAndValues.add(entry.getValue());
+        }
+        Object[] constants = constantLiteralArguments(keysAndValues);
+        if (constants != null && constants.length > 0) {
+            String bootstrap = expr == mutableBindingInitializer ? "mutableMap" : "map";
+            methodVisitor.visitInvokeDynamicInsn(
+                "map",
+                "()Ljava/util/HashMap;",
+                literalBootstrap(bootstrap),
+                constants
+            );
+            lastExpressionType = VarType.OBJECT;
+            lastCallWasVoid = false;
+            return null;
+        }
+        
+        // Create HashMap, presized so the entries never trigger a rehash
+        int entryCount = expr.getEntries().size();
         methodVisitor.visitTypeInsn(NEW, "java/util/HashMap");
         methodVisitor.visitInsn(DUP);
-        methodVisitor.visitMethodInsn(
-            INVOKESPECIAL,
-            "java/util/HashMap",
-            "<init>",
-            "()V",
-            false
-        );
+        if (entryCount > 0) {
+            methodVisitor.visitLdcInsn((int) (entryCount / 0.75f) + 1);
+            methodVisitor.visitMethodInsn(
+                INVOKESPECIAL,
+                "java/util/HashMap",
+                "<init>",
+                "(I)V",
+                false
+            );
+        } else {
+            methodVisitor.visitMethodInsn(
+                INVOKESPECIAL,
+                "java/util/HashMap",
+                "<init>",
+                "()V",
+                false
+            );
+        }
         
         // Put each entry
         for (var entry : expr.getEntries().entrySet()) {
             methodVisitor.visitInsn(DUP);  // Duplicate HashMap reference
             
-            // Visit key
+            // Visit key, boxing primitives
             entry.getKey().accept(this);
+            boxLastExpression();
             
-            // Box key if primitive
-            switch (lastExpressionType) {
-                case INT:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
-                    break;
-                case FLOAT:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "valueOf", "(F)Ljava/lang/Float;", false);
-                    break;
-                case BOOLEAN:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", false);
-                    break;
-            }
-            
-            // Visit value
+            // Visit value, boxing primitives
             entry.getValue().accept(this);
-            
-            // Box value if primitive
-            switch (lastExpressionType) {
-                case INT:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
-                    break;
-                case FLOAT:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "valueOf", "(F)Ljava/lang/Float;", false);
-                    break;
-                case BOOLEAN:
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", false);
-                    break;
-            }
+            boxLastExpression();
             
             // Call put(key, value)
             methodVisitor.visitMethodInsn(
@@ -7443,6 +8320,98 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         return null;
     }
     
+    /**
+     * Box the primitive value left on the stack by the last visited expression.
+     */
+    private void boxLastExpression() {
+        switch (lastExpressionType) {
+            case INT:
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+                break;
+            case LONG:
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;", false);
+                break;
+            case FLOAT:
+            case DOUBLE:
+                // Flylang Float maps to JVM double
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", false);
+                break;
+            case BOOLEAN:
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", false);
+                break;
+            default:
+                // STRING and OBJECT don't need boxing
+                break;
+        }
+    }
+    
+    /**
+     * Bootstrap static arguments beyond this count are not hoisted: method handle
+     * invocation caps a bootstrap call at 255 arguments (three go to the lookup,
+     * name and type), so larger literals are built inline.
+     */
+    private static final int MAX_CONSTANT_LITERAL_ARGUMENTS = 250;
+    
+    /**
+     * Returns the values of literal elements as bootstrap arguments (Integer,
+     * Double or String), or null if any element is not a compile-time constant
+     * or there are too many of them to pass to a bootstrap method.
+     */
+    private Object[] constantLiteralArguments(java.util.List<Expression> elements) {
+        if (elements.size() > MAX_CONSTANT_LITERAL_ARGUMENTS) {
+            return null;
+        }
+        Object[] constants = new Object[elements.size()];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = constantValue(elements.get(i));
+            if (constants[i] == null) {
+                return null;
+            }
+        }
+        return constants;
+    }
+    
+    /**
+     * Compile-time value of an Int, Float or String literal, including negated
+     * numeric literals; null for anything else.
+     */
+    private static Object constantValue(Expression expr) {
+        if (expr instanceof LiteralExpr) {
+            LiteralExpr literal = (LiteralExpr) expr;
+            switch (literal.getKind()) {
+                case INTEGER:
+                case FLOAT:
+                case STRING:
+                    return literal.getValue();
+                default:
+                    return null;
+            }
+        }
+        if (expr instanceof UnaryExpr && ((UnaryExpr) expr).getOperator() == UnaryExpr.UnaryOp.MINUS) {
+            Object operand = constantValue(((UnaryExpr) expr).getOperand());
+            if (operand instanceof Integer) {
+                return -(Integer) operand;
+            }
+            if (operand instanceof Double) {
+                return -(Double) operand;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Bootstrap method in {@code com.firefly.runtime.Literals} that links constant literal sites.
+     */
+    private static Handle literalBootstrap(String name) {
+        return new Handle(
+            H_INVOKESTATIC,
+            "com/firefly/runtime/Literals",
+            name,
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;",
+            false
+        );
+    }
+    
     @Override public Void visitPattern(Pattern pattern) { return null; }
     @Override public Void visitPrimitiveType(PrimitiveType type) { return null; }
     @Override public Void visitNamedType(NamedType type) { return null; }
@@ -7784,6 +8753,10 @@ public class BytecodeGenerator implements AstVisitor<Void> {
                     // Simplified: assume int
                     return int.class;
                     
+                case RANGE:
+                case RANGE_INCLUSIVE:
+                    return com.firefly.runtime.Range.class;
+                    
                 default:
                     return Object.class;
             }
@@ -7822,8 +8795,10 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         }
         
         if (expr instanceof ArrayLiteralExpr) {
-            // For now, treat as ArrayList (not native array)
-            return java.util.ArrayList.class;
+            VarType elementType = inferPrimitiveElementType((ArrayLiteralExpr) expr);
+            return elementType != null
+                ? vectorClassFor(elementType)
+                : com.firefly.runtime.collections.PersistentVector.class;
         }
         
         // Default to Object for unknown expressions
@@ -8271,10 +9246,37 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             return;
         }
         
+        // With a dispatch table, jump straight to the first case whose label
+        // matches the message; a case whose nested patterns fail resumes the
+        // search after itself
+        boolean dispatch = usesMessageDispatch(decl);
+        int caseCount = decl.getReceiveCases().size();
+        int restartIndex = -1;
+        Label retryLabel = new Label();
+        Label[] caseLabels = new Label[caseCount];
+        if (dispatch) {
+            restartIndex = localVarIndex++;
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, restartIndex);
+            mv.visitLabel(retryLabel);
+            mv.visitFieldInsn(GETSTATIC, actorClassName, "$dispatch", "Lcom/firefly/runtime/actor/MessageDispatch;");
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ILOAD, restartIndex);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "com/firefly/runtime/actor/MessageDispatch", "next",
+                "(Ljava/lang/Object;I)I", false);
+            for (int i = 0; i < caseCount; i++) {
+                caseLabels[i] = new Label();
+            }
+            mv.visitTableSwitchInsn(0, caseCount - 1, endLabel, caseLabels);
+        }
+        
         // Generate pattern matching for each receive case
         for (int i = 0; i < decl.getReceiveCases().size(); i++) {
             ActorDecl.ReceiveCase receiveCase = decl.getReceiveCases().get(i);
             Label nextCase = new Label();
+            if (dispatch) {
+                mv.visitLabel(caseLabels[i]);
+            }
             
             // Pattern match the message (parameter at index 1)
             Pattern pattern = receiveCase.getPattern();
@@ -8287,28 +9289,19 @@ public class BytecodeGenerator implements AstVisitor<Void> {
                 
                 // The handler result could be:
                 // 1. Unit (void) - no return value
-                // 2. New state value - update state
-                // For now, handlers modify actor fields directly via self.field = value
-                // So we just discard any return value and return current state
+                // 2. A value - the reply when the message was sent with ask(),
+                //    discarded by Actor.reply() otherwise
+                // Handlers modify actor fields directly via self.field = value,
+                // so the returned state is always the current state
                 if (!lastCallWasVoid && lastExpressionType != null) {
-                    // Pop any return value from handler
-                    switch (lastExpressionType) {
-                        case INT:
-                        case BOOLEAN:
-                        case FLOAT:
-                            mv.visitInsn(POP);
-                            break;
-                        case LONG:
-                        case DOUBLE:
-                            // 64-bit values require POP2
-                            mv.visitInsn(POP2);
-                            break;
-                        case OBJECT:
-                        case STRING:
-                        case STRING_ARRAY:
-                            mv.visitInsn(POP);
-                            break;
-                    }
+                    boxLastExpression();
+                    mv.visitMethodInsn(
+                        INVOKESTATIC,
+                        "com/firefly/runtime/actor/Actor",
+                        "reply",
+                        "(Ljava/lang/Object;)V",
+                        true
+                    );
                 }
             }
             
@@ -8322,6 +9315,11 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             // If pattern didn't match, try next case
             if (!alwaysMatches) {
                 mv.visitLabel(nextCase);
+                if (dispatch) {
+                    mv.visitLdcInsn(i + 1);
+                    mv.visitVarInsn(ISTORE, restartIndex);
+                    mv.visitJumpInsn(GOTO, retryLabel);
+                }
             }
         }
         
@@ -8353,6 +9351,77 @@ public class BytecodeGenerator implements AstVisitor<Void> {
      * @param failLabel Label to jump to if pattern doesn't match
      * @return true if pattern always matches (wildcard), false otherwise
      */
+    private String resolveActorPatternType(String typeName) {
+        // Try to resolve the class name
+        java.util.Optional<String> resolvedClass = typeResolver.resolveClassName(typeName);
+        if (resolvedClass.isPresent()) {
+            return resolvedClass.get().replace('.', '/');
+        }
+        // Try in current package
+        String packageName = this.className.contains("/") ? 
+            this.className.substring(0, this.className.lastIndexOf("/")) : "";
+        return packageName.isEmpty() ? typeName : packageName + "/" + typeName;
+    }
+    
+    /**
+     * A receive block dispatches through a {@code MessageDispatch} table once
+     * it has two or more type cases; below that the instanceof chain is as cheap.
+     */
+    private boolean usesMessageDispatch(ActorDecl decl) {
+        return decl.getReceiveCases().stream()
+            .filter(c -> c.getPattern() instanceof com.firefly.compiler.ast.pattern.TupleStructPattern)
+            .count() >= 2;
+    }
+    
+    /**
+     * The class a message must be an instance of for a receive case to match:
+     * the pattern's type, a literal's boxed class, or Object for the rest.
+     */
+    private String receiveCaseLabel(Pattern pattern) {
+        if (pattern instanceof com.firefly.compiler.ast.pattern.TupleStructPattern) {
+            return resolveActorPatternType(
+                ((com.firefly.compiler.ast.pattern.TupleStructPattern) pattern).getTypeName());
+        }
+        if (pattern instanceof com.firefly.compiler.ast.pattern.LiteralPattern) {
+            switch (((com.firefly.compiler.ast.pattern.LiteralPattern) pattern).getLiteral().getKind()) {
+                case INTEGER: return "java/lang/Integer";
+                case FLOAT: return "java/lang/Double";
+                case STRING: return "java/lang/String";
+                case BOOLEAN: return "java/lang/Boolean";
+                default: break;
+            }
+        }
+        return "java/lang/Object";
+    }
+    
+    /**
+     * Emit the actor's {@code $dispatch} table: one label class per receive case.
+     */
+    private void generateActorDispatchTable(ClassWriter cw, ActorDecl decl, String actorClassName) {
+        String dispatchType = "com/firefly/runtime/actor/MessageDispatch";
+        cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC, "$dispatch",
+            "L" + dispatchType + ";", null, null).visitEnd();
+        
+        MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, dispatchType);
+        mv.visitInsn(DUP);
+        List<ActorDecl.ReceiveCase> cases = decl.getReceiveCases();
+        mv.visitLdcInsn(cases.size());
+        mv.visitTypeInsn(ANEWARRAY, "java/lang/Class");
+        for (int i = 0; i < cases.size(); i++) {
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(i);
+            mv.visitLdcInsn(org.objectweb.asm.Type.getObjectType(receiveCaseLabel(cases.get(i).getPattern())));
+            mv.visitInsn(AASTORE);
+        }
+        mv.visitMethodInsn(INVOKESPECIAL, dispatchType, "<init>", "([Ljava/lang/Class;)V", false);
+        mv.visitFieldInsn(PUTSTATIC, actorClassName, "$dispatch", "L" + dispatchType + ";");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+    
     private boolean generateActorPatternMatch(MethodVisitor mv, Pattern pattern, int valueIndex, Label failLabel) {
         // Handle wildcard pattern: matches everything
         if (pattern instanceof com.firefly.compiler.ast.pattern.WildcardPattern) {
@@ -8400,19 +9469,7 @@ public class BytecodeGenerator implements AstVisitor<Void> {
             mv.visitVarInsn(ALOAD, valueIndex);
             
             // Resolve type name
-            String typeName = structPattern.getTypeName();
-            
-            // Try to resolve the class name
-            java.util.Optional<String> resolvedClass = typeResolver.resolveClassName(typeName);
-            String internalTypeName;
-            if (resolvedClass.isPresent()) {
-                internalTypeName = resolvedClass.get().replace('.', '/');
-            } else {
-                // Try in current package
-                String packageName = this.className.contains("/") ? 
-                    this.className.substring(0, this.className.lastIndexOf("/")) : "";
-                internalTypeName = packageName.isEmpty() ? typeName : packageName + "/" + typeName;
-            }
+            String internalTypeName = resolveActorPatternType(structPattern.getTypeName());
             
             // Check instanceof
             mv.visitTypeInsn(INSTANCEOF, internalTypeName);
@@ -9427,31 +10484,8 @@ public class BytecodeGenerator implements AstVisitor<Void> {
      * Example: @derive(Show, Eq, Hash, Json, Binary)
      */
     private void generateDeriveImplementations(ClassWriter cw, String className, SparkDecl decl) {
-        Optional<Annotation> deriveAnn = decl.getAnnotation("derive");
-        if (!deriveAnn.isPresent()) {
-            return;
-        }
-        
-        // Parse which traits to derive from annotation arguments
-        Object value = deriveAnn.get().getValue();
-        if (value == null) {
-            return;
-        }
-        
-        // Value can be a single string or a list
-        java.util.List<String> traits = new java.util.ArrayList<>();
-        if (value instanceof String) {
-            traits.add((String) value);
-        } else if (value instanceof java.util.List) {
-            for (Object item : (java.util.List<?>) value) {
-                if (item instanceof String) {
-                    traits.add((String) item);
-                }
-            }
-        }
-        
         // Generate implementations for each trait
-        for (String trait : traits) {
+        for (String trait : derivedTraits(decl)) {
             switch (trait) {
                 case "Show":
                     generateShowImplementation(cw, className, decl.getFields());
@@ -9475,6 +10509,30 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         }
     }
     
+    /**
+     * Traits listed in a spark's @derive annotation, in declaration order.
+     */
+    private java.util.List<String> derivedTraits(SparkDecl decl) {
+        java.util.List<String> traits = new java.util.ArrayList<>();
+        Optional<Annotation> deriveAnn = decl.getAnnotation("derive");
+        if (!deriveAnn.isPresent()) {
+            return traits;
+        }
+        
+        // Value can be a single string or a list
+        Object value = deriveAnn.get().getValue();
+        if (value instanceof String) {
+            traits.add((String) value);
+        } else if (value instanceof java.util.List) {
+            for (Object item : (java.util.List<?>) value) {
+                if (item instanceof String) {
+                    traits.add((String) item);
+                }
+            }
+        }
+        return traits;
+    }
+    
     /**
      * Generate Show trait implementation: show() -> String
      * Returns a human-readable representation (similar to toString but more structured)
@@ -9682,7 +10740,8 @@ public class BytecodeGenerator implements AstVisitor<Void> {
     }
     
     /**
-     * Generate Ord trait implementation: compareTo(T) -> Int
+     * Generate Ord trait implementation: compareTo(T) -> Int, plus the
+     * compareTo(Object) bridge required by java.lang.Comparable.
      */
     private void generateOrdImplementation(ClassWriter cw, String className,
                                           List<SparkDecl.SparkField> fields) {
@@ -9695,71 +10754,86 @@ public class BytecodeGenerator implements AstVisitor<Void> {
         );
         mv.visitCode();
         
-        // Compare fields lexicographically
-        Label equalLabel = new Label();
-        Label endLabel = new Label();
-        
+        // Compare fields lexicographically, returning the first non-zero result
         for (int i = 0; i < fields.size(); i++) {
             SparkDecl.SparkField field = fields.get(i);
+            String fieldDescriptor = getTypeDescriptor(field.getType());
             
             // Load this.field
             mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, className, field.getName(), getTypeDescriptor(field.getType()));
+            mv.visitFieldInsn(GETFIELD, className, field.getName(), fieldDescriptor);
             
             // Load other.field
             mv.visitVarInsn(ALOAD, 1);
-            mv.visitFieldInsn(GETFIELD, className, field.getName(), getTypeDescriptor(field.getType()));
+            mv.visitFieldInsn(GETFIELD, className, field.getName(), fieldDescriptor);
             
-            // Compare based on type
-            if (field.getType() instanceof PrimitiveType) {
-                PrimitiveType pt = (PrimitiveType) field.getType();
-                switch (pt.getKind()) {
-                    case INT:
-                        // Use Integer.compare(int, int)
-                        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "compare",
-                                          "(II)I", false);
-                        break;
-                    case FLOAT:
-                        // Use Double.compare(double, double)
-                        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare",
-                                          "(DD)I", false);
-                        break;
-                    case BOOL:
-                        // Use Boolean.compare(boolean, boolean)
-                        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "compare",
-                                          "(ZZ)I", false);
-                        break;
-                    case STRING:
-                        // Use String.compareTo(String)
-                        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "compareTo",
-                                          "(Ljava/lang/String;)I", false);
-                        break;
-                }
-            } else {
-                // For objects, assume Comparable
-                mv.visitMethodInsn(INVOKEINTERFACE, "java/lang/Comparable", "compareTo",
-                                  "(Ljava/lang/Object;)I", true);
+            // Compare based on the JVM representation of the field
+            switch (fieldDescriptor) {
+                case "I":
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "compare",
+                                      "(II)I", false);
+                    break;
+                case "J":
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "compare",
+                                      "(JJ)I", false);
+                    break;
+                case "D":
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare",
+                                      "(DD)I", false);
+                    break;
+                case "Z":
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "compare",
+                                      "(ZZ)I", false);
+                    break;
+                case "Ljava/lang/String;":
+                    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "compareTo",
+                                      "(Ljava/lang/String;)I", false);
+                    break;
+                default:
+                    // For objects (including other Ord sparks), assume Comparable
+                    mv.visitMethodInsn(INVOKEINTERFACE, "java/lang/Comparable", "compareTo",
+                                      "(Ljava/lang/Object;)I", true);
+                    break;
             }
             
-            // Store comparison result
-            mv.visitInsn(DUP);
-            mv.visitVarInsn(ISTORE, 2);
-            
-            // If result != 0, return it
-            if (i < fields.size() - 1) {
-                mv.visitJumpInsn(IFEQ, equalLabel);
-                mv.visitVarInsn(ILOAD, 2);
+            // The last field's result is the overall result
+            if (i == fields.size() - 1) {
+                mv.visitInsn(IRETURN);
+            } else {
+                Label nextField = new Label();
+                mv.visitInsn(DUP);
+                mv.visitJumpInsn(IFEQ, nextField);
                 mv.visitInsn(IRETURN);
-                mv.visitLabel(equalLabel);
+                mv.visitLabel(nextField);
+                mv.visitInsn(POP);
             }
         }
         
-        // All fields equal, return 0
-        mv.visitInsn(ICONST_0);
-        mv.visitInsn(IRETURN);
+        // No fields: all instances are equal
+        if (fields.isEmpty()) {
+            mv.visitInsn(ICONST_0);
+            mv.visitInsn(IRETURN);
+        }
         
         mv.visitMaxs(0, 0);
         mv.visitEnd();
+        
+        // Bridge: compareTo(Object) -> compareTo((T) other)
+        MethodVisitor bridge = cw.visitMethod(
+            ACC_PUBLIC | ACC_BRIDGE | ACC_SYNTHETIC,
+            "compareTo",
+            "(Ljava/lang/Object;)I",
+            null,
+            null
+        );
+        bridge.visitCode();
+        bridge.visitVarInsn(ALOAD, 0);
+        bridge.visitVarInsn(ALOAD, 1);
+        bridge.visitTypeInsn(CHECKCAST, className);
+        bridge.visitMethodInsn(INVOKEVIRTUAL, className, "compareTo", "(L" + className + ";)I", false);
+        bridge.visitInsn(IRETURN);
+        bridge.visitMaxs(0, 0);
+        bridge.visitEnd();
     }
     
     /**
@@ -219,6 +219,7 @@ public class AsyncContextValidator implements AstVisitor<Void> {
     @Override public Void visitImplDecl(ImplDecl decl) { return null; }
     @Override public Void visitTypeAliasDecl(TypeAliasDecl decl) { return null; }
     @Override public Void visitExceptionDecl(com.firefly.compiler.ast.decl.ExceptionDecl decl) { return null; }
+    @Override public Void visitSupervisorDecl(com.firefly.compiler.ast.decl.SupervisorDecl decl) { return null; }
     @Override public Void visitLetStatement(LetStatement stmt) {
         if (stmt.getInitializer().isPresent()) {
             stmt.getInitializer().get().accept(this);
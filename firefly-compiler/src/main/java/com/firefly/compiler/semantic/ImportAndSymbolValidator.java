@@ -180,6 +180,8 @@ public class ImportAndSymbolValidator implements AstVisitor<Void> {
             definedTypes.add(((ActorDecl) decl).getName());
         } else if (decl instanceof InterfaceDecl) {
             definedTypes.add(((InterfaceDecl) decl).getName());
+        } else if (decl instanceof com.firefly.compiler.ast.decl.SupervisorDecl) {
+            definedTypes.add(((com.firefly.compiler.ast.decl.SupervisorDecl) decl).getName());
         }
     }
     
@@ -945,6 +947,11 @@ public class ImportAndSymbolValidator implements AstVisitor<Void> {
         return null;
     }
     
+    @Override
+    public Void visitSupervisorDecl(com.firefly.compiler.ast.decl.SupervisorDecl decl) {
+        return null;
+    }
+    
     @Override
     public Void visitSafeAccessExpr(com.firefly.compiler.ast.expr.SafeAccessExpr expr) {
         expr.getObject().accept(this);
@@ -838,6 +838,24 @@ public class SymbolTableBuilder implements AstVisitor<Void> {
         return null;
     }
     
+    @Override
+    public Void visitSupervisorDecl(com.firefly.compiler.ast.decl.SupervisorDecl decl) {
+        // A supervisor is a class that can be instantiated and spawned through
+        try {
+            currentScope.define(
+                decl.getName(),
+                new NamedType(decl.getName()),
+                SymbolTable.SymbolKind.STRUCT,
+                false
+            );
+        } catch (SemanticException e) {
+            reporter.error("STB017",
+                "Supervisor '" + decl.getName() + "' is already defined in this scope",
+                decl.getLocation());
+        }
+        return null;
+    }
+    
     @Override
     public Void visitAwaitExpr(com.firefly.compiler.ast.expr.AwaitExpr expr) {
         return null;
@@ -696,6 +696,11 @@ Type inferredType = globalInference.inferFunctionType(decl);
         return null;
     }
     
+    @Override
+    public Void visitSupervisorDecl(com.firefly.compiler.ast.decl.SupervisorDecl decl) {
+        return null;
+    }
+    
     @Override
     public Void visitAwaitExpr(com.firefly.compiler.ast.expr.AwaitExpr expr) {
         // Validate await usage
@@ -388,6 +388,10 @@ public class TypeInference implements AstVisitor<Type> {
                         leftType.getName(), rightType.getName())
                 );
                 
+            case RANGE:
+            case RANGE_INCLUSIVE:
+                return new NamedType("Range");
+                
             default:
                 throw new SemanticException("Unknown binary operator: " + expr.getOperator());
         }
@@ -968,4 +972,9 @@ public class TypeInference implements AstVisitor<Type> {
         // Exception declaration returns the exception type
         return new NamedType(decl.getName());
     }
+    
+    @Override
+    public Type visitSupervisorDecl(com.firefly.compiler.ast.decl.SupervisorDecl decl) {
+        return new NamedType(decl.getName());
+    }
 }
@@ -735,6 +735,12 @@ public class SemanticAnalyzer implements AstVisitor<Void> {
         return null;
     }
     
+    @Override public Void visitSupervisorDecl(com.firefly.compiler.ast.decl.SupervisorDecl decl) {
+        // A supervisor compiles to a class
+        symbolTable.put(decl.getName(), new SymbolInfo(decl.getName(), SymbolKind.CLASS));
+        return null;
+    }
+    
     // ============ Scope Management ============
     
     private void pushScope() {
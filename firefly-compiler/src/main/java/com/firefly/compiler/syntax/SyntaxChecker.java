@@ -351,6 +351,57 @@ public class SyntaxChecker implements AstVisitor<Void> {
         return null;
     }
     
+    @Override
+    public Void visitSupervisorDecl(SupervisorDecl decl) {
+        if (declaredTypes.contains(decl.getName())) {
+            reporter.error("FF004",
+                "Duplicate supervisor declaration: " + decl.getName(),
+                decl.getLocation());
+        } else {
+            declaredTypes.add(decl.getName());
+        }
+        
+        Set<String> fieldNames = new HashSet<>();
+        for (SupervisorDecl.Field field : decl.getFields()) {
+            String name = field.getName();
+            if (!fieldNames.add(name)) {
+                reporter.error("FF014",
+                    "Duplicate supervisor field: " + name,
+                    field.getLocation());
+            } else if (name.equals(SupervisorDecl.STRATEGY)) {
+                String strategy = decl.getStrategyName().orElse(null);
+                if (strategy == null || !isSupervisorStrategy(strategy)) {
+                    reporter.error("FF014",
+                        "Invalid supervisor strategy" + (strategy != null ? ": " + strategy : ""),
+                        field.getLocation(),
+                        "Use one_for_one, one_for_all or rest_for_one");
+                }
+            } else if (name.equals(SupervisorDecl.MAX_RESTARTS) || name.equals(SupervisorDecl.WITHIN)) {
+                int min = name.equals(SupervisorDecl.WITHIN) ? 1 : 0;
+                if (decl.getIntField(name).filter(value -> value >= min).isEmpty()) {
+                    reporter.error("FF014",
+                        "Supervisor field '" + name + "' must be an integer literal of at least " + min,
+                        field.getLocation());
+                }
+            } else {
+                reporter.error("FF014",
+                    "Unknown supervisor field: " + name,
+                    field.getLocation(),
+                    "Supervisor fields are strategy, maxRestarts and within");
+            }
+        }
+        return null;
+    }
+    
+    private static boolean isSupervisorStrategy(String name) {
+        try {
+            com.firefly.runtime.actor.Supervisor.Strategy.parse(name);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
     @Override
     public Void visitExceptionDecl(com.firefly.compiler.ast.decl.ExceptionDecl decl) {
         if (declaredTypes.contains(decl.getName())) {
@@ -0,0 +1,95 @@
+package com.firefly.compiler.codegen;
+
+import com.firefly.compiler.ast.CompilationUnit;
+import com.firefly.compiler.ast.Pattern;
+import com.firefly.compiler.ast.SourceLocation;
+import com.firefly.compiler.ast.decl.ActorDecl;
+import com.firefly.compiler.ast.expr.LiteralExpr;
+import com.firefly.compiler.ast.pattern.LiteralPattern;
+import com.firefly.compiler.ast.pattern.TupleStructPattern;
+import com.firefly.compiler.ast.pattern.WildcardPattern;
+import com.firefly.runtime.actor.Actor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.firefly.compiler.testing.TestCompiler.load;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the dispatch table of compiled receive blocks.
+ *
+ * <p>The grammar has no actor declaration yet, so the actor is built as an
+ * AST and handed straight to the generator.</p>
+ */
+public class ActorDispatchTest {
+
+    private static final SourceLocation LOC = SourceLocation.unknown();
+
+    /** A message with one positional field, as data types compile to. */
+    public static final class Deposit {
+        public final Object field0;
+
+        public Deposit(Object amount) {
+            this.field0 = amount;
+        }
+    }
+
+    public static final class Ping {
+    }
+
+    @Test
+    @Timeout(10)
+    @SuppressWarnings("unchecked")
+    public void testCasesRunInSourceOrder() throws Exception {
+        // receive {
+        //     case Deposit(1) => "one"
+        //     case Ping() => "ping"
+        //     case Deposit(_) => "deposit"
+        //     case 7 => "seven"
+        //     case _ => "other"
+        // }
+        ActorDecl teller = new ActorDecl("Teller", List.of(), List.of(), null, List.of(
+            receive(message(Deposit.class, new LiteralPattern(integer(1), LOC)), "one"),
+            receive(message(Ping.class), "ping"),
+            receive(message(Deposit.class, new WildcardPattern(LOC)), "deposit"),
+            receive(new LiteralPattern(integer(7), LOC), "seven"),
+            receive(new WildcardPattern(LOC), "other")
+        ), LOC);
+        Map<String, byte[]> classes = new BytecodeGenerator(new TypeResolver())
+            .generate(new CompilationUnit("test::actors", List.of(), List.of(teller), LOC));
+
+        Class<?> tellerClass = load(classes, "test.actors.Teller");
+        assertNotNull(tellerClass.getDeclaredField("$dispatch"));
+
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            Actor.ActorRef<Object> ref = system.spawn(
+                (Actor<Object, Object>) tellerClass.getDeclaredConstructor().newInstance());
+
+            assertEquals("one", ref.ask(new Deposit(1)).get());
+            // Deposit(1) fails on its field, skips Ping and lands on Deposit(_)
+            assertEquals("deposit", ref.ask(new Deposit(5)).get());
+            assertEquals("ping", ref.ask(new Ping()).get());
+            assertEquals("seven", ref.ask(7).get());
+            assertEquals("other", ref.ask(8).get());
+            assertEquals("other", ref.ask("hello").get());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    private static ActorDecl.ReceiveCase receive(Pattern pattern, String reply) {
+        return new ActorDecl.ReceiveCase(pattern, new LiteralExpr(LiteralExpr.LiteralKind.STRING, reply, LOC), LOC);
+    }
+
+    private static TupleStructPattern message(Class<?> type, Pattern... fields) {
+        return new TupleStructPattern(type.getName(), List.of(fields), LOC);
+    }
+
+    private static LiteralExpr integer(int value) {
+        return new LiteralExpr(LiteralExpr.LiteralKind.INTEGER, value, LOC);
+    }
+}
@@ -0,0 +1,76 @@
+package com.firefly.compiler.codegen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static com.firefly.compiler.testing.TestCompiler.call;
+import static com.firefly.compiler.testing.TestCompiler.compile;
+import static com.firefly.compiler.testing.TestCompiler.load;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that constant map literals are shared unless bound mutably.
+ */
+public class MapLiteralTest {
+
+    private static final String SOURCE = """
+module test::maps
+
+use java::util::HashMap
+
+class Maps {
+    pub fn constant() -> HashMap {
+        ["a": 1, "b": 2]
+    }
+
+    pub fn bound() -> HashMap {
+        let m: HashMap = ["a": 1, "b": 2];
+        m
+    }
+
+    pub fn updated() -> HashMap {
+        let mut m: HashMap = ["a": 1, "b": 2];
+        m::put("c", 3);
+        m
+    }
+
+    pub fn built(x: Int) -> HashMap {
+        ["a": x, "b": 2]
+    }
+}
+""";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConstantLiteralIsSharedAndReadOnly() throws Exception {
+        Class<?> maps = load(compile(SOURCE), "test.maps.Maps");
+
+        Map<Object, Object> first = (Map<Object, Object>) call(maps, "constant");
+        assertEquals(Map.of("a", 1, "b", 2), first);
+        assertSame(first, call(maps, "constant"));
+        assertThrows(UnsupportedOperationException.class, () -> first.put("c", 3));
+        assertThrows(UnsupportedOperationException.class, () -> first.keySet().remove("a"));
+
+        assertEquals(Map.of("a", 1, "b", 2), call(maps, "bound"));
+        assertSame(call(maps, "bound"), call(maps, "bound"));
+    }
+
+    @Test
+    public void testMutableBindingGetsItsOwnCopy() throws Exception {
+        Class<?> maps = load(compile(SOURCE), "test.maps.Maps");
+
+        Object first = call(maps, "updated");
+        assertEquals(Map.of("a", 1, "b", 2, "c", 3), first);
+        assertNotSame(first, call(maps, "updated"));
+        assertEquals(Map.of("a", 1, "b", 2), call(maps, "constant"));
+    }
+
+    @Test
+    public void testComputedLiteralIsBuiltPerCall() throws Exception {
+        Class<?> maps = load(compile(SOURCE), "test.maps.Maps");
+
+        assertEquals(Map.of("a", 5, "b", 2), call(maps, "built", 5));
+        assertEquals(Map.of("a", 6, "b", 2), call(maps, "built", 6));
+    }
+}
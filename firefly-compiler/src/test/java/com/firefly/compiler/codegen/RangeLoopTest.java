@@ -0,0 +1,126 @@
+package com.firefly.compiler.codegen;
+
+import com.firefly.runtime.Range;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.firefly.compiler.testing.TestCompiler.call;
+import static com.firefly.compiler.testing.TestCompiler.compile;
+import static com.firefly.compiler.testing.TestCompiler.load;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that for loops over range literals compile to counted loops.
+ */
+public class RangeLoopTest {
+
+    private static final String SOURCE = """
+module test::ranges
+
+use com::firefly::runtime::Range
+
+class Loops {
+    pub fn exclusive(n: Int) -> Int {
+        let mut total: Int = 0;
+        for i in 0..n {
+            total = total + i;
+        };
+        total
+    }
+
+    pub fn inclusive(n: Int) -> Int {
+        let mut total: Int = 0;
+        for i in 0..=n {
+            total = total + i;
+        };
+        total
+    }
+
+    pub fn stepped(a: Int, b: Int, k: Int) -> Int {
+        let mut total: Int = 0;
+        for i in (a..b)::step(k) {
+            total = total + i;
+        };
+        total
+    }
+
+    pub fn range(n: Int) -> Range {
+        (0..n)::step(3)
+    }
+
+    pub fn wide(n: Long) -> Range {
+        0..n
+    }
+}
+""";
+
+    @Test
+    public void testRangeLoopsRunAsCountedLoops() throws Exception {
+        Map<String, byte[]> classes = compile(SOURCE);
+        Class<?> loops = load(classes, "test.ranges.Loops");
+
+        assertEquals(45, call(loops, "exclusive", 10));
+        assertEquals(0, call(loops, "exclusive", 0));
+        assertEquals(55, call(loops, "inclusive", 10));
+        assertEquals(0 + 3 + 6 + 9, call(loops, "stepped", 0, 10, 3));
+        assertEquals(0, call(loops, "stepped", 5, 5, 2));
+    }
+
+    @Test
+    public void testRangeLoopsAllocateNoRange() throws Exception {
+        byte[] bytes = compile(SOURCE).get("test/ranges/Loops");
+        assertNotNull(bytes);
+        for (String method : List.of("exclusive", "inclusive", "stepped")) {
+            List<String> calls = calls(bytes, method);
+            for (String call : calls) {
+                assertFalse(call.startsWith("com/firefly/runtime/Range.<init>"), method + " calls " + call);
+                assertFalse(call.startsWith("com/firefly/runtime/Range.step"), method + " calls " + call);
+                assertFalse(call.contains("iterator") || call.contains("hasNext"), method + " calls " + call);
+            }
+        }
+    }
+
+    @Test
+    public void testRangeValueBuildsRange() throws Exception {
+        Class<?> loops = load(compile(SOURCE), "test.ranges.Loops");
+        Object range = call(loops, "range", 10);
+        assertEquals(Range.class, range.getClass());
+        assertEquals(3, ((Range) range).getStep());
+    }
+
+    @Test
+    public void testLongBoundOutsideIntRangeIsRejected() throws Exception {
+        Class<?> loops = load(compile(SOURCE), "test.ranges.Loops");
+        assertEquals(5, ((Range) call(loops, "wide", 5L)).getEnd());
+        assertThrows(ArithmeticException.class, () -> call(loops, "wide", 5_000_000_000L));
+    }
+
+    /** Returns the owner.name of every method call in a method's body. */
+    private static List<String> calls(byte[] bytes, String methodName) {
+        List<String> calls = new ArrayList<>();
+        new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                if (!name.equals(methodName)) {
+                    return null;
+                }
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String method, String desc,
+                                                boolean isInterface) {
+                        calls.add(owner + "." + method);
+                    }
+                };
+            }
+        }, 0);
+        return calls;
+    }
+}
@@ -0,0 +1,104 @@
+package com.firefly.compiler.codegen;
+
+import com.firefly.runtime.collections.AbstractVector;
+import com.firefly.runtime.collections.IntVector;
+import com.firefly.runtime.collections.PersistentVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.firefly.compiler.testing.TestCompiler.call;
+import static com.firefly.compiler.testing.TestCompiler.compile;
+import static com.firefly.compiler.testing.TestCompiler.load;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that unboxed vectors built from numeric array literals work wherever
+ * a Firefly array is expected.
+ */
+public class VectorLiteralTest {
+
+    private static final String SOURCE = """
+module test::vectors
+
+use java::util::function::Function
+use java::util::function::Predicate
+
+class Vectors {
+    pub fn count(ys: [Int]) -> Int {
+        ys.length
+    }
+
+    pub fn second(ys: [Int]) -> Int {
+        ys[1]
+    }
+
+    pub fn literal() -> [Int] {
+        [4, 5, 6]
+    }
+
+    pub fn mapped(f: Function) -> [Int] {
+        [1, 2, 3]::map(f)
+    }
+
+    pub fn filtered(p: Predicate) -> [Int] {
+        let xs: [Int] = [1, 2, 3];
+        xs::filter(p)
+    }
+
+    pub fn appended() -> [Int] {
+        [1, 2, 3]::append(4)
+    }
+
+    pub fn appendedText() -> [String] {
+        let xs: [Int] = [1, 2];
+        xs::append("three")
+    }
+
+    pub fn local() -> Int {
+        let xs: [Int] = [1, 2, 3];
+        xs[2] + xs.length
+    }
+}
+""";
+
+    @Test
+    public void testArrayParametersAcceptEveryVector() throws Exception {
+        Class<?> vectors = load(compile(SOURCE), "test.vectors.Vectors");
+
+        Object literal = call(vectors, "literal");
+        assertInstanceOf(IntVector.class, literal);
+        assertEquals(3, call(vectors, "count", literal));
+        assertEquals(5, call(vectors, "second", literal));
+
+        assertEquals(2, call(vectors, "count", PersistentVector.of(7, 8)));
+        assertEquals(8, call(vectors, "second", PersistentVector.of(7, 8)));
+        assertEquals(6, call(vectors, "local"));
+    }
+
+    @Test
+    public void testLiteralEqualsBoxedVector() throws Exception {
+        Class<?> vectors = load(compile(SOURCE), "test.vectors.Vectors");
+        AbstractVector<?> literal = (AbstractVector<?>) call(vectors, "literal");
+
+        assertEquals(PersistentVector.of(4, 5, 6), literal);
+        assertEquals(literal, PersistentVector.of(4, 5, 6));
+        assertEquals(PersistentVector.of(4, 5, 6).hashCode(), literal.hashCode());
+    }
+
+    @Test
+    public void testLiteralKeepsVectorMethods() throws Exception {
+        Class<?> vectors = load(compile(SOURCE), "test.vectors.Vectors");
+        Function<Integer, Integer> twice = x -> x * 2;
+        Predicate<Integer> odd = x -> x % 2 == 1;
+
+        assertEquals(PersistentVector.of(2, 4, 6), call(vectors, "mapped", twice));
+        assertEquals(PersistentVector.of(1, 3), call(vectors, "filtered", odd));
+
+        Object appended = call(vectors, "appended");
+        assertInstanceOf(IntVector.class, appended);
+        assertEquals(PersistentVector.of(1, 2, 3, 4), appended);
+        assertEquals(PersistentVector.<Object>of(1, 2, "three"), call(vectors, "appendedText"));
+    }
+}
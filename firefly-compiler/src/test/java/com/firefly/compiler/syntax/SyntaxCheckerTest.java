@@ -135,4 +135,30 @@ String source = header() + "struct Point {\n  x: Int,\n  y: Int\n}\n\n" + wrap(
         assertFalse(reporter.hasErrors());
         assertEquals(0, reporter.getErrorCount());
     }
+    
+    @Test
+    public void testValidSupervisorDeclaration() {
+String source = header() + "supervisor Workers {\n  strategy: one_for_all,\n  maxRestarts: 5,\n  within: 10000\n}\n";
+        
+        CompilationUnit unit = parse(source);
+        DiagnosticReporter reporter = new DiagnosticReporter(false);
+        SyntaxChecker checker = new SyntaxChecker(reporter);
+        
+        checker.check(unit);
+        
+        assertFalse(reporter.hasErrors());
+    }
+    
+    @Test
+    public void testInvalidSupervisorConfiguration() {
+String source = header() + "supervisor Workers {\n  strategy: \"all_for_none\",\n  within: 0,\n  depth: 2\n}\n";
+        
+        CompilationUnit unit = parse(source);
+        DiagnosticReporter reporter = new DiagnosticReporter(false);
+        SyntaxChecker checker = new SyntaxChecker(reporter);
+        
+        checker.check(unit);
+        
+        assertEquals(3, reporter.getErrorCount());
+    }
 }
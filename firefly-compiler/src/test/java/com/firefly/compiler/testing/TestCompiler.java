@@ -0,0 +1,87 @@
+package com.firefly.compiler.testing;
+
+import com.firefly.compiler.FireflyLexer;
+import com.firefly.compiler.FireflyParser;
+import com.firefly.compiler.ast.AstBuilder;
+import com.firefly.compiler.ast.CompilationUnit;
+import com.firefly.compiler.ast.UseDeclaration;
+import com.firefly.compiler.codegen.BytecodeGenerator;
+import com.firefly.compiler.codegen.TypeResolver;
+import com.firefly.compiler.diagnostics.CompilerDiagnostic;
+import com.firefly.compiler.semantics.SemanticAnalyzer;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles Firefly source in memory, as the compiler does, and runs the result.
+ */
+public final class TestCompiler {
+    private TestCompiler() {}
+
+    /**
+     * Parses, analyzes and generates the source, failing on any semantic error.
+     *
+     * @return The generated classes by internal name
+     */
+    public static Map<String, byte[]> compile(String source) {
+        FireflyParser parser = new FireflyParser(new CommonTokenStream(new FireflyLexer(CharStreams.fromString(source))));
+        CompilationUnit cu = new AstBuilder("test.fly").visitCompilationUnit(parser.compilationUnit());
+
+        TypeResolver typeResolver = new TypeResolver();
+        for (UseDeclaration use : cu.getImports()) {
+            for (String item : use.getItems()) {
+                typeResolver.addImport(use.getModulePath(), item);
+            }
+        }
+        List<CompilerDiagnostic> diagnostics = new SemanticAnalyzer(typeResolver).analyze(cu);
+        if (diagnostics.stream().anyMatch(CompilerDiagnostic::isError)) {
+            throw new AssertionError(diagnostics.toString());
+        }
+        return new BytecodeGenerator(typeResolver).generate(cu);
+    }
+
+    /**
+     * Defines the generated classes in a fresh class loader, with verification
+     * on, and returns the named one.
+     */
+    public static Class<?> load(Map<String, byte[]> classes, String name) throws ClassNotFoundException {
+        ClassLoader loader = new ClassLoader(TestCompiler.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String className) throws ClassNotFoundException {
+                byte[] bytes = classes.get(className.replace('.', '/'));
+                if (bytes == null) {
+                    throw new ClassNotFoundException(className);
+                }
+                return defineClass(className, bytes, 0, bytes.length);
+            }
+        };
+        return loader.loadClass(name);
+    }
+
+    /**
+     * Calls the method of that name, on a new instance unless it is static.
+     */
+    public static Object call(Class<?> owner, String name, Object... args) throws Exception {
+        for (Method method : owner.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                Object target = Modifier.isStatic(method.getModifiers())
+                    ? null : owner.getDeclaredConstructor().newInstance();
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+}
@@ -0,0 +1,226 @@
+package com.firefly.runtime;
+
+import com.firefly.runtime.collections.DoubleVector;
+import com.firefly.runtime.collections.IntVector;
+import com.firefly.runtime.collections.LongVector;
+import com.firefly.runtime.collections.PersistentVector;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Bootstrap methods for collection literals whose elements are all
+ * compile-time constants.
+ *
+ * <p>The compiler emits such a literal as an {@code invokedynamic} call site
+ * that passes the constants as static bootstrap arguments. The collection is
+ * built the first time the site runs and bound into a {@link ConstantCallSite},
+ * so a literal inside a hot function is not rebuilt on every call and the JIT
+ * sees the value as a constant.</p>
+ *
+ * <p>Vectors are immutable, so every evaluation returns the same instance.
+ * Map literals evaluate to a {@link HashMap}. A literal that is only read
+ * shares one read-only map as well; one that initializes a {@code let mut}
+ * binding gets a fresh copy of a prebuilt template, which is presized and
+ * skips evaluating and boxing the entries.</p>
+ */
+public final class Literals {
+
+    private static final MethodHandle HASH_MAP_COPY;
+
+    static {
+        try {
+            HASH_MAP_COPY = MethodHandles.publicLookup().findConstructor(
+                HashMap.class, MethodType.methodType(void.class, Map.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Literals() {
+        throw new AssertionError("Cannot instantiate Literals");
+    }
+
+    /**
+     * Links a constant vector literal. The call site's return type selects the
+     * vector: {@link IntVector}, {@link LongVector} and {@link DoubleVector}
+     * unbox numeric constants, anything else yields a {@link PersistentVector}.
+     *
+     * @param lookup Caller lookup (unused)
+     * @param name Call site name (unused)
+     * @param type Call site type, {@code ()} returning the vector class
+     * @param elements The literal's elements, in order
+     * @return A constant call site returning the vector
+     */
+    public static CallSite vector(MethodHandles.Lookup lookup, String name, MethodType type, Object... elements) {
+        Class<?> vectorClass = type.returnType();
+        Object vector;
+        if (vectorClass == IntVector.class) {
+            int[] values = new int[elements.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ((Number) elements[i]).intValue();
+            }
+            vector = IntVector.of(values);
+        } else if (vectorClass == LongVector.class) {
+            long[] values = new long[elements.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ((Number) elements[i]).longValue();
+            }
+            vector = LongVector.of(values);
+        } else if (vectorClass == DoubleVector.class) {
+            double[] values = new double[elements.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = ((Number) elements[i]).doubleValue();
+            }
+            vector = DoubleVector.of(values);
+        } else {
+            vector = PersistentVector.of(elements);
+        }
+        return new ConstantCallSite(MethodHandles.constant(vectorClass, vector).asType(type));
+    }
+
+    /**
+     * Links a constant map literal whose result is only read. Every evaluation
+     * returns the same map, which rejects updates with
+     * {@link UnsupportedOperationException}.
+     *
+     * @param lookup Caller lookup (unused)
+     * @param name Call site name (unused)
+     * @param type Call site type, {@code ()} returning {@code HashMap}
+     * @param keysAndValues Alternating keys and values, in source order
+     * @return A constant call site returning the shared map
+     */
+    public static CallSite map(MethodHandles.Lookup lookup, String name, MethodType type, Object... keysAndValues) {
+        HashMap<Object, Object> map = new ConstantMap(template(keysAndValues));
+        return new ConstantCallSite(MethodHandles.constant(HashMap.class, map).asType(type));
+    }
+
+    /**
+     * Links a constant map literal bound to a mutable variable. Every
+     * evaluation returns a new {@link HashMap} copied from a template built
+     * here once.
+     *
+     * @param lookup Caller lookup (unused)
+     * @param name Call site name (unused)
+     * @param type Call site type, {@code ()} returning {@code HashMap}
+     * @param keysAndValues Alternating keys and values, in source order
+     * @return A constant call site returning a fresh copy of the map
+     */
+    public static CallSite mutableMap(MethodHandles.Lookup lookup, String name, MethodType type, Object... keysAndValues) {
+        return new ConstantCallSite(HASH_MAP_COPY.bindTo(template(keysAndValues)).asType(type));
+    }
+
+    private static HashMap<Object, Object> template(Object[] keysAndValues) {
+        if (keysAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Map literal needs an even number of constants");
+        }
+        HashMap<Object, Object> template = new HashMap<>((int) (keysAndValues.length / 2 / 0.75f) + 1);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            template.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return template;
+    }
+
+    /**
+     * A HashMap that can no longer change after construction. It stays a
+     * HashMap so it fits wherever compiled code expects a map literal.
+     */
+    private static final class ConstantMap extends HashMap<Object, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        ConstantMap(Map<Object, Object> entries) {
+            super(entries);
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public void putAll(Map<?, ?> entries) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public Object remove(Object key) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public Object putIfAbsent(Object key, Object value) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public boolean replace(Object key, Object oldValue, Object newValue) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public Object replace(Object key, Object value) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+            throw new UnsupportedOperationException("Map literal is read-only");
+        }
+
+        @Override
+        public Set<Object> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public Collection<Object> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return Collections.unmodifiableSet(super.entrySet());
+        }
+    }
+}
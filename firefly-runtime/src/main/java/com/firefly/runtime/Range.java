@@ -1,36 +1,119 @@
 package com.firefly.runtime;
 
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
 /**
- * Simple integer range with inclusive/exclusive upper bound.
+ * Simple integer range with inclusive/exclusive upper bound and an optional step.
+ *
+ * <p>The compiler lowers {@code for x in a..b}, {@code a..=b} and
+ * {@code (a..b)::step(k)} to counted loops that never allocate a Range. A Range
+ * value only exists when a range is stored or passed around; iterating it then
+ * goes through {@link #iterator()}, whose {@link PrimitiveIterator.OfInt#nextInt()}
+ * does not box.</p>
  */
-public final class Range {
+public final class Range implements Iterable<Integer> {
     private final int start;
     private final int end;
     private final boolean inclusive;
+    private final int step;
 
     public Range(int start, int end, boolean inclusive) {
+        this(start, end, inclusive, 1);
+    }
+
+    public Range(int start, int end, boolean inclusive, int step) {
         this.start = start;
         this.end = end;
         this.inclusive = inclusive;
+        this.step = checkStep(step);
     }
 
     public int getStart() { return start; }
     public int getEnd() { return end; }
     public boolean isInclusive() { return inclusive; }
+    public int getStep() { return step; }
 
     /**
-     * Returns true if the given value lies within the range.
+     * Returns a range with the same bounds that visits every {@code step}-th value.
+     *
+     * @throws IllegalArgumentException if step is not positive
      */
-    public boolean contains(int value) {
-        if (inclusive) {
-            return value >= start && value <= end;
-        } else {
-            return value >= start && value < end;
+    public Range step(int step) {
+        return new Range(start, end, inclusive, step);
+    }
+
+    /**
+     * Validates a range step. Also called by compiled counted loops.
+     *
+     * @throws IllegalArgumentException if step is not positive
+     */
+    public static int checkStep(int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Range step must be positive: " + step);
+        }
+        return step;
+    }
+
+    /**
+     * Validates a range step for loops with a {@code Long} counter.
+     *
+     * @throws IllegalArgumentException if step is not positive
+     */
+    public static long checkStep(long step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Range step must be positive: " + step);
         }
+        return step;
+    }
+
+    /**
+     * Returns true if the given value lies within the range (and on its step).
+     */
+    public boolean contains(int value) {
+        boolean inBounds = inclusive
+            ? value >= start && value <= end
+            : value >= start && value < end;
+        return inBounds && (step == 1 || Integer.remainderUnsigned(value - start, step) == 0);
+    }
+
+    /**
+     * Returns an iterator over the values of this range.
+     *
+     * <p>Never overflows: iteration stops at the last value that is in bounds,
+     * even when the range ends at {@link Integer#MAX_VALUE}.</p>
+     */
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = start;
+            private boolean hasNext = inclusive ? start <= end : start < end;
+
+            @Override
+            public boolean hasNext() {
+                return hasNext;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext) {
+                    throw new NoSuchElementException();
+                }
+                int current = next;
+                // end - current is the true (unsigned) distance to the bound
+                int headroom = end - current;
+                hasNext = inclusive
+                    ? Integer.compareUnsigned(headroom, step) >= 0
+                    : Integer.compareUnsigned(headroom, step) > 0;
+                next = current + step;
+                return current;
+            }
+        };
     }
 
     @Override
     public String toString() {
-        return start + (inclusive ? "..=" : "..") + end;
+        String bounds = start + (inclusive ? "..=" : "..") + end;
+        return step == 1 ? bounds : bounds + " step " + step;
     }
 }
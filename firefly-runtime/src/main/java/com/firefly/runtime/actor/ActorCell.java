@@ -0,0 +1,347 @@
+package com.firefly.runtime.actor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runtime state of one spawned actor: its mailbox, its current state and its
+ * scheduling status.
+ *
+ * <p>A cell occupies no thread while its mailbox is empty. The first message
+ * that makes the mailbox non-empty submits the cell to the dispatcher; the
+ * cell then handles up to {@code throughput} messages and yields its thread,
+ * rescheduling itself if more messages arrived. The {@code status} flag
+ * guarantees the cell runs on at most one thread at a time, and its volatile
+ * accesses publish {@code state} from one run to the next.</p>
+ *
+ * <p>If the actor overrides {@link Actor#handleBatch}, a run instead drains
+ * up to {@link Actor#maxBatchSize()} messages and hands them over in batches
+ * that end at each ask, since an ask is handled on its own.</p>
+ *
+ * <p>A cell spawned by a {@link Supervisor} survives a crash: it reports the
+ * exception, and if the supervisor decides to restart it, calls
+ * {@link Actor#init()} again at its next run and carries on with the messages
+ * left in its mailbox. Siblings restarted by the supervisor's strategy call
+ * {@link Actor#terminate} on their old state first.</p>
+ *
+ * <p>With metrics enabled, each message is queued in a {@link Stamped}
+ * envelope carrying its enqueue time, and every handled message or batch is
+ * timed. Without metrics the only cost is a null check per message.</p>
+ */
+final class ActorCell<State, Message> implements Runnable, Supervisor.Child {
+
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+
+    /** Whether an actor class overrides {@link Actor#handleBatch}. */
+    private static final ClassValue<Boolean> BATCHING = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("handleBatch", List.class, Object.class).getDeclaringClass() != Actor.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private final Actor<State, Message> actor;
+    private final Executor dispatcher;
+    /** Holds messages and, for asks, their {@link AskReply} envelopes. */
+    private final Mailbox<Object> mailbox;
+    private final AtomicInteger status = new AtomicInteger(SCHEDULED);
+    /** Decides what happens after a crash; null stops the cell. */
+    private final Supervisor supervisor;
+    /** Messages drained for the next {@code handleBatch}; null if the actor does not batch. */
+    private final List<Message> batch;
+    /** Messages handled per run. */
+    private final int runLimit;
+    /** Null unless the actor system has metrics enabled. */
+    private final ActorMetrics metrics;
+    /** Enqueue time of the oldest message in {@code batch}. */
+    private long batchEnqueuedNanos;
+
+    private volatile boolean stopRequested;
+    private volatile boolean restartRequested;
+    private volatile boolean drainRequested;
+    /** Only read and written by the thread currently running the cell. */
+    private State state;
+    private boolean started;
+    private boolean finished;
+
+    @SuppressWarnings("unchecked")
+    ActorCell(Actor<State, Message> actor, Mailbox<Message> mailbox, Executor dispatcher, int throughput,
+              Supervisor supervisor, ActorMetrics metrics) {
+        this.actor = actor;
+        this.metrics = metrics;
+        this.mailbox = (Mailbox<Object>) mailbox;
+        this.dispatcher = dispatcher;
+        this.supervisor = supervisor;
+        if (BATCHING.get(actor.getClass())) {
+            this.batch = new ArrayList<>();
+            this.runLimit = Math.max(1, actor.maxBatchSize());
+        } else {
+            this.batch = null;
+            this.runLimit = throughput;
+        }
+    }
+
+    /**
+     * Submits the cell for its first run, which calls {@link Actor#init()}.
+     */
+    void start() {
+        execute();
+    }
+
+    /**
+     * Queues a message and schedules the cell if it was idle.
+     *
+     * @return false if the mailbox dropped the message
+     */
+    boolean enqueue(Object message) {
+        return enqueue(message, true);
+    }
+
+    /**
+     * Queues a message and schedules the cell if it was idle.
+     *
+     * @param wait Whether a full {@code BLOCK} mailbox may wait for room
+     * @return false if the mailbox dropped the message
+     */
+    boolean enqueue(Object message, boolean wait) {
+        Object queued = metrics == null ? message : new Stamped(message, System.nanoTime());
+        boolean accepted = wait ? mailbox.offer(queued) : mailbox.offerNow(queued);
+        trySchedule();
+        return accepted;
+    }
+
+    /**
+     * Asks the cell to terminate once its current run finishes. Messages still
+     * queued are dropped.
+     */
+    @Override
+    public void stop() {
+        stopRequested = true;
+        trySchedule();
+    }
+
+    /**
+     * Asks the cell to terminate once its mailbox is empty. Used by a router
+     * to retire a routee that no longer receives messages.
+     */
+    void drainAndStop() {
+        drainRequested = true;
+        try {
+            trySchedule();
+        } catch (IllegalStateException e) {
+            // Dispatcher shut down; the cell will not run again
+        }
+    }
+
+    /**
+     * Asks the cell to rebuild its state once its current run finishes,
+     * keeping its mailbox. Used by a supervisor to restart a sibling of a
+     * crashed actor.
+     */
+    @Override
+    public void restart() {
+        restartRequested = true;
+        try {
+            trySchedule();
+        } catch (IllegalStateException e) {
+            // Dispatcher shut down; nothing left to restart
+        }
+    }
+
+    boolean isStopped() {
+        return stopRequested;
+    }
+
+    Mailbox<?> mailbox() {
+        return mailbox;
+    }
+
+    private void trySchedule() {
+        if (status.compareAndSet(IDLE, SCHEDULED)) {
+            execute();
+        }
+    }
+
+    private void execute() {
+        try {
+            dispatcher.execute(this);
+        } catch (RejectedExecutionException e) {
+            status.set(IDLE);
+            throw new IllegalStateException("Actor system is shut down", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (!finished) {
+                process();
+            }
+        } finally {
+            status.set(IDLE);
+        }
+        if (!finished && (stopRequested || restartRequested || drainRequested || !started || !mailbox.isEmpty())) {
+            try {
+                trySchedule();
+            } catch (IllegalStateException e) {
+                // Dispatcher shut down while messages were pending; they are dropped
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void process() {
+        AskReply<?> ask = null;
+        try {
+            if (restartRequested && !stopRequested) {
+                restartRequested = false;
+                if (started) {
+                    started = false;
+                    actor.terminate(state);
+                }
+            }
+            if (!started) {
+                started = true;
+                state = actor.init();
+            }
+            if (metrics != null) {
+                metrics.sampleMailbox();
+            }
+            for (int i = 0; i < runLimit && !stopRequested && !restartRequested; i++) {
+                Object next = mailbox.poll();
+                if (next == null) {
+                    break;
+                }
+                long enqueuedNanos = 0;
+                long startNanos = 0;
+                if (metrics != null) {
+                    Stamped stamped = (Stamped) next;
+                    next = stamped.message;
+                    enqueuedNanos = stamped.enqueuedNanos;
+                    startNanos = System.nanoTime();
+                    metrics.recordQueued(enqueuedNanos, startNanos);
+                }
+                if (next instanceof AskReply<?> reply) {
+                    flushBatch();
+                    state = handleAsk(ask = reply);
+                    ask = null;
+                } else if (batch != null) {
+                    if (batch.isEmpty()) {
+                        batchEnqueuedNanos = enqueuedNanos;
+                    }
+                    batch.add((Message) next);
+                    continue;
+                } else {
+                    state = handle(next);
+                }
+                if (metrics != null) {
+                    metrics.recordHandled(1, enqueuedNanos, startNanos, System.nanoTime());
+                }
+            }
+            flushBatch();
+            if (drainRequested && mailbox.isEmpty()) {
+                stopRequested = true;
+            }
+            if (stopRequested) {
+                finished = true;
+                discardMailbox();
+                actor.terminate(state);
+            }
+        } catch (Exception e) {
+            if (ask != null) {
+                ask.fail(e);
+            }
+            // With metrics on, crashes are counted and reported as ActorCrashEvents instead
+            if (metrics != null) {
+                metrics.recordCrash(e);
+            } else {
+                System.err.println("Actor crashed: " + e.getMessage());
+                e.printStackTrace();
+            }
+            if (supervisor != null && !stopRequested && supervisor.childFailed(this, e)) {
+                // Restart in place: init runs again before the next message
+                started = false;
+                restartRequested = false;
+            } else {
+                finished = true;
+                stopRequested = true;
+                discardMailbox();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private State handle(Object message) {
+        return actor.handle((Message) message, state);
+    }
+
+    private void flushBatch() {
+        if (batch != null && !batch.isEmpty()) {
+            long startNanos = metrics == null ? 0 : System.nanoTime();
+            try {
+                state = actor.handleBatch(batch, state);
+                if (metrics != null) {
+                    metrics.recordHandled(batch.size(), batchEnqueuedNanos, startNanos, System.nanoTime());
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private State handleAsk(AskReply<?> ask) {
+        State next;
+        ask.enter();
+        try {
+            next = handle(ask.message());
+        } finally {
+            ask.exit();
+        }
+        // An ask the handler did not reply to completes with null
+        ask.complete(null);
+        return next;
+    }
+
+    /**
+     * Drops queued messages, failing pending asks instead of letting them time
+     * out, and leaves the metrics and the supervisor of a cell that has finished.
+     */
+    private void discardMailbox() {
+        if (metrics != null) {
+            metrics.markStopped();
+        }
+        if (supervisor != null) {
+            supervisor.childStopped(this);
+        }
+        Object next;
+        while ((next = mailbox.poll()) != null) {
+            if (next instanceof Stamped stamped) {
+                next = stamped.message;
+            }
+            if (next instanceof AskReply<?> reply) {
+                reply.fail(new IllegalStateException("Actor stopped before handling the ask"));
+            }
+        }
+    }
+
+    /**
+     * A queued message and when it was queued; only used with metrics.
+     */
+    private static final class Stamped {
+        final Object message;
+        final long enqueuedNanos;
+
+        Stamped(Object message, long enqueuedNanos) {
+            this.message = message;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
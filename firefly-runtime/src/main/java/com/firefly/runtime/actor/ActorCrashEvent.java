@@ -0,0 +1,26 @@
+package com.firefly.runtime.actor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for an actor with metrics enabled throwing from its handler.
+ */
+@Name("firefly.ActorCrash")
+@Label("Actor Crash")
+@Category({"Firefly", "Actors"})
+@Description("An actor's handler threw an exception")
+final class ActorCrashEvent extends Event {
+
+    @Label("Actor")
+    String actor;
+
+    @Label("Exception")
+    Class<?> exception;
+
+    @Label("Message")
+    String message;
+}
@@ -0,0 +1,42 @@
+package com.firefly.runtime.actor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one message, or one batch, handled by an actor with metrics
+ * enabled. Disabled by default because it fires per message; enable it in a
+ * recording's settings with {@code firefly.ActorHandle#enabled=true}.
+ */
+@Name("firefly.ActorHandle")
+@Label("Actor Handle")
+@Category({"Firefly", "Actors"})
+@Description("An actor handled a message or a batch of messages")
+@Enabled(false)
+@StackTrace(false)
+final class ActorHandleEvent extends Event {
+
+    @Label("Actor")
+    String actor;
+
+    @Label("Messages")
+    int messages;
+
+    @Label("Queue Time")
+    @Description("Time the oldest message waited in the mailbox")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueTime;
+
+    @Label("Service Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long serviceTime;
+
+    @Label("Mailbox Size")
+    int mailboxSize;
+}
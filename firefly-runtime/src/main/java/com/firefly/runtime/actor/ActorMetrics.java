@@ -0,0 +1,180 @@
+package com.firefly.runtime.actor;
+
+import javax.management.ObjectName;
+
+/**
+ * Instrumentation of one actor, recorded when its system has metrics
+ * enabled: mailbox depth, how long messages wait in the mailbox (queue
+ * time), how long the handler takes per message (service time), messages
+ * handled and crashes.
+ *
+ * <p>Only the thread running the actor records, so recording needs no
+ * locks; other threads can read at any time. While the system's MBean is
+ * registered, each running actor is registered as an
+ * {@link ActorMetricsMXBean} too.</p>
+ */
+public final class ActorMetrics implements ActorMetricsMXBean {
+
+    private final ActorSystemMetrics owner;
+    private final String name;
+    private final Mailbox<?> mailbox;
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+
+    private volatile long messagesHandled;
+    private volatile long crashes;
+    private volatile int peakMailboxSize;
+    private volatile boolean stopped;
+    /** Set while registered as an MBean; guarded by the owner. */
+    ObjectName objectName;
+
+    /** Guarded by {@code this}. */
+    private long rateSampleNanos = System.nanoTime();
+    private long rateSampleCount;
+    private double messagesPerSecond;
+
+    ActorMetrics(ActorSystemMetrics owner, String name, Mailbox<?> mailbox) {
+        this.owner = owner;
+        this.name = name;
+        this.mailbox = mailbox;
+    }
+
+    /**
+     * Notes the mailbox depth at the start of a run.
+     */
+    void sampleMailbox() {
+        int size = mailbox.size();
+        if (size > peakMailboxSize) {
+            peakMailboxSize = size;
+        }
+    }
+
+    void recordQueued(long enqueuedNanos, long dequeuedNanos) {
+        queueTime.record(dequeuedNanos - enqueuedNanos);
+    }
+
+    /**
+     * Records a handled message, or a batch of {@code messages} whose service
+     * time is split evenly among them.
+     */
+    void recordHandled(int messages, long oldestEnqueuedNanos, long startNanos, long endNanos) {
+        long elapsed = endNanos - startNanos;
+        serviceTime.record(elapsed / messages, messages);
+        messagesHandled += messages;
+
+        ActorHandleEvent event = new ActorHandleEvent();
+        if (event.isEnabled()) {
+            event.actor = name;
+            event.messages = messages;
+            event.queueTime = startNanos - oldestEnqueuedNanos;
+            event.serviceTime = elapsed;
+            event.mailboxSize = mailbox.size();
+            event.commit();
+        }
+    }
+
+    void recordCrash(Throwable error) {
+        crashes++;
+        ActorCrashEvent event = new ActorCrashEvent();
+        if (event.isEnabled()) {
+            event.actor = name;
+            event.exception = error.getClass();
+            event.message = error.getMessage();
+            event.commit();
+        }
+    }
+
+    void markStopped() {
+        if (!stopped) {
+            stopped = true;
+            owner.remove(this);
+        }
+    }
+
+    /**
+     * Returns the actor's name: its class name and a number unique within
+     * the system.
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getMailboxSize() {
+        return mailbox.size();
+    }
+
+    /**
+     * Returns the largest mailbox depth seen at the start of a run.
+     */
+    @Override
+    public int getPeakMailboxSize() {
+        return peakMailboxSize;
+    }
+
+    @Override
+    public long getMessagesHandled() {
+        return messagesHandled;
+    }
+
+    @Override
+    public long getCrashes() {
+        return crashes;
+    }
+
+    /**
+     * Returns the time from enqueue to dequeue, in nanoseconds.
+     */
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    /**
+     * Returns the handler time per message, in nanoseconds.
+     */
+    public LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Returns the rate of handled messages over the last sampling window,
+     * which starts a new window if the current one is a second old.
+     */
+    @Override
+    public synchronized double getMessagesPerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now - rateSampleNanos;
+        if (elapsed >= 1_000_000_000L) {
+            long handled = messagesHandled;
+            messagesPerSecond = (handled - rateSampleCount) * 1e9 / elapsed;
+            rateSampleNanos = now;
+            rateSampleCount = handled;
+        }
+        return messagesPerSecond;
+    }
+
+    @Override
+    public long getQueueTimeP99Micros() {
+        return queueTime.getValueAtPercentile(99) / 1_000;
+    }
+
+    @Override
+    public long getServiceTimeP99Micros() {
+        return serviceTime.getValueAtPercentile(99) / 1_000;
+    }
+
+    @Override
+    public long getServiceTimeMaxMicros() {
+        return serviceTime.getMax() / 1_000;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    @Override
+    public String toString() {
+        return name + "(handled=" + messagesHandled + ", mailbox=" + getMailboxSize() + ")";
+    }
+}
@@ -0,0 +1,27 @@
+package com.firefly.runtime.actor;
+
+/**
+ * JMX view of one actor's metrics, registered as
+ * {@code com.firefly.runtime:type=Actor,system=<system>,name=<actor>} while
+ * the actor runs. Times are in microseconds.
+ */
+public interface ActorMetricsMXBean {
+
+    String getName();
+
+    int getMailboxSize();
+
+    int getPeakMailboxSize();
+
+    long getMessagesHandled();
+
+    long getCrashes();
+
+    double getMessagesPerSecond();
+
+    long getQueueTimeP99Micros();
+
+    long getServiceTimeP99Micros();
+
+    long getServiceTimeMaxMicros();
+}
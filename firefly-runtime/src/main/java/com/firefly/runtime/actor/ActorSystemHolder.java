@@ -2,35 +2,106 @@ package com.firefly.runtime.actor;
 
 /**
  * Singleton holder for the global ActorSystem.
- * 
+ *
  * This provides a default ActorSystem instance that is used by the spawn() builtin.
  * The ActorSystem is created lazily on first access using the Bill Pugh Singleton pattern.
+ *
+ * <p>The system is configured, before first access, either programmatically with
+ * {@link #configure(Actor.ActorSystem.Mode, int, int)} or through system properties:</p>
+ * <ul>
+ *   <li>{@code firefly.actors.mode} - {@code pooled} (default) or {@code virtual}</li>
+ *   <li>{@code firefly.actors.threads} - pool size in pooled mode (default: available processors)</li>
+ *   <li>{@code firefly.actors.throughput} - messages per actor run (default: 5)</li>
+ *   <li>{@code firefly.actors.metrics} - {@code true} to enable metrics in every actor system (default: false)</li>
+ * </ul>
  */
 public class ActorSystemHolder {
-    
+
+    private static volatile Actor.ActorSystem.Mode configuredMode;
+    private static volatile int configuredThreads;
+    private static volatile int configuredThroughput;
+    private static volatile boolean initialized;
+
     /**
      * Private constructor to prevent instantiation.
      */
     private ActorSystemHolder() {
         throw new AssertionError("Cannot instantiate ActorSystemHolder");
     }
-    
+
     /**
      * Bill Pugh Singleton pattern - thread-safe lazy initialization.
      */
     private static class Holder {
-        private static final Actor.ActorSystem INSTANCE = new Actor.ActorSystem();
+        private static final Actor.ActorSystem INSTANCE = create();
+    }
+
+    /**
+     * Configure the global ActorSystem. Takes precedence over system properties.
+     *
+     * @param mode Where actors run
+     * @param threads Pool size in pooled mode, or 0 for available processors; ignored in virtual mode
+     * @param throughput Messages an actor handles before yielding its thread, or 0 for the default
+     * @throws IllegalStateException if the global ActorSystem has already been created
+     */
+    public static synchronized void configure(Actor.ActorSystem.Mode mode, int threads, int throughput) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode cannot be null");
+        }
+        if (initialized) {
+            throw new IllegalStateException("ActorSystem already created; configure it before the first spawn");
+        }
+        configuredMode = mode;
+        configuredThreads = threads;
+        configuredThroughput = throughput;
     }
-    
+
+    /**
+     * Configure the global ActorSystem's mode, keeping default sizes.
+     *
+     * @param mode Where actors run
+     * @throws IllegalStateException if the global ActorSystem has already been created
+     */
+    public static void configure(Actor.ActorSystem.Mode mode) {
+        configure(mode, 0, 0);
+    }
+
+    private static synchronized Actor.ActorSystem create() {
+        initialized = true;
+        Actor.ActorSystem.Mode mode = configuredMode;
+        int threads = configuredThreads;
+        int throughput = configuredThroughput;
+        if (mode == null) {
+            String property = System.getProperty("firefly.actors.mode", "pooled");
+            try {
+                mode = Actor.ActorSystem.Mode.valueOf(property.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown firefly.actors.mode: " + property, e);
+            }
+            threads = Integer.getInteger("firefly.actors.threads", 0);
+            throughput = Integer.getInteger("firefly.actors.throughput", 0);
+        }
+        if (throughput <= 0) {
+            throughput = Actor.ActorSystem.DEFAULT_THROUGHPUT;
+        }
+        if (mode == Actor.ActorSystem.Mode.VIRTUAL) {
+            return Actor.ActorSystem.virtual(throughput);
+        }
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return new Actor.ActorSystem(threads, throughput);
+    }
+
     /**
      * Get the global ActorSystem instance.
-     * 
+     *
      * @return The singleton ActorSystem instance
      */
     public static Actor.ActorSystem getInstance() {
         return Holder.INSTANCE;
     }
-    
+
     /**
      * Shutdown the global ActorSystem.
      * This should be called when the application is terminating.
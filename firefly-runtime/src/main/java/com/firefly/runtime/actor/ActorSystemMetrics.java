@@ -0,0 +1,289 @@
+package com.firefly.runtime.actor;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of all actors of one {@link Actor.ActorSystem}, and its JMX MBeans.
+ *
+ * <p>Created by {@link Actor.ActorSystem#enableMetrics()}. Counters of
+ * stopped actors are kept in the totals; their histograms are dropped.</p>
+ *
+ * <p>The system is registered as
+ * {@code com.firefly.runtime:type=ActorSystem,name=<system>} and each running
+ * actor as {@code com.firefly.runtime:type=Actor,system=<system>,name=<actor>}.</p>
+ */
+public final class ActorSystemMetrics implements ActorSystemMetricsMXBean {
+
+    /** Number of actors listed by {@link #getBusiestActors()}. */
+    public static final int BUSIEST_ACTORS = 10;
+
+    private static final AtomicInteger SYSTEM_IDS = new AtomicInteger();
+
+    private final String systemName = "system-" + SYSTEM_IDS.incrementAndGet();
+    private final Set<ActorMetrics> actors = ConcurrentHashMap.newKeySet();
+    private final AtomicLong actorIds = new AtomicLong();
+    private final AtomicLong stoppedHandled = new AtomicLong();
+    private final AtomicLong stoppedCrashes = new AtomicLong();
+    private ObjectName objectName;
+
+    /**
+     * A row of {@link #getBusiestActors()}.
+     */
+    public static final class ActorStats {
+        private final String name;
+        private final int mailboxSize;
+        private final long messagesHandled;
+        private final long crashes;
+        private final double messagesPerSecond;
+        private final long queueTimeP99Micros;
+        private final long serviceTimeP99Micros;
+
+        ActorStats(ActorMetrics metrics) {
+            this.name = metrics.getName();
+            this.mailboxSize = metrics.getMailboxSize();
+            this.messagesHandled = metrics.getMessagesHandled();
+            this.crashes = metrics.getCrashes();
+            this.messagesPerSecond = metrics.getMessagesPerSecond();
+            this.queueTimeP99Micros = metrics.getQueueTimeP99Micros();
+            this.serviceTimeP99Micros = metrics.getServiceTimeP99Micros();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMailboxSize() {
+            return mailboxSize;
+        }
+
+        public long getMessagesHandled() {
+            return messagesHandled;
+        }
+
+        public long getCrashes() {
+            return crashes;
+        }
+
+        public double getMessagesPerSecond() {
+            return messagesPerSecond;
+        }
+
+        public long getQueueTimeP99Micros() {
+            return queueTimeP99Micros;
+        }
+
+        public long getServiceTimeP99Micros() {
+            return serviceTimeP99Micros;
+        }
+    }
+
+    ActorSystemMetrics() {
+    }
+
+    ActorMetrics add(Actor<?, ?> actor, Mailbox<?> mailbox) {
+        Class<?> type = actor.getClass();
+        String className = type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName();
+        ActorMetrics metrics = new ActorMetrics(this, className + "-" + actorIds.incrementAndGet(), mailbox);
+        actors.add(metrics);
+        registerActor(metrics);
+        return metrics;
+    }
+
+    void remove(ActorMetrics metrics) {
+        if (actors.remove(metrics)) {
+            stoppedHandled.addAndGet(metrics.getMessagesHandled());
+            stoppedCrashes.addAndGet(metrics.getCrashes());
+            unregisterActor(metrics);
+        }
+    }
+
+    /**
+     * Returns the metrics of the running actors.
+     */
+    public List<ActorMetrics> actors() {
+        return new ArrayList<>(actors);
+    }
+
+    /**
+     * Returns the name of the system in its JMX object name.
+     */
+    public String getSystemName() {
+        return systemName;
+    }
+
+    @Override
+    public int getActorCount() {
+        return actors.size();
+    }
+
+    @Override
+    public long getMessagesHandled() {
+        long total = stoppedHandled.get();
+        for (ActorMetrics metrics : actors) {
+            total += metrics.getMessagesHandled();
+        }
+        return total;
+    }
+
+    @Override
+    public long getCrashes() {
+        long total = stoppedCrashes.get();
+        for (ActorMetrics metrics : actors) {
+            total += metrics.getCrashes();
+        }
+        return total;
+    }
+
+    @Override
+    public long getMailboxSize() {
+        long total = 0;
+        for (ActorMetrics metrics : actors) {
+            total += metrics.getMailboxSize();
+        }
+        return total;
+    }
+
+    @Override
+    public double getMessagesPerSecond() {
+        double total = 0;
+        for (ActorMetrics metrics : actors) {
+            total += metrics.getMessagesPerSecond();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the queue times of all running actors merged.
+     */
+    public LatencyHistogram queueTime() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (ActorMetrics metrics : actors) {
+            merged.add(metrics.getQueueTime());
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the service times of all running actors merged.
+     */
+    public LatencyHistogram serviceTime() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (ActorMetrics metrics : actors) {
+            merged.add(metrics.getServiceTime());
+        }
+        return merged;
+    }
+
+    @Override
+    public long getQueueTimeP99Micros() {
+        return queueTime().getValueAtPercentile(99) / 1_000;
+    }
+
+    @Override
+    public long getServiceTimeP99Micros() {
+        return serviceTime().getValueAtPercentile(99) / 1_000;
+    }
+
+    @Override
+    public long getServiceTimeMaxMicros() {
+        long max = 0;
+        for (ActorMetrics metrics : actors) {
+            max = Math.max(max, metrics.getServiceTime().getMax());
+        }
+        return max / 1_000;
+    }
+
+    @Override
+    public List<ActorStats> getBusiestActors() {
+        List<ActorStats> stats = new ArrayList<>();
+        for (ActorMetrics metrics : actors) {
+            stats.add(new ActorStats(metrics));
+        }
+        stats.sort(Comparator.comparingInt(ActorStats::getMailboxSize)
+            .thenComparingLong(ActorStats::getServiceTimeP99Micros)
+            .reversed());
+        return stats.size() > BUSIEST_ACTORS ? new ArrayList<>(stats.subList(0, BUSIEST_ACTORS)) : stats;
+    }
+
+    /**
+     * Register the MBeans with the platform MBean server. If that fails,
+     * {@link #getObjectName()} stays null and the metrics are still readable
+     * through this object.
+     */
+    synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("com.firefly.runtime:type=ActorSystem,name=" + systemName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            return;
+        }
+        for (ActorMetrics metrics : actors) {
+            registerActor(metrics);
+        }
+    }
+
+    synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        for (ActorMetrics metrics : actors) {
+            unregisterActor(metrics);
+        }
+        unregister(objectName);
+        objectName = null;
+    }
+
+    private synchronized void registerActor(ActorMetrics metrics) {
+        if (objectName == null || metrics.objectName != null || metrics.isStopped()) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("com.firefly.runtime:type=Actor,system=" + systemName
+                + ",name=" + ObjectName.quote(metrics.getName()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            metrics.objectName = name;
+        } catch (JMException e) {
+            // The actor's counters still show in the system totals
+        }
+    }
+
+    private synchronized void unregisterActor(ActorMetrics metrics) {
+        if (metrics.objectName != null) {
+            unregister(metrics.objectName);
+            metrics.objectName = null;
+        }
+    }
+
+    private static void unregister(ObjectName name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // Already gone
+        }
+    }
+
+    /**
+     * Returns the JMX object name, or null if the MBean is not registered.
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Returns the JMX object name of an actor's MBean, or null if it is not
+     * registered.
+     */
+    public synchronized ObjectName getObjectName(ActorMetrics metrics) {
+        return metrics.objectName;
+    }
+}
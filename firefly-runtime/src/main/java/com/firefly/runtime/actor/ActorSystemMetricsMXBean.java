@@ -0,0 +1,31 @@
+package com.firefly.runtime.actor;
+
+import java.util.List;
+
+/**
+ * JMX view of an actor system's metrics, registered as
+ * {@code com.firefly.runtime:type=ActorSystem,name=<system>}. Times are in
+ * microseconds and cover the running actors.
+ */
+public interface ActorSystemMetricsMXBean {
+
+    int getActorCount();
+
+    long getMessagesHandled();
+
+    long getCrashes();
+
+    /** Sum of the running actors' mailbox depths. */
+    long getMailboxSize();
+
+    double getMessagesPerSecond();
+
+    long getQueueTimeP99Micros();
+
+    long getServiceTimeP99Micros();
+
+    long getServiceTimeMaxMicros();
+
+    /** The actors with the deepest mailboxes, then the highest p99 service time. */
+    List<ActorSystemMetrics.ActorStats> getBusiestActors();
+}
@@ -0,0 +1,105 @@
+package com.firefly.runtime.actor;
+
+import com.firefly.runtime.async.Future;
+import com.firefly.runtime.async.Promise;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reply slot of one {@link Actor.ActorRef#ask}: travels through the mailbox in
+ * place of the message and completes the asker's future.
+ *
+ * <p>No thread waits for the reply. The timeout is a task on one scheduler
+ * shared by all asks, cancelled (and removed from the scheduler's queue) when
+ * the reply arrives first.</p>
+ */
+final class AskReply<R> implements Runnable {
+
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = createScheduler();
+
+    /** The ask whose message the current thread is handling, if any. */
+    private static final ThreadLocal<AskReply<?>> CURRENT = new ThreadLocal<>();
+
+    private final Object message;
+    private final long timeoutMillis;
+    private final Promise<R> promise = new Promise<>();
+    private volatile ScheduledFuture<?> timeout;
+
+    AskReply(Object message, long timeoutMillis) {
+        this.message = message;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "FireflyAskTimeouts");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    Object message() {
+        return message;
+    }
+
+    Future<R> future() {
+        return promise.future();
+    }
+
+    void startTimer() {
+        timeout = TIMEOUTS.schedule(this, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fires when the timeout elapses before a reply.
+     */
+    @Override
+    public void run() {
+        promise.fail(new TimeoutException("Ask timed out after " + timeoutMillis + "ms"));
+    }
+
+    @SuppressWarnings("unchecked")
+    void complete(Object value) {
+        if (!promise.isCompleted()) {
+            promise.complete((R) value);
+            cancelTimer();
+        }
+    }
+
+    void fail(Throwable error) {
+        if (!promise.isCompleted()) {
+            promise.fail(error);
+            cancelTimer();
+        }
+    }
+
+    private void cancelTimer() {
+        ScheduledFuture<?> scheduled = timeout;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    /**
+     * Makes this ask the target of {@link Actor#reply} on the current thread.
+     */
+    void enter() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Ends handling of this ask's message on the current thread.
+     */
+    void exit() {
+        CURRENT.remove();
+    }
+
+    static AskReply<?> current() {
+        return CURRENT.get();
+    }
+}
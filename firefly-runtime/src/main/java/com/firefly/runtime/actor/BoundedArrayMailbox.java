@@ -0,0 +1,160 @@
+package com.firefly.runtime.actor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free ring buffer with an overflow policy.
+ *
+ * <p>Each slot carries a sequence number that says whether it is free for the
+ * producer at a given position or holds the message for the consumer at that
+ * position (D. Vyukov's bounded queue). Sequences are doubled so the two
+ * states stay distinct even for a single slot: {@code 2p} means free for the
+ * producer at position {@code p}, {@code 2p + 1} full for the consumer at
+ * {@code p}. Both ends advance with a CAS, so a {@code DROP_OLDEST} sender can
+ * evict the head message while the actor is polling.</p>
+ */
+final class BoundedArrayMailbox<M> implements Mailbox<M> {
+
+    private static final long MAX_BACKOFF_NANOS = 1_000_000;
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final long timeoutNanos;
+    private final AtomicReferenceArray<Object> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    BoundedArrayMailbox(int capacity, OverflowPolicy policy, long timeoutNanos) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("policy cannot be null");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.timeoutNanos = timeoutNanos;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, 2L * i);
+        }
+    }
+
+    @Override
+    public boolean offer(M message) {
+        if (message == null) {
+            throw new NullPointerException("message cannot be null");
+        }
+        if (tryOffer(message)) {
+            return true;
+        }
+        switch (policy) {
+            case DROP_NEWEST:
+                overflows.incrementAndGet();
+                return false;
+            case DROP_OLDEST:
+                do {
+                    if (poll() != null) {
+                        overflows.incrementAndGet();
+                    }
+                } while (!tryOffer(message));
+                return true;
+            case BLOCK:
+                long deadline = System.nanoTime() + timeoutNanos;
+                long backoff = 1_000;
+                while (!tryOffer(message)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        overflows.incrementAndGet();
+                        throw new MailboxFullException(capacity);
+                    }
+                    LockSupport.parkNanos(Math.min(backoff, remaining));
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+                }
+                return true;
+            default:
+                overflows.incrementAndGet();
+                throw new MailboxFullException(capacity);
+        }
+    }
+
+    @Override
+    public boolean offerNow(M message) {
+        if (policy != OverflowPolicy.BLOCK) {
+            return offer(message);
+        }
+        if (message == null) {
+            throw new NullPointerException("message cannot be null");
+        }
+        if (!tryOffer(message)) {
+            overflows.incrementAndGet();
+            throw new MailboxFullException(capacity);
+        }
+        return true;
+    }
+
+    private boolean tryOffer(Object message) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position % capacity);
+            long difference = sequences.get(index) - 2 * position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, message);
+                    sequences.set(index, 2 * position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public M poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position % capacity);
+            long difference = sequences.get(index) - (2 * position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Object message = slots.get(index);
+                    slots.set(index, null);
+                    sequences.set(index, 2 * (position + capacity));
+                    return (M) message;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        long position = head.get();
+        return sequences.get((int) (position % capacity)) != 2 * position + 1;
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(capacity, size));
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public long overflowCount() {
+        return overflows.get();
+    }
+}
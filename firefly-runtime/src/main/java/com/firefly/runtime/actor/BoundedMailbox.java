@@ -0,0 +1,31 @@
+package com.firefly.runtime.actor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Gives every spawn of the annotated actor class a bounded mailbox, unless
+ * the spawn passes a {@link Mailbox} explicitly.
+ *
+ * <pre>{@code
+ * @BoundedMailbox(capacity = 1000, overflow = Mailbox.OverflowPolicy.DROP_OLDEST)
+ * class Telemetry implements Actor<Stats, Sample> { ... }
+ * }</pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface BoundedMailbox {
+
+    /** Maximum number of queued messages. */
+    int capacity();
+
+    /** What a send to a full mailbox does. */
+    Mailbox.OverflowPolicy overflow() default Mailbox.OverflowPolicy.FAIL;
+
+    /** How long a {@code BLOCK} send waits for room, in milliseconds. */
+    long timeoutMillis() default 1000;
+}
@@ -0,0 +1,127 @@
+package com.firefly.runtime.actor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of nanosecond durations with log-linear buckets, in the style of
+ * HdrHistogram.
+ *
+ * <p>Values below 32 have their own bucket; above that each power of two is
+ * split into 16 buckets, so a reported value is within about 6% of the
+ * recorded one. Values above 2^40 ns (about 18 minutes) are clamped.
+ * Recording is a few arithmetic operations and an ordered store, with no
+ * allocation and no lock.</p>
+ *
+ * <p>A histogram has one writer at a time; readers on other threads may run
+ * concurrently and see a slightly stale, but never torn, state.</p>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    /** Slots of {@code totals}. */
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MAX = 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray totals = new AtomicLongArray(3);
+
+    private static int index(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /** Highest value that falls into a bucket. */
+    private static long highestValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Record one value, in nanoseconds.
+     */
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    /**
+     * Record the same value {@code count} times.
+     */
+    public void record(long nanos, long count) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        int index = index(value);
+        counts.lazySet(index, counts.get(index) + count);
+        totals.lazySet(SUM, totals.get(SUM) + value * count);
+        if (value > totals.get(MAX)) {
+            totals.lazySet(MAX, value);
+        }
+        totals.lazySet(COUNT, totals.get(COUNT) + count);
+    }
+
+    /**
+     * Add the values of another histogram; used to aggregate actors.
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.lazySet(i, counts.get(i) + count);
+            }
+        }
+        totals.lazySet(SUM, totals.get(SUM) + other.totals.get(SUM));
+        totals.lazySet(MAX, Math.max(totals.get(MAX), other.totals.get(MAX)));
+        totals.lazySet(COUNT, totals.get(COUNT) + other.totals.get(COUNT));
+    }
+
+    public long getCount() {
+        return totals.get(COUNT);
+    }
+
+    public long getMax() {
+        return totals.get(MAX);
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totals.get(SUM) / count;
+    }
+
+    /**
+     * Returns the value at a percentile, such as 99.9, in nanoseconds, or 0
+     * if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
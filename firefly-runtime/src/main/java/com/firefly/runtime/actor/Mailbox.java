@@ -0,0 +1,133 @@
+package com.firefly.runtime.actor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message queue of one actor.
+ *
+ * <p>Any number of threads may {@link #offer} concurrently; {@link #poll} is
+ * called by the actor's dispatcher, one run at a time. A mailbox belongs to a
+ * single actor and must not be passed to more than one spawn.</p>
+ *
+ * <h2>Implementations</h2>
+ * <ul>
+ *   <li>{@link #unbounded()} - lock-free segmented array queue; the default.
+ *       Producers claim slots with one atomic increment and a segment is
+ *       allocated per 32 messages rather than a node per message.</li>
+ *   <li>{@link #bounded(int, OverflowPolicy)} - lock-free ring buffer of fixed
+ *       capacity, with an {@link OverflowPolicy} for sends to a full mailbox.</li>
+ * </ul>
+ *
+ * <h2>Example Usage</h2>
+ * <pre>{@code
+ * ActorRef<Event> ref = system.spawn(new Logger(), Mailbox.bounded(10_000, OverflowPolicy.DROP_OLDEST));
+ * ...
+ * System.out.println(ref.mailboxSize() + " queued, " + ref.overflowCount() + " dropped");
+ * }</pre>
+ *
+ * @param <M> The message type
+ * @see BoundedMailbox
+ */
+public interface Mailbox<M> {
+
+    /**
+     * What a send to a full bounded mailbox does.
+     */
+    enum OverflowPolicy {
+        /** Discard the message being sent. */
+        DROP_NEWEST,
+        /** Discard the oldest queued message to make room. */
+        DROP_OLDEST,
+        /** Wait for room up to a timeout, then fail with {@link MailboxFullException}. */
+        BLOCK,
+        /** Fail immediately with {@link MailboxFullException}. */
+        FAIL
+    }
+
+    /**
+     * Queues a message, applying the overflow policy if the mailbox is full.
+     *
+     * @param message The message
+     * @return true if the message was queued, false if it was dropped
+     * @throws MailboxFullException under {@code FAIL}, or {@code BLOCK} after the timeout
+     */
+    boolean offer(M message);
+
+    /**
+     * Queues a message without ever waiting: if the mailbox is full and its
+     * policy is {@code BLOCK}, fails at once as under {@code FAIL}. Other
+     * policies behave as in {@link #offer}.
+     *
+     * @throws MailboxFullException under {@code FAIL} or {@code BLOCK}
+     */
+    default boolean offerNow(M message) {
+        return offer(message);
+    }
+
+    /**
+     * Removes the oldest message.
+     *
+     * @return The message, or null if the mailbox is empty
+     */
+    M poll();
+
+    /**
+     * Checks if there is a message ready to be polled.
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns the number of queued messages. Approximate while sends are in flight.
+     */
+    int size();
+
+    /**
+     * Returns the maximum number of queued messages, or {@code Integer.MAX_VALUE}
+     * if unbounded.
+     */
+    int capacity();
+
+    /**
+     * Returns how many sends hit a full mailbox: dropped messages, evicted
+     * messages and failed sends.
+     */
+    long overflowCount();
+
+    /**
+     * Discards all queued messages.
+     */
+    default void clear() {
+        while (poll() != null) {
+            // drain
+        }
+    }
+
+    /**
+     * Creates an unbounded lock-free mailbox.
+     */
+    static <M> Mailbox<M> unbounded() {
+        return new MpscUnboundedMailbox<>();
+    }
+
+    /**
+     * Creates a bounded lock-free mailbox. {@code BLOCK} waits up to one second.
+     *
+     * @param capacity Maximum number of queued messages
+     * @param policy What a send to a full mailbox does
+     */
+    static <M> Mailbox<M> bounded(int capacity, OverflowPolicy policy) {
+        return new BoundedArrayMailbox<>(capacity, policy, TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Creates a bounded lock-free mailbox whose senders wait for room up to the
+     * given timeout.
+     *
+     * @param capacity Maximum number of queued messages
+     * @param timeout How long a send waits for room
+     * @param unit Unit of the timeout
+     */
+    static <M> Mailbox<M> bounded(int capacity, long timeout, TimeUnit unit) {
+        return new BoundedArrayMailbox<>(capacity, OverflowPolicy.BLOCK, unit.toNanos(timeout));
+    }
+}
@@ -0,0 +1,24 @@
+package com.firefly.runtime.actor;
+
+/**
+ * Thrown by a send to a full bounded mailbox whose overflow policy is
+ * {@code FAIL}, or {@code BLOCK} once the timeout has passed.
+ */
+public class MailboxFullException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    public MailboxFullException(int capacity) {
+        super("Mailbox full (capacity " + capacity + ")");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the capacity of the mailbox that was full.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+}
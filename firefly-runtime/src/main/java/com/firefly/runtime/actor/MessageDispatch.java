@@ -0,0 +1,69 @@
+package com.firefly.runtime.actor;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Class-to-case dispatch table for compiled {@code receive} blocks.
+ *
+ * <p>Each receive case has a label: the class a message must be an instance
+ * of for the case to possibly match ({@code Object} for wildcards and
+ * variables). For every concrete message class the table caches, once, the
+ * cases whose label it is assignable to, so dispatching a message costs a
+ * {@link ClassValue} lookup instead of an {@code instanceof} test per case.
+ * A case whose nested patterns then fail resumes the search after itself.</p>
+ *
+ * <p>Public for use by generated code.</p>
+ */
+public final class MessageDispatch {
+
+    private final Class<?>[] labels;
+    /** Cases that match anything, null included. */
+    private final int[] catchAll;
+
+    private final ClassValue<int[]> candidates = new ClassValue<>() {
+        @Override
+        protected int[] computeValue(Class<?> type) {
+            int[] matching = new int[labels.length];
+            int count = 0;
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].isAssignableFrom(type)) {
+                    matching[count++] = i;
+                }
+            }
+            return Arrays.copyOf(matching, count);
+        }
+    };
+
+    /**
+     * @param labels The label of each receive case, in source order
+     */
+    public MessageDispatch(Class<?>... labels) {
+        this.labels = labels.clone();
+        this.catchAll = IntStream.range(0, labels.length)
+            .filter(i -> labels[i] == Object.class)
+            .toArray();
+    }
+
+    /**
+     * Returns the first case at or after {@code from} whose label matches the
+     * message, or the number of cases if none does. A null message only
+     * matches {@code Object} labels.
+     */
+    public int next(Object message, int from) {
+        int[] cases = message == null ? catchAll : candidates.get(message.getClass());
+        for (int index : cases) {
+            if (index >= from) {
+                return index;
+            }
+        }
+        return labels.length;
+    }
+
+    /**
+     * Returns the number of cases.
+     */
+    public int size() {
+        return labels.length;
+    }
+}
@@ -0,0 +1,136 @@
+package com.firefly.runtime.actor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Unbounded multi-producer single-consumer queue made of linked array segments.
+ *
+ * <p>A producer claims a global position with one {@code getAndIncrement} and
+ * writes its message into the slot of the segment covering that position,
+ * linking a new segment when it is the first to reach it. The consumer reads
+ * slots in position order. A claimed slot whose message is not written yet
+ * reads as empty; its producer schedules the actor after writing, so the
+ * message is picked up by the next run.</p>
+ *
+ * <p>A producer starts its search at {@code tailSegment}. If another producer
+ * has already moved that hint past its segment, it starts from
+ * {@code headSegment} instead: the consumer never moves beyond a slot that
+ * has not been written, so the segment is still reachable from there.</p>
+ */
+final class MpscUnboundedMailbox<M> implements Mailbox<M> {
+
+    private static final int SEGMENT_SHIFT = 5;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final class Segment {
+        final long id;
+        final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(SEGMENT_SIZE);
+        final AtomicReference<Segment> next = new AtomicReference<>();
+
+        Segment(long id) {
+            this.id = id;
+        }
+
+        Segment nextOrCreate() {
+            Segment segment = next.get();
+            if (segment == null) {
+                segment = new Segment(id + 1);
+                if (!next.compareAndSet(null, segment)) {
+                    segment = next.get();
+                }
+            }
+            return segment;
+        }
+    }
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicReference<Segment> tailSegment;
+    /** Written by the consumer only; read by producers as a search start. */
+    private volatile Segment headSegment;
+    /** Written by the consumer only. */
+    private volatile long head;
+
+    MpscUnboundedMailbox() {
+        Segment first = new Segment(0);
+        this.tailSegment = new AtomicReference<>(first);
+        this.headSegment = first;
+    }
+
+    @Override
+    public boolean offer(M message) {
+        if (message == null) {
+            throw new NullPointerException("message cannot be null");
+        }
+        long position = tail.getAndIncrement();
+        long id = position >>> SEGMENT_SHIFT;
+
+        Segment hint = tailSegment.get();
+        Segment segment = hint.id <= id ? hint : headSegment;
+        while (segment.id < id) {
+            segment = segment.nextOrCreate();
+        }
+        while (hint.id < id && !tailSegment.compareAndSet(hint, segment)) {
+            hint = tailSegment.get();
+        }
+        segment.slots.set((int) (position & SEGMENT_MASK), message);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public M poll() {
+        long position = head;
+        Segment segment = headSegment;
+        if ((position >>> SEGMENT_SHIFT) != segment.id) {
+            Segment next = segment.next.get();
+            if (next == null) {
+                return null;
+            }
+            headSegment = next;
+            segment = next;
+        }
+        int index = (int) (position & SEGMENT_MASK);
+        Object message = segment.slots.get(index);
+        if (message == null) {
+            return null;
+        }
+        segment.slots.lazySet(index, null);
+        head = position + 1;
+        return (M) message;
+    }
+
+    /**
+     * Read-only, so it is safe to call while a new run of the actor has
+     * already started polling.
+     */
+    @Override
+    public boolean isEmpty() {
+        long position = head;
+        Segment segment = headSegment;
+        if ((position >>> SEGMENT_SHIFT) != segment.id) {
+            segment = segment.next.get();
+            if (segment == null || segment.id != (position >>> SEGMENT_SHIFT)) {
+                return segment == null;
+            }
+        }
+        return segment.slots.get((int) (position & SEGMENT_MASK)) == null;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, tail.get() - head));
+    }
+
+    @Override
+    public int capacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public long overflowCount() {
+        return 0;
+    }
+}
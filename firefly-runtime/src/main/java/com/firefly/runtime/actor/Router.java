@@ -0,0 +1,416 @@
+package com.firefly.runtime.actor;
+
+import com.firefly.runtime.async.Future;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A pool of identical actors behind one {@link Actor.ActorRef}.
+ *
+ * <p>A router is an {@code ActorRef}, so {@code send}, {@code ask} and the
+ * {@code >>} operator work on it unchanged; each message goes to one routee
+ * picked by the routing strategy. Routees are spawned with
+ * {@link Actor.ActorSystem#spawnRouter} and each handles its own messages one
+ * at a time, so a pool of N routees can use N cores.</p>
+ *
+ * <p>With a {@link Resizer} the pool grows while every routee has a backlog
+ * and shrinks while every routee is idle. A retired routee first handles the
+ * messages already in its mailbox. Under consistent hashing each routee owns
+ * several points on a hash ring, so a resize moves only the keys of the added
+ * or retired routee.</p>
+ */
+public final class Router<Message> extends Actor.ActorRef<Message> {
+
+    /** Points each routee owns on the consistent-hash ring. */
+    private static final int VIRTUAL_NODES = 32;
+
+    /**
+     * How a router picks the routee for a message.
+     */
+    public enum Routing {
+        /** Routees in turn. */
+        ROUND_ROBIN,
+        /** The routee with the fewest queued messages. */
+        SMALLEST_MAILBOX,
+        /** The routee owning the message's key; equal keys go to the same routee. */
+        CONSISTENT_HASH
+    }
+
+    /**
+     * Bounds and trigger of elastic resizing.
+     */
+    public static final class Resizer {
+        private final int lowerBound;
+        private final int upperBound;
+        private final int pressureThreshold;
+        private final int messagesPerResize;
+
+        /**
+         * @param lowerBound Smallest pool size, and the initial size
+         * @param upperBound Largest pool size
+         * @param pressureThreshold Queued messages at which a routee counts as busy
+         * @param messagesPerResize Sends between two resize checks
+         */
+        public Resizer(int lowerBound, int upperBound, int pressureThreshold, int messagesPerResize) {
+            if (lowerBound < 1 || upperBound < lowerBound) {
+                throw new IllegalArgumentException(
+                    "bounds must satisfy 1 <= lower <= upper: " + lowerBound + ", " + upperBound);
+            }
+            if (pressureThreshold < 1 || messagesPerResize < 1) {
+                throw new IllegalArgumentException("pressureThreshold and messagesPerResize must be positive");
+            }
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.pressureThreshold = pressureThreshold;
+            this.messagesPerResize = messagesPerResize;
+        }
+
+        /**
+         * A resizer that checks every 10 sends.
+         */
+        public Resizer(int lowerBound, int upperBound, int pressureThreshold) {
+            this(lowerBound, upperBound, pressureThreshold, 10);
+        }
+
+        public int getLowerBound() {
+            return lowerBound;
+        }
+
+        public int getUpperBound() {
+            return upperBound;
+        }
+    }
+
+    /**
+     * Immutable routing table; replaced as a whole on resize.
+     */
+    private static final class Routees<Message> {
+        final Actor.ActorRef<Message>[] refs;
+        final long[] ids;
+        /** Sorted ring points and the index in {@code refs} of each point's owner. */
+        final int[] ring;
+        final int[] owners;
+
+        @SuppressWarnings("unchecked")
+        Routees(List<Actor.ActorRef<Message>> refs, List<Long> ids, boolean hashed) {
+            this.refs = (Actor.ActorRef<Message>[]) refs.toArray(new Actor.ActorRef<?>[0]);
+            this.ids = ids.stream().mapToLong(Long::longValue).toArray();
+            if (!hashed) {
+                this.ring = null;
+                this.owners = null;
+                return;
+            }
+            long[] points = new long[this.refs.length * VIRTUAL_NODES];
+            for (int i = 0; i < this.refs.length; i++) {
+                for (int v = 0; v < VIRTUAL_NODES; v++) {
+                    int point = mix(this.ids[i] * VIRTUAL_NODES + v);
+                    // Point in the high half, owner index in the low half: sorting orders by point
+                    points[i * VIRTUAL_NODES + v] = ((long) point << 32) | i;
+                }
+            }
+            Arrays.sort(points);
+            this.ring = new int[points.length];
+            this.owners = new int[points.length];
+            for (int p = 0; p < points.length; p++) {
+                ring[p] = (int) (points[p] >> 32);
+                owners[p] = (int) points[p];
+            }
+        }
+
+        Actor.ActorRef<Message> owner(int hash) {
+            int p = Arrays.binarySearch(ring, hash);
+            if (p < 0) {
+                p = -p - 1;
+                if (p == ring.length) {
+                    p = 0;
+                }
+            }
+            return refs[owners[p]];
+        }
+    }
+
+    private final Supplier<Actor.ActorRef<Message>> spawner;
+    private final Routing routing;
+    private final Function<? super Message, ?> hashKey;
+    private final Resizer resizer;
+
+    private volatile Routees<Message> routees;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLong sends = new AtomicLong();
+    private final AtomicBoolean resizing = new AtomicBoolean();
+    private long nextId;
+    private boolean idleAtLastCheck;
+    private volatile boolean stopped;
+
+    Router(Supplier<Actor.ActorRef<Message>> spawner, int size, Routing routing,
+           Function<? super Message, ?> hashKey, Resizer resizer) {
+        super(null);
+        if (routing == null) {
+            throw new IllegalArgumentException("routing cannot be null");
+        }
+        if (routing == Routing.CONSISTENT_HASH && hashKey == null) {
+            throw new IllegalArgumentException("consistent-hash routing needs a hash key function");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("router size must be positive: " + size);
+        }
+        this.spawner = spawner;
+        this.routing = routing;
+        this.hashKey = hashKey;
+        this.resizer = resizer;
+
+        List<Actor.ActorRef<Message>> refs = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            refs.add(spawner.get());
+            ids.add(nextId++);
+        }
+        this.routees = new Routees<>(refs, ids, routing == Routing.CONSISTENT_HASH);
+    }
+
+    /**
+     * Route a message to one routee.
+     *
+     * @throws IllegalStateException if the router has been stopped
+     */
+    @Override
+    public void send(Message message) {
+        send(message, true);
+    }
+
+    /**
+     * Route a message to one routee without waiting for room in its mailbox.
+     */
+    @Override
+    public boolean sendNow(Message message) {
+        return send(message, false);
+    }
+
+    private boolean send(Message message, boolean wait) {
+        if (message == null) {
+            throw new NullPointerException("message cannot be null");
+        }
+        boolean queued;
+        while (true) {
+            Actor.ActorRef<Message> routee = select(message);
+            try {
+                if (wait) {
+                    routee.send(message);
+                    queued = true;
+                } else {
+                    queued = routee.sendNow(message);
+                }
+                break;
+            } catch (IllegalStateException e) {
+                // A routee retired by a concurrent shrink; pick again from the new table
+                if (stopped || e instanceof MailboxFullException || contains(routee)) {
+                    throw e;
+                }
+            }
+        }
+        afterSend();
+        return queued;
+    }
+
+    /**
+     * Route a message to one routee and get its reply.
+     */
+    @Override
+    public <R> Future<R> ask(Message message, long timeoutMillis) {
+        return ask(message, timeoutMillis, true);
+    }
+
+    /**
+     * Route a message to one routee and get its reply, without waiting for
+     * room in its mailbox.
+     */
+    @Override
+    public <R> Future<R> askNow(Message message, long timeoutMillis) {
+        return ask(message, timeoutMillis, false);
+    }
+
+    private <R> Future<R> ask(Message message, long timeoutMillis, boolean wait) {
+        if (message == null) {
+            throw new NullPointerException("message cannot be null");
+        }
+        while (true) {
+            Actor.ActorRef<Message> routee = select(message);
+            try {
+                Future<R> reply = wait
+                    ? routee.ask(message, timeoutMillis)
+                    : routee.askNow(message, timeoutMillis);
+                afterSend();
+                return reply;
+            } catch (IllegalStateException e) {
+                // As in send: retry only if the routee was retired meanwhile
+                if (stopped || e instanceof MailboxFullException || contains(routee)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Actor.ActorRef<Message> select(Message message) {
+        if (stopped) {
+            throw new IllegalStateException("Router is stopped");
+        }
+        Routees<Message> table = routees;
+        Actor.ActorRef<Message>[] refs = table.refs;
+        switch (routing) {
+            case SMALLEST_MAILBOX: {
+                // Start the scan at a rotating offset so ties spread out
+                int start = (int) Math.floorMod(next.getAndIncrement(), (long) refs.length);
+                Actor.ActorRef<Message> best = refs[start];
+                int bestSize = best.mailboxSize();
+                for (int i = 1; i < refs.length && bestSize > 0; i++) {
+                    Actor.ActorRef<Message> candidate = refs[(start + i) % refs.length];
+                    int size = candidate.mailboxSize();
+                    if (size < bestSize) {
+                        best = candidate;
+                        bestSize = size;
+                    }
+                }
+                return best;
+            }
+            case CONSISTENT_HASH:
+                return table.owner(mix(Objects.hashCode(hashKey.apply(message))));
+            default:
+                return refs[(int) Math.floorMod(next.getAndIncrement(), (long) refs.length)];
+        }
+    }
+
+    private boolean contains(Actor.ActorRef<Message> routee) {
+        for (Actor.ActorRef<Message> ref : routees.refs) {
+            if (ref == routee) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void afterSend() {
+        if (resizer != null && sends.incrementAndGet() % resizer.messagesPerResize == 0
+                && resizing.compareAndSet(false, true)) {
+            try {
+                resize();
+            } finally {
+                resizing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Grows by one routee if all are busy, shrinks by one if all were idle at
+     * two checks in a row. Runs on a sending thread, one check at a time.
+     */
+    private void resize() {
+        Routees<Message> table = routees;
+        boolean allBusy = true;
+        boolean allIdle = true;
+        for (Actor.ActorRef<Message> ref : table.refs) {
+            int queued = ref.mailboxSize();
+            allBusy &= queued >= resizer.pressureThreshold;
+            allIdle &= queued == 0;
+        }
+        List<Actor.ActorRef<Message>> refs = new ArrayList<>(Arrays.asList(table.refs));
+        List<Long> ids = new ArrayList<>();
+        for (long id : table.ids) {
+            ids.add(id);
+        }
+        Actor.ActorRef<Message> retired = null;
+        if (allBusy && refs.size() < resizer.upperBound) {
+            refs.add(spawner.get());
+            ids.add(nextId++);
+        } else if (allIdle && idleAtLastCheck && refs.size() > resizer.lowerBound) {
+            retired = refs.remove(refs.size() - 1);
+            ids.remove(ids.size() - 1);
+        } else {
+            idleAtLastCheck = allIdle;
+            return;
+        }
+        idleAtLastCheck = false;
+        routees = new Routees<>(refs, ids, routing == Routing.CONSISTENT_HASH);
+        if (retired != null) {
+            retired.cell().drainAndStop();
+        }
+    }
+
+    /**
+     * Returns how the router picks routees.
+     */
+    public Routing getRouting() {
+        return routing;
+    }
+
+    /**
+     * Returns the current number of routees.
+     */
+    public int size() {
+        return routees.refs.length;
+    }
+
+    /**
+     * Returns the current routees.
+     */
+    public List<Actor.ActorRef<Message>> routees() {
+        return List.of(routees.refs);
+    }
+
+    /**
+     * Returns the number of messages queued across all routees.
+     */
+    @Override
+    public int mailboxSize() {
+        long total = 0;
+        for (Actor.ActorRef<Message> ref : routees.refs) {
+            total += ref.mailboxSize();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    /**
+     * Returns how many sends found a routee's mailbox full.
+     */
+    @Override
+    public long overflowCount() {
+        long total = 0;
+        for (Actor.ActorRef<Message> ref : routees.refs) {
+            total += ref.overflowCount();
+        }
+        return total;
+    }
+
+    /**
+     * Stop every routee.
+     */
+    @Override
+    public void stop() {
+        stopped = true;
+        for (Actor.ActorRef<Message> ref : routees.refs) {
+            ref.stop();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !stopped;
+    }
+
+    /** Spreads hash codes over the whole int range (murmur3 finalizer). */
+    private static int mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e53c5a5b7L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
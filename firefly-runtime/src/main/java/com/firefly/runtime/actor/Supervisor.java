@@ -0,0 +1,343 @@
+package com.firefly.runtime.actor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * OTP-style supervisor: restarts the actors it spawned when they crash.
+ *
+ * <p>A restart happens in place. The crashed actor keeps its {@link Actor.ActorRef}
+ * and the messages still in its mailbox; only its state is rebuilt by calling
+ * {@link Actor#init()} again before the next message. The message that was
+ * being handled when the actor crashed is lost (an ask for it fails with the
+ * exception).</p>
+ *
+ * <p>If more than {@code maxRestarts} restarts happen within
+ * {@code withinMillis}, the supervisor gives up and escalates: a supervisor
+ * nested with {@link #supervise(Supervisor)} counts as a crashed child of its
+ * parent, which may restart it (restarting all of its children and clearing
+ * its window) under the parent's own strategy and intensity. A top-level
+ * supervisor, or one its parent does not restart, stops all its children and
+ * terminates; {@link #failure()} then returns the crash that made it give up.</p>
+ *
+ * <p>Children that stop, or crash without being restarted, are removed from
+ * the supervisor.</p>
+ *
+ * <pre>{@code
+ * Supervisor root = new Supervisor(system, Supervisor.Strategy.ONE_FOR_ALL, 1, 60_000);
+ * Supervisor workers = root.supervise(new Supervisor(system, Supervisor.Strategy.ONE_FOR_ONE, 3, 5_000));
+ * ActorRef<Job> worker = workers.spawn(new Worker());
+ * }</pre>
+ */
+public class Supervisor {
+
+    /** Restarts allowed within {@link #DEFAULT_WITHIN_MILLIS} before giving up. */
+    public static final int DEFAULT_MAX_RESTARTS = 3;
+
+    /** Length of the restart intensity window, in milliseconds. */
+    public static final long DEFAULT_WITHIN_MILLIS = 5_000;
+
+    /**
+     * Which children restart when one of them crashes.
+     */
+    public enum Strategy {
+        /** Only the crashed child. */
+        ONE_FOR_ONE,
+        /** Every child. */
+        ONE_FOR_ALL,
+        /** The crashed child and the children spawned after it. */
+        REST_FOR_ONE;
+
+        /**
+         * Parse a strategy name such as {@code "one_for_all"} or {@code "OneForAll"}.
+         *
+         * @throws IllegalArgumentException if the name is not a strategy
+         */
+        public static Strategy parse(String name) {
+            String normalized = name.replaceAll("[_\\-\\s]", "").toUpperCase(Locale.ROOT);
+            for (Strategy strategy : values()) {
+                if (strategy.name().replace("_", "").equals(normalized)) {
+                    return strategy;
+                }
+            }
+            throw new IllegalArgumentException("Unknown supervisor strategy: " + name);
+        }
+    }
+
+    /**
+     * A supervised actor cell or nested supervisor.
+     */
+    interface Child {
+        /** Rebuild the child's state, keeping its mailbox or children. */
+        void restart();
+
+        void stop();
+    }
+
+    private final Actor.ActorSystem system;
+    private final Strategy strategy;
+    private final int maxRestarts;
+    private final long withinMillis;
+
+    /**
+     * Guarded by {@code this}; in spawn order. Maps each child to its
+     * reference, or to null for a nested supervisor. A parent's lock is
+     * always taken before a child supervisor's.
+     */
+    private final Map<Child, Actor.ActorRef<?>> children = new LinkedHashMap<>();
+    /** Times of the restarts within the current window; guarded by {@code this}. */
+    private final ArrayDeque<Long> restartTimes = new ArrayDeque<>();
+    private int restarts;
+    private boolean terminated;
+    private Throwable failure;
+    /** Set once by {@link #supervise(Supervisor)}; guarded by {@code this}. */
+    private Supervisor parent;
+    /** This supervisor as a child of its parent. */
+    private final Child asChild = new Child() {
+        @Override
+        public void restart() {
+            Supervisor.this.restart();
+        }
+
+        @Override
+        public void stop() {
+            Supervisor.this.stop();
+        }
+    };
+
+    /**
+     * Create a supervisor whose children run on the given actor system.
+     *
+     * @param system Actor system the children are spawned on
+     * @param strategy Which children restart when one crashes
+     * @param maxRestarts Restarts allowed within the window; 0 gives up on the first crash
+     * @param withinMillis Length of the window, in milliseconds
+     */
+    public Supervisor(Actor.ActorSystem system, Strategy strategy, int maxRestarts, long withinMillis) {
+        if (system == null || strategy == null) {
+            throw new IllegalArgumentException("system and strategy cannot be null");
+        }
+        if (maxRestarts < 0) {
+            throw new IllegalArgumentException("maxRestarts cannot be negative: " + maxRestarts);
+        }
+        if (withinMillis <= 0) {
+            throw new IllegalArgumentException("withinMillis must be positive: " + withinMillis);
+        }
+        this.system = system;
+        this.strategy = strategy;
+        this.maxRestarts = maxRestarts;
+        this.withinMillis = withinMillis;
+    }
+
+    /**
+     * Create a supervisor whose children run on the global actor system.
+     */
+    public Supervisor(Strategy strategy, int maxRestarts, long withinMillis) {
+        this(ActorSystemHolder.getInstance(), strategy, maxRestarts, withinMillis);
+    }
+
+    /**
+     * Create a one-for-one supervisor with the default restart intensity.
+     */
+    public Supervisor(Actor.ActorSystem system) {
+        this(system, Strategy.ONE_FOR_ONE, DEFAULT_MAX_RESTARTS, DEFAULT_WITHIN_MILLIS);
+    }
+
+    /**
+     * Spawn a supervised actor; its mailbox is chosen as by
+     * {@link Actor.ActorSystem#spawn(Actor)}.
+     *
+     * @throws IllegalStateException if the supervisor has terminated
+     */
+    public <State, Message> Actor.ActorRef<Message> spawn(Actor<State, Message> actor) {
+        return spawn(actor, Actor.ActorSystem.defaultMailbox(actor));
+    }
+
+    /**
+     * Spawn a supervised actor with the given mailbox, which must not be shared.
+     *
+     * @throws IllegalStateException if the supervisor has terminated
+     */
+    public synchronized <State, Message> Actor.ActorRef<Message> spawn(Actor<State, Message> actor,
+                                                                       Mailbox<Message> mailbox) {
+        if (terminated) {
+            throw new IllegalStateException("Supervisor has terminated");
+        }
+        Actor.ActorRef<Message> ref = system.spawn(actor, mailbox, this);
+        children.put(ref.cell(), ref);
+        return ref;
+    }
+
+    /**
+     * Nest a supervisor under this one. When the child gives up, it escalates
+     * to this supervisor instead of terminating.
+     *
+     * @return The child
+     * @throws IllegalStateException if either supervisor has terminated, or
+     *         the child already has a parent or is an ancestor of this one
+     */
+    public synchronized <S extends Supervisor> S supervise(S child) {
+        if (terminated) {
+            throw new IllegalStateException("Supervisor has terminated");
+        }
+        for (Supervisor ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor == child) {
+                throw new IllegalStateException("A supervisor cannot supervise its own ancestor");
+            }
+        }
+        Supervisor nested = child;
+        synchronized (nested) {
+            if (nested.terminated || nested.parent != null) {
+                throw new IllegalStateException("Supervisor is terminated or already supervised");
+            }
+            nested.parent = this;
+        }
+        children.put(nested.asChild, null);
+        return child;
+    }
+
+    /**
+     * Returns the references of the running child actors, in spawn order.
+     * Nested supervisors are not included.
+     */
+    public synchronized List<Actor.ActorRef<?>> children() {
+        List<Actor.ActorRef<?>> refs = new ArrayList<>();
+        for (Actor.ActorRef<?> ref : children.values()) {
+            if (ref != null) {
+                refs.add(ref);
+            }
+        }
+        return refs;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Returns how many times a child crash triggered a restart.
+     */
+    public synchronized int restartCount() {
+        return restarts;
+    }
+
+    /**
+     * Returns true once the supervisor has given up or been stopped.
+     */
+    public synchronized boolean isTerminated() {
+        return terminated;
+    }
+
+    /**
+     * Returns the crash that made this supervisor give up, or null while it
+     * has not (or its parent restarted it since).
+     */
+    public synchronized Throwable failure() {
+        return failure;
+    }
+
+    /**
+     * Stop every child, including nested supervisors, and refuse further spawns.
+     */
+    public void stop() {
+        Supervisor notify;
+        List<Child> running;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            running = new ArrayList<>(children.keySet());
+            notify = parent;
+        }
+        for (Child child : running) {
+            child.stop();
+        }
+        if (notify != null) {
+            notify.childStopped(asChild);
+        }
+    }
+
+    /**
+     * Restart every child in place and start a new intensity window. Called
+     * when the parent restarts this supervisor, after it gave up or a sibling
+     * crashed.
+     */
+    private synchronized void restart() {
+        if (terminated) {
+            return;
+        }
+        restartTimes.clear();
+        failure = null;
+        for (Child child : children.keySet()) {
+            child.restart();
+        }
+    }
+
+    /**
+     * Called when a child stopped for good, so it is no longer supervised.
+     */
+    synchronized void childStopped(Child child) {
+        children.remove(child);
+    }
+
+    /**
+     * Called by a child's cell, on the child's thread, after it crashed, or
+     * by a nested supervisor that gave up. Restarts the siblings the strategy
+     * covers. Past the restart intensity, escalates to the parent: if the
+     * parent restarts this supervisor, the child restarts with it; otherwise
+     * this supervisor stops.
+     *
+     * @return true if the crashed child should restart, false if it should stop
+     */
+    boolean childFailed(Child child, Throwable error) {
+        Supervisor escalateTo;
+        synchronized (this) {
+            if (terminated) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            while (!restartTimes.isEmpty() && now - restartTimes.peekFirst() >= withinMillis) {
+                restartTimes.pollFirst();
+            }
+            if (restartTimes.size() < maxRestarts) {
+                restartTimes.addLast(now);
+                restarts++;
+                if (strategy == Strategy.ONE_FOR_ALL) {
+                    restartSiblings(child, true);
+                } else if (strategy == Strategy.REST_FOR_ONE) {
+                    restartSiblings(child, false);
+                }
+                return true;
+            }
+            failure = error;
+            escalateTo = parent;
+        }
+        // Escalate without holding this lock: the parent takes it to restart us
+        if (escalateTo != null && escalateTo.childFailed(asChild, error)) {
+            restart();
+            return true;
+        }
+        stop();
+        return false;
+    }
+
+    /**
+     * Restart the children other than the crashed one: all of them, or only
+     * those spawned after it.
+     */
+    private void restartSiblings(Child crashed, boolean all) {
+        boolean after = false;
+        for (Child sibling : children.keySet()) {
+            if (sibling == crashed) {
+                after = true;
+            } else if (all || after) {
+                sibling.restart();
+            }
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package com.firefly.runtime.actor.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only event journal of one persistent actor, stored in its own
+ * directory as memory-mapped segment files.
+ *
+ * <p>Events get consecutive sequence numbers starting at 1. Each event is a
+ * record {@code [length][crc32c][sequenceNr][payload]} written straight into
+ * the mapped segment; when a record does not fit, the segment is forced and a
+ * new one named after its first sequence number is started. On open, the
+ * journal scans its last segment and resumes after the last record whose
+ * checksum and sequence number are valid, so a write torn by a crash is
+ * dropped.</p>
+ *
+ * <p>With {@link Durability#SYNC}, {@link #append(List)} returns once its
+ * events are forced to disk. Forces are group-committed: one thread forces
+ * everything written so far while concurrent appenders wait for it, and a
+ * whole list of events costs a single force.</p>
+ *
+ * <p>Snapshots are stored next to the segments, written to a temporary file
+ * and moved into place, so a crash never leaves a partial snapshot.</p>
+ */
+public final class Journal implements AutoCloseable {
+
+    /** Size of each segment file: 64 MiB. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /** Interval of background forces in {@link Durability#PERIODIC} mode. */
+    public static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    private static final int HEADER_SIZE = 16;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private static final ScheduledThreadPoolExecutor FLUSHER = createFlusher();
+
+    /**
+     * When appended events reach the disk.
+     */
+    public enum Durability {
+        /** Before {@code append} returns. */
+        SYNC,
+        /** Within {@link #FLUSH_INTERVAL_MILLIS}; a crash of the machine can lose the last events. */
+        PERIODIC,
+        /** When the operating system writes the pages back, or on {@link #flush()} and {@link #close()}. */
+        NONE
+    }
+
+    /**
+     * The latest saved snapshot: the state after {@code sequenceNr} events.
+     */
+    public static final class Snapshot {
+        private final long sequenceNr;
+        private final byte[] state;
+
+        Snapshot(long sequenceNr, byte[] state) {
+            this.sequenceNr = sequenceNr;
+            this.state = state;
+        }
+
+        public long getSequenceNr() {
+            return sequenceNr;
+        }
+
+        public byte[] getState() {
+            return state;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Durability durability;
+    private final ScheduledFuture<?> periodicFlush;
+
+    /** Guarded by {@code this}. */
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int position;
+    private long lastSequenceNr;
+    private boolean closed;
+
+    /** Group commit: {@code forceLock} guards {@code forcing} and {@code durableSequenceNr}. */
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private final Condition forced = forceLock.newCondition();
+    private boolean forcing;
+    private long durableSequenceNr;
+
+    private Journal(Path directory, int segmentSize, Durability durability) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        if (durability == null) {
+            throw new IllegalArgumentException("durability cannot be null");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.durability = durability;
+
+        List<Long> segments = segmentStarts();
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            long first = segments.get(segments.size() - 1);
+            openSegment(first);
+            lastSequenceNr = first - 1;
+            // Resume after the last valid record of the last segment
+            position = scan(segment.duplicate(), first, first, (payload, seq) -> lastSequenceNr = seq);
+        }
+        durableSequenceNr = lastSequenceNr;
+        periodicFlush = durability == Durability.PERIODIC
+            ? FLUSHER.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS)
+            : null;
+    }
+
+    /**
+     * Open or create the journal in the given directory with synchronous
+     * durability and the default segment size.
+     */
+    public static Journal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, Durability.SYNC);
+    }
+
+    /**
+     * Open or create the journal in the given directory.
+     *
+     * @param segmentSize Size of each segment file; an event must fit in one
+     */
+    public static Journal open(Path directory, int segmentSize, Durability durability) throws IOException {
+        return new Journal(directory, segmentSize, durability);
+    }
+
+    private static ScheduledThreadPoolExecutor createFlusher() {
+        ScheduledThreadPoolExecutor flusher = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "FireflyJournalFlusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.setRemoveOnCancelPolicy(true);
+        return flusher;
+    }
+
+    /**
+     * Append one event.
+     *
+     * @return The event's sequence number
+     */
+    public long append(byte[] event) {
+        return append(Collections.singletonList(event));
+    }
+
+    /**
+     * Append events in order, as one group commit.
+     *
+     * @return The sequence number of the last event
+     * @throws IllegalArgumentException if an event does not fit in a segment
+     * @throws UncheckedIOException if a segment cannot be created
+     */
+    public long append(List<byte[]> events) {
+        long last;
+        synchronized (this) {
+            ensureOpen();
+            for (byte[] event : events) {
+                write(event);
+            }
+            last = lastSequenceNr;
+        }
+        if (durability == Durability.SYNC) {
+            awaitDurable(last);
+        }
+        return last;
+    }
+
+    private void write(byte[] event) {
+        int size = HEADER_SIZE + event.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException(
+                "Event of " + event.length + " bytes does not fit in a " + segmentSize + "-byte segment");
+        }
+        long sequenceNr = lastSequenceNr + 1;
+        if (position + size > segmentSize) {
+            rotate(sequenceNr);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(longBytes(sequenceNr));
+        crc.update(event);
+        segment.putLong(position + 8, sequenceNr);
+        segment.put(position + HEADER_SIZE, event);
+        segment.putInt(position + 4, (int) crc.getValue());
+        segment.putInt(position, event.length);
+        position += size;
+        lastSequenceNr = sequenceNr;
+    }
+
+    private void rotate(long firstSequenceNr) {
+        segment.force();
+        try {
+            channel.close();
+            openSegment(firstSequenceNr);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(long firstSequenceNr) throws IOException {
+        channel = FileChannel.open(segmentPath(firstSequenceNr),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        position = 0;
+    }
+
+    /**
+     * Waits until {@code sequenceNr} is on disk, forcing the segment if no
+     * other thread is already doing it.
+     */
+    private void awaitDurable(long sequenceNr) {
+        forceLock.lock();
+        try {
+            while (durableSequenceNr < sequenceNr) {
+                if (forcing) {
+                    forced.awaitUninterruptibly();
+                    continue;
+                }
+                forcing = true;
+                forceLock.unlock();
+                long target;
+                try {
+                    MappedByteBuffer buffer;
+                    synchronized (this) {
+                        buffer = segment;
+                        target = lastSequenceNr;
+                    }
+                    // Earlier segments were forced when they were rotated out
+                    buffer.force();
+                } finally {
+                    forceLock.lock();
+                    forcing = false;
+                    forced.signalAll();
+                }
+                durableSequenceNr = Math.max(durableSequenceNr, target);
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * Force every appended event to disk.
+     */
+    public void flush() {
+        long last;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            last = lastSequenceNr;
+        }
+        awaitDurable(last);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println("Journal flush failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last event, or 0 if there is none.
+     */
+    public synchronized long lastSequenceNr() {
+        return lastSequenceNr;
+    }
+
+    /**
+     * Read the events from {@code fromSequenceNr} on, in order. Only the
+     * segments that can hold those events are read.
+     *
+     * @param consumer Receives each event's payload and sequence number
+     */
+    public synchronized void replay(long fromSequenceNr, ObjLongConsumer<byte[]> consumer) {
+        ensureOpen();
+        List<Long> starts = segmentStarts();
+        int first = 0;
+        for (int i = 0; i < starts.size(); i++) {
+            if (starts.get(i) <= fromSequenceNr) {
+                first = i;
+            }
+        }
+        try {
+            for (int i = first; i < starts.size(); i++) {
+                long start = starts.get(i);
+                try (FileChannel in = FileChannel.open(segmentPath(start), StandardOpenOption.READ)) {
+                    ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(in.size(), segmentSize));
+                    scan(buffer, start, fromSequenceNr, consumer);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads valid records from a segment.
+     *
+     * @return The position after the last valid record
+     */
+    private static int scan(ByteBuffer buffer, long firstSequenceNr, long fromSequenceNr,
+                            ObjLongConsumer<byte[]> consumer) {
+        int position = 0;
+        long expected = firstSequenceNr;
+        int limit = buffer.limit();
+        CRC32C crc = new CRC32C();
+        while (position + HEADER_SIZE <= limit) {
+            int length = buffer.getInt(position);
+            long sequenceNr = buffer.getLong(position + 8);
+            if (length < 0 || length > limit - position - HEADER_SIZE || sequenceNr != expected) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            crc.reset();
+            crc.update(longBytes(sequenceNr));
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            if (sequenceNr >= fromSequenceNr) {
+                consumer.accept(payload, sequenceNr);
+            }
+            position += HEADER_SIZE + length;
+            expected++;
+        }
+        return position;
+    }
+
+    /**
+     * Save a snapshot of the state after {@code sequenceNr} events. Older
+     * snapshots except the previous one are deleted.
+     */
+    public synchronized void saveSnapshot(long sequenceNr, byte[] state) {
+        ensureOpen();
+        CRC32C crc = new CRC32C();
+        crc.update(state);
+        ByteBuffer content = ByteBuffer.allocate(HEADER_SIZE + state.length);
+        content.putLong(sequenceNr).putInt((int) crc.getValue()).putInt(state.length).put(state).flip();
+        Path target = snapshotPath(sequenceNr);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (content.hasRemaining()) {
+                    out.write(content);
+                }
+                out.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            List<Long> snapshots = snapshotSequenceNrs();
+            for (int i = 0; i < snapshots.size() - 2; i++) {
+                Files.deleteIfExists(snapshotPath(snapshots.get(i)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the newest readable snapshot, if any.
+     */
+    public synchronized Optional<Snapshot> loadSnapshot() {
+        ensureOpen();
+        List<Long> snapshots = snapshotSequenceNrs();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            try {
+                ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(snapshotPath(snapshots.get(i))));
+                long sequenceNr = content.getLong();
+                int checksum = content.getInt();
+                int length = content.getInt();
+                if (length != content.remaining()) {
+                    continue;
+                }
+                byte[] state = new byte[length];
+                content.get(state);
+                CRC32C crc = new CRC32C();
+                crc.update(state);
+                if ((int) crc.getValue() == checksum) {
+                    return Optional.of(new Snapshot(sequenceNr, state));
+                }
+            } catch (IOException | RuntimeException e) {
+                // Unreadable snapshot; fall back to an older one
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Force pending events and release the segment. Later calls fail with
+     * IllegalStateException.
+     */
+    @Override
+    public void close() {
+        if (periodicFlush != null) {
+            periodicFlush.cancel(false);
+        }
+        flush();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segment.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    private Path segmentPath(long firstSequenceNr) {
+        return directory.resolve(String.format("%020d%s", firstSequenceNr, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long sequenceNr) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequenceNr, SNAPSHOT_SUFFIX));
+    }
+
+    private List<Long> segmentStarts() {
+        return listNumbers("", SEGMENT_SUFFIX);
+    }
+
+    private List<Long> snapshotSequenceNrs() {
+        return listNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    }
+
+    /** Sorted numbers of the files named {@code prefix + number + suffix}. */
+    private List<Long> listNumbers(String prefix, String suffix) {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(prefix.length(), name.length() - suffix.length());
+                if (!number.isEmpty() && number.chars().allMatch(Character::isDigit)) {
+                    numbers.add(Long.parseLong(number));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+}
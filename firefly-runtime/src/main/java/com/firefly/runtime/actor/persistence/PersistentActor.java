@@ -0,0 +1,149 @@
+package com.firefly.runtime.actor.persistence;
+
+import com.firefly.runtime.actor.Actor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Event-sourced actor whose state survives restarts.
+ *
+ * <p>A command does not change the state directly: {@link #onCommand} turns
+ * it into events, which are appended to the actor's {@link Journal} and then
+ * applied with {@link #applyEvent}. Every {@code snapshotInterval} events the
+ * state is saved as a snapshot; {@link #init()} loads the latest snapshot and
+ * replays only the events after it.</p>
+ *
+ * <p>Queued commands are handled as a batch whose events are appended with a
+ * single group commit. {@link #onPersisted} runs after that, so replies sent
+ * from it only ever confirm durable events. An asked command is handled
+ * alone, so {@link Actor#reply} in {@code onPersisted} answers its ask.</p>
+ *
+ * <p>Each persistent actor needs its own journal.</p>
+ *
+ * @param <State> The actor state; treat it as immutable, as it may be
+ *                snapshotted
+ * @param <Command> The messages the actor receives
+ * @param <Event> The journaled facts
+ */
+public abstract class PersistentActor<State, Command, Event> implements Actor<State, Command> {
+
+    private final Journal journal;
+    private final Codec<Event> eventCodec;
+    private final Codec<State> snapshotCodec;
+    private final int snapshotInterval;
+
+    private long eventsSinceSnapshot;
+
+    /**
+     * A persistent actor that never snapshots; recovery replays the whole
+     * journal.
+     */
+    protected PersistentActor(Journal journal, Codec<Event> eventCodec) {
+        this(journal, eventCodec, null, 0);
+    }
+
+    /**
+     * @param snapshotCodec Encodes snapshots of the state
+     * @param snapshotInterval Events between snapshots
+     */
+    protected PersistentActor(Journal journal, Codec<Event> eventCodec, Codec<State> snapshotCodec,
+                              int snapshotInterval) {
+        if (journal == null || eventCodec == null) {
+            throw new IllegalArgumentException("journal and eventCodec cannot be null");
+        }
+        if (snapshotCodec != null && snapshotInterval <= 0) {
+            throw new IllegalArgumentException("snapshotInterval must be positive: " + snapshotInterval);
+        }
+        this.journal = journal;
+        this.eventCodec = eventCodec;
+        this.snapshotCodec = snapshotCodec;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Returns the state before any event.
+     */
+    protected abstract State emptyState();
+
+    /**
+     * Validate a command against the current state and return the events it
+     * causes, or an empty list to reject it. Must not change the state.
+     */
+    protected abstract List<Event> onCommand(Command command, State state);
+
+    /**
+     * Return the state after an event. Also used during recovery, so it must
+     * not have side effects.
+     */
+    protected abstract State applyEvent(State state, Event event);
+
+    /**
+     * Called once the events of a command are durable, with the resulting
+     * state. Send replies and other side effects from here.
+     */
+    protected void onPersisted(Command command, State state) {
+        // Default: do nothing
+    }
+
+    /**
+     * Recover the state: load the latest snapshot, then replay the events
+     * journaled after it.
+     */
+    @Override
+    public final State init() {
+        State state = emptyState();
+        long from = 1;
+        if (snapshotCodec != null) {
+            Journal.Snapshot snapshot = journal.loadSnapshot().orElse(null);
+            if (snapshot != null) {
+                state = snapshotCodec.decode(snapshot.getState());
+                from = snapshot.getSequenceNr() + 1;
+            }
+        }
+        @SuppressWarnings("unchecked")
+        State[] recovered = (State[]) new Object[] {state};
+        journal.replay(from, (payload, sequenceNr) ->
+            recovered[0] = applyEvent(recovered[0], eventCodec.decode(payload)));
+        eventsSinceSnapshot = journal.lastSequenceNr() - from + 1;
+        return recovered[0];
+    }
+
+    @Override
+    public final State handle(Command command, State state) {
+        return handleBatch(Collections.singletonList(command), state);
+    }
+
+    @Override
+    public final State handleBatch(List<Command> commands, State state) {
+        List<byte[]> encoded = new ArrayList<>();
+        List<State> states = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            for (Event event : onCommand(command, state)) {
+                encoded.add(eventCodec.encode(event));
+                state = applyEvent(state, event);
+            }
+            states.add(state);
+        }
+        if (!encoded.isEmpty()) {
+            journal.append(encoded);
+            eventsSinceSnapshot += encoded.size();
+        }
+        for (int i = 0; i < commands.size(); i++) {
+            onPersisted(commands.get(i), states.get(i));
+        }
+        if (snapshotCodec != null && eventsSinceSnapshot >= snapshotInterval) {
+            journal.saveSnapshot(journal.lastSequenceNr(), snapshotCodec.encode(state));
+            eventsSinceSnapshot = 0;
+        }
+        return state;
+    }
+
+    /**
+     * Returns the journal of this actor.
+     */
+    protected Journal journal() {
+        return journal;
+    }
+}
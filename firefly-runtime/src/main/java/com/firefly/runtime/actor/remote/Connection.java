@@ -0,0 +1,213 @@
+package com.firefly.runtime.actor.remote;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * One TCP connection between two nodes.
+ *
+ * <p>Senders encode frames straight into the connection's pending buffer and
+ * ask the I/O thread to flush only when the buffer was empty, so every frame
+ * sent while a write is in progress or a wakeup is pending goes out in the
+ * same socket write. The I/O thread swaps the pending buffer with a spare
+ * one, so senders never wait for the socket.</p>
+ *
+ * <p>A frame is {@code [int length][byte kind][body]}, the length counting
+ * the kind and body.</p>
+ */
+final class Connection {
+
+    static final int MAX_FRAME_SIZE = 16 << 20;
+
+    private final RemoteNode node;
+    private final SocketChannel channel;
+    /** The peer's listening address for outbound connections, null for accepted ones. */
+    private final InetSocketAddress remote;
+    private SelectionKey key;
+
+    /** Guarded by {@code this}. */
+    private WireCodec.Output pending;
+    private int pendingFrames;
+    private boolean flushRequested;
+    private boolean closed;
+
+    /** Owned by the I/O thread. */
+    private WireCodec.Output spare;
+    private ByteBuffer writing;
+    private ByteBuffer reading = ByteBuffer.allocate(64 << 10);
+
+    Connection(RemoteNode node, SocketChannel channel, InetSocketAddress remote) {
+        this.node = node;
+        this.channel = channel;
+        this.remote = remote;
+        this.pending = new WireCodec.Output(node.codec());
+        this.spare = new WireCodec.Output(node.codec());
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    InetSocketAddress remote() {
+        return remote;
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Append one frame to the pending buffer. On an encoding failure nothing
+     * is appended.
+     *
+     * @throws IllegalStateException if the connection is closed
+     */
+    void enqueue(int kind, long id, long timeoutMillis, String name, Object message) {
+        boolean wake;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Connection to " + describe() + " is closed");
+            }
+            WireCodec.Output out = pending;
+            int start = out.size();
+            try {
+                out.writeInt(0);
+                out.writeByte(kind);
+                if (kind != RemoteNode.SEND && kind != RemoteNode.STOP) {
+                    out.writeVarLong(id);
+                }
+                if (kind == RemoteNode.ASK) {
+                    out.writeVarLong(timeoutMillis);
+                }
+                if (name != null) {
+                    out.writeString(name);
+                }
+                if (kind != RemoteNode.STOP) {
+                    out.writeObject(message);
+                }
+                int length = out.size() - start - 4;
+                if (length > MAX_FRAME_SIZE) {
+                    throw new IllegalArgumentException("Message too large: " + length + " bytes");
+                }
+                out.putInt(start, length);
+            } catch (RuntimeException e) {
+                out.truncate(start);
+                throw e;
+            }
+            pendingFrames++;
+            wake = !flushRequested;
+            flushRequested = true;
+        }
+        if (wake) {
+            node.requestFlush(this);
+        }
+    }
+
+    /**
+     * Returns how many frames wait in the pending buffer.
+     */
+    synchronized int pendingFrames() {
+        return pendingFrames;
+    }
+
+    /**
+     * Write pending frames until the socket would block; called on the I/O
+     * thread.
+     */
+    void flush() throws IOException {
+        if (key == null || !channel.isConnected()) {
+            // Flushed again once connected
+            return;
+        }
+        while (true) {
+            if (writing == null) {
+                synchronized (this) {
+                    flushRequested = false;
+                    if (pending.size() == 0) {
+                        break;
+                    }
+                    WireCodec.Output full = pending;
+                    pending = spare;
+                    spare = full;
+                    pendingFrames = 0;
+                }
+                writing = ByteBuffer.wrap(spare.array(), 0, spare.size());
+            }
+            channel.write(writing);
+            if (writing.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            writing = null;
+            spare.truncate(0);
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Read available bytes and handle every complete frame; called on the
+     * I/O thread.
+     *
+     * @return false at end of stream
+     */
+    boolean read() throws IOException {
+        int count = channel.read(reading);
+        if (count < 0) {
+            return false;
+        }
+        reading.flip();
+        while (reading.remaining() >= 4) {
+            int length = reading.getInt(reading.position());
+            if (length <= 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length " + length + " from " + describe());
+            }
+            if (reading.remaining() < 4 + length) {
+                if (4 + length > reading.capacity()) {
+                    reading = ByteBuffer.allocate(4 + length).put(reading);
+                    return true;
+                }
+                break;
+            }
+            int start = reading.arrayOffset() + reading.position() + 4;
+            node.receive(this, reading.array(), start, start + length);
+            reading.position(reading.position() + 4 + length);
+        }
+        reading.compact();
+        return true;
+    }
+
+    /**
+     * Mark the connection closed; later sends fail.
+     *
+     * @return false if it already was
+     */
+    boolean markClosed() {
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            pending = new WireCodec.Output(node.codec());
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already broken
+        }
+        return true;
+    }
+
+    String describe() {
+        if (remote != null) {
+            return remote.toString();
+        }
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "closed channel";
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.firefly.runtime.actor.remote;
+
+import com.firefly.runtime.actor.Actor;
+import com.firefly.runtime.async.Future;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Reference to an actor registered on another node.
+ *
+ * <p>Messages are encoded with the {@link WireCodec} of the {@link RemoteNode}
+ * that created the reference and sent over its connection to the remote node.
+ * {@code send} does not wait for the network, and does not report whether the
+ * remote actor exists; {@code ask} fails with {@link RemoteException} if the
+ * remote actor fails or is unknown.</p>
+ */
+public final class RemoteActorRef<Message> extends Actor.ActorRef<Message> {
+
+    private final RemoteNode node;
+    private final InetSocketAddress address;
+    private final String name;
+
+    RemoteActorRef(RemoteNode node, InetSocketAddress address, String name) {
+        this.node = node;
+        this.address = address;
+        this.name = name;
+    }
+
+    /**
+     * Send a message to the remote actor.
+     *
+     * @throws IllegalArgumentException if the message cannot be encoded
+     * @throws IllegalStateException if the local node is closed
+     */
+    @Override
+    public void send(Message message) {
+        if (message == null) {
+            throw new NullPointerException("message cannot be null");
+        }
+        node.send(address, name, message);
+    }
+
+    /**
+     * Same as {@link #send}, which never waits.
+     *
+     * @return true
+     */
+    @Override
+    public boolean sendNow(Message message) {
+        send(message);
+        return true;
+    }
+
+    @Override
+    public <R> Future<R> ask(Message message, long timeoutMillis) {
+        if (message == null) {
+            throw new NullPointerException("message cannot be null");
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeoutMillis);
+        }
+        return node.ask(address, name, message, timeoutMillis);
+    }
+
+    /**
+     * Same as {@link #ask(Object, long)}, which never waits.
+     */
+    @Override
+    public <R> Future<R> askNow(Message message, long timeoutMillis) {
+        return ask(message, timeoutMillis);
+    }
+
+    /**
+     * Returns how many messages this node has queued for the remote node but
+     * not yet written to the socket, counting those for every actor there.
+     * The remote mailbox itself cannot be read without a round trip.
+     */
+    @Override
+    public int mailboxSize() {
+        return node.queuedFrames(address);
+    }
+
+    /**
+     * Not known locally; always 0.
+     */
+    @Override
+    public long overflowCount() {
+        return 0;
+    }
+
+    /**
+     * Ask the remote node to stop the actor and drop its name. Like
+     * {@link #send}, this does not wait and is not acknowledged.
+     *
+     * @throws IllegalStateException if the local node is closed
+     */
+    @Override
+    public void stop() {
+        node.stop(address, name);
+    }
+
+    /**
+     * Returns whether the local node can still send; says nothing about the
+     * remote actor.
+     */
+    @Override
+    public boolean isRunning() {
+        return node.isRunning();
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteActorRef(" + name + "@" + address + ")";
+    }
+}
@@ -0,0 +1,18 @@
+package com.firefly.runtime.actor.remote;
+
+/**
+ * Fails a remote ask whose remote actor failed or could not be reached, or
+ * whose connection was lost.
+ */
+public class RemoteException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RemoteException(String message) {
+        super(message);
+    }
+
+    public RemoteException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,508 @@
+package com.firefly.runtime.actor.remote;
+
+import com.firefly.runtime.actor.Actor;
+import com.firefly.runtime.async.Future;
+import com.firefly.runtime.async.Promise;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Endpoint of the actor system on one JVM for talking to actors on others.
+ *
+ * <p>A node listens on a TCP port, resolves the names of locally
+ * {@link #register registered} actors for incoming messages, and hands out
+ * {@link #ref references} to actors registered on other nodes. Those
+ * references are ordinary {@link Actor.ActorRef}s, so {@code send}, {@code >>}
+ * and {@code ask} call sites do not change when an actor moves to another
+ * JVM.</p>
+ *
+ * <p>One I/O thread runs a selector over all connections. Messages are
+ * encoded with the node's {@link WireCodec} on the sending thread; frames
+ * sent to the same node between two socket writes are written together.
+ * There is one outbound connection per remote node, opened on first use and
+ * reopened after a failure.</p>
+ *
+ * <p>Delivery is at most once: messages in flight when a connection fails
+ * are lost, sends to unknown names are counted as {@link #deadLetterCount()
+ * dead letters}, and pending asks over the failed connection fail. Messages
+ * from one sender to one remote actor arrive in send order.</p>
+ *
+ * <p>{@link RemoteActorRef#stop()} sends a stop frame; the receiving node
+ * stops the registered actor and drops its name, so later messages to it are
+ * dead letters.</p>
+ *
+ * <p>Incoming messages are delivered with {@link Actor.ActorRef#sendNow} and
+ * {@link Actor.ActorRef#askNow}, so the I/O thread never waits for room in a
+ * full mailbox: a send that finds it full is a dead letter and an ask fails.</p>
+ */
+public final class RemoteNode implements AutoCloseable {
+
+    static final int SEND = 1;
+    static final int ASK = 2;
+    static final int REPLY = 3;
+    static final int FAILURE = 4;
+    static final int STOP = 5;
+
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = createScheduler();
+
+    /** An ask waiting for its reply from a remote node. */
+    private static final class PendingAsk {
+        final Promise<Object> promise = new Promise<>();
+        final Connection connection;
+        volatile ScheduledFuture<?> timeout;
+
+        PendingAsk(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private final WireCodec codec;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final InetSocketAddress address;
+    private final Thread ioThread;
+
+    private final Map<String, Actor.ActorRef<Object>> registry = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, Connection> outbound = new ConcurrentHashMap<>();
+    private final Map<Long, PendingAsk> asks = new ConcurrentHashMap<>();
+    private final AtomicLong nextAskId = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> flushes = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    private RemoteNode(InetSocketAddress bind, WireCodec codec) throws IOException {
+        this.codec = codec;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(bind);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        this.address = (InetSocketAddress) server.getLocalAddress();
+        this.ioThread = new Thread(this::runLoop, "FireflyRemote-" + address.getPort());
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Start a node listening on the given address; port 0 picks a free port.
+     *
+     * @param codec Encodes messages; every node must register the same types
+     */
+    public static RemoteNode start(InetSocketAddress bind, WireCodec codec) throws IOException {
+        if (codec == null) {
+            throw new IllegalArgumentException("codec cannot be null");
+        }
+        return new RemoteNode(bind, codec);
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "FireflyRemoteAskTimeouts");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Returns the address this node listens on.
+     */
+    public InetSocketAddress address() {
+        return address;
+    }
+
+    WireCodec codec() {
+        return codec;
+    }
+
+    /**
+     * Make a local actor reachable from other nodes under a name.
+     *
+     * @throws IllegalArgumentException if the name is taken
+     */
+    @SuppressWarnings("unchecked")
+    public void register(String name, Actor.ActorRef<?> actor) {
+        if (name == null || actor == null) {
+            throw new IllegalArgumentException("name and actor cannot be null");
+        }
+        if (registry.putIfAbsent(name, (Actor.ActorRef<Object>) actor) != null) {
+            throw new IllegalArgumentException("Name already registered: " + name);
+        }
+    }
+
+    /**
+     * Remove a name; later messages to it are dead letters.
+     */
+    public void unregister(String name) {
+        registry.remove(name);
+    }
+
+    /**
+     * Returns a reference to the actor registered under {@code name} on the
+     * node at {@code node}. No connection is made until the first message.
+     */
+    public <Message> RemoteActorRef<Message> ref(InetSocketAddress node, String name) {
+        if (node == null || name == null) {
+            throw new IllegalArgumentException("node and name cannot be null");
+        }
+        return new RemoteActorRef<>(this, node, name);
+    }
+
+    /**
+     * Returns how many received messages named no registered actor or found
+     * its mailbox full or stopped.
+     */
+    public long deadLetterCount() {
+        return deadLetters.get();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    void send(InetSocketAddress node, String name, Object message) {
+        connection(node).enqueue(SEND, 0, 0, name, message);
+    }
+
+    void stop(InetSocketAddress node, String name) {
+        connection(node).enqueue(STOP, 0, 0, name, null);
+    }
+
+    int queuedFrames(InetSocketAddress node) {
+        Connection connection = outbound.get(node);
+        return connection == null ? 0 : connection.pendingFrames();
+    }
+
+    @SuppressWarnings("unchecked")
+    <R> Future<R> ask(InetSocketAddress node, String name, Object message, long timeoutMillis) {
+        Connection connection = connection(node);
+        long id = nextAskId.incrementAndGet();
+        PendingAsk ask = new PendingAsk(connection);
+        asks.put(id, ask);
+        ask.timeout = TIMEOUTS.schedule(() -> {
+            if (asks.remove(id) != null) {
+                ask.promise.fail(new TimeoutException("Ask timed out after " + timeoutMillis + "ms"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            connection.enqueue(ASK, id, timeoutMillis, name, message);
+        } catch (RuntimeException e) {
+            complete(id, null, e);
+            throw e;
+        }
+        return (Future<R>) ask.promise.future();
+    }
+
+    private void complete(long id, Object value, Throwable error) {
+        PendingAsk ask = asks.remove(id);
+        if (ask == null) {
+            return;
+        }
+        ask.timeout.cancel(false);
+        if (error == null) {
+            ask.promise.complete(value);
+        } else {
+            ask.promise.fail(error);
+        }
+    }
+
+    private Connection connection(InetSocketAddress node) {
+        if (!running) {
+            throw new IllegalStateException("Remote node is closed");
+        }
+        Connection existing = outbound.get(node);
+        if (existing != null) {
+            return existing;
+        }
+        return outbound.computeIfAbsent(node, this::connect);
+    }
+
+    private Connection connect(InetSocketAddress node) {
+        try {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(this, channel, node);
+            runOnIoThread(() -> {
+                try {
+                    boolean connected = channel.connect(node);
+                    connection.attach(channel.register(selector,
+                        connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, connection));
+                    if (connected) {
+                        connection.flush();
+                    }
+                } catch (IOException e) {
+                    closeConnection(connection, e);
+                }
+            });
+            return connection;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void requestFlush(Connection connection) {
+        flushes.add(connection);
+        selector.wakeup();
+    }
+
+    private void runOnIoThread(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void runLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Connection connection;
+                while ((connection = flushes.poll()) != null) {
+                    try {
+                        connection.flush();
+                    } catch (IOException e) {
+                        closeConnection(connection, e);
+                    }
+                }
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (key.isValid()) {
+                        handle(key);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (running) {
+                System.err.println("Remote node " + address + " failed: " + e);
+            }
+        } finally {
+            shutdownConnections();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                connection.channel().finishConnect();
+                key.interestOps(SelectionKey.OP_READ);
+                connection.flush();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+            if (key.isValid() && key.isReadable() && !connection.read()) {
+                closeConnection(connection, new IOException("Connection closed by " + connection.describe()));
+            }
+        } catch (IOException e) {
+            closeConnection(connection, e);
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(this, channel, null);
+                connection.attach(channel.register(selector, SelectionKey.OP_READ, connection));
+            }
+        } catch (IOException e) {
+            System.err.println("Remote node " + address + " failed to accept: " + e);
+        }
+    }
+
+    /**
+     * Handle one frame; called on the I/O thread.
+     */
+    void receive(Connection connection, byte[] buffer, int start, int end) throws IOException {
+        WireCodec.Input in = new WireCodec.Input(codec, buffer, start, end);
+        try {
+            int kind = in.readByte();
+            switch (kind) {
+                case SEND:
+                    deliver(in.readString(), in.readObject());
+                    break;
+                case ASK:
+                    answer(connection, in.readVarLong(), in.readVarLong(), in.readString(), in.readObject());
+                    break;
+                case REPLY: {
+                    long id = in.readVarLong();
+                    complete(id, in.readObject(), null);
+                    break;
+                }
+                case FAILURE: {
+                    long id = in.readVarLong();
+                    complete(id, null, new RemoteException((String) in.readObject()));
+                    break;
+                }
+                case STOP:
+                    stopRegistered(in.readString());
+                    break;
+                default:
+                    throw new IOException("Unknown frame kind " + kind + " from " + connection.describe());
+            }
+        } catch (IllegalArgumentException | ClassCastException e) {
+            throw new IOException("Malformed frame from " + connection.describe() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void deliver(String name, Object message) {
+        Actor.ActorRef<Object> actor = registry.get(name);
+        if (actor == null || message == null) {
+            deadLetters.incrementAndGet();
+            return;
+        }
+        try {
+            // Never wait for room: a blocked I/O thread would stall every connection
+            if (!actor.sendNow(message)) {
+                deadLetters.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            // Stopped actor or full mailbox: nobody to tell
+            deadLetters.incrementAndGet();
+        }
+    }
+
+    private void stopRegistered(String name) {
+        Actor.ActorRef<Object> actor = registry.remove(name);
+        if (actor == null) {
+            deadLetters.incrementAndGet();
+            return;
+        }
+        try {
+            actor.stop();
+        } catch (RuntimeException e) {
+            // Its system is already shut down
+        }
+    }
+
+    private void answer(Connection connection, long id, long timeoutMillis, String name, Object message) {
+        Actor.ActorRef<Object> actor = registry.get(name);
+        if (actor == null) {
+            deadLetters.incrementAndGet();
+            fail(connection, id, "No actor named " + name + " on " + address);
+            return;
+        }
+        try {
+            actor.askNow(message, timeoutMillis)
+                .onSuccess(value -> reply(connection, id, value))
+                .onFailure(error -> fail(connection, id, describe(error)));
+        } catch (RuntimeException e) {
+            fail(connection, id, describe(e));
+        }
+    }
+
+    private void reply(Connection connection, long id, Object value) {
+        try {
+            connection.enqueue(REPLY, id, 0, null, value);
+        } catch (IllegalArgumentException e) {
+            fail(connection, id, describe(e));
+        } catch (IllegalStateException e) {
+            // The asking node went away
+        }
+    }
+
+    private void fail(Connection connection, long id, String message) {
+        try {
+            connection.enqueue(FAILURE, id, 0, null, message);
+        } catch (IllegalStateException e) {
+            // The asking node went away
+        }
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+    }
+
+    private void closeConnection(Connection connection, IOException cause) {
+        if (!connection.markClosed()) {
+            return;
+        }
+        if (connection.remote() != null) {
+            outbound.remove(connection.remote(), connection);
+        }
+        for (Map.Entry<Long, PendingAsk> entry : asks.entrySet()) {
+            if (entry.getValue().connection == connection) {
+                complete(entry.getKey(), null, new RemoteException("Connection lost: " + cause.getMessage(), cause));
+            }
+        }
+    }
+
+    private void shutdownConnections() {
+        IOException closed = new IOException("Remote node closed");
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                closeConnection((Connection) key.attachment(), closed);
+            }
+        }
+        for (Connection connection : outbound.values()) {
+            closeConnection(connection, closed);
+        }
+        for (Long id : asks.keySet()) {
+            complete(id, null, new RemoteException("Remote node closed"));
+        }
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    /**
+     * Stop the node and close all connections. Pending asks fail; messages
+     * not yet written are dropped. Local actors keep running.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
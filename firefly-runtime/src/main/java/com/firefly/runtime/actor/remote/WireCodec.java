@@ -0,0 +1,414 @@
+package com.firefly.runtime.actor.remote;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary encoding of remote messages.
+ *
+ * <p>Each value is a one-byte tag followed by its content. Integers use
+ * zig-zag varints, so small numbers take one or two bytes; strings are UTF-8
+ * with a varint length. Built in are null, booleans, the boxed primitives,
+ * strings, byte arrays, lists, sets and maps. Other message types must be
+ * {@link #register registered} with a {@link Serializer} under an id that
+ * both nodes agree on; there is no reflection and no class names on the
+ * wire.</p>
+ *
+ * <p>Registration is thread-safe, but should be done before messages of the
+ * type are sent.</p>
+ */
+public final class WireCodec {
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int FLOAT = 6;
+    private static final int STRING = 7;
+    private static final int BYTES = 8;
+    private static final int LIST = 9;
+    private static final int SET = 10;
+    private static final int MAP = 11;
+    private static final int SHORT = 12;
+    private static final int BYTE = 13;
+    private static final int CHAR = 14;
+    /** Registered types are written as tag {@code CUSTOM} and their varint id. */
+    private static final int CUSTOM = 15;
+
+    /**
+     * Writes and reads one registered message type.
+     */
+    public interface Serializer<T> {
+        void write(Output out, T value);
+
+        T read(Input in);
+    }
+
+    private static final class Registration {
+        final int id;
+        final Serializer<Object> serializer;
+
+        Registration(int id, Serializer<Object> serializer) {
+            this.id = id;
+            this.serializer = serializer;
+        }
+    }
+
+    private final Map<Class<?>, Registration> byType = new ConcurrentHashMap<>();
+    private final Map<Integer, Registration> byId = new ConcurrentHashMap<>();
+
+    /**
+     * Register a message type. The id must be the same on every node.
+     *
+     * @return This codec
+     * @throws IllegalArgumentException if the id or type is already registered
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> WireCodec register(int id, Class<T> type, Serializer<T> serializer) {
+        if (id < 0) {
+            throw new IllegalArgumentException("id must not be negative: " + id);
+        }
+        if (byId.containsKey(id) || byType.containsKey(type)) {
+            throw new IllegalArgumentException("Already registered: " + id + " / " + type.getName());
+        }
+        Registration registration = new Registration(id, (Serializer<Object>) serializer);
+        byType.put(type, registration);
+        byId.put(id, registration);
+        return this;
+    }
+
+    /**
+     * Encode a value.
+     *
+     * @throws IllegalArgumentException if it contains an unregistered type
+     */
+    public byte[] encode(Object value) {
+        Output out = new Output(this);
+        out.writeObject(value);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a value encoded by {@link #encode}.
+     */
+    public Object decode(byte[] bytes) {
+        return new Input(this, bytes, 0, bytes.length).readObject();
+    }
+
+    void write(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeVarLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeVarLong((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeVarLong((Character) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            out.writeBytes((byte[]) value);
+        } else {
+            Registration registration = byType.get(value.getClass());
+            if (registration != null) {
+                out.writeByte(CUSTOM);
+                out.writeVarLong(registration.id);
+                registration.serializer.write(out, value);
+            } else if (value instanceof List) {
+                out.writeByte(LIST);
+                writeElements(out, (List<?>) value);
+            } else if (value instanceof Set) {
+                out.writeByte(SET);
+                writeElements(out, (Set<?>) value);
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                out.writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(out, entry.getKey());
+                    write(out, entry.getValue());
+                }
+            } else {
+                throw new IllegalArgumentException("No wire serializer for " + value.getClass().getName());
+            }
+        }
+    }
+
+    private void writeElements(Output out, Collection<?> elements) {
+        out.writeVarLong(elements.size());
+        for (Object element : elements) {
+            write(out, element);
+        }
+    }
+
+    Object read(Input in) {
+        int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return (int) in.readVarLong();
+            case LONG:
+                return in.readVarLong();
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case STRING:
+                return in.readString();
+            case BYTES:
+                return in.readBytes();
+            case SHORT:
+                return (short) in.readVarLong();
+            case BYTE:
+                return (byte) in.readByte();
+            case CHAR:
+                return (char) in.readVarLong();
+            case LIST: {
+                int size = in.readSize();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(in));
+                }
+                return list;
+            }
+            case SET: {
+                int size = in.readSize();
+                Set<Object> set = new LinkedHashSet<>(capacity(size));
+                for (int i = 0; i < size; i++) {
+                    set.add(read(in));
+                }
+                return set;
+            }
+            case MAP: {
+                int size = in.readSize();
+                Map<Object, Object> map = new LinkedHashMap<>(capacity(size));
+                for (int i = 0; i < size; i++) {
+                    Object key = read(in);
+                    map.put(key, read(in));
+                }
+                return map;
+            }
+            case CUSTOM: {
+                long id = in.readVarLong();
+                Registration registration = byId.get((int) id);
+                if (registration == null) {
+                    throw new IllegalArgumentException("Unknown wire type id: " + id);
+                }
+                return registration.serializer.read(in);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown wire tag: " + tag);
+        }
+    }
+
+    private static int capacity(int size) {
+        return (int) Math.min(1 << 30, size * 4L / 3 + 1);
+    }
+
+    /**
+     * Growable output buffer.
+     */
+    public static final class Output {
+        private final WireCodec codec;
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        Output(WireCodec codec) {
+            this.codec = codec;
+        }
+
+        /**
+         * Write any value the codec can encode, such as a field of a
+         * registered type.
+         */
+        public void writeObject(Object value) {
+            codec.write(this, value);
+        }
+
+        public void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        public void writeInt(int value) {
+            ensure(4);
+            putInt(size, value);
+            size += 4;
+        }
+
+        public void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        /**
+         * Write a zig-zag varint: one byte for -64..63.
+         */
+        public void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+
+        public void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public void writeBytes(byte[] value) {
+            writeVarLong(value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, buffer, size, value.length);
+            size += value.length;
+        }
+
+        void putInt(int at, int value) {
+            buffer[at] = (byte) (value >>> 24);
+            buffer[at + 1] = (byte) (value >>> 16);
+            buffer[at + 2] = (byte) (value >>> 8);
+            buffer[at + 3] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return buffer;
+        }
+
+        void truncate(int newSize) {
+            size = newSize;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * Input over an encoded frame.
+     */
+    public static final class Input {
+        private final WireCodec codec;
+        private final byte[] buffer;
+        private int position;
+        private final int limit;
+
+        Input(WireCodec codec, byte[] buffer, int offset, int limit) {
+            this.codec = codec;
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        /**
+         * Read a value written with {@link Output#writeObject}.
+         */
+        public Object readObject() {
+            return codec.read(this);
+        }
+
+        public int readByte() {
+            require(1);
+            return buffer[position++];
+        }
+
+        public int readInt() {
+            require(4);
+            int value = ((buffer[position] & 0xFF) << 24) | ((buffer[position + 1] & 0xFF) << 16)
+                | ((buffer[position + 2] & 0xFF) << 8) | (buffer[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        public long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        public long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        public String readString() {
+            int length = readSize();
+            require(length);
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        public byte[] readBytes() {
+            int length = readSize();
+            require(length);
+            byte[] value = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return value;
+        }
+
+        int readSize() {
+            long size = readVarLong();
+            if (size < 0 || size > limit - position) {
+                throw new IllegalArgumentException("Malformed length: " + size);
+            }
+            return (int) size;
+        }
+
+        private void require(int bytes) {
+            if (bytes > limit - position) {
+                throw new IllegalArgumentException("Truncated frame");
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.firefly.runtime.collections;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * Common base of the persistent vectors: {@link PersistentVector} and the
+ * unboxed {@link IntVector}, {@link LongVector} and {@link DoubleVector}.
+ *
+ * <p>The compiler builds an unboxed vector for a numeric array literal, but a
+ * parameter, field or return value of type {@code [T]} can hold any of them,
+ * so compiled code that does not know which one it has reads it through this
+ * class. The primitive vectors return boxed elements from {@link #get(int)}
+ * and have unboxed accessors of their own.</p>
+ *
+ * <p>Vectors of any kind are equal when they hold equal elements in the same
+ * order, and hash like {@link java.util.List}, so {@code IntVector.of(1, 2)}
+ * equals {@code PersistentVector.of(1, 2)}.</p>
+ *
+ * @param <T> The type of elements in the vector
+ */
+public abstract class AbstractVector<T> implements Iterable<T> {
+
+    AbstractVector() {
+        // Only the vectors of this package extend it
+    }
+
+    /**
+     * Returns the number of elements in this vector.
+     *
+     * @return The size of the vector
+     */
+    public abstract int size();
+
+    /**
+     * Checks if this vector is empty.
+     *
+     * @return true if the vector has no elements
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets the element at the specified index.
+     *
+     * @param index The index (0-based)
+     * @return The element at the index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public abstract T get(int index);
+
+    /**
+     * Compares the elements of two vectors in order, whatever their kind.
+     */
+    final boolean elementsEqual(AbstractVector<?> other) {
+        if (size() != other.size()) {
+            return false;
+        }
+        Iterator<?> otherElements = other.iterator();
+        for (T element : this) {
+            if (!Objects.equals(element, otherElements.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || obj instanceof AbstractVector<?> other && elementsEqual(other);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (T element : this) {
+            hash = 31 * hash + Objects.hashCode(element);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder("[");
+        boolean first = true;
+        for (T element : this) {
+            if (!first) sb.append(", ");
+            first = false;
+            sb.append(element);
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
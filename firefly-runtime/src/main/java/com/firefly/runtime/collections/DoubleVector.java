@@ -0,0 +1,297 @@
+package com.firefly.runtime.collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleFunction;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Immutable persistent vector of unboxed {@code double} values.
+ *
+ * <p>DoubleVector has the same shape as {@link PersistentVector}: a 32-way trie
+ * plus a tail buffer holding the last (up to) 32 elements. The difference is
+ * that leaves are {@code double[]} arrays, so elements are never boxed on write
+ * and {@link #getDouble(int)} returns a primitive without going through
+ * {@code Object}. The compiler emits a DoubleVector for array literals whose
+ * elements are all {@code Float}, or mix {@code Float} with integer types;
+ * code that only knows it has some {@link AbstractVector} reads boxed
+ * elements with {@link #get(int)}.</p>
+ *
+ * <h2>Performance Characteristics</h2>
+ * <table border="1">
+ *   <tr><th>Operation</th><th>Time Complexity</th><th>Notes</th></tr>
+ *   <tr><td>getDouble(index)</td><td>O(log32 n) ≈ O(1)</td><td>No unboxing</td></tr>
+ *   <tr><td>set(index, value)</td><td>O(log32 n) ≈ O(1)</td><td>Creates new vector</td></tr>
+ *   <tr><td>append(value)</td><td>O(1) amortised</td><td>No boxing</td></tr>
+ *   <tr><td>reduce()</td><td>O(n)</td><td>Walks leaves directly</td></tr>
+ *   <tr><td>size()</td><td>O(1)</td><td>Cached</td></tr>
+ * </table>
+ *
+ * <h2>Example Usage</h2>
+ * <pre>{@code
+ * DoubleVector weights = DoubleVector.of(0.5, 1.5, 2.0);
+ * double first = weights.getDouble(0);                  // 0.5
+ * DoubleVector more = weights.append(1.0).set(0, 0.0);  // [0.0, 1.5, 2.0, 1.0]
+ * double total = more.reduce(0.0, Double::sum);         // 4.5
+ * PersistentVector<String> labels = more.mapToObj(d -> d + "kg");
+ * }</pre>
+ */
+public final class DoubleVector extends PrimitiveVector<Double, double[]> {
+
+    private static final DoubleVector EMPTY =
+        new DoubleVector(0, BITS, new Object[BRANCHING_FACTOR], new double[0]);
+
+    /**
+     * Private constructor.
+     */
+    private DoubleVector(int size, int shift, Object[] root, double[] tail) {
+        super(size, shift, root, tail);
+    }
+
+    @Override
+    DoubleVector create(int size, int shift, Object[] root, double[] tail) {
+        return new DoubleVector(size, shift, root, tail);
+    }
+
+    @Override
+    double[] newLeaf(int length) {
+        return new double[length];
+    }
+
+    @Override
+    boolean leafEquals(double[] left, double[] right, int length) {
+        return Arrays.equals(left, 0, length, right, 0, length);
+    }
+
+    @Override
+    int leafHash(int hash, double[] leaf, int length) {
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + Double.hashCode(leaf[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns an empty double vector.
+     *
+     * @return An empty vector
+     */
+    public static DoubleVector empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a double vector from the given values.
+     *
+     * <p>The values are copied into the trie 32 at a time, so building a vector
+     * this way costs one leaf copy per 32 elements.</p>
+     *
+     * @param values The values to include
+     * @return A new vector containing the values
+     */
+    public static DoubleVector of(double... values) {
+        return (DoubleVector) EMPTY.withValues(values, values.length);
+    }
+
+    /**
+     * Returns the 32-element chunk holding the element at the given index.
+     *
+     * <p>The chunk covers indices {@code index & ~31} up to (at most) 31 past it,
+     * and its length is the number of elements it holds, so a loop can walk the
+     * vector one chunk at a time with plain array reads. Compiled {@code for}
+     * loops use this. The array is shared with the vector and must not be
+     * modified.</p>
+     *
+     * @param index Any index inside the wanted chunk
+     * @return The chunk's backing array
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public double[] chunkFor(int index) {
+        checkIndex(index);
+        return leafFor(index);
+    }
+
+    /**
+     * Gets the element at the specified index without boxing.
+     *
+     * @param index The index (0-based)
+     * @return The element at the index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public double getDouble(int index) {
+        checkIndex(index);
+        return leafFor(index)[index & MASK];
+    }
+
+    /**
+     * Gets the element at the specified index, boxed.
+     *
+     * @param index The index (0-based)
+     * @return The element at the index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    /**
+     * Returns a new vector with the element at the specified index replaced.
+     *
+     * @param index The index to update
+     * @param value The new value
+     * @return A new vector with the updated element
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public DoubleVector set(int index, double value) {
+        checkIndex(index);
+        double[] leaf = copyOfLeaf(index);
+        leaf[index & MASK] = value;
+        return (DoubleVector) withLeaf(index, leaf);
+    }
+
+    /**
+     * Returns a new vector with the given value appended to the end.
+     *
+     * @param value The value to append
+     * @return A new vector with the value added
+     */
+    public DoubleVector append(double value) {
+        double[] leaf = appendLeaf();
+        leaf[leaf.length - 1] = value;
+        return (DoubleVector) withAppended(leaf);
+    }
+
+    /**
+     * Returns a new vector with every element transformed by the given function.
+     *
+     * @param mapper The transformation function
+     * @return A new vector with transformed elements
+     */
+    public DoubleVector map(DoubleUnaryOperator mapper) {
+        Objects.requireNonNull(mapper, "mapper cannot be null");
+        double[] values = toArray();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = mapper.applyAsDouble(values[i]);
+        }
+        return of(values);
+    }
+
+    /**
+     * Returns a persistent vector of the results of applying the given function
+     * to every element.
+     *
+     * @param <R> The type of elements in the result vector
+     * @param mapper The transformation function
+     * @return A new vector with transformed elements
+     */
+    public <R> PersistentVector<R> mapToObj(DoubleFunction<? extends R> mapper) {
+        Objects.requireNonNull(mapper, "mapper cannot be null");
+        PersistentVector.Transient<R> result = PersistentVector.<R>empty().asTransient();
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            double[] leaf = leafFor(base);
+            int length = leafLength(base);
+            for (int i = 0; i < length; i++) {
+                result.append(mapper.apply(leaf[i]));
+            }
+        }
+        return result.persistent();
+    }
+
+    /**
+     * Returns a new vector containing only elements that match the predicate.
+     *
+     * @param predicate The filter predicate
+     * @return A new vector with matching elements
+     */
+    public DoubleVector filter(DoublePredicate predicate) {
+        Objects.requireNonNull(predicate, "predicate cannot be null");
+        double[] kept = new double[size];
+        int count = 0;
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            double[] leaf = leafFor(base);
+            int length = leafLength(base);
+            for (int i = 0; i < length; i++) {
+                if (predicate.test(leaf[i])) {
+                    kept[count++] = leaf[i];
+                }
+            }
+        }
+        return count == size ? this : (DoubleVector) EMPTY.withValues(kept, count);
+    }
+
+    /**
+     * Reduces the elements of this vector to a single value without boxing.
+     *
+     * <p>Example: {@code vec.reduce(0.0, Double::sum)} sums all elements.</p>
+     *
+     * @param identity The initial value
+     * @param accumulator The combining function
+     * @return The final accumulated value
+     */
+    public double reduce(double identity, DoubleBinaryOperator accumulator) {
+        Objects.requireNonNull(accumulator, "accumulator cannot be null");
+        double result = identity;
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            double[] leaf = leafFor(base);
+            int length = leafLength(base);
+            for (int i = 0; i < length; i++) {
+                result = accumulator.applyAsDouble(result, leaf[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the elements of this vector into a new array.
+     *
+     * @return An array holding the elements in order
+     */
+    public double[] toArray() {
+        return copyValues();
+    }
+
+    /**
+     * Returns a boxed persistent vector with the same elements.
+     *
+     * @return A PersistentVector of the elements
+     */
+    public PersistentVector<Double> boxed() {
+        return mapToObj(Double::valueOf);
+    }
+
+    /**
+     * Returns an iterator over the elements in this vector.
+     *
+     * <p>Use {@link PrimitiveIterator.OfDouble#nextDouble()} to read elements without boxing.</p>
+     *
+     * @return A primitive iterator
+     */
+    @Override
+    public PrimitiveIterator.OfDouble iterator() {
+        return new PrimitiveIterator.OfDouble() {
+            private int index = 0;
+            private double[] leaf;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public double nextDouble() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if ((index & MASK) == 0) {
+                    leaf = leafFor(index);
+                }
+                return leaf[index++ & MASK];
+            }
+        };
+    }
+}
@@ -0,0 +1,1140 @@
+package com.firefly.runtime.collections;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Node of the hash array mapped trie (HAMT) that backs {@link PersistentHashMap}
+ * and {@link PersistentHashSet}.
+ *
+ * <p>Nodes use the compressed CHAMP layout: a {@code dataMap} bitmap marks the
+ * slots holding an inline key/value pair and a {@code nodeMap} bitmap marks the
+ * slots holding a sub-trie. Inline entries are stored first in the content
+ * array, sub-tries last. A sub-trie is never allowed to hold a single entry, so
+ * two tries with the same contents always have the same shape. This keeps the
+ * iteration order deterministic and lets bulk operations compare subtrees by
+ * reference.</p>
+ *
+ * <p>Each inline entry caches the hash code of its key, so growing or splitting
+ * a node never calls {@code hashCode()} again, and each node caches the number
+ * of entries below it. Frozen nodes also cache their {@link #contentHash()}
+ * once it has been asked for, so rehashing a new version of a trie only visits
+ * the nodes it does not share with the old one. Keys whose 32-bit hash codes are identical end up in a
+ * {@link Collision} node below the last bitmap level.</p>
+ *
+ * <p>Nodes are immutable once published. Every update copies only the nodes on
+ * the path from the root to the changed slot (O(log32 n)). The exception is a
+ * node created under a transient's edit token (see {@link Transients}): while
+ * that token is live, updates reaching the node mutate it in place. Operations
+ * take the token as their first argument; persistent callers pass
+ * {@code null}.</p>
+ */
+abstract class HashTrieNode {
+
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+    static final int HASH_CODE_LENGTH = 32;
+
+    /** Upper bound on trie depth: seven bitmap levels plus a collision level. */
+    static final int MAX_DEPTH = 8;
+
+    static final int SIZE_EMPTY = 0;
+    static final int SIZE_ONE = 1;
+    static final int SIZE_MORE_THAN_ONE = 2;
+
+    static final HashTrieNode EMPTY = new BitmapIndexed(null, 0, 0, new Object[0], new int[0], 0);
+
+    private static final int[] NO_HASHES = new int[0];
+
+    /** Sentinel returned by {@link #find} lookups for absent keys. */
+    static final Object NOT_FOUND = new Object();
+
+    /**
+     * Records the effect of a single put or remove on the trie.
+     */
+    static final class Change {
+        private static final Object ADDED = new Object();
+
+        boolean modified;
+        boolean replaced;
+        Object oldValue;
+
+        void added() {
+            modified = true;
+            oldValue = ADDED;
+        }
+
+        void replaced(Object previous) {
+            modified = true;
+            replaced = true;
+            oldValue = previous;
+        }
+
+        void removed(Object previous) {
+            modified = true;
+            oldValue = previous;
+        }
+
+        /**
+         * Returns how the number of entries changed: +1, 0 or -1.
+         */
+        int sizeDelta() {
+            if (!modified || replaced) {
+                return 0;
+            }
+            return oldValue == ADDED ? 1 : -1;
+        }
+
+        Change reset() {
+            modified = false;
+            replaced = false;
+            oldValue = null;
+            return this;
+        }
+    }
+
+    static int hash(Object key) {
+        return Objects.hashCode(key);
+    }
+
+    static int mask(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    static int bitpos(int mask) {
+        return 1 << mask;
+    }
+
+    abstract Object find(Object key, int hash, int shift, Object notFound);
+
+    abstract HashTrieNode put(AtomicReference<Thread> edit, Object key, Object value,
+                              int hash, int shift, Change change);
+
+    abstract HashTrieNode remove(AtomicReference<Thread> edit, Object key, int hash, int shift, Change change);
+
+    abstract <R> HashTrieNode mapValues(BiFunction<Object, Object, R> mapper);
+
+    /**
+     * Returns the number of entries stored in this node and all of its sub-tries.
+     */
+    abstract int size();
+
+    /**
+     * Returns the sum of {@code keyHash ^ valueHash} over the entries below this
+     * node: the {@link java.util.Map#hashCode()} of the entries, and the
+     * {@link java.util.Set#hashCode()} of the keys when the values are null.
+     */
+    abstract int contentHash();
+
+    abstract int dataArity();
+
+    abstract int nodeArity();
+
+    abstract Object getKey(int index);
+
+    abstract Object getValue(int index);
+
+    abstract int getHash(int index);
+
+    abstract HashTrieNode getNode(int index);
+
+    /**
+     * Returns {@link #SIZE_EMPTY}, {@link #SIZE_ONE} or {@link #SIZE_MORE_THAN_ONE}.
+     */
+    final int sizePredicate() {
+        int size = size();
+        return size == 0 ? SIZE_EMPTY : (size == 1 ? SIZE_ONE : SIZE_MORE_THAN_ONE);
+    }
+
+    /**
+     * Builds the smallest sub-trie holding two entries whose keys differ.
+     */
+    static HashTrieNode mergeTwo(AtomicReference<Thread> edit, Object k0, Object v0, int h0,
+                                 Object k1, Object v1, int h1, int shift) {
+        if (shift >= HASH_CODE_LENGTH) {
+            return new Collision(edit, h0, new Object[] { k0, v0, k1, v1 });
+        }
+        int m0 = mask(h0, shift);
+        int m1 = mask(h1, shift);
+        if (m0 != m1) {
+            int dataMap = bitpos(m0) | bitpos(m1);
+            if (m0 < m1) {
+                return new BitmapIndexed(edit, dataMap, 0, new Object[] { k0, v0, k1, v1 }, new int[] { h0, h1 }, 2);
+            }
+            return new BitmapIndexed(edit, dataMap, 0, new Object[] { k1, v1, k0, v0 }, new int[] { h1, h0 }, 2);
+        }
+        HashTrieNode sub = mergeTwo(edit, k0, v0, h0, k1, v1, h1, shift + BITS);
+        return new BitmapIndexed(edit, 0, bitpos(m0), new Object[] { sub }, NO_HASHES, 2);
+    }
+
+    /**
+     * Returns a trie holding the keys of both tries. When a key is present in
+     * both, the entry of {@code left} is kept.
+     *
+     * <p>Both tries are walked slot by slot. Subtrees that are the same object
+     * are returned as they are, and a node whose slots all come from one side is
+     * that side's node, so merging two versions of the same trie only copies
+     * the paths where they differ.</p>
+     */
+    static HashTrieNode union(HashTrieNode left, HashTrieNode right, int shift) {
+        if (left == right || right.size() == 0) {
+            return left;
+        }
+        if (left.size() == 0) {
+            return right;
+        }
+        if (left instanceof Collision || right instanceof Collision) {
+            HashTrieNode result = left;
+            Change change = new Change();
+            for (int i = 0; i < right.dataArity(); i++) {
+                Object key = right.getKey(i);
+                if (left.find(key, right.getHash(i), shift, NOT_FOUND) == NOT_FOUND) {
+                    result = result.put(null, key, right.getValue(i), right.getHash(i), shift, change.reset());
+                }
+            }
+            return result;
+        }
+        BitmapIndexed a = (BitmapIndexed) left;
+        BitmapIndexed b = (BitmapIndexed) right;
+        SlotBuffer buffer = new SlotBuffer();
+        boolean sameAsLeft = true;
+        boolean sameAsRight = true;
+        int bits = a.dataMap | a.nodeMap | b.dataMap | b.nodeMap;
+        for (int remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            int bit = Integer.lowestOneBit(remaining);
+            if ((a.dataMap & bit) != 0) {
+                int ai = a.dataIndex(bit);
+                Object key = a.getKey(ai);
+                int hash = a.getHash(ai);
+                if ((b.dataMap & bit) != 0) {
+                    int bi = b.dataIndex(bit);
+                    if (b.getHash(bi) == hash && Objects.equals(b.getKey(bi), key)) {
+                        buffer.addEntry(bit, key, a.getValue(ai), hash);
+                        sameAsRight &= a.getValue(ai) == b.getValue(bi);
+                    } else {
+                        buffer.addNode(bit, mergeTwo(null, key, a.getValue(ai), hash,
+                                                     b.getKey(bi), b.getValue(bi), b.getHash(bi), shift + BITS));
+                        sameAsLeft = false;
+                        sameAsRight = false;
+                    }
+                } else if ((b.nodeMap & bit) != 0) {
+                    HashTrieNode bn = b.nodeAt(bit);
+                    HashTrieNode merged = bn.put(null, key, a.getValue(ai), hash, shift + BITS, new Change());
+                    buffer.addNode(bit, merged);
+                    sameAsLeft = false;
+                    sameAsRight &= merged == bn;
+                } else {
+                    buffer.addEntry(bit, key, a.getValue(ai), hash);
+                    sameAsRight = false;
+                }
+            } else if ((a.nodeMap & bit) != 0) {
+                HashTrieNode an = a.nodeAt(bit);
+                if ((b.dataMap & bit) != 0) {
+                    int bi = b.dataIndex(bit);
+                    Object key = b.getKey(bi);
+                    int hash = b.getHash(bi);
+                    HashTrieNode merged = an.find(key, hash, shift + BITS, NOT_FOUND) == NOT_FOUND
+                        ? an.put(null, key, b.getValue(bi), hash, shift + BITS, new Change())
+                        : an;
+                    buffer.addNode(bit, merged);
+                    sameAsLeft &= merged == an;
+                    sameAsRight = false;
+                } else if ((b.nodeMap & bit) != 0) {
+                    HashTrieNode bn = b.nodeAt(bit);
+                    HashTrieNode merged = union(an, bn, shift + BITS);
+                    buffer.addNode(bit, merged);
+                    sameAsLeft &= merged == an;
+                    sameAsRight &= merged == bn;
+                } else {
+                    buffer.addNode(bit, an);
+                    sameAsRight = false;
+                }
+            } else {
+                if ((b.dataMap & bit) != 0) {
+                    int bi = b.dataIndex(bit);
+                    buffer.addEntry(bit, b.getKey(bi), b.getValue(bi), b.getHash(bi));
+                } else {
+                    buffer.addNode(bit, b.nodeAt(bit));
+                }
+                sameAsLeft = false;
+            }
+        }
+        if (sameAsLeft) {
+            return left;
+        }
+        if (sameAsRight) {
+            return right;
+        }
+        return buffer.build();
+    }
+
+    /**
+     * Returns a trie holding the keys present in both tries, with the entries
+     * of {@code left}. Unchanged subtrees of {@code left} are reused.
+     */
+    static HashTrieNode intersection(HashTrieNode left, HashTrieNode right, int shift) {
+        if (left == right) {
+            return left;
+        }
+        if (left.size() == 0 || right.size() == 0) {
+            return EMPTY;
+        }
+        if (left instanceof Collision || right instanceof Collision) {
+            return retain(left, right, shift, true);
+        }
+        BitmapIndexed a = (BitmapIndexed) left;
+        BitmapIndexed b = (BitmapIndexed) right;
+        SlotBuffer buffer = new SlotBuffer();
+        boolean sameAsLeft = true;
+        for (int remaining = a.dataMap | a.nodeMap; remaining != 0; remaining &= remaining - 1) {
+            int bit = Integer.lowestOneBit(remaining);
+            if ((a.dataMap & bit) != 0) {
+                int ai = a.dataIndex(bit);
+                Object key = a.getKey(ai);
+                int hash = a.getHash(ai);
+                if (b.find(key, hash, shift, NOT_FOUND) != NOT_FOUND) {
+                    buffer.addEntry(bit, key, a.getValue(ai), hash);
+                } else {
+                    sameAsLeft = false;
+                }
+            } else {
+                HashTrieNode an = a.nodeAt(bit);
+                HashTrieNode result;
+                if ((b.dataMap & bit) != 0) {
+                    int bi = b.dataIndex(bit);
+                    Object key = b.getKey(bi);
+                    int hash = b.getHash(bi);
+                    Object value = an.find(key, hash, shift + BITS, NOT_FOUND);
+                    result = value == NOT_FOUND
+                        ? EMPTY
+                        : new BitmapIndexed(null, bit, 0, new Object[] { key, value }, new int[] { hash }, 1);
+                } else if ((b.nodeMap & bit) != 0) {
+                    result = intersection(an, b.nodeAt(bit), shift + BITS);
+                } else {
+                    result = EMPTY;
+                }
+                buffer.addResult(bit, result);
+                sameAsLeft &= result == an;
+            }
+        }
+        return sameAsLeft ? left : buffer.build();
+    }
+
+    /**
+     * Returns a trie holding the keys of {@code left} that are not present in
+     * {@code right}. Unchanged subtrees of {@code left} are reused.
+     */
+    static HashTrieNode difference(HashTrieNode left, HashTrieNode right, int shift) {
+        if (left == right) {
+            return EMPTY;
+        }
+        if (left.size() == 0 || right.size() == 0) {
+            return left;
+        }
+        if (left instanceof Collision || right instanceof Collision) {
+            return retain(left, right, shift, false);
+        }
+        BitmapIndexed a = (BitmapIndexed) left;
+        BitmapIndexed b = (BitmapIndexed) right;
+        SlotBuffer buffer = new SlotBuffer();
+        boolean sameAsLeft = true;
+        for (int remaining = a.dataMap | a.nodeMap; remaining != 0; remaining &= remaining - 1) {
+            int bit = Integer.lowestOneBit(remaining);
+            if ((a.dataMap & bit) != 0) {
+                int ai = a.dataIndex(bit);
+                Object key = a.getKey(ai);
+                int hash = a.getHash(ai);
+                if (b.find(key, hash, shift, NOT_FOUND) == NOT_FOUND) {
+                    buffer.addEntry(bit, key, a.getValue(ai), hash);
+                } else {
+                    sameAsLeft = false;
+                }
+            } else {
+                HashTrieNode an = a.nodeAt(bit);
+                HashTrieNode result;
+                if ((b.dataMap & bit) != 0) {
+                    int bi = b.dataIndex(bit);
+                    result = an.remove(null, b.getKey(bi), b.getHash(bi), shift + BITS, new Change());
+                } else if ((b.nodeMap & bit) != 0) {
+                    result = difference(an, b.nodeAt(bit), shift + BITS);
+                } else {
+                    result = an;
+                }
+                buffer.addResult(bit, result);
+                sameAsLeft &= result == an;
+            }
+        }
+        return sameAsLeft ? left : buffer.build();
+    }
+
+    /**
+     * Keeps the entries of {@code left} whose presence in {@code right} equals
+     * {@code present}; used where collision nodes make slot-wise walking moot.
+     */
+    private static HashTrieNode retain(HashTrieNode left, HashTrieNode right, int shift, boolean present) {
+        HashTrieNode result = left;
+        Change change = new Change();
+        for (int i = 0; i < left.dataArity(); i++) {
+            Object key = left.getKey(i);
+            boolean found = right.find(key, left.getHash(i), shift, NOT_FOUND) != NOT_FOUND;
+            if (found != present) {
+                result = result.remove(null, key, left.getHash(i), shift, change.reset());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether two tries hold the same keys mapped to equal values.
+     *
+     * <p>Because the layout is canonical, equal tries have the same shape, so
+     * the walk compares slot by slot. It skips subtrees that are the same
+     * object and stops at the first subtree whose size or cached content hash
+     * differs, so comparing two versions of one trie costs time in proportion
+     * to their differences.</p>
+     */
+    static boolean equivalent(HashTrieNode left, HashTrieNode right) {
+        if (left == right) {
+            return true;
+        }
+        if (left.size() != right.size() || left.cachedHashDiffers(right)) {
+            return false;
+        }
+        if (left instanceof Collision || right instanceof Collision) {
+            if (!(left instanceof Collision) || !(right instanceof Collision)) {
+                return false;
+            }
+            for (int i = 0; i < left.dataArity(); i++) {
+                Object value = right.find(left.getKey(i), left.getHash(i), HASH_CODE_LENGTH, NOT_FOUND);
+                if (value == NOT_FOUND || !Objects.equals(value, left.getValue(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        BitmapIndexed a = (BitmapIndexed) left;
+        BitmapIndexed b = (BitmapIndexed) right;
+        if (a.dataMap != b.dataMap || a.nodeMap != b.nodeMap) {
+            return false;
+        }
+        for (int i = 0; i < a.dataArity(); i++) {
+            if (a.hashes[i] != b.hashes[i]
+                    || !Objects.equals(a.getKey(i), b.getKey(i))
+                    || !Objects.equals(a.getValue(i), b.getValue(i))) {
+                return false;
+            }
+        }
+        for (int i = 0; i < a.nodeArity(); i++) {
+            if (!equivalent(a.getNode(i), b.getNode(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if both nodes have a cached content hash and they differ.
+     */
+    boolean cachedHashDiffers(HashTrieNode other) {
+        return false;
+    }
+
+    /**
+     * Collects the slots of a node being assembled by a bulk operation, in
+     * ascending bit order, and builds the canonical node for them.
+     */
+    private static final class SlotBuffer {
+        private final Object[] entries = new Object[2 * WIDTH];
+        private final int[] hashes = new int[WIDTH];
+        private final HashTrieNode[] nodes = new HashTrieNode[WIDTH];
+        private int dataMap;
+        private int nodeMap;
+        private int dataCount;
+        private int nodeCount;
+        private int size;
+
+        void addEntry(int bit, Object key, Object value, int hash) {
+            entries[2 * dataCount] = key;
+            entries[2 * dataCount + 1] = value;
+            hashes[dataCount++] = hash;
+            dataMap |= bit;
+            size++;
+        }
+
+        void addNode(int bit, HashTrieNode node) {
+            nodes[nodeCount++] = node;
+            nodeMap |= bit;
+            size += node.size();
+        }
+
+        /**
+         * Adds the result of a nested operation, dropping empty results and
+         * inlining single entries to keep the trie canonical.
+         */
+        void addResult(int bit, HashTrieNode node) {
+            int sizePredicate = node.sizePredicate();
+            if (sizePredicate == SIZE_ONE) {
+                addEntry(bit, node.getKey(0), node.getValue(0), node.getHash(0));
+            } else if (sizePredicate == SIZE_MORE_THAN_ONE) {
+                addNode(bit, node);
+            }
+        }
+
+        HashTrieNode build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            Object[] content = new Object[2 * dataCount + nodeCount];
+            System.arraycopy(entries, 0, content, 0, 2 * dataCount);
+            for (int i = 0; i < nodeCount; i++) {
+                content[content.length - 1 - i] = nodes[i];
+            }
+            int[] dataHashes = dataCount == 0 ? NO_HASHES : Arrays.copyOf(hashes, dataCount);
+            return new BitmapIndexed(null, dataMap, nodeMap, content, dataHashes, size);
+        }
+    }
+
+    /**
+     * Bitmap-indexed branch node holding up to 32 slots.
+     *
+     * <p>Fields are only reassigned while the node is owned by a live transient
+     * edit token; otherwise the node is treated as immutable.</p>
+     */
+    static final class BitmapIndexed extends HashTrieNode {
+        final AtomicReference<Thread> edit;
+        int dataMap;
+        int nodeMap;
+        Object[] content;
+        int[] hashes;
+        int size;
+        /** Cached {@link #contentHash()}, or 0 if not computed yet. */
+        private int contentHash;
+
+        BitmapIndexed(AtomicReference<Thread> edit, int dataMap, int nodeMap,
+                      Object[] content, int[] hashes, int size) {
+            this.edit = edit;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+            this.hashes = hashes;
+            this.size = size;
+        }
+
+        private boolean isAllowedToEdit(AtomicReference<Thread> edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        int dataIndex(int bit) {
+            return Integer.bitCount(dataMap & (bit - 1));
+        }
+
+        int nodeIndex(int bit) {
+            return Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        HashTrieNode nodeAt(int bit) {
+            return (HashTrieNode) content[content.length - 1 - nodeIndex(bit)];
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift, Object notFound) {
+            int bit = bitpos(mask(hash, shift));
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                if (hashes[index] == hash && Objects.equals(content[2 * index], key)) {
+                    return content[2 * index + 1];
+                }
+                return notFound;
+            }
+            if ((nodeMap & bit) != 0) {
+                return nodeAt(bit).find(key, hash, shift + BITS, notFound);
+            }
+            return notFound;
+        }
+
+        @Override
+        HashTrieNode put(AtomicReference<Thread> edit, Object key, Object value,
+                         int hash, int shift, Change change) {
+            int bit = bitpos(mask(hash, shift));
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                Object currentKey = content[2 * index];
+                if (hashes[index] == hash && Objects.equals(currentKey, key)) {
+                    Object currentValue = content[2 * index + 1];
+                    if (currentValue == value) {
+                        return this;
+                    }
+                    change.replaced(currentValue);
+                    return copyAndSetValue(edit, index, value);
+                }
+                HashTrieNode sub = mergeTwo(edit, currentKey, content[2 * index + 1], hashes[index],
+                                            key, value, hash, shift + BITS);
+                change.added();
+                return copyAndMigrateFromInlineToNode(edit, bit, sub);
+            }
+            if ((nodeMap & bit) != 0) {
+                HashTrieNode sub = nodeAt(bit);
+                HashTrieNode newSub = sub.put(edit, key, value, hash, shift + BITS, change);
+                if (!change.modified) {
+                    return this;
+                }
+                return copyAndSetNode(edit, bit, newSub, size + change.sizeDelta());
+            }
+            change.added();
+            return copyAndInsertValue(edit, bit, key, value, hash);
+        }
+
+        @Override
+        HashTrieNode remove(AtomicReference<Thread> edit, Object key, int hash, int shift, Change change) {
+            int bit = bitpos(mask(hash, shift));
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                if (hashes[index] == hash && Objects.equals(content[2 * index], key)) {
+                    change.removed(content[2 * index + 1]);
+                    return copyAndRemoveValue(edit, bit);
+                }
+                return this;
+            }
+            if ((nodeMap & bit) != 0) {
+                HashTrieNode sub = nodeAt(bit);
+                HashTrieNode newSub = sub.remove(edit, key, hash, shift + BITS, change);
+                if (!change.modified) {
+                    return this;
+                }
+                if (newSub.sizePredicate() == SIZE_ONE) {
+                    // Keep the trie canonical: single entries are always stored inline
+                    return copyAndMigrateFromNodeToInline(edit, bit, newSub);
+                }
+                return copyAndSetNode(edit, bit, newSub, size - 1);
+            }
+            return this;
+        }
+
+        @Override
+        <R> HashTrieNode mapValues(BiFunction<Object, Object, R> mapper) {
+            Object[] newContent = new Object[content.length];
+            int data = dataArity();
+            for (int i = 0; i < data; i++) {
+                newContent[2 * i] = content[2 * i];
+                newContent[2 * i + 1] = mapper.apply(content[2 * i], content[2 * i + 1]);
+            }
+            for (int i = 2 * data; i < content.length; i++) {
+                newContent[i] = ((HashTrieNode) content[i]).mapValues(mapper);
+            }
+            return new BitmapIndexed(null, dataMap, nodeMap, newContent, hashes, size);
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        int contentHash() {
+            int hash = contentHash;
+            if (hash == 0) {
+                for (int i = 0; i < hashes.length; i++) {
+                    hash += hashes[i] ^ Objects.hashCode(content[2 * i + 1]);
+                }
+                for (int i = 0; i < nodeArity(); i++) {
+                    hash += getNode(i).contentHash();
+                }
+                // A node that a live transient may still edit in place is not cached
+                if (edit == null || edit.get() == null) {
+                    contentHash = hash;
+                }
+            }
+            return hash;
+        }
+
+        @Override
+        boolean cachedHashDiffers(HashTrieNode other) {
+            return other instanceof BitmapIndexed node
+                && contentHash != 0 && node.contentHash != 0 && contentHash != node.contentHash;
+        }
+
+        @Override
+        int dataArity() {
+            return hashes.length;
+        }
+
+        @Override
+        int nodeArity() {
+            return content.length - 2 * hashes.length;
+        }
+
+        @Override
+        Object getKey(int index) {
+            return content[2 * index];
+        }
+
+        @Override
+        Object getValue(int index) {
+            return content[2 * index + 1];
+        }
+
+        @Override
+        int getHash(int index) {
+            return hashes[index];
+        }
+
+        @Override
+        HashTrieNode getNode(int index) {
+            return (HashTrieNode) content[content.length - 1 - index];
+        }
+
+        /**
+         * Installs the new layout in place when this node is owned by the edit
+         * token, otherwise returns a new node carrying the token.
+         */
+        private HashTrieNode update(AtomicReference<Thread> edit, int newDataMap, int newNodeMap,
+                                    Object[] newContent, int[] newHashes, int newSize) {
+            if (isAllowedToEdit(edit)) {
+                dataMap = newDataMap;
+                nodeMap = newNodeMap;
+                content = newContent;
+                hashes = newHashes;
+                size = newSize;
+                return this;
+            }
+            return new BitmapIndexed(edit, newDataMap, newNodeMap, newContent, newHashes, newSize);
+        }
+
+        private HashTrieNode copyAndSetValue(AtomicReference<Thread> edit, int index, Object value) {
+            if (isAllowedToEdit(edit)) {
+                content[2 * index + 1] = value;
+                return this;
+            }
+            Object[] newContent = content.clone();
+            newContent[2 * index + 1] = value;
+            return new BitmapIndexed(edit, dataMap, nodeMap, newContent, hashes, size);
+        }
+
+        private HashTrieNode copyAndSetNode(AtomicReference<Thread> edit, int bit, HashTrieNode node, int newSize) {
+            int index = content.length - 1 - nodeIndex(bit);
+            if (isAllowedToEdit(edit)) {
+                content[index] = node;
+                size = newSize;
+                return this;
+            }
+            Object[] newContent = content.clone();
+            newContent[index] = node;
+            return new BitmapIndexed(edit, dataMap, nodeMap, newContent, hashes, newSize);
+        }
+
+        private HashTrieNode copyAndInsertValue(AtomicReference<Thread> edit, int bit,
+                                                Object key, Object value, int hash) {
+            int index = dataIndex(bit);
+            Object[] newContent = new Object[content.length + 2];
+            System.arraycopy(content, 0, newContent, 0, 2 * index);
+            newContent[2 * index] = key;
+            newContent[2 * index + 1] = value;
+            System.arraycopy(content, 2 * index, newContent, 2 * index + 2, content.length - 2 * index);
+
+            int[] newHashes = new int[hashes.length + 1];
+            System.arraycopy(hashes, 0, newHashes, 0, index);
+            newHashes[index] = hash;
+            System.arraycopy(hashes, index, newHashes, index + 1, hashes.length - index);
+
+            return update(edit, dataMap | bit, nodeMap, newContent, newHashes, size + 1);
+        }
+
+        private HashTrieNode copyAndRemoveValue(AtomicReference<Thread> edit, int bit) {
+            int index = dataIndex(bit);
+            Object[] newContent = new Object[content.length - 2];
+            System.arraycopy(content, 0, newContent, 0, 2 * index);
+            System.arraycopy(content, 2 * index + 2, newContent, 2 * index, content.length - 2 * index - 2);
+
+            int[] newHashes = new int[hashes.length - 1];
+            System.arraycopy(hashes, 0, newHashes, 0, index);
+            System.arraycopy(hashes, index + 1, newHashes, index, hashes.length - index - 1);
+
+            return update(edit, dataMap ^ bit, nodeMap, newContent, newHashes, size - 1);
+        }
+
+        private HashTrieNode copyAndMigrateFromInlineToNode(AtomicReference<Thread> edit, int bit, HashTrieNode node) {
+            int oldIndex = 2 * dataIndex(bit);
+            int newIndex = content.length - 2 - nodeIndex(bit);
+            Object[] newContent = new Object[content.length - 1];
+            // Entries before the migrated pair, then entries and nodes up to the new node slot
+            System.arraycopy(content, 0, newContent, 0, oldIndex);
+            System.arraycopy(content, oldIndex + 2, newContent, oldIndex, newIndex - oldIndex);
+            newContent[newIndex] = node;
+            System.arraycopy(content, newIndex + 2, newContent, newIndex + 1, content.length - newIndex - 2);
+
+            int index = oldIndex / 2;
+            int[] newHashes = new int[hashes.length - 1];
+            System.arraycopy(hashes, 0, newHashes, 0, index);
+            System.arraycopy(hashes, index + 1, newHashes, index, hashes.length - index - 1);
+
+            return update(edit, dataMap ^ bit, nodeMap | bit, newContent, newHashes, size + 1);
+        }
+
+        private HashTrieNode copyAndMigrateFromNodeToInline(AtomicReference<Thread> edit, int bit, HashTrieNode node) {
+            int oldIndex = content.length - 1 - nodeIndex(bit);
+            int index = dataIndex(bit);
+            int newIndex = 2 * index;
+            Object[] newContent = new Object[content.length + 1];
+            // Entries before the new pair, the pair itself, then the remaining entries and nodes
+            System.arraycopy(content, 0, newContent, 0, newIndex);
+            newContent[newIndex] = node.getKey(0);
+            newContent[newIndex + 1] = node.getValue(0);
+            System.arraycopy(content, newIndex, newContent, newIndex + 2, oldIndex - newIndex);
+            System.arraycopy(content, oldIndex + 1, newContent, oldIndex + 2, content.length - oldIndex - 1);
+
+            int[] newHashes = new int[hashes.length + 1];
+            System.arraycopy(hashes, 0, newHashes, 0, index);
+            newHashes[index] = node.getHash(0);
+            System.arraycopy(hashes, index, newHashes, index + 1, hashes.length - index);
+
+            return update(edit, dataMap | bit, nodeMap ^ bit, newContent, newHashes, size - 1);
+        }
+    }
+
+    /**
+     * Leaf node for keys whose full 32-bit hash codes collide.
+     */
+    static final class Collision extends HashTrieNode {
+        final AtomicReference<Thread> edit;
+        final int hash;
+        Object[] content;
+
+        Collision(AtomicReference<Thread> edit, int hash, Object[] content) {
+            this.edit = edit;
+            this.hash = hash;
+            this.content = content;
+        }
+
+        private boolean isAllowedToEdit(AtomicReference<Thread> edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < content.length; i += 2) {
+                if (Objects.equals(content[i], key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private HashTrieNode update(AtomicReference<Thread> edit, Object[] newContent) {
+            if (isAllowedToEdit(edit)) {
+                content = newContent;
+                return this;
+            }
+            return new Collision(edit, hash, newContent);
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift, Object notFound) {
+            int index = indexOf(key);
+            return index < 0 ? notFound : content[index + 1];
+        }
+
+        @Override
+        HashTrieNode put(AtomicReference<Thread> edit, Object key, Object value,
+                         int hash, int shift, Change change) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                Object currentValue = content[index + 1];
+                if (currentValue == value) {
+                    return this;
+                }
+                change.replaced(currentValue);
+                if (isAllowedToEdit(edit)) {
+                    content[index + 1] = value;
+                    return this;
+                }
+                Object[] newContent = content.clone();
+                newContent[index + 1] = value;
+                return new Collision(edit, this.hash, newContent);
+            }
+            change.added();
+            Object[] newContent = new Object[content.length + 2];
+            System.arraycopy(content, 0, newContent, 0, content.length);
+            newContent[content.length] = key;
+            newContent[content.length + 1] = value;
+            return update(edit, newContent);
+        }
+
+        @Override
+        HashTrieNode remove(AtomicReference<Thread> edit, Object key, int hash, int shift, Change change) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            change.removed(content[index + 1]);
+            Object[] newContent = new Object[content.length - 2];
+            System.arraycopy(content, 0, newContent, 0, index);
+            System.arraycopy(content, index + 2, newContent, index, content.length - index - 2);
+            return update(edit, newContent);
+        }
+
+        @Override
+        <R> HashTrieNode mapValues(BiFunction<Object, Object, R> mapper) {
+            Object[] newContent = new Object[content.length];
+            for (int i = 0; i < content.length; i += 2) {
+                newContent[i] = content[i];
+                newContent[i + 1] = mapper.apply(content[i], content[i + 1]);
+            }
+            return new Collision(null, hash, newContent);
+        }
+
+        @Override
+        int size() {
+            return content.length / 2;
+        }
+
+        @Override
+        int contentHash() {
+            int result = 0;
+            for (int i = 0; i < content.length; i += 2) {
+                result += hash ^ Objects.hashCode(content[i + 1]);
+            }
+            return result;
+        }
+
+        @Override
+        int dataArity() {
+            return content.length / 2;
+        }
+
+        @Override
+        int nodeArity() {
+            return 0;
+        }
+
+        @Override
+        Object getKey(int index) {
+            return content[2 * index];
+        }
+
+        @Override
+        Object getValue(int index) {
+            return content[2 * index + 1];
+        }
+
+        @Override
+        int getHash(int index) {
+            return hash;
+        }
+
+        @Override
+        HashTrieNode getNode(int index) {
+            throw new IndexOutOfBoundsException("Collision nodes have no sub-nodes");
+        }
+    }
+
+    /**
+     * Depth-first iterator over the entries of a trie: inline entries of a node
+     * first, then its sub-tries in slot order.
+     *
+     * @param <E> The type produced for each entry
+     */
+    abstract static class TrieIterator<E> implements Iterator<E> {
+        private final HashTrieNode[] nodes = new HashTrieNode[MAX_DEPTH];
+        private final int[] nodeCursors = new int[MAX_DEPTH];
+        private int depth = -1;
+
+        private HashTrieNode dataNode;
+        private int dataCursor;
+        private int dataLength;
+
+        TrieIterator(HashTrieNode root) {
+            if (root.nodeArity() > 0) {
+                depth = 0;
+                nodes[0] = root;
+            }
+            dataNode = root;
+            dataLength = root.dataArity();
+        }
+
+        /**
+         * Converts the entry at the iterator's position into the produced element.
+         */
+        abstract E produce(Object key, Object value);
+
+        private boolean advance() {
+            while (depth >= 0) {
+                HashTrieNode node = nodes[depth];
+                int cursor = nodeCursors[depth];
+                if (cursor < node.nodeArity()) {
+                    nodeCursors[depth] = cursor + 1;
+                    HashTrieNode child = node.getNode(cursor);
+                    if (child.nodeArity() > 0) {
+                        depth++;
+                        nodes[depth] = child;
+                        nodeCursors[depth] = 0;
+                    }
+                    if (child.dataArity() > 0) {
+                        dataNode = child;
+                        dataCursor = 0;
+                        dataLength = child.dataArity();
+                        return true;
+                    }
+                } else {
+                    nodes[depth] = null;
+                    depth--;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return dataCursor < dataLength || advance();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E element = produce(dataNode.getKey(dataCursor), dataNode.getValue(dataCursor));
+            dataCursor++;
+            return element;
+        }
+    }
+
+    /**
+     * Spliterator over the entries of a trie that splits along sub-trie boundaries.
+     *
+     * <p>A spliterator owns the inline entries of one node plus a run of whole
+     * sub-tries. Splitting hands half of the sub-tries to the new spliterator;
+     * when a single untouched sub-trie is left, it is opened up into its own
+     * entries and children first. Every node caches its size, so both halves
+     * report exact sizes.</p>
+     *
+     * @param <E> The type produced for each entry
+     */
+    static final class TrieSpliterator<E> implements Spliterator<E> {
+        private final BiFunction<Object, Object, ? extends E> producer;
+        private HashTrieNode dataNode;
+        private int dataCursor;
+        private HashTrieNode[] pending;
+        private int lo;
+        private int hi;
+        // Entries of the sub-trie that tryAdvance has started on
+        private Iterator<E> current;
+        private long remaining;
+
+        TrieSpliterator(HashTrieNode root, BiFunction<Object, Object, ? extends E> producer) {
+            this(producer, root, children(root), 0, root.nodeArity(), root.size());
+        }
+
+        private TrieSpliterator(BiFunction<Object, Object, ? extends E> producer, HashTrieNode dataNode,
+                                HashTrieNode[] pending, int lo, int hi, long remaining) {
+            this.producer = producer;
+            this.dataNode = dataNode;
+            this.pending = pending;
+            this.lo = lo;
+            this.hi = hi;
+            this.remaining = remaining;
+        }
+
+        private static HashTrieNode[] children(HashTrieNode node) {
+            HashTrieNode[] children = new HashTrieNode[node.nodeArity()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = node.getNode(i);
+            }
+            return children;
+        }
+
+        private boolean hasData() {
+            return dataCursor < dataNode.dataArity();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (hasData()) {
+                action.accept(producer.apply(dataNode.getKey(dataCursor), dataNode.getValue(dataCursor)));
+                dataCursor++;
+                remaining--;
+                return true;
+            }
+            while (current == null || !current.hasNext()) {
+                if (lo >= hi) {
+                    current = null;
+                    return false;
+                }
+                current = new TrieIterator<E>(pending[lo++]) {
+                    @Override
+                    E produce(Object key, Object value) {
+                        return producer.apply(key, value);
+                    }
+                };
+            }
+            action.accept(current.next());
+            remaining--;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            while (hasData()) {
+                action.accept(producer.apply(dataNode.getKey(dataCursor), dataNode.getValue(dataCursor)));
+                dataCursor++;
+            }
+            if (current != null) {
+                current.forEachRemaining(action);
+                current = null;
+            }
+            while (lo < hi) {
+                walk(pending[lo++], action);
+            }
+            remaining = 0;
+        }
+
+        private void walk(HashTrieNode node, Consumer<? super E> action) {
+            for (int i = 0; i < node.dataArity(); i++) {
+                action.accept(producer.apply(node.getKey(i), node.getValue(i)));
+            }
+            for (int i = 0; i < node.nodeArity(); i++) {
+                walk(node.getNode(i), action);
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            while (current == null && !hasData() && hi - lo == 1) {
+                HashTrieNode node = pending[lo];
+                dataNode = node;
+                dataCursor = 0;
+                pending = children(node);
+                lo = 0;
+                hi = pending.length;
+            }
+            int count = hi - lo;
+            if (count == 0) {
+                return null;
+            }
+            int mid = count == 1 ? lo : lo + count / 2;
+            long splitSize = 0;
+            for (int i = mid; i < hi; i++) {
+                splitSize += pending[i].size();
+            }
+            Spliterator<E> split = new TrieSpliterator<>(producer, EMPTY, pending, mid, hi, splitSize);
+            hi = mid;
+            remaining -= splitSize;
+            return split;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | DISTINCT | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.firefly.runtime.collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Immutable persistent vector of unboxed {@code long} values.
+ *
+ * <p>LongVector has the same shape as {@link PersistentVector}: a 32-way trie
+ * plus a tail buffer holding the last (up to) 32 elements. The difference is
+ * that leaves are {@code long[]} arrays, so elements are never boxed on write
+ * and {@link #getLong(int)} returns a primitive without going through
+ * {@code Object}. The compiler emits a LongVector for array literals whose
+ * elements are all {@code Long}, or mix {@code Long} and {@code Int}; code
+ * that only knows it has some {@link AbstractVector} reads boxed elements
+ * with {@link #get(int)}.</p>
+ *
+ * <h2>Performance Characteristics</h2>
+ * <table border="1">
+ *   <tr><th>Operation</th><th>Time Complexity</th><th>Notes</th></tr>
+ *   <tr><td>getLong(index)</td><td>O(log32 n) ≈ O(1)</td><td>No unboxing</td></tr>
+ *   <tr><td>set(index, value)</td><td>O(log32 n) ≈ O(1)</td><td>Creates new vector</td></tr>
+ *   <tr><td>append(value)</td><td>O(1) amortised</td><td>No boxing</td></tr>
+ *   <tr><td>reduce()</td><td>O(n)</td><td>Walks leaves directly</td></tr>
+ *   <tr><td>size()</td><td>O(1)</td><td>Cached</td></tr>
+ * </table>
+ *
+ * <h2>Example Usage</h2>
+ * <pre>{@code
+ * LongVector ids = LongVector.of(3L, 1L, 4L);
+ * long first = ids.getLong(0);                    // 3
+ * LongVector more = ids.append(1L).set(0, 2L);    // [2, 1, 4, 1]
+ * long total = more.reduce(0L, Long::sum);        // 8
+ * PersistentVector<String> labels = more.mapToObj(i -> "#" + i);
+ * }</pre>
+ */
+public final class LongVector extends PrimitiveVector<Long, long[]> {
+
+    private static final LongVector EMPTY =
+        new LongVector(0, BITS, new Object[BRANCHING_FACTOR], new long[0]);
+
+    /**
+     * Private constructor.
+     */
+    private LongVector(int size, int shift, Object[] root, long[] tail) {
+        super(size, shift, root, tail);
+    }
+
+    @Override
+    LongVector create(int size, int shift, Object[] root, long[] tail) {
+        return new LongVector(size, shift, root, tail);
+    }
+
+    @Override
+    long[] newLeaf(int length) {
+        return new long[length];
+    }
+
+    @Override
+    boolean leafEquals(long[] left, long[] right, int length) {
+        return Arrays.equals(left, 0, length, right, 0, length);
+    }
+
+    @Override
+    int leafHash(int hash, long[] leaf, int length) {
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + Long.hashCode(leaf[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns an empty long vector.
+     *
+     * @return An empty vector
+     */
+    public static LongVector empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a long vector from the given values.
+     *
+     * <p>The values are copied into the trie 32 at a time, so building a vector
+     * this way costs one leaf copy per 32 elements.</p>
+     *
+     * @param values The values to include
+     * @return A new vector containing the values
+     */
+    public static LongVector of(long... values) {
+        return (LongVector) EMPTY.withValues(values, values.length);
+    }
+
+    /**
+     * Returns the 32-element chunk holding the element at the given index.
+     *
+     * <p>The chunk covers indices {@code index & ~31} up to (at most) 31 past it,
+     * and its length is the number of elements it holds, so a loop can walk the
+     * vector one chunk at a time with plain array reads. Compiled {@code for}
+     * loops use this. The array is shared with the vector and must not be
+     * modified.</p>
+     *
+     * @param index Any index inside the wanted chunk
+     * @return The chunk's backing array
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public long[] chunkFor(int index) {
+        checkIndex(index);
+        return leafFor(index);
+    }
+
+    /**
+     * Gets the element at the specified index without boxing.
+     *
+     * @param index The index (0-based)
+     * @return The element at the index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public long getLong(int index) {
+        checkIndex(index);
+        return leafFor(index)[index & MASK];
+    }
+
+    /**
+     * Gets the element at the specified index, boxed.
+     *
+     * @param index The index (0-based)
+     * @return The element at the index
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    /**
+     * Returns a new vector with the element at the specified index replaced.
+     *
+     * @param index The index to update
+     * @param value The new value
+     * @return A new vector with the updated element
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public LongVector set(int index, long value) {
+        checkIndex(index);
+        long[] leaf = copyOfLeaf(index);
+        leaf[index & MASK] = value;
+        return (LongVector) withLeaf(index, leaf);
+    }
+
+    /**
+     * Returns a new vector with the given value appended to the end.
+     *
+     * @param value The value to append
+     * @return A new vector with the value added
+     */
+    public LongVector append(long value) {
+        long[] leaf = appendLeaf();
+        leaf[leaf.length - 1] = value;
+        return (LongVector) withAppended(leaf);
+    }
+
+    /**
+     * Returns a new vector with every element transformed by the given function.
+     *
+     * @param mapper The transformation function
+     * @return A new vector with transformed elements
+     */
+    public LongVector map(LongUnaryOperator mapper) {
+        Objects.requireNonNull(mapper, "mapper cannot be null");
+        long[] values = toArray();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = mapper.applyAsLong(values[i]);
+        }
+        return of(values);
+    }
+
+    /**
+     * Returns a persistent vector of the results of applying the given function
+     * to every element.
+     *
+     * @param <R> The type of elements in the result vector
+     * @param mapper The transformation function
+     * @return A new vector with transformed elements
+     */
+    public <R> PersistentVector<R> mapToObj(LongFunction<? extends R> mapper) {
+        Objects.requireNonNull(mapper, "mapper cannot be null");
+        PersistentVector.Transient<R> result = PersistentVector.<R>empty().asTransient();
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            long[] leaf = leafFor(base);
+            int length = leafLength(base);
+            for (int i = 0; i < length; i++) {
+                result.append(mapper.apply(leaf[i]));
+            }
+        }
+        return result.persistent();
+    }
+
+    /**
+     * Returns a new vector containing only elements that match the predicate.
+     *
+     * @param predicate The filter predicate
+     * @return A new vector with matching elements
+     */
+    public LongVector filter(LongPredicate predicate) {
+        Objects.requireNonNull(predicate, "predicate cannot be null");
+        long[] kept = new long[size];
+        int count = 0;
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            long[] leaf = leafFor(base);
+            int length = leafLength(base);
+            for (int i = 0; i < length; i++) {
+                if (predicate.test(leaf[i])) {
+                    kept[count++] = leaf[i];
+                }
+            }
+        }
+        return count == size ? this : (LongVector) EMPTY.withValues(kept, count);
+    }
+
+    /**
+     * Reduces the elements of this vector to a single value without boxing.
+     *
+     * <p>Example: {@code vec.reduce(0L, Long::sum)} sums all elements.</p>
+     *
+     * @param identity The initial value
+     * @param accumulator The combining function
+     * @return The final accumulated value
+     */
+    public long reduce(long identity, LongBinaryOperator accumulator) {
+        Objects.requireNonNull(accumulator, "accumulator cannot be null");
+        long result = identity;
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            long[] leaf = leafFor(base);
+            int length = leafLength(base);
+            for (int i = 0; i < length; i++) {
+                result = accumulator.applyAsLong(result, leaf[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the elements of this vector into a new array.
+     *
+     * @return An array holding the elements in order
+     */
+    public long[] toArray() {
+        return copyValues();
+    }
+
+    /**
+     * Returns a boxed persistent vector with the same elements.
+     *
+     * @return A PersistentVector of the elements
+     */
+    public PersistentVector<Long> boxed() {
+        return mapToObj(Long::valueOf);
+    }
+
+    /**
+     * Returns an iterator over the elements in this vector.
+     *
+     * <p>Use {@link PrimitiveIterator.OfLong#nextLong()} to read elements without boxing.</p>
+     *
+     * @return A primitive iterator
+     */
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = 0;
+            private long[] leaf;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if ((index & MASK) == 0) {
+                    leaf = leafFor(index);
+                }
+                return leaf[index++ & MASK];
+            }
+        };
+    }
+}
@@ -1,7 +1,11 @@
 package com.firefly.runtime.collections;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Immutable persistent hash map with efficient updates through structural sharing.
@@ -10,6 +14,11 @@ import java.util.function.BiFunction;
  * lookups, insertions, and updates. All operations return new maps while sharing
  * most of their structure with the original map.</p>
  * 
+ * <p>The map is a hash array mapped trie (HAMT): each level consumes five bits
+ * of the key's hash code, so an update copies at most one small node per level
+ * and shares everything else with the original map. Iteration follows the trie
+ * layout, which is determined by the keys' hash codes, not by insertion order.</p>
+ * 
  * <h2>Key Characteristics</h2>
  * <ul>
  *   <li><b>Immutable:</b> All operations return new maps, original unchanged</li>
@@ -49,6 +58,13 @@ import java.util.function.BiFunction;
  * PersistentHashMap<String, Integer> map3 = map.remove("one");
  * System.out.println(map.size());   // 3
  * System.out.println(map3.size());  // 2
+ * 
+ * // Batch updates without publishing intermediate versions
+ * PersistentHashMap.Transient<String, Integer> builder = map.asTransient();
+ * for (int i = 0; i < 1000; i++) {
+ *     builder.put("key" + i, i);
+ * }
+ * PersistentHashMap<String, Integer> big = builder.persistent();
  * }</pre>
  * 
  * @param <K> The type of keys
@@ -56,15 +72,20 @@ import java.util.function.BiFunction;
  */
 public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
     
-    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(new HashMap<>());
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(HashTrieNode.EMPTY, 0);
     
-    private final Map<K, V> data;
+    /** Below this size, par* operations run sequentially. */
+    private static final int PARALLEL_THRESHOLD = 8192;
+    
+    private final HashTrieNode root;
+    private final int size;
     
     /**
      * Private constructor.
      */
-    private PersistentHashMap(Map<K, V> data) {
-        this.data = Collections.unmodifiableMap(new HashMap<>(data));
+    private PersistentHashMap(HashTrieNode root, int size) {
+        this.root = root;
+        this.size = size;
     }
     
     /**
@@ -92,11 +113,11 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
         if (entries.length == 0) {
             return empty();
         }
-        Map<K, V> map = new HashMap<>();
+        Transient<K, V> map = PersistentHashMap.<K, V>empty().asTransient();
         for (Map.Entry<K, V> entry : entries) {
             map.put(entry.getKey(), entry.getValue());
         }
-        return new PersistentHashMap<>(map);
+        return map.persistent();
     }
     
     /**
@@ -118,7 +139,7 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return true if the map has no entries
      */
     public boolean isEmpty() {
-        return data.isEmpty();
+        return size == 0;
     }
     
     /**
@@ -127,7 +148,7 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return The size of the map
      */
     public int size() {
-        return data.size();
+        return size;
     }
     
     /**
@@ -136,8 +157,9 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @param key The key to look up
      * @return The value, or null if key not found
      */
+    @SuppressWarnings("unchecked")
     public V get(K key) {
-        return data.get(key);
+        return (V) root.find(key, HashTrieNode.hash(key), 0, null);
     }
     
     /**
@@ -147,8 +169,9 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @param defaultValue The default value to return if key not found
      * @return The value, or defaultValue if key not found
      */
+    @SuppressWarnings("unchecked")
     public V getOrDefault(K key, V defaultValue) {
-        return data.getOrDefault(key, defaultValue);
+        return (V) root.find(key, HashTrieNode.hash(key), 0, defaultValue);
     }
     
     /**
@@ -158,7 +181,7 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return true if the key is present
      */
     public boolean containsKey(K key) {
-        return data.containsKey(key);
+        return root.find(key, HashTrieNode.hash(key), 0, HashTrieNode.NOT_FOUND) != HashTrieNode.NOT_FOUND;
     }
     
     /**
@@ -168,7 +191,12 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return true if the value is present
      */
     public boolean containsValue(V value) {
-        return data.containsValue(value);
+        for (Map.Entry<K, V> entry : this) {
+            if (Objects.equals(entry.getValue(), value)) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
@@ -182,9 +210,12 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return A new map with the entry added/updated
      */
     public PersistentHashMap<K, V> put(K key, V value) {
-        Map<K, V> newData = new HashMap<>(data);
-        newData.put(key, value);
-        return new PersistentHashMap<>(newData);
+        HashTrieNode.Change change = new HashTrieNode.Change();
+        HashTrieNode newRoot = root.put(null, key, value, HashTrieNode.hash(key), 0, change);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, change.replaced ? size : size + 1);
     }
     
     /**
@@ -197,9 +228,11 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
         if (other.isEmpty()) {
             return this;
         }
-        Map<K, V> newData = new HashMap<>(data);
-        newData.putAll(other);
-        return new PersistentHashMap<>(newData);
+        Transient<K, V> result = asTransient();
+        for (Map.Entry<? extends K, ? extends V> entry : other.entrySet()) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result.persistent();
     }
     
     /**
@@ -211,31 +244,51 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return A new map without the key
      */
     public PersistentHashMap<K, V> remove(K key) {
-        if (!data.containsKey(key)) {
+        HashTrieNode.Change change = new HashTrieNode.Change();
+        HashTrieNode newRoot = root.remove(null, key, HashTrieNode.hash(key), 0, change);
+        if (!change.modified) {
             return this;
         }
-        Map<K, V> newData = new HashMap<>(data);
-        newData.remove(key);
-        return new PersistentHashMap<>(newData);
+        if (size == 1) {
+            return empty();
+        }
+        return new PersistentHashMap<>(newRoot, size - 1);
+    }
+    
+    /**
+     * Returns a transient (batch-mutable) view of this map.
+     * 
+     * <p>The transient starts with the same contents and shares all trie nodes
+     * with this map. Updates through it copy each shared node once and then
+     * edit it in place, so a batch of n updates does not publish n
+     * intermediate maps. The transient may only be used by the thread that
+     * created it, and only until {@link Transient#persistent()} is called.
+     * This map is never affected.</p>
+     * 
+     * @return A new transient map owned by the current thread
+     */
+    public Transient<K, V> asTransient() {
+        return new Transient<>(root, size);
     }
     
     /**
      * Returns a new map with all entries transformed by the given function.
      * 
+     * <p>The result has exactly the same keys, so the trie is rebuilt node by
+     * node without rehashing any key.</p>
+     * 
      * @param <V2> The type of values in the result map
      * @param mapper The transformation function
      * @return A new map with transformed values
      */
+    @SuppressWarnings("unchecked")
     public <V2> PersistentHashMap<K, V2> mapValues(BiFunction<? super K, ? super V, ? extends V2> mapper) {
         Objects.requireNonNull(mapper, "mapper cannot be null");
         if (isEmpty()) {
             return empty();
         }
-        Map<K, V2> newData = new HashMap<>();
-        for (Map.Entry<K, V> entry : data.entrySet()) {
-            newData.put(entry.getKey(), mapper.apply(entry.getKey(), entry.getValue()));
-        }
-        return new PersistentHashMap<>(newData);
+        BiFunction<Object, Object, V2> untyped = (k, v) -> mapper.apply((K) k, (V) v);
+        return new PersistentHashMap<>(root.mapValues(untyped), size);
     }
     
     /**
@@ -244,7 +297,29 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return An unmodifiable set of keys
      */
     public Set<K> keySet() {
-        return data.keySet();
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new HashTrieNode.TrieIterator<K>(root) {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    K produce(Object key, Object value) {
+                        return (K) key;
+                    }
+                };
+            }
+            
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean contains(Object o) {
+                return containsKey((K) o);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
     
     /**
@@ -253,7 +328,23 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return An unmodifiable collection of values
      */
     public Collection<V> values() {
-        return data.values();
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new HashTrieNode.TrieIterator<V>(root) {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    V produce(Object key, Object value) {
+                        return (V) value;
+                    }
+                };
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
     
     /**
@@ -262,7 +353,25 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      * @return An unmodifiable set of entries
      */
     public Set<Map.Entry<K, V>> entrySet() {
-        return data.entrySet();
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return PersistentHashMap.this.iterator();
+            }
+            
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry<?, ?> entry)) return false;
+                Object value = root.find(entry.getKey(), HashTrieNode.hash(entry.getKey()), 0, HashTrieNode.NOT_FOUND);
+                return value != HashTrieNode.NOT_FOUND && Objects.equals(value, entry.getValue());
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
     
     /**
@@ -272,24 +381,182 @@ public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>>
      */
     @Override
     public Iterator<Map.Entry<K, V>> iterator() {
-        return data.entrySet().iterator();
+        return new HashTrieNode.TrieIterator<Map.Entry<K, V>>(root) {
+            @Override
+            @SuppressWarnings("unchecked")
+            Map.Entry<K, V> produce(Object key, Object value) {
+                return new AbstractMap.SimpleImmutableEntry<>((K) key, (V) value);
+            }
+        };
+    }
+    
+    /**
+     * Returns a spliterator over the entries in this map.
+     * 
+     * <p>The spliterator splits along sub-trie boundaries and reports exact
+     * sizes ({@code SIZED} and {@code SUBSIZED}), so {@code stream().parallel()}
+     * divides the map evenly across worker threads.</p>
+     * 
+     * @return A spliterator
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return new HashTrieNode.TrieSpliterator<>(root,
+            (key, value) -> new AbstractMap.SimpleImmutableEntry<>((K) key, (V) value));
+    }
+    
+    /**
+     * Returns a sequential stream over the entries in this map.
+     * 
+     * @return A stream of entries
+     */
+    public Stream<Map.Entry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /**
+     * Applies the given action to every entry, in parallel on the common
+     * {@link java.util.concurrent.ForkJoinPool}.
+     * 
+     * <p>The trie is split along sub-trie boundaries. Maps with fewer than
+     * 8192 entries are processed on the calling thread instead.
+     * The action may run concurrently on several threads and in no particular
+     * order.</p>
+     * 
+     * @param action The action to perform on each key and value
+     */
+    public void parForEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action, "action cannot be null");
+        StreamSupport.stream(spliterator(), size >= PARALLEL_THRESHOLD)
+            .forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
     }
     
     @Override
     public String toString() {
-        return data.toString();
+        if (isEmpty()) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<K, V> entry : this) {
+            if (!first) sb.append(", ");
+            first = false;
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        sb.append("}");
+        return sb.toString();
     }
     
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (!(obj instanceof PersistentHashMap<?, ?> other)) return false;
-        return data.equals(other.data);
+        if (size != other.size) return false;
+        // Shared and hash-mismatched subtrees are decided without visiting them
+        return HashTrieNode.equivalent(root, other.root);
     }
     
     @Override
     public int hashCode() {
-        return data.hashCode();
+        // Same contract as java.util.Map#hashCode, cached in the trie nodes
+        return root.contentHash();
+    }
+    
+    /**
+     * Batch-mutable view of a {@link PersistentHashMap}, owned by one thread.
+     * 
+     * <p>Mutating methods update the transient in place and return it, so calls
+     * can be chained. {@link #persistent()} freezes the contents in O(1) and
+     * ends the transient; any later use throws {@link IllegalStateException}.</p>
+     * 
+     * @param <K> The type of keys
+     * @param <V> The type of values
+     */
+    public static final class Transient<K, V> {
+        
+        private final AtomicReference<Thread> edit = Transients.newEdit();
+        private final HashTrieNode.Change change = new HashTrieNode.Change();
+        private HashTrieNode root;
+        private int size;
+        
+        private Transient(HashTrieNode root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+        
+        /**
+         * Adds or replaces the entry for the given key.
+         * 
+         * @param key The key
+         * @param value The value
+         * @return This transient
+         * @throws IllegalStateException if used after persistent() or from another thread
+         */
+        public Transient<K, V> put(K key, V value) {
+            Transients.ensureEditable(edit);
+            root = root.put(edit, key, value, HashTrieNode.hash(key), 0, change.reset());
+            size += change.sizeDelta();
+            return this;
+        }
+        
+        /**
+         * Removes the entry for the given key, if present.
+         * 
+         * @param key The key to remove
+         * @return This transient
+         * @throws IllegalStateException if used after persistent() or from another thread
+         */
+        public Transient<K, V> remove(K key) {
+            Transients.ensureEditable(edit);
+            root = root.remove(edit, key, HashTrieNode.hash(key), 0, change.reset());
+            size += change.sizeDelta();
+            return this;
+        }
+        
+        /**
+         * Gets the value associated with the given key.
+         * 
+         * @param key The key to look up
+         * @return The value, or null if key not found
+         */
+        @SuppressWarnings("unchecked")
+        public V get(K key) {
+            Transients.ensureEditable(edit);
+            return (V) root.find(key, HashTrieNode.hash(key), 0, null);
+        }
+        
+        /**
+         * Checks if this transient contains the given key.
+         * 
+         * @param key The key to check
+         * @return true if the key is present
+         */
+        public boolean containsKey(K key) {
+            Transients.ensureEditable(edit);
+            return root.find(key, HashTrieNode.hash(key), 0, HashTrieNode.NOT_FOUND) != HashTrieNode.NOT_FOUND;
+        }
+        
+        /**
+         * Returns the number of entries in this transient.
+         * 
+         * @return The current size
+         */
+        public int size() {
+            Transients.ensureEditable(edit);
+            return size;
+        }
+        
+        /**
+         * Freezes this transient into a persistent map in O(1).
+         * 
+         * @return A persistent map with the transient's contents
+         * @throws IllegalStateException if already frozen or called from another thread
+         */
+        public PersistentHashMap<K, V> persistent() {
+            Transients.ensureEditable(edit);
+            edit.set(null);
+            return size == 0 ? empty() : new PersistentHashMap<>(root, size);
+        }
     }
 }
-
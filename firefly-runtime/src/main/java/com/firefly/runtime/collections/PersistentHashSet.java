@@ -1,8 +1,11 @@
 package com.firefly.runtime.collections;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Immutable persistent hash set with efficient updates through structural sharing.
@@ -11,6 +14,12 @@ import java.util.function.Predicate;
  * testing, insertions, and removals. All operations return new sets while sharing
  * most of their structure with the original set.</p>
  * 
+ * <p>The set is stored in the same hash array mapped trie as
+ * {@link PersistentHashMap}. {@link #union}, {@link #intersection} and
+ * {@link #difference} walk both tries node by node and reuse every subtree the
+ * inputs share, so combining two versions of the same set costs time in
+ * proportion to their differences rather than their sizes.</p>
+ * 
  * <h2>Key Characteristics</h2>
  * <ul>
  *   <li><b>Immutable:</b> All operations return new sets, original unchanged</li>
@@ -27,8 +36,9 @@ import java.util.function.Predicate;
  *   <tr><td>add(element)</td><td>O(log32 n) ≈ O(1)</td><td>Creates new set</td></tr>
  *   <tr><td>remove(element)</td><td>O(log32 n) ≈ O(1)</td><td>Creates new set</td></tr>
  *   <tr><td>size()</td><td>O(1)</td><td>Cached</td></tr>
- *   <tr><td>union(other)</td><td>O(n + m)</td><td>Combine two sets</td></tr>
- *   <tr><td>intersection(other)</td><td>O(min(n, m))</td><td>Common elements</td></tr>
+ *   <tr><td>union(other)</td><td>O(n + m)</td><td>O(changes) for related sets</td></tr>
+ *   <tr><td>intersection(other)</td><td>O(n)</td><td>O(changes) for related sets</td></tr>
+ *   <tr><td>difference(other)</td><td>O(n)</td><td>O(changes) for related sets</td></tr>
  * </table>
  * 
  * <h2>Example Usage</h2>
@@ -62,15 +72,27 @@ import java.util.function.Predicate;
  */
 public final class PersistentHashSet<T> implements Iterable<T> {
     
-    private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(new HashSet<>());
+    private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(HashTrieNode.EMPTY);
     
-    private final Set<T> data;
+    private final HashTrieNode root;
     
     /**
      * Private constructor.
      */
-    private PersistentHashSet(Set<T> data) {
-        this.data = Collections.unmodifiableSet(new HashSet<>(data));
+    private PersistentHashSet(HashTrieNode root) {
+        this.root = root;
+    }
+    
+    /**
+     * Wraps a trie root, reusing this set or the empty set where possible.
+     */
+    private <R> PersistentHashSet<R> withRoot(HashTrieNode newRoot) {
+        if (newRoot.size() == 0) {
+            return empty();
+        }
+        @SuppressWarnings("unchecked")
+        PersistentHashSet<R> self = (PersistentHashSet<R>) this;
+        return newRoot == root ? self : new PersistentHashSet<>(newRoot);
     }
     
     /**
@@ -96,9 +118,11 @@ public final class PersistentHashSet<T> implements Iterable<T> {
         if (elements.length == 0) {
             return empty();
         }
-        Set<T> set = new HashSet<>();
-        Collections.addAll(set, elements);
-        return new PersistentHashSet<>(set);
+        Transient<T> set = PersistentHashSet.<T>empty().asTransient();
+        for (T element : elements) {
+            set.add(element);
+        }
+        return set.persistent();
     }
     
     /**
@@ -107,7 +131,7 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      * @return true if the set has no elements
      */
     public boolean isEmpty() {
-        return data.isEmpty();
+        return root.size() == 0;
     }
     
     /**
@@ -116,7 +140,7 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      * @return The size of the set
      */
     public int size() {
-        return data.size();
+        return root.size();
     }
     
     /**
@@ -126,7 +150,7 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      * @return true if the element is present
      */
     public boolean contains(T element) {
-        return data.contains(element);
+        return root.find(element, HashTrieNode.hash(element), 0, HashTrieNode.NOT_FOUND) != HashTrieNode.NOT_FOUND;
     }
     
     /**
@@ -138,12 +162,7 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      * @return A new set with the element added
      */
     public PersistentHashSet<T> add(T element) {
-        if (data.contains(element)) {
-            return this;
-        }
-        Set<T> newData = new HashSet<>(data);
-        newData.add(element);
-        return new PersistentHashSet<>(newData);
+        return withRoot(root.put(null, element, null, HashTrieNode.hash(element), 0, new HashTrieNode.Change()));
     }
     
     /**
@@ -156,9 +175,11 @@ public final class PersistentHashSet<T> implements Iterable<T> {
         if (elements.isEmpty()) {
             return this;
         }
-        Set<T> newData = new HashSet<>(data);
-        newData.addAll(elements);
-        return new PersistentHashSet<>(newData);
+        Transient<T> result = asTransient();
+        for (T element : elements) {
+            result.add(element);
+        }
+        return withRoot(result.persistent().root);
     }
     
     /**
@@ -170,12 +191,7 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      * @return A new set without the element
      */
     public PersistentHashSet<T> remove(T element) {
-        if (!data.contains(element)) {
-            return this;
-        }
-        Set<T> newData = new HashSet<>(data);
-        newData.remove(element);
-        return new PersistentHashSet<>(newData);
+        return withRoot(root.remove(null, element, HashTrieNode.hash(element), 0, new HashTrieNode.Change()));
     }
     
     /**
@@ -186,19 +202,16 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      */
     public PersistentHashSet<T> filter(Predicate<? super T> predicate) {
         Objects.requireNonNull(predicate, "predicate cannot be null");
-        if (isEmpty()) {
-            return this;
-        }
-        Set<T> newData = new HashSet<>();
-        for (T element : data) {
-            if (predicate.test(element)) {
-                newData.add(element);
+        Transient<T> result = null;
+        for (T element : this) {
+            if (!predicate.test(element)) {
+                if (result == null) {
+                    result = asTransient();
+                }
+                result.remove(element);
             }
         }
-        if (newData.isEmpty()) {
-            return empty();
-        }
-        return new PersistentHashSet<>(newData);
+        return result == null ? this : result.persistent();
     }
     
     /**
@@ -213,11 +226,25 @@ public final class PersistentHashSet<T> implements Iterable<T> {
         if (isEmpty()) {
             return empty();
         }
-        Set<R> newData = new HashSet<>();
-        for (T element : data) {
-            newData.add(mapper.apply(element));
+        Transient<R> result = PersistentHashSet.<R>empty().asTransient();
+        for (T element : this) {
+            result.add(mapper.apply(element));
         }
-        return new PersistentHashSet<>(newData);
+        return result.persistent();
+    }
+    
+    /**
+     * Returns a transient (batch-mutable) view of this set.
+     * 
+     * <p>The transient shares all trie nodes with this set. Updates through it
+     * copy each shared node once and then edit it in place. The transient may
+     * only be used by the thread that created it, and only until
+     * {@link Transient#persistent()} is called. This set is never affected.</p>
+     * 
+     * @return A new transient set owned by the current thread
+     */
+    public Transient<T> asTransient() {
+        return new Transient<>(root);
     }
     
     /**
@@ -228,15 +255,8 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      */
     public PersistentHashSet<T> union(PersistentHashSet<T> other) {
         Objects.requireNonNull(other, "other cannot be null");
-        if (other.isEmpty()) {
-            return this;
-        }
-        if (this.isEmpty()) {
-            return other;
-        }
-        Set<T> newData = new HashSet<>(data);
-        newData.addAll(other.data);
-        return new PersistentHashSet<>(newData);
+        HashTrieNode newRoot = HashTrieNode.union(root, other.root, 0);
+        return newRoot == other.root ? other : withRoot(newRoot);
     }
     
     /**
@@ -247,15 +267,7 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      */
     public PersistentHashSet<T> intersection(PersistentHashSet<T> other) {
         Objects.requireNonNull(other, "other cannot be null");
-        if (this.isEmpty() || other.isEmpty()) {
-            return empty();
-        }
-        Set<T> newData = new HashSet<>(data);
-        newData.retainAll(other.data);
-        if (newData.isEmpty()) {
-            return empty();
-        }
-        return new PersistentHashSet<>(newData);
+        return withRoot(HashTrieNode.intersection(root, other.root, 0));
     }
     
     /**
@@ -266,15 +278,7 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      */
     public PersistentHashSet<T> difference(PersistentHashSet<T> other) {
         Objects.requireNonNull(other, "other cannot be null");
-        if (this.isEmpty() || other.isEmpty()) {
-            return this;
-        }
-        Set<T> newData = new HashSet<>(data);
-        newData.removeAll(other.data);
-        if (newData.isEmpty()) {
-            return empty();
-        }
-        return new PersistentHashSet<>(newData);
+        return withRoot(HashTrieNode.difference(root, other.root, 0));
     }
     
     /**
@@ -284,24 +288,145 @@ public final class PersistentHashSet<T> implements Iterable<T> {
      */
     @Override
     public Iterator<T> iterator() {
-        return data.iterator();
+        return new HashTrieNode.TrieIterator<T>(root) {
+            @Override
+            @SuppressWarnings("unchecked")
+            T produce(Object key, Object value) {
+                return (T) key;
+            }
+        };
+    }
+    
+    /**
+     * Returns a spliterator over the elements in this set.
+     * 
+     * <p>The spliterator splits along sub-trie boundaries and reports exact
+     * sizes, so {@code stream().parallel()} divides the set evenly.</p>
+     * 
+     * @return A spliterator
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Spliterator<T> spliterator() {
+        return new HashTrieNode.TrieSpliterator<>(root, (key, value) -> (T) key);
+    }
+    
+    /**
+     * Returns a sequential stream over the elements in this set.
+     * 
+     * @return A stream of elements
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
     }
     
     @Override
     public String toString() {
-        return data.toString();
+        if (isEmpty()) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder("[");
+        boolean first = true;
+        for (T element : this) {
+            if (!first) sb.append(", ");
+            first = false;
+            sb.append(element);
+        }
+        sb.append("]");
+        return sb.toString();
     }
     
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (!(obj instanceof PersistentHashSet<?> other)) return false;
-        return data.equals(other.data);
+        // Shared and hash-mismatched subtrees are decided without visiting them
+        return HashTrieNode.equivalent(root, other.root);
     }
     
     @Override
     public int hashCode() {
-        return data.hashCode();
+        // Same contract as java.util.Set#hashCode; values are null, so each
+        // entry contributes its element's hash. Cached in the trie nodes.
+        return root.contentHash();
+    }
+    
+    /**
+     * Batch-mutable view of a {@link PersistentHashSet}, owned by one thread.
+     * 
+     * <p>Mutating methods update the transient in place and return it, so calls
+     * can be chained. {@link #persistent()} freezes the contents in O(1) and
+     * ends the transient; any later use throws {@link IllegalStateException}.</p>
+     * 
+     * @param <T> The type of elements
+     */
+    public static final class Transient<T> {
+        
+        private final AtomicReference<Thread> edit = Transients.newEdit();
+        private final HashTrieNode.Change change = new HashTrieNode.Change();
+        private HashTrieNode root;
+        
+        private Transient(HashTrieNode root) {
+            this.root = root;
+        }
+        
+        /**
+         * Adds the given element, if not already present.
+         * 
+         * @param element The element to add
+         * @return This transient
+         * @throws IllegalStateException if used after persistent() or from another thread
+         */
+        public Transient<T> add(T element) {
+            Transients.ensureEditable(edit);
+            root = root.put(edit, element, null, HashTrieNode.hash(element), 0, change.reset());
+            return this;
+        }
+        
+        /**
+         * Removes the given element, if present.
+         * 
+         * @param element The element to remove
+         * @return This transient
+         * @throws IllegalStateException if used after persistent() or from another thread
+         */
+        public Transient<T> remove(T element) {
+            Transients.ensureEditable(edit);
+            root = root.remove(edit, element, HashTrieNode.hash(element), 0, change.reset());
+            return this;
+        }
+        
+        /**
+         * Checks if this transient contains the given element.
+         * 
+         * @param element The element to check
+         * @return true if the element is present
+         */
+        public boolean contains(T element) {
+            Transients.ensureEditable(edit);
+            return root.find(element, HashTrieNode.hash(element), 0, HashTrieNode.NOT_FOUND) != HashTrieNode.NOT_FOUND;
+        }
+        
+        /**
+         * Returns the number of elements in this transient.
+         * 
+         * @return The current size
+         */
+        public int size() {
+            Transients.ensureEditable(edit);
+            return root.size();
+        }
+        
+        /**
+         * Freezes this transient into a persistent set in O(1).
+         * 
+         * @return A persistent set with the transient's contents
+         * @throws IllegalStateException if already frozen or called from another thread
+         */
+        public PersistentHashSet<T> persistent() {
+            Transients.ensureEditable(edit);
+            edit.set(null);
+            return root.size() == 0 ? empty() : new PersistentHashSet<>(root);
+        }
     }
 }
-
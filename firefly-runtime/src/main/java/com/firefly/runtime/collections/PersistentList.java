@@ -64,6 +64,13 @@ public sealed interface PersistentList<T> extends Iterable<T> {
      */
     PersistentList<T> filter(java.util.function.Predicate<T> predicate);
 
+    /**
+     * Returns a lazy sequence over the list; chained stages run in a single pass.
+     */
+    default Seq<T> seq() {
+        return Seq.from(this);
+    }
+
     /**
      * Empty list (Nil).
      */
@@ -170,13 +177,13 @@ public sealed interface PersistentList<T> extends Iterable<T> {
 
         @Override
         public <R> PersistentList<R> map(Function<T, R> mapper) {
-            return tail.map(mapper).cons(mapper.apply(head));
+            // Iterative so that long lists do not overflow the stack
+            return seq().map(mapper).toList();
         }
 
         @Override
         public PersistentList<T> filter(java.util.function.Predicate<T> predicate) {
-            PersistentList<T> filteredTail = tail.filter(predicate);
-            return predicate.test(head) ? filteredTail.cons(head) : filteredTail;
+            return seq().filter(predicate).toList();
         }
 
         @Override
@@ -0,0 +1,502 @@
+package com.firefly.runtime.collections;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable persistent sorted map with efficient updates through structural sharing.
+ *
+ * <p>A PersistentTreeMap keeps its keys in ascending order, either by their
+ * natural ordering ({@link Comparable}) or by a {@link Comparator} supplied to
+ * {@link #empty(Comparator)}. Sparks declared with {@code @derive(Ord)}
+ * implement {@code Comparable} through their generated {@code compareTo}, so
+ * they can be used as keys without a comparator.</p>
+ *
+ * <p>The map is a weight-balanced binary search tree: every node records the
+ * size of its subtree, which keeps the tree balanced and lets the map answer
+ * positional queries ({@link #rank}, {@link #select}) in O(log n). Updates
+ * copy one path from the root and share everything else. Range operations
+ * ({@link #subMap}, {@link #headMap}, {@link #tailMap}) return new maps that
+ * share every subtree lying entirely inside the range, in O(log n).</p>
+ *
+ * <h2>Key Characteristics</h2>
+ * <ul>
+ *   <li><b>Immutable:</b> All operations return new maps, original unchanged</li>
+ *   <li><b>Sorted:</b> Iteration visits entries in ascending key order</li>
+ *   <li><b>Structural Sharing:</b> Updates and ranges share most structure with original</li>
+ *   <li><b>Thread-Safe:</b> Safe to share between threads without synchronization</li>
+ *   <li><b>Null Keys:</b> Not supported under natural ordering; values may be null</li>
+ * </ul>
+ *
+ * <h2>Performance Characteristics</h2>
+ * <table border="1">
+ *   <tr><th>Operation</th><th>Time Complexity</th><th>Notes</th></tr>
+ *   <tr><td>get(key)</td><td>O(log n)</td><td></td></tr>
+ *   <tr><td>put(key, value)</td><td>O(log n)</td><td>Creates new map</td></tr>
+ *   <tr><td>remove(key)</td><td>O(log n)</td><td>Creates new map</td></tr>
+ *   <tr><td>floorEntry / ceilingEntry</td><td>O(log n)</td><td>Also lower/higher</td></tr>
+ *   <tr><td>rank(key) / select(index)</td><td>O(log n)</td><td>Uses subtree sizes</td></tr>
+ *   <tr><td>subMap(from, to)</td><td>O(log n)</td><td>Shares interior subtrees</td></tr>
+ *   <tr><td>size()</td><td>O(1)</td><td>Cached</td></tr>
+ * </table>
+ *
+ * <h2>Example Usage</h2>
+ * <pre>{@code
+ * PersistentTreeMap<Integer, String> map = PersistentTreeMap.<Integer, String>empty()
+ *     .put(30, "thirty")
+ *     .put(10, "ten")
+ *     .put(20, "twenty");
+ *
+ * System.out.println(map);                       // {10=ten, 20=twenty, 30=thirty}
+ * System.out.println(map.floorKey(25));          // 20
+ * System.out.println(map.ceilingKey(25));        // 30
+ *
+ * // Positional queries
+ * System.out.println(map.rank(30));              // 2
+ * System.out.println(map.select(0).getKey());    // 10
+ *
+ * // Ranges are maps too (from inclusive, to exclusive)
+ * PersistentTreeMap<Integer, String> low = map.subMap(10, 30);  // {10=ten, 20=twenty}
+ *
+ * // Custom ordering
+ * PersistentTreeMap<String, Integer> byLength =
+ *     PersistentTreeMap.<String, Integer>empty(Comparator.comparing(String::length));
+ * }</pre>
+ *
+ * @param <K> The type of keys
+ * @param <V> The type of values
+ */
+public final class PersistentTreeMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final PersistentTreeMap<?, ?> EMPTY = new PersistentTreeMap<>(null, TreeNode.NATURAL);
+
+    private final TreeNode root;
+    private final Comparator<Object> comparator;
+    /** Cached hash code, or 0 if not computed yet. */
+    private int hash;
+
+    /**
+     * Private constructor.
+     */
+    private PersistentTreeMap(TreeNode root, Comparator<Object> comparator) {
+        this.root = root;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Wraps a tree root, reusing this map where possible.
+     */
+    private PersistentTreeMap<K, V> withRoot(TreeNode newRoot) {
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null && comparator == TreeNode.NATURAL) {
+            return empty();
+        }
+        return new PersistentTreeMap<>(newRoot, comparator);
+    }
+
+    /**
+     * Returns an empty persistent tree map ordered by the keys' natural ordering.
+     *
+     * @param <K> The type of keys
+     * @param <V> The type of values
+     * @return An empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentTreeMap<K, V> empty() {
+        return (PersistentTreeMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns an empty persistent tree map ordered by the given comparator.
+     *
+     * @param <K> The type of keys
+     * @param <V> The type of values
+     * @param comparator The key ordering
+     * @return An empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentTreeMap<K, V> empty(Comparator<? super K> comparator) {
+        Objects.requireNonNull(comparator, "comparator cannot be null");
+        return new PersistentTreeMap<>(null, (Comparator<Object>) comparator);
+    }
+
+    /**
+     * Creates a persistent tree map from the given entries, ordered by the keys'
+     * natural ordering. Later entries replace earlier ones with an equal key.
+     *
+     * @param <K> The type of keys
+     * @param <V> The type of values
+     * @param entries The entries to include
+     * @return A new persistent tree map containing the entries
+     */
+    @SafeVarargs
+    public static <K, V> PersistentTreeMap<K, V> of(Map.Entry<K, V>... entries) {
+        List<Map.Entry<K, V>> list = new ArrayList<>(entries.length);
+        for (Map.Entry<K, V> entry : entries) {
+            list.add(entry);
+        }
+        return PersistentTreeMap.<K, V>empty().putEntries(list);
+    }
+
+    /**
+     * Checks if this map is empty.
+     *
+     * @return true if the map has no entries
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns the number of entries in this map.
+     *
+     * @return The size of the map
+     */
+    public int size() {
+        return TreeNode.size(root);
+    }
+
+    /**
+     * Returns the comparator that orders the keys.
+     *
+     * @return The key ordering
+     */
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Gets the value associated with the given key.
+     *
+     * @param key The key to look up
+     * @return The value, or null if key not found
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        TreeNode node = TreeNode.find(root, key, comparator);
+        return node == null ? null : (V) node.value;
+    }
+
+    /**
+     * Gets the value associated with the given key, or a default value if not found.
+     *
+     * @param key The key to look up
+     * @param defaultValue The default value to return if key not found
+     * @return The value, or defaultValue if key not found
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(K key, V defaultValue) {
+        TreeNode node = TreeNode.find(root, key, comparator);
+        return node == null ? defaultValue : (V) node.value;
+    }
+
+    /**
+     * Checks if this map contains the given key.
+     *
+     * @param key The key to check
+     * @return true if the key is present
+     */
+    public boolean containsKey(K key) {
+        return TreeNode.find(root, key, comparator) != null;
+    }
+
+    /**
+     * Returns a new map with the given key-value pair added or updated.
+     *
+     * <p>If the key already exists, its value is replaced (the original key
+     * object is kept). The original map is unchanged.</p>
+     *
+     * @param key The key
+     * @param value The value
+     * @return A new map with the entry added/updated
+     */
+    public PersistentTreeMap<K, V> put(K key, V value) {
+        return withRoot(TreeNode.put(root, key, value, comparator));
+    }
+
+    /**
+     * Returns a new map with all entries from the given map added or updated.
+     *
+     * @param other The map to merge
+     * @return A new map with all entries
+     */
+    public PersistentTreeMap<K, V> putAll(Map<? extends K, ? extends V> other) {
+        return putEntries(other.entrySet());
+    }
+
+    /**
+     * Adds entries, building the tree in one pass when this map is empty.
+     */
+    private PersistentTreeMap<K, V> putEntries(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+        if (entries.isEmpty()) {
+            return this;
+        }
+        if (root != null) {
+            TreeNode newRoot = root;
+            for (Map.Entry<? extends K, ? extends V> entry : entries) {
+                newRoot = TreeNode.put(newRoot, entry.getKey(), entry.getValue(), comparator);
+            }
+            return withRoot(newRoot);
+        }
+
+        // Stable sort, then keep the last of each run of equal keys
+        List<Map.Entry<? extends K, ? extends V>> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> comparator.compare(a.getKey(), b.getKey()));
+        Object[] keys = new Object[sorted.size()];
+        Object[] values = new Object[sorted.size()];
+        int count = 0;
+        for (Map.Entry<? extends K, ? extends V> entry : sorted) {
+            if (count > 0 && comparator.compare(keys[count - 1], entry.getKey()) == 0) {
+                values[count - 1] = entry.getValue();
+            } else {
+                keys[count] = entry.getKey();
+                values[count] = entry.getValue();
+                count++;
+            }
+        }
+        return withRoot(TreeNode.fromSorted(keys, values, 0, count));
+    }
+
+    /**
+     * Returns a new map with the given key removed.
+     *
+     * <p>If the key doesn't exist, returns this map unchanged.</p>
+     *
+     * @param key The key to remove
+     * @return A new map without the key
+     */
+    public PersistentTreeMap<K, V> remove(K key) {
+        return withRoot(TreeNode.remove(root, key, comparator));
+    }
+
+    /**
+     * Returns the entry with the smallest key.
+     *
+     * @return The first entry, or null if the map is empty
+     */
+    public Map.Entry<K, V> firstEntry() {
+        return entryOf(TreeNode.first(root));
+    }
+
+    /**
+     * Returns the entry with the largest key.
+     *
+     * @return The last entry, or null if the map is empty
+     */
+    public Map.Entry<K, V> lastEntry() {
+        return entryOf(TreeNode.last(root));
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to the given key.
+     *
+     * @param key The key to search from
+     * @return The matching entry, or null if there is none
+     */
+    public Map.Entry<K, V> floorEntry(K key) {
+        return entryOf(TreeNode.floor(root, key, true, comparator));
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to the given key.
+     *
+     * @param key The key to search from
+     * @return The matching entry, or null if there is none
+     */
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return entryOf(TreeNode.ceiling(root, key, true, comparator));
+    }
+
+    /**
+     * Returns the entry with the greatest key strictly less than the given key.
+     *
+     * @param key The key to search from
+     * @return The matching entry, or null if there is none
+     */
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return entryOf(TreeNode.floor(root, key, false, comparator));
+    }
+
+    /**
+     * Returns the entry with the least key strictly greater than the given key.
+     *
+     * @param key The key to search from
+     * @return The matching entry, or null if there is none
+     */
+    public Map.Entry<K, V> higherEntry(K key) {
+        return entryOf(TreeNode.ceiling(root, key, false, comparator));
+    }
+
+    /**
+     * Returns the greatest key less than or equal to the given key.
+     *
+     * @param key The key to search from
+     * @return The matching key, or null if there is none
+     */
+    public K floorKey(K key) {
+        return keyOf(TreeNode.floor(root, key, true, comparator));
+    }
+
+    /**
+     * Returns the least key greater than or equal to the given key.
+     *
+     * @param key The key to search from
+     * @return The matching key, or null if there is none
+     */
+    public K ceilingKey(K key) {
+        return keyOf(TreeNode.ceiling(root, key, true, comparator));
+    }
+
+    /**
+     * Returns the number of keys strictly less than the given key. When the
+     * key is present this is its index in iteration order.
+     *
+     * @param key The key to rank
+     * @return The number of smaller keys
+     */
+    public int rank(K key) {
+        return TreeNode.rank(root, key, comparator);
+    }
+
+    /**
+     * Returns the entry at the given position in ascending key order.
+     *
+     * @param index The position, from 0 to size() - 1
+     * @return The entry at that position
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public Map.Entry<K, V> select(int index) {
+        return entryOf(TreeNode.select(root, index));
+    }
+
+    /**
+     * Returns the entries with keys from {@code fromKey} (inclusive) to
+     * {@code toKey} (exclusive) as a new map with the same ordering.
+     *
+     * @param fromKey The low end of the range, inclusive
+     * @param toKey The high end of the range, exclusive
+     * @return A map of the entries in range
+     * @throws IllegalArgumentException if fromKey is greater than toKey
+     */
+    public PersistentTreeMap<K, V> subMap(K fromKey, K toKey) {
+        if (comparator.compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        TreeNode range = TreeNode.above(root, fromKey, true, comparator);
+        return withRoot(TreeNode.below(range, toKey, false, comparator));
+    }
+
+    /**
+     * Returns the entries with keys strictly less than {@code toKey}.
+     *
+     * @param toKey The high end of the range, exclusive
+     * @return A map of the entries in range
+     */
+    public PersistentTreeMap<K, V> headMap(K toKey) {
+        return withRoot(TreeNode.below(root, toKey, false, comparator));
+    }
+
+    /**
+     * Returns the entries with keys greater than or equal to {@code fromKey}.
+     *
+     * @param fromKey The low end of the range, inclusive
+     * @return A map of the entries in range
+     */
+    public PersistentTreeMap<K, V> tailMap(K fromKey) {
+        return withRoot(TreeNode.above(root, fromKey, true, comparator));
+    }
+
+    /**
+     * Returns an iterator over the entries in ascending key order.
+     *
+     * @return An iterator
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new TreeNode.TreeIterator<Map.Entry<K, V>>(root) {
+            @Override
+            @SuppressWarnings("unchecked")
+            Map.Entry<K, V> produce(Object key, Object value) {
+                return new AbstractMap.SimpleImmutableEntry<>((K) key, (V) value);
+            }
+        };
+    }
+
+    /**
+     * Returns a spliterator over the entries in ascending key order.
+     *
+     * @return A spliterator
+     */
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return Spliterators.spliterator(iterator(), size(),
+            Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Returns a sequential stream over the entries in ascending key order.
+     *
+     * @return A stream of entries
+     */
+    public Stream<Map.Entry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    private Map.Entry<K, V> entryOf(TreeNode node) {
+        @SuppressWarnings("unchecked")
+        Map.Entry<K, V> entry = node == null ? null
+            : new AbstractMap.SimpleImmutableEntry<>((K) node.key, (V) node.value);
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K keyOf(TreeNode node) {
+        return node == null ? null : (K) node.key;
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "{}";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<K, V> entry : this) {
+            if (!first) sb.append(", ");
+            first = false;
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof PersistentTreeMap<?, ?> other)) return false;
+        if (size() != other.size()) return false;
+        if (root == other.root && comparator.equals(other.comparator)) return true;
+        if (hash != 0 && other.hash != 0 && hash != other.hash) return false;
+        for (Map.Entry<K, V> entry : this) {
+            TreeNode node = TreeNode.find(other.root, entry.getKey(), other.comparator);
+            if (node == null || !Objects.equals(node.value, entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // Same contract as java.util.Map#hashCode, cached in the tree nodes
+        int result = hash;
+        if (result == 0) {
+            result = TreeNode.contentHash(root);
+            hash = result;
+        }
+        return result;
+    }
+}
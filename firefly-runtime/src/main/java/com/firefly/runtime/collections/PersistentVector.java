@@ -1,13 +1,22 @@
 package com.firefly.runtime.collections;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Immutable persistent vector with efficient random access and updates.
@@ -17,6 +26,20 @@ import java.util.function.Predicate;
  * structural sharing. Unlike {@link PersistentList}, vectors are optimized for
  * random access rather than sequential access.</p>
  * 
+ * <p>Elements live in a bit-partitioned trie of 32-element leaves, plus a tail
+ * buffer holding the last (up to) 32 elements. Appending writes into the tail
+ * and only pushes a full tail into the trie every 32 elements, so append is
+ * amortised O(1). {@code get} and {@code set} walk one node per five bits of the
+ * index, and {@code set} copies only the nodes on that path.</p>
+ * 
+ * <p>{@link #concat}, {@link #take}, {@link #drop}, {@link #slice},
+ * {@link #insert} and {@link #prepend} turn the trie into a relaxed radix
+ * balanced (RRB) tree: a node on the affected paths may hold children that are
+ * not full, and records their cumulative sizes so lookups can still find the
+ * right slot. These operations touch O(log n) nodes and share everything else
+ * with their inputs. Vectors built only by appending never contain relaxed
+ * nodes.</p>
+ * 
  * <h2>Key Characteristics</h2>
  * <ul>
  *   <li><b>Immutable:</b> All operations return new vectors, original unchanged</li>
@@ -31,7 +54,11 @@ import java.util.function.Predicate;
  *   <tr><th>Operation</th><th>Time Complexity</th><th>Notes</th></tr>
  *   <tr><td>get(index)</td><td>O(log32 n) ≈ O(1)</td><td>Effectively constant</td></tr>
  *   <tr><td>set(index, value)</td><td>O(log32 n) ≈ O(1)</td><td>Creates new vector</td></tr>
- *   <tr><td>append(value)</td><td>O(log32 n) ≈ O(1)</td><td>Add to end</td></tr>
+ *   <tr><td>append(value)</td><td>O(1) amortised</td><td>Add to end</td></tr>
+ *   <tr><td>prepend(value)</td><td>O(log n)</td><td>Concatenation</td></tr>
+ *   <tr><td>concat(other)</td><td>O(log n)</td><td>Shares both inputs</td></tr>
+ *   <tr><td>take/drop/slice</td><td>O(log n)</td><td>Shares the input</td></tr>
+ *   <tr><td>insert(index, value)</td><td>O(log n)</td><td>Split and concatenate</td></tr>
  *   <tr><td>size()</td><td>O(1)</td><td>Cached</td></tr>
  *   <tr><td>map()</td><td>O(n)</td><td>Transform all elements</td></tr>
  *   <tr><td>filter()</td><td>O(n)</td><td>Keep matching elements</td></tr>
@@ -55,24 +82,102 @@ import java.util.function.Predicate;
  * 
  * // Functional operations
  * PersistentVector<String> upper = vec.map(String::toUpperCase);  // [A, B, C]
+ * 
+ * // Splicing without copying
+ * PersistentVector<String> joined = vec.concat(upper);      // [a, b, c, A, B, C]
+ * PersistentVector<String> window = joined.slice(2, 5);     // [c, A, B]
+ * 
+ * // Batch appends without publishing intermediate versions
+ * PersistentVector.Transient<String> builder = vec.asTransient();
+ * for (int i = 0; i < 1000; i++) {
+ *     builder.append("item" + i);
+ * }
+ * PersistentVector<String> big = builder.persistent();
  * }</pre>
  * 
  * @param <T> The type of elements in the vector
  */
-public final class PersistentVector<T> implements Iterable<T> {
+public final class PersistentVector<T> extends AbstractVector<T> {
+    
+    private static final int BITS = 5;
+    private static final int BRANCHING_FACTOR = 1 << BITS;
+    private static final int MASK = BRANCHING_FACTOR - 1;
+    
+    /** Below this size, par* operations run sequentially. */
+    private static final int PARALLEL_THRESHOLD = 8192;
+    
+    /** Trie level whose subtrees (1024 elements) parMap maps as one task. */
+    private static final int PARALLEL_LEAF_LEVEL = BITS;
     
-    private static final int BRANCHING_FACTOR = 32;
-    private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Object[0], 0);
+    /** Extra slots a relaxed node may use beyond the optimum before concat rebalances it. */
+    private static final int EXTRA_SEARCH_STEPS = 2;
+    
+    private static final AtomicReference<Thread> NOEDIT = new AtomicReference<>(null);
+    private static final Node EMPTY_NODE = new Node(NOEDIT, new Object[BRANCHING_FACTOR]);
+    private static final PersistentVector<?> EMPTY =
+        new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
     
-    private final Object[] elements;
     private final int size;
+    private final int shift;
+    private final Node root;
+    private final Object[] tail;
+    /** Cached hash code, or 0 if not computed yet. */
+    private int hash;
+    
+    /**
+     * Trie node. Branch nodes hold child nodes, leaf nodes hold elements.
+     * 
+     * <p>A regular branch node has a 32-slot array filled from the left, and
+     * every child but the last is full. A relaxed branch node has an array
+     * exactly as long as its child count plus a {@code sizes} table holding the
+     * cumulative element count after each child. A leaf's array length is its
+     * element count; only leaves produced by the RRB operations hold fewer than
+     * 32 elements, and a regular node may have such a leaf only as its last
+     * child.</p>
+     * 
+     * <p>A node whose edit token belongs to a live transient may be mutated in
+     * place by that transient; all other nodes are immutable and cache the
+     * hash of their elements once it has been computed.</p>
+     */
+    private static final class Node {
+        final AtomicReference<Thread> edit;
+        final Object[] array;
+        final int[] sizes;
+        /** Cached {@link #segmentHash}, or 0 if not computed yet. */
+        int hash;
+        
+        Node(AtomicReference<Thread> edit, Object[] array) {
+            this(edit, array, null);
+        }
+        
+        Node(AtomicReference<Thread> edit, Object[] array, int[] sizes) {
+            this.edit = edit;
+            this.array = array;
+            this.sizes = sizes;
+        }
+    }
+    
+    /**
+     * A trie root together with its level.
+     */
+    private static final class Trie {
+        final Node root;
+        final int shift;
+        
+        Trie(Node root, int shift) {
+            this.root = root;
+            this.shift = shift;
+        }
+    }
     
     /**
      * Private constructor.
      */
-    private PersistentVector(Object[] elements, int size) {
-        this.elements = elements;
+    private PersistentVector(int size, int shift, Node root, Object[] tail) {
         this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
     }
     
     /**
@@ -98,7 +203,11 @@ public final class PersistentVector<T> implements Iterable<T> {
         if (elements.length == 0) {
             return empty();
         }
-        return new PersistentVector<>(Arrays.copyOf(elements, elements.length), elements.length);
+        Transient<T> result = PersistentVector.<T>empty().asTransient();
+        for (T element : elements) {
+            result.append(element);
+        }
+        return result.persistent();
     }
     
     /**
@@ -119,6 +228,107 @@ public final class PersistentVector<T> implements Iterable<T> {
         return size;
     }
     
+    /**
+     * Returns the index of the first element stored in the tail.
+     */
+    private int tailOffset() {
+        return size - tail.length;
+    }
+    
+    /**
+     * Returns the slot of the child holding the given (node-relative) index.
+     * 
+     * <p>For a relaxed node the radix guess is a lower bound, since no child
+     * holds more than a full subtree; the size table is scanned from there.</p>
+     */
+    private static int slotFor(Node node, int level, int index) {
+        int slot = (index >>> level) & MASK;
+        int[] sizes = node.sizes;
+        if (sizes != null) {
+            while (sizes[slot] <= index) {
+                slot++;
+            }
+        }
+        return slot;
+    }
+    
+    /**
+     * Returns the element at the given index of a (non-empty) trie.
+     */
+    private static Object elementAt(Node root, int shift, int index) {
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            int slot = slotFor(node, level, index);
+            if (node.sizes != null && slot > 0) {
+                index -= node.sizes[slot - 1];
+            }
+            node = (Node) node.array[slot];
+        }
+        return node.array[index & MASK];
+    }
+    
+    /**
+     * Returns the leaf array (or the tail) holding the element at the given index.
+     */
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            int slot = slotFor(node, level, index);
+            if (node.sizes != null && slot > 0) {
+                index -= node.sizes[slot - 1];
+            }
+            node = (Node) node.array[slot];
+        }
+        return node.array;
+    }
+    
+    /**
+     * Returns the index of the first element of the leaf (or the tail) holding the given index.
+     */
+    private int leafStart(int index) {
+        int tailOffset = tailOffset();
+        if (index >= tailOffset) {
+            return tailOffset;
+        }
+        int start = 0;
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            int slot = slotFor(node, level, index - start);
+            if (node.sizes != null) {
+                start += slot > 0 ? node.sizes[slot - 1] : 0;
+            } else {
+                start += ((index - start) >>> level & MASK) << level;
+            }
+            node = (Node) node.array[slot];
+        }
+        return start;
+    }
+    
+    /**
+     * Returns the chunk holding the element at the given index.
+     * 
+     * <p>Chunks are the leaves of the trie plus the tail, and a chunk's length
+     * is the number of elements it holds: 32 for vectors built by appending,
+     * possibly fewer around the seams left by {@link #concat} or
+     * {@link #slice}. A loop that starts at index 0 and advances by
+     * {@code chunk.length} therefore visits every chunk once, in order, and
+     * reads elements with plain array accesses. Compiled {@code for} loops do
+     * this. The array is shared with the vector and must not be modified.</p>
+     * 
+     * @param index Any index inside the wanted chunk
+     * @return The chunk's backing array
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public Object[] chunkFor(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return leafFor(index);
+    }
+    
     /**
      * Gets the element at the specified index.
      * 
@@ -131,7 +341,11 @@ public final class PersistentVector<T> implements Iterable<T> {
         if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
         }
-        return (T) elements[index];
+        int tailOffset = tailOffset();
+        if (index >= tailOffset) {
+            return (T) tail[index - tailOffset];
+        }
+        return (T) elementAt(root, shift, index);
     }
     
     /**
@@ -149,9 +363,25 @@ public final class PersistentVector<T> implements Iterable<T> {
         if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
         }
-        Object[] newElements = Arrays.copyOf(elements, size);
-        newElements[index] = value;
-        return new PersistentVector<>(newElements, size);
+        int tailOffset = tailOffset();
+        if (index >= tailOffset) {
+            Object[] newTail = tail.clone();
+            newTail[index - tailOffset] = value;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, doSet(shift, root, index, value), tail);
+    }
+    
+    private static Node doSet(int level, Node node, int index, Object value) {
+        Object[] array = node.array.clone();
+        if (level == 0) {
+            array[index & MASK] = value;
+        } else {
+            int slot = slotFor(node, level, index);
+            int childIndex = node.sizes != null && slot > 0 ? index - node.sizes[slot - 1] : index;
+            array[slot] = doSet(level - BITS, (Node) node.array[slot], childIndex, value);
+        }
+        return new Node(NOEDIT, array, node.sizes);
     }
     
     /**
@@ -161,30 +391,552 @@ public final class PersistentVector<T> implements Iterable<T> {
      * @return A new vector with the element added
      */
     public PersistentVector<T> append(T value) {
-        Object[] newElements = Arrays.copyOf(elements, size + 1);
-        newElements[size] = value;
-        return new PersistentVector<>(newElements, size + 1);
+        int tailSize = tail.length;
+        if (tailSize < BRANCHING_FACTOR) {
+            Object[] newTail = new Object[tailSize + 1];
+            System.arraycopy(tail, 0, newTail, 0, tailSize);
+            newTail[tailSize] = value;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // Tail is full: push it into the trie and start a new one
+        Node tailNode = new Node(NOEDIT, tail);
+        if (root.sizes != null || (tailOffset() & MASK) != 0) {
+            Trie trie = pushLeaf(root, shift, tailNode);
+            return new PersistentVector<>(size + 1, trie.shift, trie.root, new Object[] { value });
+        }
+        Node newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // Root is full: grow the trie by one level
+            newRoot = new Node(NOEDIT, new Object[BRANCHING_FACTOR]);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(NOEDIT, shift, tailNode);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tailNode);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] { value });
+    }
+    
+    private Node pushTail(int level, Node parent, Node tailNode) {
+        int slot = ((size - 1) >>> level) & MASK;
+        Object[] array = parent.array.clone();
+        Node child;
+        if (level == BITS) {
+            child = tailNode;
+        } else {
+            Node existing = (Node) parent.array[slot];
+            child = existing != null
+                ? pushTail(level - BITS, existing, tailNode)
+                : newPath(NOEDIT, level - BITS, tailNode);
+        }
+        array[slot] = child;
+        return new Node(NOEDIT, array);
+    }
+    
+    private static Node newPath(AtomicReference<Thread> edit, int level, Node node) {
+        if (level == 0) {
+            return node;
+        }
+        Node path = new Node(edit, new Object[BRANCHING_FACTOR]);
+        path.array[0] = newPath(edit, level - BITS, node);
+        return path;
     }
     
     /**
      * Returns a new vector with the given element prepended to the beginning.
      * 
-     * <p>Note: This is less efficient than append() as it requires copying
-     * all elements. Prefer append() when possible.</p>
+     * <p>Runs in O(log n) by concatenating a one-element vector with this one.
+     * Lookups near the front stay fast because concatenation merges the small
+     * leaves it creates.</p>
      * 
      * @param value The element to prepend
      * @return A new vector with the element added at the beginning
      */
     public PersistentVector<T> prepend(T value) {
-        Object[] newElements = new Object[size + 1];
-        newElements[0] = value;
-        System.arraycopy(elements, 0, newElements, 1, size);
-        return new PersistentVector<>(newElements, size + 1);
+        return PersistentVector.<T>empty().append(value).concat(this);
+    }
+    
+    /**
+     * Returns a new vector with the given element inserted before the element
+     * currently at {@code index}.
+     * 
+     * <p>Runs in O(log n): the vector is split at the index and the halves are
+     * concatenated around the new element.</p>
+     * 
+     * @param index The position of the new element, from 0 to size() inclusive
+     * @param value The element to insert
+     * @return A new vector with the element inserted
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public PersistentVector<T> insert(int index, T value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index == size) {
+            return append(value);
+        }
+        return take(index).append(value).concat(drop(index));
+    }
+    
+    /**
+     * Returns a vector of the elements of this vector followed by those of the other.
+     * 
+     * <p>Runs in O(log n). Only the nodes along the seam between the two tries
+     * are rebuilt; they are rebalanced so that at most a couple of extra slots
+     * per level go unused, which keeps lookups close to regular-vector speed.
+     * All other nodes are shared with both inputs.</p>
+     * 
+     * @param other The vector to append
+     * @return The concatenated vector
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentVector<T> concat(PersistentVector<? extends T> other) {
+        Objects.requireNonNull(other, "other cannot be null");
+        PersistentVector<T> right = (PersistentVector<T>) other;
+        if (right.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return right;
+        }
+        int newSize = size + right.size;
+        if (right.tailOffset() == 0) {
+            // The other vector is only a tail: top up ours, pushing it once it is full
+            int room = BRANCHING_FACTOR - tail.length;
+            if (right.size <= room) {
+                Object[] newTail = Arrays.copyOf(tail, tail.length + right.size);
+                System.arraycopy(right.tail, 0, newTail, tail.length, right.size);
+                return new PersistentVector<>(newSize, shift, root, newTail);
+            }
+            Object[] full = Arrays.copyOf(tail, BRANCHING_FACTOR);
+            System.arraycopy(right.tail, 0, full, tail.length, room);
+            Trie trie = pushLeaf(root, shift, new Node(NOEDIT, full));
+            return new PersistentVector<>(newSize, trie.shift, trie.root,
+                Arrays.copyOfRange(right.tail, room, right.size));
+        }
+        Trie left = pushLeaf(root, shift, new Node(NOEDIT, tail));
+        Node merged = concatSubtrees(left.root, left.shift, right.root, right.shift);
+        return withTrie(newSize, merged, Math.max(left.shift, right.shift) + BITS, right.tail);
+    }
+    
+    /**
+     * Returns a vector of the first {@code n} elements of this vector.
+     * 
+     * <p>Runs in O(log n) and shares the kept part of the trie. Together with
+     * {@link #drop(int)} this splits a vector in two.</p>
+     * 
+     * @param n The number of elements to keep
+     * @return A vector of at most n elements
+     * @throws IllegalArgumentException if n is negative
+     */
+    public PersistentVector<T> take(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be non-negative: " + n);
+        }
+        if (n >= size) {
+            return this;
+        }
+        if (n == 0) {
+            return empty();
+        }
+        int tailOffset = tailOffset();
+        if (n > tailOffset) {
+            return new PersistentVector<>(n, shift, root, Arrays.copyOf(tail, n - tailOffset));
+        }
+        // The leaf holding the last kept element becomes the new tail
+        int start = leafStart(n - 1);
+        Object[] newTail = Arrays.copyOf(leafFor(n - 1), n - start);
+        if (start == 0) {
+            return new PersistentVector<>(n, BITS, EMPTY_NODE, newTail);
+        }
+        return withTrie(n, takeNode(root, shift, start), shift, newTail);
+    }
+    
+    /**
+     * Returns a vector without the first {@code n} elements of this vector.
+     * 
+     * <p>Runs in O(log n) and shares the rest of the trie.</p>
+     * 
+     * @param n The number of elements to remove
+     * @return A vector of the remaining elements
+     * @throws IllegalArgumentException if n is negative
+     */
+    public PersistentVector<T> drop(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be non-negative: " + n);
+        }
+        if (n == 0) {
+            return this;
+        }
+        if (n >= size) {
+            return empty();
+        }
+        int tailOffset = tailOffset();
+        if (n >= tailOffset) {
+            return new PersistentVector<>(size - n, BITS, EMPTY_NODE,
+                Arrays.copyOfRange(tail, n - tailOffset, tail.length));
+        }
+        return withTrie(size - n, dropNode(root, shift, n), shift, tail);
+    }
+    
+    /**
+     * Returns a vector of the elements from {@code from} (inclusive) to
+     * {@code to} (exclusive), in O(log n).
+     * 
+     * @param from The index of the first element
+     * @param to The index after the last element
+     * @return The slice
+     * @throws IndexOutOfBoundsException if the range is out of bounds
+     */
+    public PersistentVector<T> slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + size);
+        }
+        return take(to).drop(from);
+    }
+    
+    // ============ Relaxed (RRB) trie support ============
+    
+    /**
+     * Creates a vector, dropping root levels that have a single child.
+     */
+    private static <T> PersistentVector<T> withTrie(int size, Node root, int shift, Object[] tail) {
+        while (shift > BITS && childCount(root) == 1) {
+            root = (Node) root.array[0];
+            shift -= BITS;
+        }
+        return new PersistentVector<>(size, shift, root, tail);
+    }
+    
+    /**
+     * Returns the number of children of a branch node.
+     */
+    private static int childCount(Node node) {
+        if (node.sizes != null) {
+            return node.sizes.length;
+        }
+        int count = node.array.length;
+        while (count > 0 && node.array[count - 1] == null) {
+            count--;
+        }
+        return count;
+    }
+    
+    /**
+     * Returns the number of elements below a node at the given level.
+     */
+    private static int treeSize(Node node, int level) {
+        if (level == 0) {
+            return node.array.length;
+        }
+        if (node.sizes != null) {
+            return node.sizes.length == 0 ? 0 : node.sizes[node.sizes.length - 1];
+        }
+        int count = childCount(node);
+        if (count == 0) {
+            return 0;
+        }
+        return ((count - 1) << level) + treeSize((Node) node.array[count - 1], level - BITS);
+    }
+    
+    /**
+     * Returns the cumulative child sizes of a branch node, computing them for a regular node.
+     */
+    private static int[] sizesOf(Node node, int level) {
+        if (node.sizes != null) {
+            return node.sizes;
+        }
+        int count = childCount(node);
+        int[] sizes = new int[count];
+        for (int i = 0; i < count - 1; i++) {
+            sizes[i] = (i + 1) << level;
+        }
+        if (count > 0) {
+            sizes[count - 1] = ((count - 1) << level) + treeSize((Node) node.array[count - 1], level - BITS);
+        }
+        return sizes;
+    }
+    
+    /**
+     * Creates a relaxed branch node at the given level over the given children.
+     */
+    private static Node relaxed(Object[] children, int level) {
+        int[] sizes = new int[children.length];
+        int total = 0;
+        for (int i = 0; i < children.length; i++) {
+            total += treeSize((Node) children[i], level - BITS);
+            sizes[i] = total;
+        }
+        return new Node(NOEDIT, children, sizes);
+    }
+    
+    /**
+     * Appends a leaf of any length at the right edge of a regular or relaxed
+     * trie, adding a root level when the trie is full.
+     */
+    private static Trie pushLeaf(Node root, int shift, Node leaf) {
+        Node appended = appendToEdge(root, shift, leaf);
+        if (appended != null) {
+            return new Trie(appended, shift);
+        }
+        Node path = newPath(NOEDIT, shift, leaf);
+        if (root.sizes == null && treeSize(root, shift) == BRANCHING_FACTOR << shift) {
+            Object[] array = new Object[BRANCHING_FACTOR];
+            array[0] = root;
+            array[1] = path;
+            return new Trie(new Node(NOEDIT, array), shift + BITS);
+        }
+        return new Trie(relaxed(new Object[] { root, path }, shift + BITS), shift + BITS);
+    }
+    
+    /**
+     * Returns the subtree with the leaf added after its last element, or null if it has no room.
+     */
+    private static Node appendToEdge(Node node, int level, Node leaf) {
+        int count = childCount(node);
+        if (level > BITS && count > 0) {
+            Node updated = appendToEdge((Node) node.array[count - 1], level - BITS, leaf);
+            if (updated != null) {
+                return withChild(node, level, count - 1, updated);
+            }
+        }
+        if (count == BRANCHING_FACTOR) {
+            return null;
+        }
+        return withChild(node, level, count, level == BITS ? leaf : newPath(NOEDIT, level - BITS, leaf));
+    }
+    
+    /**
+     * Returns a copy of a branch node with its last child replaced, or with a
+     * child added at {@code slot == childCount}. The copy stays regular when
+     * the result still satisfies the regular-node rules.
+     */
+    private static Node withChild(Node node, int level, int slot, Node child) {
+        int count = childCount(node);
+        boolean regular = node.sizes == null && child.sizes == null
+            && (slot < count || treeSize(node, level) == count << level);
+        if (regular) {
+            Object[] array = node.array.clone();
+            array[slot] = child;
+            return new Node(NOEDIT, array);
+        }
+        Object[] array = Arrays.copyOf(node.array, Math.max(count, slot + 1));
+        array[slot] = child;
+        int[] sizes = Arrays.copyOf(sizesOf(node, level), array.length);
+        sizes[slot] = (slot == 0 ? 0 : sizes[slot - 1]) + treeSize(child, level - BITS);
+        return new Node(NOEDIT, array, sizes);
+    }
+    
+    /**
+     * Keeps the first {@code count} elements of a subtree; count ends on a leaf boundary.
+     */
+    private static Node takeNode(Node node, int level, int count) {
+        int slot = slotFor(node, level, count - 1);
+        Object child = node.array[slot];
+        if (level > BITS) {
+            int before = node.sizes != null ? (slot == 0 ? 0 : node.sizes[slot - 1]) : slot << level;
+            child = takeNode((Node) child, level - BITS, count - before);
+        }
+        if (node.sizes == null) {
+            // A prefix of a regular node is regular
+            Object[] array = new Object[BRANCHING_FACTOR];
+            System.arraycopy(node.array, 0, array, 0, slot);
+            array[slot] = child;
+            return new Node(NOEDIT, array);
+        }
+        Object[] array = Arrays.copyOf(node.array, slot + 1);
+        array[slot] = child;
+        int[] sizes = Arrays.copyOf(node.sizes, slot + 1);
+        sizes[slot] = count;
+        return new Node(NOEDIT, array, sizes);
+    }
+    
+    /**
+     * Removes the first {@code count} elements of a subtree, where count is
+     * less than its size. The result is relaxed.
+     */
+    private static Node dropNode(Node node, int level, int count) {
+        int slot = slotFor(node, level, count);
+        int[] sizes = sizesOf(node, level);
+        int before = slot == 0 ? 0 : sizes[slot - 1];
+        Node child = (Node) node.array[slot];
+        if (count > before) {
+            child = level == BITS
+                ? new Node(NOEDIT, Arrays.copyOfRange(child.array, count - before, child.array.length))
+                : dropNode(child, level - BITS, count - before);
+        }
+        int kept = sizes.length - slot;
+        Object[] array = new Object[kept];
+        array[0] = child;
+        System.arraycopy(node.array, slot + 1, array, 1, kept - 1);
+        int[] newSizes = new int[kept];
+        for (int i = 0; i < kept; i++) {
+            newSizes[i] = sizes[slot + i] - count;
+        }
+        return new Node(NOEDIT, array, newSizes);
+    }
+    
+    /**
+     * Concatenates two subtrees, returning a relaxed node one level above the
+     * higher of the two that holds one or two children.
+     */
+    private static Node concatSubtrees(Node left, int leftLevel, Node right, int rightLevel) {
+        if (leftLevel > rightLevel) {
+            Node last = (Node) left.array[childCount(left) - 1];
+            Node middle = concatSubtrees(last, leftLevel - BITS, right, rightLevel);
+            return rebalance(left, middle, null, leftLevel);
+        }
+        if (leftLevel < rightLevel) {
+            Node middle = concatSubtrees(left, leftLevel, (Node) right.array[0], rightLevel - BITS);
+            return rebalance(null, middle, right, rightLevel);
+        }
+        if (leftLevel == 0) {
+            int total = left.array.length + right.array.length;
+            if (total > BRANCHING_FACTOR) {
+                return relaxed(new Object[] { left, right }, BITS);
+            }
+            Object[] merged = Arrays.copyOf(left.array, total);
+            System.arraycopy(right.array, 0, merged, left.array.length, right.array.length);
+            return relaxed(new Object[] { new Node(NOEDIT, merged) }, BITS);
+        }
+        Node last = (Node) left.array[childCount(left) - 1];
+        Node middle = concatSubtrees(last, leftLevel - BITS, (Node) right.array[0], rightLevel - BITS);
+        return rebalance(left, middle, right, leftLevel);
+    }
+    
+    /**
+     * Merges the children along a concatenation seam (all of {@code left}'s
+     * but its last, all of {@code middle}'s, all of {@code right}'s but its
+     * first) into one or two nodes at the given level, and returns a relaxed
+     * node one level up holding them.
+     * 
+     * <p>Children are only repacked while there are more than
+     * {@link #EXTRA_SEARCH_STEPS} more of them than the optimum; a child that
+     * keeps its exact contents is reused as is.</p>
+     */
+    private static Node rebalance(Node left, Node middle, Node right, int level) {
+        int childLevel = level - BITS;
+        List<Node> all = new ArrayList<>(2 * BRANCHING_FACTOR);
+        if (left != null) {
+            for (int i = 0, n = childCount(left) - 1; i < n; i++) {
+                all.add((Node) left.array[i]);
+            }
+        }
+        for (int i = 0, n = childCount(middle); i < n; i++) {
+            all.add((Node) middle.array[i]);
+        }
+        if (right != null) {
+            for (int i = 1, n = childCount(right); i < n; i++) {
+                all.add((Node) right.array[i]);
+            }
+        }
+        
+        // Plan how many slots each rebuilt child gets
+        int count = all.size();
+        int[] slots = new int[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            slots[i] = slotCount(all.get(i), childLevel);
+            total += slots[i];
+        }
+        int optimal = (total + MASK) >>> BITS;
+        int i = 0;
+        while (count > optimal + EXTRA_SEARCH_STEPS) {
+            while (slots[i] > BRANCHING_FACTOR - 1) {
+                i++;
+            }
+            // Spread the short child's slots over the children that follow it
+            int remaining = slots[i];
+            do {
+                int filled = Math.min(remaining + slots[i + 1], BRANCHING_FACTOR);
+                remaining = remaining + slots[i + 1] - filled;
+                slots[i] = filled;
+                i++;
+            } while (remaining > 0);
+            System.arraycopy(slots, i + 1, slots, i, count - i - 1);
+            count--;
+            i--;
+        }
+        
+        // Rebuild the children according to the plan
+        Object[] rebuilt = new Object[count];
+        int source = 0;
+        int offset = 0;
+        for (int k = 0; k < count; k++) {
+            Node next = all.get(source);
+            if (offset == 0 && slotCount(next, childLevel) == slots[k]) {
+                rebuilt[k] = next;
+                source++;
+                continue;
+            }
+            Object[] items = new Object[slots[k]];
+            int filled = 0;
+            while (filled < items.length) {
+                Node from = all.get(source);
+                int available = slotCount(from, childLevel) - offset;
+                int copied = Math.min(available, items.length - filled);
+                System.arraycopy(from.array, offset, items, filled, copied);
+                filled += copied;
+                offset += copied;
+                if (copied == available) {
+                    source++;
+                    offset = 0;
+                }
+            }
+            rebuilt[k] = childLevel == 0 ? new Node(NOEDIT, items) : relaxed(items, childLevel);
+        }
+        
+        if (count <= BRANCHING_FACTOR) {
+            return relaxed(new Object[] { relaxed(rebuilt, level) }, level + BITS);
+        }
+        Node first = relaxed(Arrays.copyOfRange(rebuilt, 0, BRANCHING_FACTOR), level);
+        Node second = relaxed(Arrays.copyOfRange(rebuilt, BRANCHING_FACTOR, count), level);
+        return relaxed(new Object[] { first, second }, level + BITS);
+    }
+    
+    /**
+     * Returns the number of used slots of a node: elements for a leaf, children otherwise.
+     */
+    private static int slotCount(Node node, int level) {
+        return level == 0 ? node.array.length : childCount(node);
+    }
+    
+    /**
+     * Returns a transient (batch-mutable) view of this vector.
+     * 
+     * <p>The transient shares the trie with this vector. Updates through it copy
+     * each shared node once and then edit it in place, so n appends cost n
+     * writes into a 32-element tail rather than n new vectors. The transient may
+     * only be used by the thread that created it, and only until
+     * {@link Transient#persistent()} is called. This vector is never affected.</p>
+     * 
+     * @return A new transient vector owned by the current thread
+     */
+    public Transient<T> asTransient() {
+        return new Transient<>(this);
+    }
+    
+    /**
+     * Returns a lazy sequence over this vector.
+     * 
+     * <p>Chained {@code map}/{@code filter}/{@code take} stages on the sequence
+     * run in a single pass over the leaves when a terminal operation such as
+     * {@link Seq#toVector()} is called, without building intermediate vectors.</p>
+     * 
+     * @return A lazy sequence of this vector's elements
+     */
+    public Seq<T> seq() {
+        return Seq.from(this);
     }
     
     /**
      * Returns a new vector with all elements transformed by the given function.
      * 
+     * <p>The result has the same trie shape as this vector (including any
+     * relaxed nodes), so each leaf is mapped into a new leaf of the same
+     * length.</p>
+     * 
      * @param <R> The type of elements in the result vector
      * @param mapper The transformation function
      * @return A new vector with transformed elements
@@ -194,13 +946,28 @@ public final class PersistentVector<T> implements Iterable<T> {
         if (isEmpty()) {
             return empty();
         }
-        Object[] newElements = new Object[size];
-        for (int i = 0; i < size; i++) {
-            @SuppressWarnings("unchecked")
-            T element = (T) elements[i];
-            newElements[i] = mapper.apply(element);
+        Node newRoot = tailOffset() == 0 ? root : mapNode(shift, root, mapper);
+        return new PersistentVector<>(size, shift, newRoot, mapLeaf(tail, tail.length, mapper));
+    }
+    
+    private static <T> Node mapNode(int level, Node node, Function<? super T, ?> mapper) {
+        if (level == 0) {
+            return new Node(NOEDIT, mapLeaf(node.array, node.array.length, mapper));
         }
-        return new PersistentVector<>(newElements, size);
+        Object[] array = new Object[node.array.length];
+        for (int i = 0; i < array.length && node.array[i] != null; i++) {
+            array[i] = mapNode(level - BITS, (Node) node.array[i], mapper);
+        }
+        return new Node(NOEDIT, array, node.sizes);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> Object[] mapLeaf(Object[] leaf, int length, Function<? super T, ?> mapper) {
+        Object[] mapped = new Object[length];
+        for (int i = 0; i < length; i++) {
+            mapped[i] = mapper.apply((T) leaf[i]);
+        }
+        return mapped;
     }
     
     /**
@@ -214,19 +981,13 @@ public final class PersistentVector<T> implements Iterable<T> {
         if (isEmpty()) {
             return this;
         }
-        Object[] newElements = new Object[size];
-        int newSize = 0;
-        for (int i = 0; i < size; i++) {
-            @SuppressWarnings("unchecked")
-            T element = (T) elements[i];
+        Transient<T> result = PersistentVector.<T>empty().asTransient();
+        forEach(element -> {
             if (predicate.test(element)) {
-                newElements[newSize++] = element;
+                result.append(element);
             }
-        }
-        if (newSize == 0) {
-            return empty();
-        }
-        return new PersistentVector<>(Arrays.copyOf(newElements, newSize), newSize);
+        });
+        return result.size() == size ? this : result.persistent();
     }
     
     /**
@@ -242,10 +1003,14 @@ public final class PersistentVector<T> implements Iterable<T> {
     public <R> R reduce(R identity, BiFunction<R, ? super T, R> accumulator) {
         Objects.requireNonNull(accumulator, "accumulator cannot be null");
         R result = identity;
-        for (int i = 0; i < size; i++) {
-            @SuppressWarnings("unchecked")
-            T element = (T) elements[i];
-            result = accumulator.apply(result, element);
+        for (int base = 0; base < size; ) {
+            Object[] leaf = leafFor(base);
+            for (Object value : leaf) {
+                @SuppressWarnings("unchecked")
+                T element = (T) value;
+                result = accumulator.apply(result, element);
+            }
+            base += leaf.length;
         }
         return result;
     }
@@ -257,22 +1022,156 @@ public final class PersistentVector<T> implements Iterable<T> {
      */
     public void forEach(Consumer<? super T> action) {
         Objects.requireNonNull(action, "action cannot be null");
-        for (int i = 0; i < size; i++) {
-            @SuppressWarnings("unchecked")
-            T element = (T) elements[i];
-            action.accept(element);
+        for (int base = 0; base < size; ) {
+            Object[] leaf = leafFor(base);
+            for (Object value : leaf) {
+                @SuppressWarnings("unchecked")
+                T element = (T) value;
+                action.accept(element);
+            }
+            base += leaf.length;
+        }
+    }
+    
+    /**
+     * Returns a new vector with all elements transformed by the given function,
+     * mapping subtrees of the trie in parallel on the common {@link ForkJoinPool}.
+     * 
+     * <p>Each task maps one subtree of 1024 elements, and the result has the
+     * same trie shape as this vector. Vectors with fewer than 8192 elements are
+     * mapped on the calling thread. The mapper may run concurrently on several
+     * threads.</p>
+     * 
+     * @param <R> The type of elements in the result vector
+     * @param mapper The transformation function
+     * @return A new vector with transformed elements, in the original order
+     */
+    public <R> PersistentVector<R> parMap(Function<? super T, ? extends R> mapper) {
+        Objects.requireNonNull(mapper, "mapper cannot be null");
+        if (size < PARALLEL_THRESHOLD) {
+            return map(mapper);
+        }
+        Node newRoot = ForkJoinPool.commonPool().invoke(new MapTask<T>(shift, root, mapper));
+        return new PersistentVector<>(size, shift, newRoot, mapLeaf(tail, tail.length, mapper));
+    }
+    
+    /**
+     * Returns a new vector containing only elements that match the predicate,
+     * testing elements in parallel on the common {@link ForkJoinPool}.
+     * 
+     * <p>Vectors with fewer than 8192 elements are filtered on the calling thread.</p>
+     * 
+     * @param predicate The filter predicate
+     * @return A new vector with matching elements, in the original order
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentVector<T> parFilter(Predicate<? super T> predicate) {
+        Objects.requireNonNull(predicate, "predicate cannot be null");
+        if (size < PARALLEL_THRESHOLD) {
+            return filter(predicate);
+        }
+        Object[] kept = StreamSupport.stream(spliterator(), true).filter(predicate).toArray();
+        if (kept.length == size) {
+            return this;
+        }
+        Transient<T> result = PersistentVector.<T>empty().asTransient();
+        for (Object element : kept) {
+            result.append((T) element);
+        }
+        return result.persistent();
+    }
+    
+    /**
+     * Reduces the elements of this vector in parallel on the common {@link ForkJoinPool}.
+     * 
+     * <p>Each task folds a contiguous range of elements starting from
+     * {@code identity}, and adjacent results are merged in order with the
+     * combiner. {@code identity} must therefore be an identity for the combiner,
+     * and the combiner must be associative. Vectors with fewer than 8192
+     * elements are reduced on the calling thread.</p>
+     * 
+     * @param <R> The type of the result
+     * @param identity The initial value of each partial result
+     * @param accumulator Folds one element into a partial result
+     * @param combiner Merges two partial results
+     * @return The final accumulated value
+     */
+    public <R> R parReduce(R identity, BiFunction<R, ? super T, R> accumulator, BinaryOperator<R> combiner) {
+        Objects.requireNonNull(accumulator, "accumulator cannot be null");
+        Objects.requireNonNull(combiner, "combiner cannot be null");
+        if (size < PARALLEL_THRESHOLD) {
+            return reduce(identity, accumulator);
+        }
+        return StreamSupport.stream(spliterator(), true).reduce(identity, accumulator, combiner);
+    }
+    
+    /**
+     * Applies the given action to each element in parallel on the common
+     * {@link ForkJoinPool}.
+     * 
+     * <p>The action may run concurrently on several threads and in no particular
+     * order. Vectors with fewer than 8192 elements are processed on the calling
+     * thread.</p>
+     * 
+     * @param action The action to perform on each element
+     */
+    public void parForEach(Consumer<? super T> action) {
+        Objects.requireNonNull(action, "action cannot be null");
+        if (size < PARALLEL_THRESHOLD) {
+            forEach(action);
+            return;
+        }
+        StreamSupport.stream(spliterator(), true).forEach(action);
+    }
+    
+    /**
+     * Maps one subtree, forking a task per child until subtrees are small enough.
+     */
+    private static final class MapTask<T> extends RecursiveTask<Node> {
+        private static final long serialVersionUID = 1L;
+
+        private final int level;
+        private final transient Node node;
+        private final transient Function<? super T, ?> mapper;
+        
+        MapTask(int level, Node node, Function<? super T, ?> mapper) {
+            this.level = level;
+            this.node = node;
+            this.mapper = mapper;
+        }
+        
+        @Override
+        protected Node compute() {
+            if (level <= PARALLEL_LEAF_LEVEL) {
+                return mapNode(level, node, mapper);
+            }
+            List<MapTask<T>> children = new ArrayList<>(BRANCHING_FACTOR);
+            for (int i = 0; i < node.array.length && node.array[i] != null; i++) {
+                children.add(new MapTask<>(level - BITS, (Node) node.array[i], mapper));
+            }
+            invokeAll(children);
+            Object[] array = new Object[node.array.length];
+            for (int i = 0; i < children.size(); i++) {
+                array[i] = children.get(i).join();
+            }
+            return new Node(NOEDIT, array, node.sizes);
         }
     }
     
     /**
      * Returns an iterator over the elements in this vector.
      * 
+     * <p>The iterator walks one leaf at a time, so only the first call for
+     * each leaf descends the trie.</p>
+     * 
      * @return An iterator
      */
     @Override
     public Iterator<T> iterator() {
         return new Iterator<T>() {
             private int index = 0;
+            private int base = 0;
+            private Object[] leaf = size > 0 ? leafFor(0) : tail;
             
             @Override
             public boolean hasNext() {
@@ -280,49 +1179,409 @@ public final class PersistentVector<T> implements Iterable<T> {
             }
             
             @Override
+            @SuppressWarnings("unchecked")
             public T next() {
                 if (!hasNext()) {
                     throw new NoSuchElementException();
                 }
-                return get(index++);
+                if (index - base == leaf.length) {
+                    leaf = leafFor(index);
+                    base = index;
+                }
+                return (T) leaf[index++ - base];
             }
         };
     }
     
+    /**
+     * Returns a spliterator over the elements in this vector.
+     * 
+     * <p>The spliterator is {@code ORDERED}, {@code SIZED} and {@code SUBSIZED},
+     * and splits index ranges at leaf boundaries, so no leaf is shared between
+     * the halves and {@code stream().parallel()} divides the
+     * vector evenly across worker threads.</p>
+     * 
+     * @return A spliterator
+     */
     @Override
-    public String toString() {
-        if (isEmpty()) {
-            return "[]";
+    public Spliterator<T> spliterator() {
+        return new VectorSpliterator(0, size);
+    }
+    
+    /**
+     * Returns a sequential stream over the elements in this vector.
+     * 
+     * @return A stream of elements
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    /**
+     * Spliterator over the index range {@code [index, fence)}.
+     */
+    private final class VectorSpliterator implements Spliterator<T> {
+        private int index;
+        private final int fence;
+        private Object[] leaf;
+        private int leafBase;
+        
+        VectorSpliterator(int index, int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= fence) {
+                return false;
+            }
+            if (leaf == null || index - leafBase == leaf.length) {
+                leafBase = leafStart(index);
+                leaf = leafFor(index);
+            }
+            action.accept((T) leaf[index - leafBase]);
+            index++;
+            return true;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (index >= fence) {
+                return;
+            }
+            int start = leafStart(index);
+            while (index < fence) {
+                Object[] chunk = leafFor(index);
+                int end = Math.min(fence, start + chunk.length);
+                for (; index < end; index++) {
+                    action.accept((T) chunk[index - start]);
+                }
+                start += chunk.length;
+            }
+        }
+        
+        @Override
+        public Spliterator<T> trySplit() {
+            int half = (index + fence) >>> 1;
+            int mid = leafStart(half);
+            if (mid <= index) {
+                mid += leafFor(half).length;
+            }
+            if (mid >= fence) {
+                return null;
+            }
+            Spliterator<T> prefix = new VectorSpliterator(index, mid);
+            index = mid;
+            leaf = null;
+            return prefix;
+        }
+        
+        @Override
+        public long estimateSize() {
+            return fence - index;
         }
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < size; i++) {
-            if (i > 0) sb.append(", ");
-            sb.append(elements[i]);
+        
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
         }
-        sb.append("]");
-        return sb.toString();
     }
     
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
-        if (!(obj instanceof PersistentVector<?> other)) return false;
+        if (!(obj instanceof PersistentVector<?> other)) return super.equals(obj);
         if (size != other.size) return false;
-        for (int i = 0; i < size; i++) {
-            if (!Objects.equals(elements[i], other.elements[i])) {
+        if (hash != 0 && other.hash != 0 && hash != other.hash) return false;
+        if (shift == other.shift && tail.length == other.tail.length) {
+            // Same trie height and element count: compare node by node, skipping shared subtrees
+            return sameElements(root, other.root, shift) && Arrays.equals(tail, other.tail);
+        }
+        return elementsEqual(other);
+    }
+    
+    @Override
+    public int hashCode() {
+        // Same contract as java.util.List#hashCode: 31^n + sum of hash(e_i) * 31^(n-1-i)
+        int result = hash;
+        if (result == 0) {
+            int tailHash = 0;
+            for (Object element : tail) {
+                tailHash = 31 * tailHash + Objects.hashCode(element);
+            }
+            result = pow31(size) + segmentHash(root, shift) * pow31(tail.length) + tailHash;
+            hash = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns 31 to the power n, with int overflow as in {@link #hashCode()}.
+     */
+    private static int pow31(int n) {
+        int result = 1;
+        int base = 31;
+        while (n != 0) {
+            if ((n & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+            n >>>= 1;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns sum of hash(e_i) * 31^(count-1-i) over the elements below a node.
+     * 
+     * <p>Segment hashes combine as {@code h(a ++ b) = h(a) * 31^|b| + h(b)}, so
+     * a branch folds its children's hashes. Frozen nodes cache the result, so
+     * hashing a vector derived from an already hashed one only visits the
+     * nodes on the paths that changed.</p>
+     */
+    private static int segmentHash(Node node, int level) {
+        int result = node.hash;
+        if (result != 0) {
+            return result;
+        }
+        if (level == 0) {
+            for (Object element : node.array) {
+                result = 31 * result + Objects.hashCode(element);
+            }
+        } else {
+            int count = childCount(node);
+            for (int i = 0; i < count; i++) {
+                Node child = (Node) node.array[i];
+                int childSize;
+                if (node.sizes != null) {
+                    childSize = node.sizes[i] - (i == 0 ? 0 : node.sizes[i - 1]);
+                } else {
+                    childSize = i < count - 1 ? 1 << level : treeSize(child, level - BITS);
+                }
+                result = result * pow31(childSize) + segmentHash(child, level - BITS);
+            }
+        }
+        // A node that a live transient may still edit in place is not cached
+        if (node.edit.get() == null) {
+            node.hash = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Compares the elements below two nodes at the same level holding the same
+     * number of elements. Shared subtrees, and subtrees whose cached hashes
+     * differ, are decided without visiting their elements.
+     */
+    private static boolean sameElements(Node a, Node b, int level) {
+        if (a == b) {
+            return true;
+        }
+        if (a.hash != 0 && b.hash != 0 && a.hash != b.hash) {
+            return false;
+        }
+        if (level == 0) {
+            return Arrays.equals(a.array, b.array);
+        }
+        boolean aligned = a.sizes == null && b.sizes == null
+            || Arrays.equals(sizesOf(a, level), sizesOf(b, level));
+        if (!aligned) {
+            int count = treeSize(a, level);
+            Object[] left = new Object[count];
+            Object[] right = new Object[count];
+            copyElements(a, level, left, 0);
+            copyElements(b, level, right, 0);
+            return Arrays.equals(left, right);
+        }
+        int count = childCount(a);
+        for (int i = 0; i < count; i++) {
+            if (!sameElements((Node) a.array[i], (Node) b.array[i], level - BITS)) {
                 return false;
             }
         }
         return true;
     }
     
-    @Override
-    public int hashCode() {
-        int hash = 1;
-        for (int i = 0; i < size; i++) {
-            hash = 31 * hash + Objects.hashCode(elements[i]);
+    /**
+     * Copies the elements below a node into {@code dest} from {@code offset},
+     * returning the offset after the last copied element.
+     */
+    private static int copyElements(Node node, int level, Object[] dest, int offset) {
+        if (level == 0) {
+            System.arraycopy(node.array, 0, dest, offset, node.array.length);
+            return offset + node.array.length;
+        }
+        int count = childCount(node);
+        for (int i = 0; i < count; i++) {
+            offset = copyElements((Node) node.array[i], level - BITS, dest, offset);
+        }
+        return offset;
+    }
+    
+    /**
+     * Batch-mutable view of a {@link PersistentVector}, owned by one thread.
+     * 
+     * <p>Mutating methods update the transient in place and return it, so calls
+     * can be chained. {@link #persistent()} freezes the contents in O(1) and
+     * ends the transient; any later use throws {@link IllegalStateException}.</p>
+     * 
+     * @param <T> The type of elements
+     */
+    public static final class Transient<T> {
+        
+        private final AtomicReference<Thread> edit = Transients.newEdit();
+        private int size;
+        private int shift;
+        private Node root;
+        // Number of elements in the trie; the rest are in the tail buffer
+        private int trieSize;
+        private Object[] tail;
+        
+        private Transient(PersistentVector<T> vector) {
+            this.size = vector.size;
+            this.shift = vector.shift;
+            this.root = new Node(edit, vector.root.array.clone(), vector.root.sizes);
+            this.trieSize = vector.tailOffset();
+            this.tail = new Object[BRANCHING_FACTOR];
+            System.arraycopy(vector.tail, 0, tail, 0, vector.tail.length);
+        }
+        
+        private Node ensureEditable(Node node) {
+            if (node.edit == edit) {
+                return node;
+            }
+            return new Node(edit, node.array.clone(), node.sizes);
+        }
+        
+        /**
+         * Appends an element to the end.
+         * 
+         * @param value The element to append
+         * @return This transient
+         * @throws IllegalStateException if used after persistent() or from another thread
+         */
+        public Transient<T> append(T value) {
+            Transients.ensureEditable(edit);
+            if (size - trieSize < BRANCHING_FACTOR) {
+                tail[size - trieSize] = value;
+                size++;
+                return this;
+            }
+            // Tail is full: push it into the trie and start a new one
+            Node tailNode = new Node(edit, tail);
+            tail = new Object[BRANCHING_FACTOR];
+            tail[0] = value;
+            if (root.sizes != null || (trieSize & MASK) != 0) {
+                // Relaxed trie (from concat or slice): push by path copying
+                Trie trie = pushLeaf(root, shift, tailNode);
+                root = trie.root;
+                shift = trie.shift;
+            } else if ((size >>> BITS) > (1 << shift)) {
+                Node newRoot = new Node(edit, new Object[BRANCHING_FACTOR]);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(edit, shift, tailNode);
+                root = newRoot;
+                shift += BITS;
+            } else {
+                root = pushTail(shift, root, tailNode);
+            }
+            trieSize += BRANCHING_FACTOR;
+            size++;
+            return this;
+        }
+        
+        private Node pushTail(int level, Node parent, Node tailNode) {
+            Node node = ensureEditable(parent);
+            int slot = ((size - 1) >>> level) & MASK;
+            if (level == BITS) {
+                node.array[slot] = tailNode;
+            } else {
+                Node existing = (Node) node.array[slot];
+                node.array[slot] = existing != null
+                    ? pushTail(level - BITS, existing, tailNode)
+                    : newPath(edit, level - BITS, tailNode);
+            }
+            return node;
+        }
+        
+        /**
+         * Replaces the element at the specified index.
+         * 
+         * @param index The index to update
+         * @param value The new value
+         * @return This transient
+         * @throws IndexOutOfBoundsException if index is out of range
+         * @throws IllegalStateException if used after persistent() or from another thread
+         */
+        public Transient<T> set(int index, T value) {
+            Transients.ensureEditable(edit);
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            if (index >= trieSize) {
+                tail[index - trieSize] = value;
+            } else {
+                root = doSet(shift, root, index, value);
+            }
+            return this;
+        }
+        
+        private Node doSet(int level, Node node, int index, Object value) {
+            Node editable = ensureEditable(node);
+            if (level == 0) {
+                editable.array[index & MASK] = value;
+            } else {
+                int slot = slotFor(editable, level, index);
+                int childIndex = editable.sizes != null && slot > 0 ? index - editable.sizes[slot - 1] : index;
+                editable.array[slot] = doSet(level - BITS, (Node) editable.array[slot], childIndex, value);
+            }
+            return editable;
+        }
+        
+        /**
+         * Gets the element at the specified index.
+         * 
+         * @param index The index (0-based)
+         * @return The element at the index
+         * @throws IndexOutOfBoundsException if index is out of range
+         */
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            Transients.ensureEditable(edit);
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (T) (index >= trieSize ? tail[index - trieSize] : elementAt(root, shift, index));
+        }
+        
+        /**
+         * Returns the number of elements in this transient.
+         * 
+         * @return The current size
+         */
+        public int size() {
+            Transients.ensureEditable(edit);
+            return size;
+        }
+        
+        /**
+         * Freezes this transient into a persistent vector in O(1).
+         * 
+         * @return A persistent vector with the transient's contents
+         * @throws IllegalStateException if already frozen or called from another thread
+         */
+        public PersistentVector<T> persistent() {
+            Transients.ensureEditable(edit);
+            edit.set(null);
+            if (size == 0) {
+                return empty();
+            }
+            Object[] trimmedTail = new Object[size - trieSize];
+            System.arraycopy(tail, 0, trimmedTail, 0, trimmedTail.length);
+            return new PersistentVector<>(size, shift, root, trimmedTail);
         }
-        return hash;
     }
 }
-
@@ -0,0 +1,255 @@
+package com.firefly.runtime.collections;
+
+/**
+ * Trie shared by the unboxed vectors.
+ *
+ * <p>It has the shape of {@link PersistentVector}: a 32-way trie plus a tail
+ * buffer holding the last (up to) 32 elements. Leaves are primitive arrays of
+ * type {@code A}, such as {@code int[]}. This class builds and walks the
+ * trie and copies leaves with {@link System#arraycopy}; subclasses read and
+ * write the elements, so nothing is boxed.</p>
+ *
+ * @param <T> The boxed element type
+ * @param <A> The leaf array type
+ */
+abstract class PrimitiveVector<T, A> extends AbstractVector<T> {
+
+    static final int BITS = 5;
+    static final int BRANCHING_FACTOR = 1 << BITS;
+    static final int MASK = BRANCHING_FACTOR - 1;
+
+    final int size;
+    final int shift;
+    // Branch nodes are Object[]; the nodes one level above the leaves hold A leaves
+    final Object[] root;
+    final A tail;
+
+    PrimitiveVector(int size, int shift, Object[] root, A tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns a vector of the same kind over the given trie.
+     */
+    abstract PrimitiveVector<T, A> create(int size, int shift, Object[] root, A tail);
+
+    /**
+     * Returns a zero-filled leaf array of the given length.
+     */
+    abstract A newLeaf(int length);
+
+    /**
+     * Compares the first {@code length} elements of two leaves.
+     */
+    abstract boolean leafEquals(A left, A right, int length);
+
+    /**
+     * Folds the first {@code length} elements of a leaf into a
+     * {@link java.util.List}-style hash.
+     */
+    abstract int leafHash(int hash, A leaf, int length);
+
+    // size() and isEmpty() are not final, so javac gives each public vector class a
+    // bridge for them and compiled code never links against this package-private class
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    final void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Returns the index of the first element stored in the tail.
+     */
+    final int tailOffset() {
+        if (size < BRANCHING_FACTOR) {
+            return 0;
+        }
+        return ((size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * Returns the number of elements in the leaf starting at {@code base}.
+     */
+    final int leafLength(int base) {
+        return Math.min(BRANCHING_FACTOR, size - base);
+    }
+
+    /**
+     * Returns the leaf array (or the tail) holding the element at the given index.
+     */
+    @SuppressWarnings("unchecked")
+    final A leafFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > BITS; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return (A) node[(index >>> BITS) & MASK];
+    }
+
+    /**
+     * Returns a vector of the first {@code length} values, which are copied
+     * into the trie 32 at a time. Called on the empty vector.
+     */
+    final PrimitiveVector<T, A> withValues(A values, int length) {
+        PrimitiveVector<T, A> result = this;
+        for (int base = 0; base < length; base += BRANCHING_FACTOR) {
+            int leafLength = Math.min(BRANCHING_FACTOR, length - base);
+            A leaf = newLeaf(leafLength);
+            System.arraycopy(values, base, leaf, 0, leafLength);
+            result = base == 0
+                ? create(leafLength, BITS, root, leaf)
+                : result.pushTailAndStart(leaf, leafLength);
+        }
+        return result;
+    }
+
+    /**
+     * Copies the elements of this vector into a new array.
+     */
+    final A copyValues() {
+        A values = newLeaf(size);
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            System.arraycopy(leafFor(base), 0, values, base, leafLength(base));
+        }
+        return values;
+    }
+
+    /**
+     * Returns a copy of the leaf holding the given index, for {@code set} to
+     * write into and pass to {@link #withLeaf}.
+     */
+    final A copyOfLeaf(int index) {
+        int base = index & ~MASK;
+        int length = leafLength(base);
+        A leaf = newLeaf(length);
+        System.arraycopy(leafFor(base), 0, leaf, 0, length);
+        return leaf;
+    }
+
+    /**
+     * Returns a vector with the leaf holding the given index replaced.
+     */
+    final PrimitiveVector<T, A> withLeaf(int index, A leaf) {
+        if (index >= tailOffset()) {
+            return create(size, shift, root, leaf);
+        }
+        return create(size, shift, replaceLeaf(shift, root, index, leaf), tail);
+    }
+
+    private static Object[] replaceLeaf(int level, Object[] node, int index, Object leaf) {
+        Object[] array = node.clone();
+        int slot = (index >>> level) & MASK;
+        array[slot] = level == BITS ? leaf : replaceLeaf(level - BITS, (Object[]) node[slot], index, leaf);
+        return array;
+    }
+
+    /**
+     * Returns the leaf that {@code append} writes its value into, at the last
+     * index: a copy of the tail one element longer, or a new one-element leaf
+     * if the tail is full. The leaf is then passed to {@link #withAppended}.
+     */
+    final A appendLeaf() {
+        int tailSize = size - tailOffset();
+        if (tailSize == BRANCHING_FACTOR) {
+            return newLeaf(1);
+        }
+        A leaf = newLeaf(tailSize + 1);
+        System.arraycopy(tail, 0, leaf, 0, tailSize);
+        return leaf;
+    }
+
+    final PrimitiveVector<T, A> withAppended(A leaf) {
+        if (size - tailOffset() < BRANCHING_FACTOR) {
+            return create(size + 1, shift, root, leaf);
+        }
+        return pushTailAndStart(leaf, 1);
+    }
+
+    /**
+     * Pushes the (full) tail into the trie and starts a new tail.
+     */
+    private PrimitiveVector<T, A> pushTailAndStart(A newTail, int newTailLength) {
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // Root is full: grow the trie by one level
+            newRoot = new Object[BRANCHING_FACTOR];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return create(size + newTailLength, newShift, newRoot, newTail);
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object leaf) {
+        int slot = ((size - 1) >>> level) & MASK;
+        Object[] array = parent.clone();
+        if (level == BITS) {
+            array[slot] = leaf;
+        } else {
+            Object[] existing = (Object[]) parent[slot];
+            array[slot] = existing != null
+                ? pushTail(level - BITS, existing, leaf)
+                : newPath(level - BITS, leaf);
+        }
+        return array;
+    }
+
+    private static Object newPath(int level, Object leaf) {
+        if (level == 0) {
+            return leaf;
+        }
+        Object[] path = new Object[BRANCHING_FACTOR];
+        path[0] = newPath(level - BITS, leaf);
+        return path;
+    }
+
+    /**
+     * Compares leaf by leaf with a vector of the same kind, and element by
+     * element with any other vector.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || obj.getClass() != getClass()) return super.equals(obj);
+        @SuppressWarnings("unchecked")
+        PrimitiveVector<T, A> other = (PrimitiveVector<T, A>) obj;
+        if (size != other.size) return false;
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            if (!leafEquals(leafFor(base), other.leafFor(base), leafLength(base))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the same hash code as a {@link PersistentVector} of the boxed elements.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int base = 0; base < size; base += BRANCHING_FACTOR) {
+            hash = leafHash(hash, leafFor(base), leafLength(base));
+        }
+        return hash;
+    }
+}
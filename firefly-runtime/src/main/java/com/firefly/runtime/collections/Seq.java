@@ -0,0 +1,498 @@
+package com.firefly.runtime.collections;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Lazy, fused view over a sequence of elements.
+ *
+ * <p>A Seq describes a pipeline over a source collection. Intermediate stages
+ * ({@link #map}, {@link #filter}, {@link #flatMap}, {@link #take}, {@link #drop},
+ * {@link #zip}) only wrap the pipeline; nothing runs until a terminal operation
+ * ({@link #toVector}, {@link #toList}, {@link #reduce}, {@link #forEach},
+ * {@link #count}, {@link #anyMatch}) pushes the source elements through every
+ * stage in a single pass. No intermediate collection is built, and
+ * {@link #take} stops pulling from the source once it has enough elements.</p>
+ *
+ * <p>Sequences over persistent collections can be traversed any number of
+ * times; each terminal operation re-runs the pipeline. Iterating a Seq with
+ * {@link #iterator()} is equally lazy.</p>
+ *
+ * <h2>Example Usage</h2>
+ * <pre>{@code
+ * PersistentVector<Integer> numbers = ...;  // 1M elements
+ *
+ * // One pass, no intermediate vectors
+ * PersistentVector<String> labels = numbers.seq()
+ *     .map(x -> x * 3)
+ *     .filter(x -> x % 2 == 0)
+ *     .map(x -> "#" + x)
+ *     .toVector();
+ *
+ * // Stops after the tenth match
+ * PersistentVector<Integer> firstTen = numbers.seq().filter(x -> x > 500).take(10).toVector();
+ * }</pre>
+ *
+ * @param <T> The type of elements in the sequence
+ */
+public final class Seq<T> implements Iterable<T> {
+
+    /**
+     * Push-style traversal: feeds elements to the sink until the sink returns
+     * false, and returns false exactly when the sink stopped it.
+     */
+    @FunctionalInterface
+    private interface Traversal<T> {
+        boolean forEachWhile(Predicate<? super T> sink);
+    }
+
+    private static final Seq<?> EMPTY = new Seq<>(sink -> true, java.util.Collections::emptyIterator);
+
+    private final Traversal<T> traversal;
+    private final Supplier<Iterator<T>> iterators;
+
+    private Seq(Traversal<T> traversal, Supplier<Iterator<T>> iterators) {
+        this.traversal = traversal;
+        this.iterators = iterators;
+    }
+
+    /**
+     * Returns an empty sequence.
+     *
+     * @param <T> The type of elements
+     * @return An empty sequence
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Seq<T> empty() {
+        return (Seq<T>) EMPTY;
+    }
+
+    /**
+     * Creates a sequence over the given elements.
+     *
+     * @param <T> The type of elements
+     * @param elements The elements
+     * @return A sequence of the elements
+     */
+    @SafeVarargs
+    public static <T> Seq<T> of(T... elements) {
+        PersistentVector.Transient<T> vector = PersistentVector.<T>empty().asTransient();
+        for (T element : elements) {
+            vector.append(element);
+        }
+        return from(vector.persistent());
+    }
+
+    /**
+     * Creates a lazy sequence over any iterable source.
+     *
+     * <p>A {@link PersistentVector} source is walked one 32-element chunk at a
+     * time; other sources use their iterator.</p>
+     *
+     * @param <T> The type of elements
+     * @param source The source collection
+     * @return A sequence over the source
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Seq<T> from(Iterable<? extends T> source) {
+        Objects.requireNonNull(source, "source cannot be null");
+        if (source instanceof Seq<?>) {
+            return (Seq<T>) source;
+        }
+        if (source instanceof PersistentVector<?>) {
+            PersistentVector<T> vector = (PersistentVector<T>) source;
+            return new Seq<>(sink -> {
+                int size = vector.size();
+                for (int base = 0; base < size; ) {
+                    Object[] chunk = vector.chunkFor(base);
+                    for (Object element : chunk) {
+                        if (!sink.test((T) element)) {
+                            return false;
+                        }
+                    }
+                    base += chunk.length;
+                }
+                return true;
+            }, vector::iterator);
+        }
+        return new Seq<>(sink -> {
+            for (T element : source) {
+                if (!sink.test(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }, () -> (Iterator<T>) source.iterator());
+    }
+
+    // ============ Intermediate stages (lazy) ============
+
+    /**
+     * Returns a sequence of the results of applying the mapper to each element.
+     *
+     * @param <R> The type of elements in the result
+     * @param mapper The transformation function
+     * @return A lazy mapped sequence
+     */
+    public <R> Seq<R> map(Function<? super T, ? extends R> mapper) {
+        Objects.requireNonNull(mapper, "mapper cannot be null");
+        return new Seq<>(
+            sink -> traversal.forEachWhile(element -> sink.test(mapper.apply(element))),
+            () -> {
+                Iterator<T> source = iterator();
+                return new Iterator<R>() {
+                    @Override
+                    public boolean hasNext() {
+                        return source.hasNext();
+                    }
+
+                    @Override
+                    public R next() {
+                        return mapper.apply(source.next());
+                    }
+                };
+            });
+    }
+
+    /**
+     * Returns a sequence of the elements that match the predicate.
+     *
+     * @param predicate The filter predicate
+     * @return A lazy filtered sequence
+     */
+    public Seq<T> filter(Predicate<? super T> predicate) {
+        Objects.requireNonNull(predicate, "predicate cannot be null");
+        return new Seq<>(
+            sink -> traversal.forEachWhile(element -> !predicate.test(element) || sink.test(element)),
+            () -> new LookaheadIterator<T>() {
+                private final Iterator<T> source = iterator();
+
+                @Override
+                boolean advance() {
+                    while (source.hasNext()) {
+                        T element = source.next();
+                        if (predicate.test(element)) {
+                            return found(element);
+                        }
+                    }
+                    return false;
+                }
+            });
+    }
+
+    /**
+     * Returns a sequence of the elements of every iterable produced by the mapper,
+     * in order.
+     *
+     * @param <R> The type of elements in the result
+     * @param mapper Function producing the elements for one source element
+     * @return A lazy flattened sequence
+     */
+    public <R> Seq<R> flatMap(Function<? super T, ? extends Iterable<? extends R>> mapper) {
+        Objects.requireNonNull(mapper, "mapper cannot be null");
+        return new Seq<>(
+            sink -> traversal.forEachWhile(element -> Seq.<R>from(mapper.apply(element)).traversal.forEachWhile(sink)),
+            () -> new LookaheadIterator<R>() {
+                private final Iterator<T> source = iterator();
+                private Iterator<? extends R> current = java.util.Collections.emptyIterator();
+
+                @Override
+                boolean advance() {
+                    while (!current.hasNext()) {
+                        if (!source.hasNext()) {
+                            return false;
+                        }
+                        current = mapper.apply(source.next()).iterator();
+                    }
+                    return found(current.next());
+                }
+            });
+    }
+
+    /**
+     * Returns a sequence of at most the first {@code n} elements.
+     *
+     * <p>Once {@code n} elements have passed, the source is not read any further.</p>
+     *
+     * @param n The maximum number of elements
+     * @return A lazy truncated sequence
+     * @throws IllegalArgumentException if n is negative
+     */
+    public Seq<T> take(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be non-negative: " + n);
+        }
+        if (n == 0) {
+            return empty();
+        }
+        return new Seq<>(
+            sink -> {
+                StopFlag downstream = new StopFlag();
+                long[] taken = {0};
+                traversal.forEachWhile(element -> {
+                    if (!sink.test(element)) {
+                        return downstream.stop();
+                    }
+                    return ++taken[0] < n;
+                });
+                return !downstream.stopped;
+            },
+            () -> {
+                Iterator<T> source = iterator();
+                return new Iterator<T>() {
+                    private long remaining = n;
+
+                    @Override
+                    public boolean hasNext() {
+                        return remaining > 0 && source.hasNext();
+                    }
+
+                    @Override
+                    public T next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        remaining--;
+                        return source.next();
+                    }
+                };
+            });
+    }
+
+    /**
+     * Returns a sequence without the first {@code n} elements.
+     *
+     * @param n The number of elements to skip
+     * @return A lazy sequence of the remaining elements
+     * @throws IllegalArgumentException if n is negative
+     */
+    public Seq<T> drop(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be non-negative: " + n);
+        }
+        if (n == 0) {
+            return this;
+        }
+        return new Seq<>(
+            sink -> {
+                long[] skipped = {0};
+                return traversal.forEachWhile(element -> skipped[0]++ < n || sink.test(element));
+            },
+            () -> {
+                Iterator<T> source = iterator();
+                for (long i = 0; i < n && source.hasNext(); i++) {
+                    source.next();
+                }
+                return source;
+            });
+    }
+
+    /**
+     * Returns a sequence combining this sequence with another, element by element.
+     * The result ends when either input ends.
+     *
+     * @param <U> The type of elements in the other iterable
+     * @param <R> The type of elements in the result
+     * @param other The iterable to pair with
+     * @param combiner Function combining one element of each
+     * @return A lazy zipped sequence
+     */
+    public <U, R> Seq<R> zip(Iterable<? extends U> other, BiFunction<? super T, ? super U, ? extends R> combiner) {
+        Objects.requireNonNull(other, "other cannot be null");
+        Objects.requireNonNull(combiner, "combiner cannot be null");
+        return new Seq<>(
+            sink -> {
+                Iterator<? extends U> others = other.iterator();
+                StopFlag downstream = new StopFlag();
+                traversal.forEachWhile(element -> {
+                    if (!others.hasNext()) {
+                        return false;
+                    }
+                    return sink.test(combiner.apply(element, others.next())) || downstream.stop();
+                });
+                return !downstream.stopped;
+            },
+            () -> {
+                Iterator<T> source = iterator();
+                Iterator<? extends U> others = other.iterator();
+                return new Iterator<R>() {
+                    @Override
+                    public boolean hasNext() {
+                        return source.hasNext() && others.hasNext();
+                    }
+
+                    @Override
+                    public R next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return combiner.apply(source.next(), others.next());
+                    }
+                };
+            });
+    }
+
+    // ============ Terminal operations ============
+
+    /**
+     * Runs the pipeline and collects the elements into a persistent vector.
+     *
+     * @return A vector of the elements
+     */
+    public PersistentVector<T> toVector() {
+        PersistentVector.Transient<T> result = PersistentVector.<T>empty().asTransient();
+        traversal.forEachWhile(element -> {
+            result.append(element);
+            return true;
+        });
+        return result.persistent();
+    }
+
+    /**
+     * Runs the pipeline and collects the elements into a persistent list.
+     *
+     * @return A list of the elements, in order
+     */
+    public PersistentList<T> toList() {
+        PersistentVector<T> elements = toVector();
+        PersistentList<T> list = PersistentList.empty();
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            list = list.cons(elements.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * Runs the pipeline and folds the elements into a single value.
+     *
+     * @param <R> The type of the result
+     * @param identity The initial value
+     * @param accumulator The combining function
+     * @return The final accumulated value
+     */
+    public <R> R reduce(R identity, BiFunction<R, ? super T, R> accumulator) {
+        Objects.requireNonNull(accumulator, "accumulator cannot be null");
+        Object[] result = {identity};
+        traversal.forEachWhile(element -> {
+            @SuppressWarnings("unchecked")
+            R current = (R) result[0];
+            result[0] = accumulator.apply(current, element);
+            return true;
+        });
+        @SuppressWarnings("unchecked")
+        R folded = (R) result[0];
+        return folded;
+    }
+
+    /**
+     * Runs the pipeline, applying the action to each element.
+     *
+     * @param action The action to perform on each element
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        Objects.requireNonNull(action, "action cannot be null");
+        traversal.forEachWhile(element -> {
+            action.accept(element);
+            return true;
+        });
+    }
+
+    /**
+     * Runs the pipeline and counts the elements.
+     *
+     * @return The number of elements
+     */
+    public long count() {
+        long[] count = {0};
+        traversal.forEachWhile(element -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    /**
+     * Returns true if any element matches the predicate, stopping at the first match.
+     *
+     * @param predicate The predicate to test
+     * @return true if some element matches
+     */
+    public boolean anyMatch(Predicate<? super T> predicate) {
+        Objects.requireNonNull(predicate, "predicate cannot be null");
+        return !traversal.forEachWhile(element -> !predicate.test(element));
+    }
+
+    /**
+     * Returns a lazy iterator over the elements of this sequence.
+     *
+     * @return An iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return iterators.get();
+    }
+
+    @Override
+    public String toString() {
+        return toVector().toString();
+    }
+
+    /**
+     * Records that a downstream sink asked to stop, as opposed to a stage
+     * (take, zip) ending the traversal on its own.
+     */
+    private static final class StopFlag {
+        boolean stopped;
+
+        boolean stop() {
+            stopped = true;
+            return false;
+        }
+    }
+
+    /**
+     * Iterator that computes its next element ahead of time.
+     */
+    private abstract static class LookaheadIterator<E> implements Iterator<E> {
+        private E next;
+        private boolean ready;
+        private boolean done;
+
+        /**
+         * Finds the next element and passes it to {@link #found}, or returns false at the end.
+         */
+        abstract boolean advance();
+
+        final boolean found(E element) {
+            next = element;
+            return true;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready && !done) {
+                ready = advance();
+                done = !ready;
+            }
+            return ready;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            E element = next;
+            next = null;
+            return element;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.firefly.runtime.collections;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ownership tokens shared by the transient views of the persistent collections.
+ *
+ * <p>A transient holds an edit token naming its owner thread. Trie nodes created
+ * by the transient carry the same token and may be mutated in place while the
+ * token is live. {@code persistent()} clears the owner, which freezes every node
+ * carrying the token in O(1).</p>
+ */
+final class Transients {
+
+    private Transients() {
+        throw new AssertionError("Cannot instantiate Transients");
+    }
+
+    /**
+     * Creates an edit token owned by the current thread.
+     */
+    static AtomicReference<Thread> newEdit() {
+        return new AtomicReference<>(Thread.currentThread());
+    }
+
+    /**
+     * Checks that the transient is still live and used by its owner thread.
+     *
+     * @throws IllegalStateException if the transient was frozen or is used from another thread
+     */
+    static void ensureEditable(AtomicReference<Thread> edit) {
+        Thread owner = edit.get();
+        if (owner == null) {
+            throw new IllegalStateException("Transient used after persistent() call");
+        }
+        if (owner != Thread.currentThread()) {
+            throw new IllegalStateException("Transient used by non-owner thread");
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.firefly.runtime.collections;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Node of the weight-balanced binary search tree behind {@link PersistentTreeMap}
+ * and {@link PersistentTreeSet}.
+ *
+ * <p>Nodes are immutable and record the size of their subtree. Sizes keep the
+ * tree balanced (neither child of a node may be more than {@value #DELTA} times
+ * heavier than the other, after Adams' "bounded balance" trees) and make
+ * {@link #rank} and {@link #select} O(log n). Every update copies only the
+ * path from the root to the changed node. The empty tree is {@code null}.</p>
+ *
+ * <p>{@link #link} joins two trees around a middle key in time proportional
+ * to the difference of their heights, which is what lets {@link #below} and
+ * {@link #above} cut a range out of a tree in O(log n) while sharing every
+ * subtree that lies entirely inside the range. Sets store {@code null}
+ * values.</p>
+ *
+ * <p>Each node caches its {@link #contentHash} once computed, so rehashing a
+ * tree derived from an already hashed one only visits the copied path.</p>
+ */
+final class TreeNode {
+
+    /** Maximum weight ratio between the two children of a node. */
+    static final int DELTA = 3;
+
+    /** Decides between a single and a double rotation. */
+    static final int RATIO = 2;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final Comparator<Object> NATURAL = (Comparator) Comparator.naturalOrder();
+
+    final Object key;
+    final Object value;
+    final TreeNode left;
+    final TreeNode right;
+    final int size;
+    /** Cached {@link #contentHash}, or 0 if not computed yet. */
+    private int hash;
+
+    private TreeNode(Object key, Object value, TreeNode left, TreeNode right) {
+        this.key = key;
+        this.value = value;
+        this.left = left;
+        this.right = right;
+        this.size = size(left) + size(right) + 1;
+    }
+
+    static int size(TreeNode node) {
+        return node == null ? 0 : node.size;
+    }
+
+    static TreeNode leaf(Object key, Object value) {
+        return new TreeNode(key, value, null, null);
+    }
+
+    /**
+     * Returns the sum of {@code keyHash ^ valueHash} over the entries below a
+     * node: the {@link java.util.Map#hashCode()} of the entries, and the
+     * {@link java.util.Set#hashCode()} of the keys when the values are null.
+     */
+    static int contentHash(TreeNode node) {
+        if (node == null) {
+            return 0;
+        }
+        int result = node.hash;
+        if (result == 0) {
+            result = contentHash(node.left) + contentHash(node.right)
+                + (Objects.hashCode(node.key) ^ Objects.hashCode(node.value));
+            node.hash = result;
+        }
+        return result;
+    }
+
+    // ---- lookups --------------------------------------------------------------
+
+    static TreeNode find(TreeNode node, Object key, Comparator<Object> cmp) {
+        while (node != null) {
+            int c = cmp.compare(key, node.key);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /** Greatest node with a key {@code <= key} ({@code < key} when not inclusive). */
+    static TreeNode floor(TreeNode node, Object key, boolean inclusive, Comparator<Object> cmp) {
+        TreeNode best = null;
+        while (node != null) {
+            int c = cmp.compare(key, node.key);
+            if (c > 0 || (c == 0 && inclusive)) {
+                best = node;
+                if (c == 0) {
+                    break;
+                }
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return best;
+    }
+
+    /** Least node with a key {@code >= key} ({@code > key} when not inclusive). */
+    static TreeNode ceiling(TreeNode node, Object key, boolean inclusive, Comparator<Object> cmp) {
+        TreeNode best = null;
+        while (node != null) {
+            int c = cmp.compare(key, node.key);
+            if (c < 0 || (c == 0 && inclusive)) {
+                best = node;
+                if (c == 0) {
+                    break;
+                }
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return best;
+    }
+
+    static TreeNode first(TreeNode node) {
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    static TreeNode last(TreeNode node) {
+        if (node == null) {
+            return null;
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node;
+    }
+
+    /** Number of keys strictly less than {@code key}. */
+    static int rank(TreeNode node, Object key, Comparator<Object> cmp) {
+        int rank = 0;
+        while (node != null) {
+            int c = cmp.compare(key, node.key);
+            if (c < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + (c > 0 ? 1 : 0);
+                if (c == 0) {
+                    break;
+                }
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /** Node holding the key at position {@code index} in ascending order. */
+    static TreeNode select(TreeNode node, int index) {
+        if (index < 0 || index >= size(node)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size(node));
+        }
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    // ---- updates --------------------------------------------------------------
+
+    static TreeNode put(TreeNode node, Object key, Object value, Comparator<Object> cmp) {
+        if (node == null) {
+            return leaf(key, value);
+        }
+        int c = cmp.compare(key, node.key);
+        if (c == 0) {
+            return node.value == value ? node : new TreeNode(node.key, value, node.left, node.right);
+        }
+        if (c < 0) {
+            TreeNode newLeft = put(node.left, key, value, cmp);
+            return newLeft == node.left ? node : balance(node.key, node.value, newLeft, node.right);
+        }
+        TreeNode newRight = put(node.right, key, value, cmp);
+        return newRight == node.right ? node : balance(node.key, node.value, node.left, newRight);
+    }
+
+    static TreeNode remove(TreeNode node, Object key, Comparator<Object> cmp) {
+        if (node == null) {
+            return null;
+        }
+        int c = cmp.compare(key, node.key);
+        if (c == 0) {
+            return glue(node.left, node.right);
+        }
+        if (c < 0) {
+            TreeNode newLeft = remove(node.left, key, cmp);
+            return newLeft == node.left ? node : balance(node.key, node.value, newLeft, node.right);
+        }
+        TreeNode newRight = remove(node.right, key, cmp);
+        return newRight == node.right ? node : balance(node.key, node.value, node.left, newRight);
+    }
+
+    /** Keys {@code < key} ({@code <= key} when inclusive), sharing untouched subtrees. */
+    static TreeNode below(TreeNode node, Object key, boolean inclusive, Comparator<Object> cmp) {
+        if (node == null) {
+            return null;
+        }
+        int c = cmp.compare(key, node.key);
+        if (c < 0 || (c == 0 && !inclusive)) {
+            return below(node.left, key, inclusive, cmp);
+        }
+        if (c == 0) {
+            return insertMax(node.key, node.value, node.left);
+        }
+        TreeNode newRight = below(node.right, key, inclusive, cmp);
+        return newRight == node.right ? node : link(node.key, node.value, node.left, newRight);
+    }
+
+    /** Keys {@code > key} ({@code >= key} when inclusive), sharing untouched subtrees. */
+    static TreeNode above(TreeNode node, Object key, boolean inclusive, Comparator<Object> cmp) {
+        if (node == null) {
+            return null;
+        }
+        int c = cmp.compare(key, node.key);
+        if (c > 0 || (c == 0 && !inclusive)) {
+            return above(node.right, key, inclusive, cmp);
+        }
+        if (c == 0) {
+            return insertMin(node.key, node.value, node.right);
+        }
+        TreeNode newLeft = above(node.left, key, inclusive, cmp);
+        return newLeft == node.left ? node : link(node.key, node.value, newLeft, node.right);
+    }
+
+    /**
+     * Builds a perfectly balanced tree from keys already in strictly ascending
+     * order, in O(n).
+     */
+    static TreeNode fromSorted(Object[] keys, Object[] values, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new TreeNode(keys[mid], values == null ? null : values[mid],
+            fromSorted(keys, values, from, mid), fromSorted(keys, values, mid + 1, to));
+    }
+
+    // ---- balancing ------------------------------------------------------------
+
+    /**
+     * Rebuilds a node whose children were balanced before a single insertion
+     * or removal on one side.
+     */
+    private static TreeNode balance(Object key, Object value, TreeNode left, TreeNode right) {
+        int leftSize = size(left);
+        int rightSize = size(right);
+        if (leftSize + rightSize <= 1) {
+            return new TreeNode(key, value, left, right);
+        }
+        if (rightSize > DELTA * leftSize) {
+            return size(right.left) < RATIO * size(right.right)
+                ? rotateLeft(key, value, left, right)
+                : doubleRotateLeft(key, value, left, right);
+        }
+        if (leftSize > DELTA * rightSize) {
+            return size(left.right) < RATIO * size(left.left)
+                ? rotateRight(key, value, left, right)
+                : doubleRotateRight(key, value, left, right);
+        }
+        return new TreeNode(key, value, left, right);
+    }
+
+    private static TreeNode rotateLeft(Object key, Object value, TreeNode left, TreeNode right) {
+        return new TreeNode(right.key, right.value,
+            new TreeNode(key, value, left, right.left), right.right);
+    }
+
+    private static TreeNode rotateRight(Object key, Object value, TreeNode left, TreeNode right) {
+        return new TreeNode(left.key, left.value,
+            left.left, new TreeNode(key, value, left.right, right));
+    }
+
+    private static TreeNode doubleRotateLeft(Object key, Object value, TreeNode left, TreeNode right) {
+        TreeNode pivot = right.left;
+        return new TreeNode(pivot.key, pivot.value,
+            new TreeNode(key, value, left, pivot.left),
+            new TreeNode(right.key, right.value, pivot.right, right.right));
+    }
+
+    private static TreeNode doubleRotateRight(Object key, Object value, TreeNode left, TreeNode right) {
+        TreeNode pivot = left.right;
+        return new TreeNode(pivot.key, pivot.value,
+            new TreeNode(left.key, left.value, left.left, pivot.left),
+            new TreeNode(key, value, pivot.right, right));
+    }
+
+    /**
+     * Joins two trees whose keys are ordered {@code left < key < right}, of any
+     * relative size, descending the heavier side until the weights match.
+     */
+    private static TreeNode link(Object key, Object value, TreeNode left, TreeNode right) {
+        if (left == null) {
+            return insertMin(key, value, right);
+        }
+        if (right == null) {
+            return insertMax(key, value, left);
+        }
+        if (DELTA * left.size < right.size) {
+            return balance(right.key, right.value, link(key, value, left, right.left), right.right);
+        }
+        if (DELTA * right.size < left.size) {
+            return balance(left.key, left.value, left.left, link(key, value, left.right, right));
+        }
+        return new TreeNode(key, value, left, right);
+    }
+
+    private static TreeNode insertMin(Object key, Object value, TreeNode node) {
+        if (node == null) {
+            return leaf(key, value);
+        }
+        return balance(node.key, node.value, insertMin(key, value, node.left), node.right);
+    }
+
+    private static TreeNode insertMax(Object key, Object value, TreeNode node) {
+        if (node == null) {
+            return leaf(key, value);
+        }
+        return balance(node.key, node.value, node.left, insertMax(key, value, node.right));
+    }
+
+    /** Joins the children of a removed node, which were balanced with each other. */
+    private static TreeNode glue(TreeNode left, TreeNode right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.size > right.size) {
+            TreeNode max = last(left);
+            return balance(max.key, max.value, removeMax(left), right);
+        }
+        TreeNode min = first(right);
+        return balance(min.key, min.value, left, removeMin(right));
+    }
+
+    private static TreeNode removeMin(TreeNode node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    private static TreeNode removeMax(TreeNode node) {
+        if (node.right == null) {
+            return node.left;
+        }
+        return balance(node.key, node.value, node.left, removeMax(node.right));
+    }
+
+    // ---- iteration ------------------------------------------------------------
+
+    /**
+     * In-order iterator over the nodes of a tree. Subclasses decide what each
+     * node produces.
+     */
+    abstract static class TreeIterator<E> implements Iterator<E> {
+
+        private final ArrayDeque<TreeNode> path = new ArrayDeque<>();
+
+        TreeIterator(TreeNode root) {
+            pushLeft(root);
+        }
+
+        private void pushLeft(TreeNode node) {
+            while (node != null) {
+                path.push(node);
+                node = node.left;
+            }
+        }
+
+        abstract E produce(Object key, Object value);
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            TreeNode node = path.pop();
+            pushLeft(node.right);
+            return produce(node.key, node.value);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.firefly.runtime;
+
+import com.firefly.runtime.collections.DoubleVector;
+import com.firefly.runtime.collections.IntVector;
+import com.firefly.runtime.collections.PersistentVector;
+import org.junit.jupiter.api.Test;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Literals.
+ */
+class LiteralsTest {
+
+    private static CallSite vectorSite(Class<?> vectorClass, Object... elements) {
+        return Literals.vector(MethodHandles.lookup(), "vector", MethodType.methodType(vectorClass), elements);
+    }
+
+    @Test
+    void testVectorSitesReturnOneInstance() throws Throwable {
+        CallSite site = vectorSite(PersistentVector.class, "a", 2, -1.5);
+        Object first = site.dynamicInvoker().invoke();
+        assertEquals(PersistentVector.of("a", 2, -1.5), first);
+        assertSame(first, site.dynamicInvoker().invoke());
+
+        IntVector ints = (IntVector) vectorSite(IntVector.class, 1, -2, 3).dynamicInvoker().invoke();
+        assertEquals(IntVector.of(1, -2, 3), ints);
+
+        // Mixed Int and Float constants widen to a DoubleVector
+        DoubleVector doubles = (DoubleVector) vectorSite(DoubleVector.class, 1, 2.5).dynamicInvoker().invoke();
+        assertEquals(DoubleVector.of(1.0, 2.5), doubles);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMapSitesShareOneReadOnlyMap() throws Throwable {
+        CallSite site = Literals.map(MethodHandles.lookup(), "map", MethodType.methodType(HashMap.class),
+            "a", 1, "b", 2.5, "a", 3);
+
+        Map<Object, Object> first = (Map<Object, Object>) site.dynamicInvoker().invoke();
+        assertEquals(Map.of("a", 3, "b", 2.5), first);
+        assertSame(first, site.dynamicInvoker().invoke());
+
+        assertThrows(UnsupportedOperationException.class, () -> first.put("c", 4));
+        assertThrows(UnsupportedOperationException.class, () -> first.merge("a", 1, (x, y) -> x));
+        assertThrows(UnsupportedOperationException.class, () -> first.entrySet().clear());
+        assertThrows(UnsupportedOperationException.class, () -> first.values().iterator().remove());
+        assertEquals(Map.of("a", 3, "b", 2.5), first);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMutableMapSitesReturnFreshCopies() throws Throwable {
+        CallSite site = Literals.mutableMap(MethodHandles.lookup(), "map", MethodType.methodType(HashMap.class),
+            "a", 1, "b", 2.5, "a", 3);
+
+        Map<Object, Object> first = (Map<Object, Object>) site.dynamicInvoker().invoke();
+        assertEquals(Map.of("a", 3, "b", 2.5), first);
+
+        // Each evaluation gets its own mutable map
+        first.put("c", 4);
+        Map<Object, Object> second = (Map<Object, Object>) site.dynamicInvoker().invoke();
+        assertNotSame(first, second);
+        assertEquals(Map.of("a", 3, "b", 2.5), second);
+
+        assertThrows(IllegalArgumentException.class, () -> Literals.mutableMap(MethodHandles.lookup(), "map",
+            MethodType.methodType(HashMap.class), "odd"));
+        assertThrows(IllegalArgumentException.class, () -> Literals.map(MethodHandles.lookup(), "map",
+            MethodType.methodType(HashMap.class), "odd"));
+    }
+}
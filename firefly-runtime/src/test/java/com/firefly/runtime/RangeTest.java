@@ -0,0 +1,54 @@
+package com.firefly.runtime;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Range.
+ */
+class RangeTest {
+
+    private static List<Integer> values(Range range) {
+        List<Integer> result = new ArrayList<>();
+        for (int value : range) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    @Test
+    void testExclusiveAndInclusive() {
+        assertEquals(List.of(0, 1, 2), values(new Range(0, 3, false)));
+        assertEquals(List.of(0, 1, 2, 3), values(new Range(0, 3, true)));
+        assertEquals(List.of(), values(new Range(3, 3, false)));
+        assertEquals(List.of(3), values(new Range(3, 3, true)));
+        assertEquals(List.of(), values(new Range(4, 3, true)));
+    }
+
+    @Test
+    void testStep() {
+        Range range = new Range(0, 10, false).step(3);
+        assertEquals(List.of(0, 3, 6, 9), values(range));
+        assertEquals(List.of(0, 3, 6, 9), values(new Range(0, 9, true, 3)));
+        assertTrue(range.contains(6));
+        assertFalse(range.contains(7));
+        assertEquals("0..10 step 3", range.toString());
+        assertThrows(IllegalArgumentException.class, () -> range.step(0));
+    }
+
+    @Test
+    void testIterationStopsAtIntegerBounds() {
+        assertEquals(List.of(Integer.MAX_VALUE - 1, Integer.MAX_VALUE),
+            values(new Range(Integer.MAX_VALUE - 1, Integer.MAX_VALUE, true)));
+        assertEquals(4, values(new Range(Integer.MIN_VALUE, Integer.MAX_VALUE, true, 1 << 30)).size());
+
+        PrimitiveIterator.OfInt it = new Range(0, 1, false).iterator();
+        assertEquals(0, it.nextInt());
+        assertFalse(it.hasNext());
+        assertThrows(NoSuchElementException.class, it::nextInt);
+    }
+}
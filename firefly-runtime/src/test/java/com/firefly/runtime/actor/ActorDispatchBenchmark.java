@@ -0,0 +1,104 @@
+package com.firefly.runtime.actor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares message throughput and p99 send-to-handle latency of the pooled
+ * and virtual-thread actor dispatchers. Not run by the test suite; run with
+ * {@code java -cp <runtime>:<test-classes> com.firefly.runtime.actor.ActorDispatchBenchmark}.
+ *
+ * <p>Two workloads: {@code compute}, where handlers do a little arithmetic,
+ * and {@code blocking}, where every handler sleeps for one millisecond as a
+ * stand-in for I/O.</p>
+ */
+public class ActorDispatchBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /** Records the latency of every message it handles; state is {count, scratch}. */
+    private static final class Probe implements Actor<long[], Long> {
+        private final CountDownLatch done;
+        private final long[] latencies;
+        private final int offset;
+        private final boolean blocking;
+
+        Probe(CountDownLatch done, long[] latencies, int offset, boolean blocking) {
+            this.done = done;
+            this.latencies = latencies;
+            this.offset = offset;
+            this.blocking = blocking;
+        }
+
+        @Override
+        public long[] init() {
+            return new long[2];
+        }
+
+        @Override
+        public long[] handle(Long sentAt, long[] state) {
+            if (blocking) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                for (int i = 0; i < 100; i++) {
+                    state[1] = state[1] * 31 + i;
+                }
+            }
+            latencies[offset + (int) state[0]++] = System.nanoTime() - sentAt;
+            done.countDown();
+            return state;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-9s %-8s %8s %8s %14s %12s%n", "workload", "mode", "actors", "messages", "msgs/sec", "p99 (us)");
+        run("compute", false, 1_000, 1_000, () -> new Actor.ActorSystem(threads), "pooled");
+        run("compute", false, 1_000, 1_000, Actor.ActorSystem::virtual, "virtual");
+        run("blocking", true, 1_000, 5, () -> new Actor.ActorSystem(threads), "pooled");
+        run("blocking", true, 1_000, 5, Actor.ActorSystem::virtual, "virtual");
+    }
+
+    private static void run(String workload, boolean blocking, int actors, int messagesPerActor,
+                            Supplier<Actor.ActorSystem> systems, String mode) throws Exception {
+        double bestRate = 0;
+        long bestP99 = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            Actor.ActorSystem system = systems.get();
+            try {
+                int total = actors * messagesPerActor;
+                long[] latencies = new long[total];
+                CountDownLatch done = new CountDownLatch(total);
+                List<Actor.ActorRef<Long>> refs = new ArrayList<>(actors);
+                for (int a = 0; a < actors; a++) {
+                    refs.add(system.spawn(new Probe(done, latencies, a * messagesPerActor, blocking)));
+                }
+                long start = System.nanoTime();
+                for (int m = 0; m < messagesPerActor; m++) {
+                    for (Actor.ActorRef<Long> ref : refs) {
+                        ref.send(System.nanoTime());
+                    }
+                }
+                if (!done.await(2, TimeUnit.MINUTES)) {
+                    throw new IllegalStateException("Benchmark did not finish");
+                }
+                long elapsed = System.nanoTime() - start;
+                Arrays.sort(latencies);
+                bestRate = Math.max(bestRate, total * 1e9 / elapsed);
+                bestP99 = Math.min(bestP99, latencies[(int) (total * 0.99)]);
+            } finally {
+                system.shutdown();
+            }
+        }
+        System.out.printf("%-9s %-8s %8d %8d %14.0f %12d%n",
+            workload, mode, actors, messagesPerActor, bestRate, bestP99 / 1_000);
+    }
+}
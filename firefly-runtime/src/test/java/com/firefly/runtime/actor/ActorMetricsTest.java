@@ -0,0 +1,217 @@
+package com.firefly.runtime.actor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ActorMetrics and ActorSystemMetrics.
+ */
+public class ActorMetricsTest {
+
+    /** Counts messages; "crash" throws and "slow" sleeps for two milliseconds. */
+    private static final class Worker implements Actor<Integer, String> {
+        @Override
+        public Integer init() {
+            return 0;
+        }
+
+        @Override
+        public Integer handle(String message, Integer state) {
+            if (message.equals("crash")) {
+                throw new IllegalStateException("crash requested");
+            }
+            if (message.equals("slow")) {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Actor.reply(state + 1);
+            return state + 1;
+        }
+    }
+
+    /** A reply completes the ask before the handled message is recorded. */
+    private static void awaitHandled(ActorSystemMetrics metrics, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (metrics.getMessagesHandled() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, metrics.getMessagesHandled());
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            assertNull(system.metrics());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testRecordsPerActorMetrics() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            ActorSystemMetrics metrics = system.enableMetrics();
+            assertSame(metrics, system.enableMetrics());
+            Actor.ActorRef<String> worker = system.spawn(new Worker());
+            for (int i = 0; i < 99; i++) {
+                worker.send(i % 10 == 0 ? "slow" : "fast");
+            }
+            assertEquals(100, worker.<Integer>ask("fast", 2_000).get());
+            awaitHandled(metrics, 100);
+
+            List<ActorMetrics> actors = metrics.actors();
+            assertEquals(1, actors.size());
+            ActorMetrics actor = actors.get(0);
+            assertTrue(actor.getName().startsWith("Worker-"), actor.getName());
+            assertEquals(100, actor.getMessagesHandled());
+            assertEquals(100, actor.getQueueTime().getCount());
+            assertEquals(100, actor.getServiceTime().getCount());
+            assertTrue(actor.getServiceTime().getMax() >= 2_000_000, "slow messages not timed");
+            assertTrue(actor.getServiceTime().getValueAtPercentile(50) < 2_000_000);
+            assertEquals(1, metrics.getBusiestActors().size());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testCountsCrashesAndKeepsTotalsOfStoppedActors() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            ActorSystemMetrics metrics = system.enableMetrics();
+            Supervisor supervisor = new Supervisor(system, Supervisor.Strategy.ONE_FOR_ONE, 5, 5_000);
+            Actor.ActorRef<String> worker = supervisor.spawn(new Worker());
+            worker.send("crash");
+            assertEquals(1, worker.<Integer>ask("fast", 2_000).get());
+            awaitHandled(metrics, 1);
+            assertEquals(1, metrics.getCrashes());
+            assertEquals(1, metrics.getActorCount());
+
+            worker.stop();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (metrics.getActorCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, metrics.getActorCount());
+            assertEquals(1, metrics.getCrashes());
+            assertEquals(1, metrics.getMessagesHandled());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testBatchesAreTimedPerMessage() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            ActorSystemMetrics metrics = system.enableMetrics();
+            Actor.ActorRef<String> batcher = system.spawn(new Actor<Integer, String>() {
+                @Override
+                public Integer init() {
+                    return 0;
+                }
+
+                @Override
+                public Integer handle(String message, Integer state) {
+                    Actor.reply(state);
+                    return state + 1;
+                }
+
+                @Override
+                public Integer handleBatch(List<String> messages, Integer state) {
+                    return state + messages.size();
+                }
+            });
+            for (int i = 0; i < 50; i++) {
+                batcher.send("m" + i);
+            }
+            assertEquals(50, batcher.<Integer>ask("count", 2_000).get());
+            awaitHandled(metrics, 51);
+            ActorMetrics actor = metrics.actors().get(0);
+            assertEquals(51, actor.getMessagesHandled());
+            assertEquals(51, actor.getServiceTime().getCount());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testRegistersMBean() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        ObjectName name;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ActorSystemMetrics metrics = system.enableMetrics();
+            name = metrics.getObjectName();
+            assertNotNull(name);
+            Actor.ActorRef<String> worker = system.spawn(new Worker());
+            worker.<Integer>ask("fast", 2_000).get();
+            awaitHandled(metrics, 1);
+            assertEquals(1, server.getAttribute(name, "ActorCount"));
+            assertEquals(1L, server.getAttribute(name, "MessagesHandled"));
+            assertNotNull(server.getAttribute(name, "BusiestActors"));
+        } finally {
+            system.shutdown();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    @Timeout(10)
+    public void testRegistersMBeanPerActor() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName otherName;
+        try {
+            ActorSystemMetrics metrics = system.enableMetrics();
+            Actor.ActorRef<String> worker = system.spawn(new Worker());
+            system.spawn(new Worker());
+            worker.<Integer>ask("fast", 2_000).get();
+            worker.<Integer>ask("fast", 2_000).get();
+            awaitHandled(metrics, 2);
+
+            List<ActorMetrics> actors = metrics.actors();
+            assertEquals(2, actors.size());
+            for (ActorMetrics actor : actors) {
+                ObjectName name = metrics.getObjectName(actor);
+                assertNotNull(name);
+                assertEquals(actor.getName(), server.getAttribute(name, "Name"));
+                assertEquals(actor.getMessagesHandled(), server.getAttribute(name, "MessagesHandled"));
+            }
+            assertEquals(2, server.queryNames(new ObjectName("com.firefly.runtime:type=Actor,system="
+                + metrics.getSystemName() + ",*"), null).size());
+
+            // A stopped actor's MBean goes away with it; the others stay
+            ActorMetrics stopping = actors.get(0).getMessagesHandled() == 2 ? actors.get(0) : actors.get(1);
+            ActorMetrics running = stopping == actors.get(0) ? actors.get(1) : actors.get(0);
+            ObjectName stoppingName = metrics.getObjectName(stopping);
+            otherName = metrics.getObjectName(running);
+            worker.stop();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (server.isRegistered(stoppingName) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertFalse(server.isRegistered(stoppingName));
+            assertTrue(server.isRegistered(otherName));
+        } finally {
+            system.shutdown();
+        }
+        assertFalse(server.isRegistered(otherName));
+    }
+}
@@ -0,0 +1,205 @@
+package com.firefly.runtime.actor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ActorSystem scheduling.
+ */
+public class ActorSystemTest {
+
+    /** Counts messages and releases a latch once per message. */
+    private static final class Counter implements Actor<Integer, Integer> {
+        private final CountDownLatch latch;
+
+        Counter(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public Integer init() {
+            return 0;
+        }
+
+        @Override
+        public Integer handle(Integer message, Integer state) {
+            latch.countDown();
+            return state + message;
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testManyIdleActorsShareFewThreads() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            int actors = 20_000;
+            CountDownLatch latch = new CountDownLatch(actors);
+            List<Actor.ActorRef<Integer>> refs = new ArrayList<>();
+            for (int i = 0; i < actors; i++) {
+                refs.add(system.spawn(new Counter(latch)));
+            }
+            // With one thread per actor only the first two would ever run
+            for (Actor.ActorRef<Integer> ref : refs) {
+                ref.send(1);
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testMessagesHandledInOrderOneAtATime() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(4, 3);
+        try {
+            List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger concurrent = new AtomicInteger();
+            AtomicInteger maxConcurrent = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(1000);
+            Actor.ActorRef<Integer> ref = system.spawn(new Actor<Integer, Integer>() {
+                @Override
+                public Integer init() {
+                    return 0;
+                }
+
+                @Override
+                public Integer handle(Integer message, Integer state) {
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    seen.add(message);
+                    concurrent.decrementAndGet();
+                    done.countDown();
+                    return state + 1;
+                }
+            });
+
+            Thread[] senders = new Thread[2];
+            for (int t = 0; t < senders.length; t++) {
+                int offset = t * 500;
+                senders[t] = new Thread(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        ref.send(offset + i);
+                    }
+                });
+                senders[t].start();
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            assertEquals(1, maxConcurrent.get());
+            assertEquals(1000, seen.size());
+            for (int t = 0; t < senders.length; t++) {
+                int offset = t * 500;
+                List<Integer> fromSender = seen.stream().filter(m -> m >= offset && m < offset + 500).toList();
+                for (int i = 0; i < 500; i++) {
+                    assertEquals(offset + i, fromSender.get(i));
+                }
+            }
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testStopCallsTerminateWithFinalState() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            CountDownLatch handled = new CountDownLatch(3);
+            CountDownLatch terminated = new CountDownLatch(1);
+            AtomicInteger finalState = new AtomicInteger();
+            Actor.ActorRef<Integer> ref = system.spawn(new Actor<Integer, Integer>() {
+                @Override
+                public Integer init() {
+                    return 100;
+                }
+
+                @Override
+                public Integer handle(Integer message, Integer state) {
+                    handled.countDown();
+                    return state + message;
+                }
+
+                @Override
+                public void terminate(Integer state) {
+                    finalState.set(state);
+                    terminated.countDown();
+                }
+            });
+
+            ref.send(1);
+            ref.send(2);
+            ref.send(3);
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+            ref.stop();
+
+            assertTrue(terminated.await(5, TimeUnit.SECONDS));
+            assertEquals(106, finalState.get());
+            assertFalse(ref.isRunning());
+            assertThrows(IllegalStateException.class, () -> ref.send(4));
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testVirtualModeBlockingHandlersDoNotStarveOthers() throws Exception {
+        Actor.ActorSystem system = Actor.ActorSystem.virtual();
+        try {
+            assertEquals(Actor.ActorSystem.Mode.VIRTUAL, system.getMode());
+            int actors = 200;
+            CountDownLatch done = new CountDownLatch(actors);
+            long start = System.nanoTime();
+            for (int i = 0; i < actors; i++) {
+                Actor.ActorRef<Integer> ref = system.spawn(new Actor<Integer, Integer>() {
+                    @Override
+                    public Integer init() {
+                        return 0;
+                    }
+
+                    @Override
+                    public Integer handle(Integer message, Integer state) {
+                        try {
+                            Thread.sleep(message);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        done.countDown();
+                        return state + 1;
+                    }
+                });
+                ref.send(500);
+            }
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            // Run back to back on a small pool, 200 half-second sleeps would take far longer
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 4_000);
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new Actor.ActorSystem(0));
+        assertThrows(IllegalArgumentException.class, () -> new Actor.ActorSystem(2, 0));
+        assertThrows(IllegalArgumentException.class, () -> Actor.ActorSystem.virtual(0));
+        Actor.ActorSystem system = new Actor.ActorSystem(1, 64);
+        assertEquals(64, system.getThroughput());
+        assertEquals(Actor.ActorSystem.Mode.POOLED, system.getMode());
+        system.shutdown();
+    }
+}
@@ -0,0 +1,152 @@
+package com.firefly.runtime.actor;
+
+import com.firefly.runtime.async.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ActorRef.ask.
+ */
+public class AskTest {
+
+    /** Adds to a running total; replies to "get" with the total. */
+    private static final class Accumulator implements Actor<Integer, Object> {
+        @Override
+        public Integer init() {
+            return 0;
+        }
+
+        @Override
+        public Integer handle(Object message, Integer state) {
+            if ("get".equals(message)) {
+                Actor.reply(state);
+                return state;
+            }
+            if ("boom".equals(message)) {
+                throw new IllegalArgumentException("boom");
+            }
+            if (message instanceof CountDownLatch latch) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return state;
+            }
+            return state + (Integer) message;
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testAskRepliesAfterEarlierSends() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Actor.ActorRef<Object> ref = system.spawn(new Accumulator());
+            for (int i = 1; i <= 100; i++) {
+                ref.send(i);
+            }
+            Future<Integer> total = ref.ask("get", 1_000);
+            assertEquals(5050, total.get());
+
+            // A message the handler does not reply to completes with null
+            assertNull(ref.ask(1).get());
+            assertEquals(5051, ref.<Integer>ask("get").get());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(20)
+    public void testManyConcurrentAsks() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            List<Actor.ActorRef<Object>> refs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                refs.add(system.spawn(new Accumulator()));
+            }
+            List<Future<Integer>> replies = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                Actor.ActorRef<Object> ref = refs.get(i % refs.size());
+                ref.send(1);
+                replies.add(ref.ask("get", 10_000));
+            }
+            for (int i = 0; i < replies.size(); i++) {
+                assertEquals(i / refs.size() + 1, replies.get(i).get());
+            }
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testAskTimesOut() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        CountDownLatch gate = new CountDownLatch(1);
+        try {
+            Actor.ActorRef<Object> ref = system.spawn(new Accumulator());
+            ref.send(gate);
+            Future<Integer> reply = ref.ask("get", 100);
+
+            ExecutionException e = assertThrows(ExecutionException.class, reply::get);
+            assertInstanceOf(TimeoutException.class, e.getCause());
+        } finally {
+            gate.countDown();
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testCrashAndStopFailPendingAsks() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Actor.ActorRef<Object> ref = system.spawn(new Accumulator());
+            CountDownLatch gate = new CountDownLatch(1);
+            ref.send(gate);
+            Future<Object> crashed = ref.ask("boom");
+            Future<Object> queued = ref.ask("get");
+            gate.countDown();
+
+            ExecutionException e = assertThrows(ExecutionException.class, crashed::get);
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            e = assertThrows(ExecutionException.class, queued::get);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertThrows(IllegalStateException.class, () -> ref.ask("get"));
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    public void testAskFailsWhenBoundedMailboxDropsIt() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        try {
+            Actor.ActorRef<Object> ref = system.spawn(new Accumulator(),
+                Mailbox.bounded(1, Mailbox.OverflowPolicy.DROP_NEWEST));
+            ref.send(gate);
+            while (ref.mailboxSize() > 0) {
+                Thread.onSpinWait();
+            }
+            ref.send(1);
+            Future<Object> dropped = ref.ask("get");
+
+            ExecutionException e = assertThrows(ExecutionException.class, dropped::get);
+            assertInstanceOf(MailboxFullException.class, e.getCause());
+        } finally {
+            gate.countDown();
+            system.shutdown();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.firefly.runtime.actor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Actor.handleBatch.
+ */
+public class BatchTest {
+
+    /** Sums integers a batch at a time; replies to "get" with the sum. */
+    private static final class BatchSummer implements Actor<Long, Object> {
+        final List<Integer> batchSizes = new ArrayList<>();
+        final List<Object> seen = new ArrayList<>();
+
+        @Override
+        public Long init() {
+            return 0L;
+        }
+
+        @Override
+        public Long handle(Object message, Long state) {
+            if (message instanceof CountDownLatch latch) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return state;
+            }
+            if ("get".equals(message)) {
+                Actor.reply(state);
+            }
+            return state;
+        }
+
+        @Override
+        public Long handleBatch(List<Object> messages, Long state) {
+            batchSizes.add(messages.size());
+            long sum = state;
+            for (Object message : messages) {
+                seen.add(message);
+                if (message instanceof Integer value) {
+                    sum += value;
+                } else {
+                    sum = handle(message, sum);
+                }
+            }
+            return sum;
+        }
+
+        @Override
+        public int maxBatchSize() {
+            return 16;
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testQueuedMessagesArriveInBatches() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            BatchSummer summer = new BatchSummer();
+            Actor.ActorRef<Object> ref = system.spawn(summer);
+            // Hold the actor so the next messages queue up behind the latch
+            CountDownLatch gate = new CountDownLatch(1);
+            ref.send(gate);
+            for (int i = 1; i <= 100; i++) {
+                ref.send(i);
+            }
+            gate.countDown();
+
+            assertEquals(5050L, ref.<Long>ask("get", 2_000).get());
+            List<Integer> sizes = new ArrayList<>(summer.batchSizes);
+            assertEquals(101, sizes.stream().mapToInt(Integer::intValue).sum());
+            assertTrue(sizes.stream().allMatch(size -> size <= 16), sizes.toString());
+            assertTrue(sizes.size() < 101, "messages were not batched: " + sizes);
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testAskEndsBatchAndKeepsOrder() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            BatchSummer summer = new BatchSummer();
+            Actor.ActorRef<Object> ref = system.spawn(summer);
+            CountDownLatch gate = new CountDownLatch(1);
+            ref.send(gate);
+            ref.send(1);
+            ref.send(2);
+            var partial = ref.<Long>ask("get", 2_000);
+            ref.send(3);
+            gate.countDown();
+
+            assertEquals(3L, partial.get());
+            assertEquals(6L, ref.<Long>ask("get", 2_000).get());
+            // The asked messages never reach handleBatch
+            assertEquals(List.of(gate, 1, 2, 3), summer.seen);
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testActorWithoutBatchHandlerIsNotBatched() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            List<Object> handled = new ArrayList<>();
+            Actor.ActorRef<Object> ref = system.spawn(new Actor<Integer, Object>() {
+                @Override
+                public Integer init() {
+                    return 0;
+                }
+
+                @Override
+                public Integer handle(Object message, Integer state) {
+                    handled.add(message);
+                    Actor.reply(state + 1);
+                    return state + 1;
+                }
+            });
+            for (int i = 0; i < 10; i++) {
+                ref.send(i);
+            }
+            assertEquals(11, ref.<Integer>ask("count", 2_000).get());
+            assertEquals(11, handled.size());
+        } finally {
+            system.shutdown();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.firefly.runtime.actor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_500, histogram.getMean(), 1);
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            double expected = percentile * 1_000_000;
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(Math.abs(actual - expected) / expected < 0.07, percentile + ": " + actual);
+        }
+        assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3, 98);
+        histogram.record(17, 2);
+        assertEquals(3, histogram.getValueAtPercentile(98));
+        assertEquals(17, histogram.getValueAtPercentile(99));
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testClampsAndMerges() {
+        LatencyHistogram first = new LatencyHistogram();
+        first.record(-5);
+        first.record(Long.MAX_VALUE);
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.add(first);
+        merged.add(first);
+        assertEquals(4, merged.getCount());
+        assertEquals(0, merged.getValueAtPercentile(50));
+        assertEquals((1L << 40) - 1, merged.getMax());
+    }
+}
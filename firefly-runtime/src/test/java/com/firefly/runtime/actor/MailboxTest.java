@@ -0,0 +1,191 @@
+package com.firefly.runtime.actor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Mailbox implementations.
+ */
+public class MailboxTest {
+
+    @Test
+    public void testUnboundedIsFifoAcrossSegments() {
+        Mailbox<Integer> mailbox = Mailbox.unbounded();
+        assertTrue(mailbox.isEmpty());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(mailbox.offer(i));
+        }
+        assertEquals(1000, mailbox.size());
+        assertFalse(mailbox.isEmpty());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, mailbox.poll());
+        }
+        assertNull(mailbox.poll());
+        assertTrue(mailbox.isEmpty());
+        assertEquals(0, mailbox.size());
+        assertEquals(Integer.MAX_VALUE, mailbox.capacity());
+        assertThrows(NullPointerException.class, () -> mailbox.offer(null));
+    }
+
+    @Test
+    @Timeout(20)
+    public void testConcurrentProducersKeepPerProducerOrder() throws Exception {
+        checkConcurrentProducers(Mailbox.unbounded());
+        checkConcurrentProducers(Mailbox.bounded(64, Mailbox.OverflowPolicy.BLOCK));
+    }
+
+    private void checkConcurrentProducers(Mailbox<long[]> mailbox) throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    mailbox.offer(new long[] {producer, i});
+                }
+            });
+            threads[p].start();
+        }
+
+        long[] next = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] message = mailbox.poll();
+            if (message == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals(next[(int) message[0]]++, message[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(mailbox.poll());
+    }
+
+    @Test
+    public void testBoundedDropNewest() {
+        Mailbox<Integer> mailbox = Mailbox.bounded(3, Mailbox.OverflowPolicy.DROP_NEWEST);
+        assertTrue(mailbox.offer(1));
+        assertTrue(mailbox.offer(2));
+        assertTrue(mailbox.offer(3));
+        assertFalse(mailbox.offer(4));
+        assertEquals(3, mailbox.size());
+        assertEquals(1, mailbox.overflowCount());
+        assertEquals(1, mailbox.poll());
+        assertTrue(mailbox.offer(5));
+        assertEquals(2, mailbox.poll());
+        assertEquals(3, mailbox.poll());
+        assertEquals(5, mailbox.poll());
+        assertNull(mailbox.poll());
+    }
+
+    @Test
+    public void testBoundedDropOldest() {
+        Mailbox<Integer> mailbox = Mailbox.bounded(3, Mailbox.OverflowPolicy.DROP_OLDEST);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(mailbox.offer(i));
+        }
+        assertEquals(2, mailbox.overflowCount());
+        assertEquals(3, mailbox.poll());
+        assertEquals(4, mailbox.poll());
+        assertEquals(5, mailbox.poll());
+        assertTrue(mailbox.isEmpty());
+    }
+
+    @Test
+    public void testBoundedFailFast() {
+        Mailbox<Integer> mailbox = Mailbox.bounded(2, Mailbox.OverflowPolicy.FAIL);
+        mailbox.offer(1);
+        mailbox.offer(2);
+        MailboxFullException e = assertThrows(MailboxFullException.class, () -> mailbox.offer(3));
+        assertEquals(2, e.getCapacity());
+        assertEquals(1, mailbox.overflowCount());
+    }
+
+    @Test
+    @Timeout(5)
+    public void testBoundedBlockWaitsForRoomThenTimesOut() throws Exception {
+        Mailbox<Integer> mailbox = Mailbox.bounded(1, 200, TimeUnit.MILLISECONDS);
+        mailbox.offer(1);
+
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mailbox.poll();
+        });
+        consumer.start();
+        assertTrue(mailbox.offer(2));
+        consumer.join();
+
+        long start = System.nanoTime();
+        assertThrows(MailboxFullException.class, () -> mailbox.offer(3));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(1, mailbox.overflowCount());
+        assertEquals(2, mailbox.poll());
+    }
+
+    @BoundedMailbox(capacity = 2, overflow = Mailbox.OverflowPolicy.DROP_NEWEST)
+    private static final class Gate implements Actor<Integer, Integer> {
+        private final CountDownLatch open;
+        private final CountDownLatch handled;
+
+        Gate(CountDownLatch open, CountDownLatch handled) {
+            this.open = open;
+            this.handled = handled;
+        }
+
+        @Override
+        public Integer init() {
+            return 0;
+        }
+
+        @Override
+        public Integer handle(Integer message, Integer state) {
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.countDown();
+            return state + 1;
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testAnnotationBoundsSpawnedMailbox() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            CountDownLatch open = new CountDownLatch(1);
+            CountDownLatch handled = new CountDownLatch(3);
+            Actor.ActorRef<Integer> ref = system.spawn(new Gate(open, handled));
+
+            ref.send(1);
+            // Wait until the actor has taken the first message and is blocked on the gate
+            while (ref.mailboxSize() > 0) {
+                Thread.onSpinWait();
+            }
+            ref.send(2);
+            ref.send(3);
+            ref.send(4);
+            assertEquals(2, ref.mailboxSize());
+            assertEquals(1, ref.overflowCount());
+
+            open.countDown();
+            assertTrue(handled.await(5, TimeUnit.SECONDS));
+        } finally {
+            system.shutdown();
+        }
+    }
+}
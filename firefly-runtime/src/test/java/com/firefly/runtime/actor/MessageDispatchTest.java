@@ -0,0 +1,36 @@
+package com.firefly.runtime.actor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MessageDispatch.
+ */
+public class MessageDispatchTest {
+
+    @Test
+    public void testFindsFirstMatchingCase() {
+        MessageDispatch dispatch = new MessageDispatch(String.class, Integer.class, Number.class, Object.class);
+        assertEquals(0, dispatch.next("text", 0));
+        assertEquals(1, dispatch.next(42, 0));
+        assertEquals(2, dispatch.next(42L, 0));
+        assertEquals(3, dispatch.next(new Object(), 0));
+        assertEquals(4, dispatch.size());
+    }
+
+    @Test
+    public void testResumesAfterFailedCase() {
+        MessageDispatch dispatch = new MessageDispatch(Integer.class, String.class, Number.class);
+        assertEquals(2, dispatch.next(42, 1));
+        assertEquals(3, dispatch.next(42, 3));
+        assertEquals(3, dispatch.next("text", 2));
+    }
+
+    @Test
+    public void testNullMatchesOnlyCatchAll() {
+        MessageDispatch dispatch = new MessageDispatch(String.class, Object.class);
+        assertEquals(1, dispatch.next(null, 0));
+        assertEquals(1, new MessageDispatch(String.class).next(null, 0));
+    }
+}
@@ -0,0 +1,188 @@
+package com.firefly.runtime.actor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Router.
+ */
+public class RouterTest {
+
+    /** Records which routee handled each key; replies to an ask with its own id. */
+    private static final class Worker implements Actor<Integer, Object> {
+        private static final AtomicInteger IDS = new AtomicInteger();
+
+        final int id = IDS.incrementAndGet();
+        final Map<Object, Set<Integer>> owners;
+        final AtomicInteger handled;
+
+        Worker(Map<Object, Set<Integer>> owners, AtomicInteger handled) {
+            this.owners = owners;
+            this.handled = handled;
+        }
+
+        @Override
+        public Integer init() {
+            return 0;
+        }
+
+        @Override
+        public Integer handle(Object message, Integer state) {
+            if (message instanceof CountDownLatch latch) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return state;
+            }
+            Object key = message instanceof String text ? text.split(":")[0] : message;
+            owners.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+            handled.incrementAndGet();
+            Actor.reply(id);
+            return state + 1;
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testRoundRobinSpreadsEvenly() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Map<Object, Set<Integer>> owners = new ConcurrentHashMap<>();
+            AtomicInteger handled = new AtomicInteger();
+            Router<Object> router = system.spawnRouter(() -> new Worker(owners, handled), 4,
+                Router.Routing.ROUND_ROBIN);
+            assertEquals(4, router.size());
+
+            Map<Integer, Integer> perRoutee = new HashMap<>();
+            for (int i = 0; i < 40; i++) {
+                int id = router.<Integer>ask(i, 2_000).get();
+                perRoutee.merge(id, 1, Integer::sum);
+            }
+            assertEquals(4, perRoutee.size());
+            assertTrue(perRoutee.values().stream().allMatch(n -> n == 10), perRoutee.toString());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testConsistentHashKeepsKeysOnOneRoutee() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Map<Object, Set<Integer>> owners = new ConcurrentHashMap<>();
+            AtomicInteger handled = new AtomicInteger();
+            Router<Object> router = system.spawnRouter(() -> new Worker(owners, handled), 4,
+                message -> ((String) message).split(":")[0]);
+
+            // Sent as an ActorRef, the way compiled `>>` code sees it
+            Actor.ActorRef<Object> ref = router;
+            for (int i = 0; i < 400; i++) {
+                ref.send("user" + (i % 20) + ":" + i);
+            }
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (handled.get() < 400 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(400, handled.get());
+            assertEquals(20, owners.size());
+            Set<Integer> used = new HashSet<>();
+            for (Set<Integer> ids : owners.values()) {
+                assertEquals(1, ids.size());
+                used.addAll(ids);
+            }
+            assertTrue(used.size() > 1, "all keys went to one routee");
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testSmallestMailboxAvoidsBusyRoutee() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Map<Object, Set<Integer>> owners = new ConcurrentHashMap<>();
+            AtomicInteger handled = new AtomicInteger();
+            Router<Object> router = system.spawnRouter(() -> new Worker(owners, handled), 2,
+                Router.Routing.SMALLEST_MAILBOX);
+            Actor.ActorRef<Object> busy = router.routees().get(0);
+            CountDownLatch gate = new CountDownLatch(1);
+            busy.send(gate);
+            for (int i = 0; i < 5; i++) {
+                busy.send("queued:" + i);
+            }
+
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                ids.add(router.<Integer>ask("free:" + i, 2_000).get());
+            }
+            assertEquals(1, new HashSet<>(ids).size());
+            gate.countDown();
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testResizerGrowsUnderPressureAndShrinksWhenIdle() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Map<Object, Set<Integer>> owners = new ConcurrentHashMap<>();
+            AtomicInteger handled = new AtomicInteger();
+            Router<Object> router = system.spawnRouter(() -> new Worker(owners, handled),
+                Router.Routing.ROUND_ROBIN, null, new Router.Resizer(1, 3, 2, 4));
+            assertEquals(1, router.size());
+
+            // Block the first routee so its backlog builds up
+            CountDownLatch gate = new CountDownLatch(1);
+            router.send(gate);
+            for (int i = 0; i < 20; i++) {
+                router.send("load:" + i);
+            }
+            assertTrue(router.size() > 1, "router did not grow");
+            assertTrue(router.size() <= 3);
+            gate.countDown();
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (handled.get() < 20 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            // Idle at consecutive checks: shrinks back to the lower bound
+            for (int i = 0; i < 200 && router.size() > 1; i++) {
+                router.<Integer>ask("ping:" + i, 2_000).get();
+            }
+            assertEquals(1, router.size());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidConfiguration() {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            assertThrows(IllegalArgumentException.class,
+                () -> system.spawnRouter(() -> new Worker(new HashMap<>(), new AtomicInteger()), 2,
+                    Router.Routing.CONSISTENT_HASH));
+            assertThrows(IllegalArgumentException.class, () -> new Router.Resizer(3, 2, 1));
+        } finally {
+            system.shutdown();
+        }
+    }
+}
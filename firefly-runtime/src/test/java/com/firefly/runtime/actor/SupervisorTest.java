@@ -0,0 +1,273 @@
+package com.firefly.runtime.actor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Supervisor.
+ */
+public class SupervisorTest {
+
+    /** Counts messages; crashes on "boom" and replies to "get" with the count. */
+    private static final class Counter implements Actor<Integer, Object> {
+        final AtomicInteger inits = new AtomicInteger();
+        final AtomicInteger terminations = new AtomicInteger();
+
+        @Override
+        public Integer init() {
+            inits.incrementAndGet();
+            return 0;
+        }
+
+        @Override
+        public Integer handle(Object message, Integer state) {
+            if ("boom".equals(message)) {
+                throw new IllegalStateException("boom");
+            }
+            if ("get".equals(message)) {
+                Actor.reply(state);
+                return state;
+            }
+            return state + 1;
+        }
+
+        @Override
+        public void terminate(Integer state) {
+            terminations.incrementAndGet();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testOneForOneRestartKeepsRefAndMailbox() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Supervisor supervisor = new Supervisor(system, Supervisor.Strategy.ONE_FOR_ONE, 3, 5_000);
+            Counter crashing = new Counter();
+            Counter sibling = new Counter();
+            Actor.ActorRef<Object> ref = supervisor.spawn(crashing);
+            Actor.ActorRef<Object> other = supervisor.spawn(sibling);
+
+            other.send("tick");
+            ref.send("tick");
+            ref.send("boom");
+            // Queued behind the crash: handled by the restarted actor
+            ref.send("tick");
+            ref.send("tick");
+            assertEquals(2, ref.<Integer>ask("get", 2_000).get());
+            assertTrue(ref.isRunning());
+
+            assertEquals(1, other.<Integer>ask("get", 2_000).get());
+            assertEquals(2, crashing.inits.get());
+            assertEquals(1, sibling.inits.get());
+            assertEquals(1, supervisor.restartCount());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testOneForAllRestartsSiblings() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Supervisor supervisor = new Supervisor(system, Supervisor.Strategy.ONE_FOR_ALL, 3, 5_000);
+            Counter first = new Counter();
+            Counter second = new Counter();
+            Actor.ActorRef<Object> a = supervisor.spawn(first);
+            Actor.ActorRef<Object> b = supervisor.spawn(second);
+
+            b.send("tick");
+            assertEquals(1, b.<Integer>ask("get", 2_000).get());
+            a.send("boom");
+            assertEquals(0, a.<Integer>ask("get", 2_000).get());
+
+            // The sibling restarts at its next run; wait for it
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (second.inits.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, b.<Integer>ask("get", 2_000).get());
+            assertEquals(1, second.terminations.get());
+            assertEquals(0, first.terminations.get());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testRestForOneRestartsLaterSiblingsOnly() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Supervisor supervisor = new Supervisor(system, Supervisor.Strategy.REST_FOR_ONE, 3, 5_000);
+            Counter before = new Counter();
+            Counter crashing = new Counter();
+            Counter after = new Counter();
+            Actor.ActorRef<Object> first = supervisor.spawn(before);
+            Actor.ActorRef<Object> middle = supervisor.spawn(crashing);
+            Actor.ActorRef<Object> last = supervisor.spawn(after);
+            first.send("tick");
+            last.send("tick");
+            assertEquals(1, first.<Integer>ask("get", 2_000).get());
+            assertEquals(1, last.<Integer>ask("get", 2_000).get());
+
+            middle.send("boom");
+            assertEquals(0, middle.<Integer>ask("get", 2_000).get());
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (after.inits.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, last.<Integer>ask("get", 2_000).get());
+            assertEquals(1, first.<Integer>ask("get", 2_000).get());
+            assertEquals(1, before.inits.get());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testGivesUpWhenIntensityExceeded() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Supervisor supervisor = new Supervisor(system, Supervisor.Strategy.ONE_FOR_ONE, 2, 60_000);
+            Actor.ActorRef<Object> ref = supervisor.spawn(new Counter());
+            Actor.ActorRef<Object> other = supervisor.spawn(new Counter());
+            for (int i = 0; i < 3; i++) {
+                ref.send("boom");
+            }
+            long deadline = System.currentTimeMillis() + 2_000;
+            while ((ref.isRunning() || other.isRunning()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertFalse(ref.isRunning());
+            assertFalse(other.isRunning());
+            assertTrue(supervisor.isTerminated());
+            assertInstanceOf(IllegalStateException.class, supervisor.failure());
+            assertEquals(2, supervisor.restartCount());
+            assertThrows(IllegalStateException.class, () -> supervisor.spawn(new Counter()));
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testStoppedChildrenAreRemoved() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Supervisor supervisor = new Supervisor(system);
+            Actor.ActorRef<Object> kept = supervisor.spawn(new Counter());
+            for (int i = 0; i < 100; i++) {
+                supervisor.spawn(new Counter()).stop();
+            }
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (supervisor.children().size() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(List.of(kept), supervisor.children());
+
+            // Nor does one that crashes and is not restarted
+            Supervisor strict = new Supervisor(system, Supervisor.Strategy.ONE_FOR_ONE, 0, 5_000);
+            strict.spawn(new Counter()).send("boom");
+            deadline = System.currentTimeMillis() + 2_000;
+            while (!strict.children().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(List.of(), strict.children());
+            assertTrue(strict.isTerminated());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testGivingUpEscalatesToParent() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Supervisor root = new Supervisor(system, Supervisor.Strategy.ONE_FOR_ALL, 1, 60_000);
+            Supervisor workers = root.supervise(new Supervisor(system, Supervisor.Strategy.ONE_FOR_ONE, 1, 60_000));
+            Counter counter = new Counter();
+            Counter sibling = new Counter();
+            Actor.ActorRef<Object> ref = workers.spawn(counter);
+            Actor.ActorRef<Object> other = root.spawn(sibling);
+            assertEquals(0, other.<Integer>ask("get", 2_000).get());
+
+            // The second crash exceeds the workers' intensity; the root restarts them
+            ref.send("boom");
+            ref.send("boom");
+            ref.send("tick");
+            assertEquals(1, ref.<Integer>ask("get", 2_000).get());
+            assertFalse(workers.isTerminated());
+            assertNull(workers.failure());
+            assertEquals(1, root.restartCount());
+            // One-for-all: the root restarted the sibling too
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (sibling.inits.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(2, sibling.inits.get());
+
+            // The root is out of restarts as well: everything stops
+            ref.send("boom");
+            ref.send("boom");
+            deadline = System.currentTimeMillis() + 2_000;
+            while ((ref.isRunning() || other.isRunning()) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertFalse(ref.isRunning());
+            assertFalse(other.isRunning());
+            assertTrue(workers.isTerminated());
+            assertTrue(root.isTerminated());
+            assertInstanceOf(IllegalStateException.class, root.failure());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    public void testSuperviseRejectsCycles() {
+        Actor.ActorSystem system = new Actor.ActorSystem(1);
+        try {
+            Supervisor root = new Supervisor(system);
+            Supervisor child = root.supervise(new Supervisor(system));
+            assertThrows(IllegalStateException.class, () -> child.supervise(root));
+            assertThrows(IllegalStateException.class, () -> root.supervise(child));
+            assertThrows(IllegalStateException.class, () -> child.supervise(child));
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testCrashFailsOnlyTheAskBeingHandled() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            Supervisor supervisor = new Supervisor(system);
+            Actor.ActorRef<Object> ref = supervisor.spawn(new Counter());
+            ExecutionException error = assertThrows(ExecutionException.class,
+                () -> ref.ask("boom", 2_000).get());
+            assertInstanceOf(IllegalStateException.class, error.getCause());
+            assertEquals(0, ref.<Integer>ask("get", 2_000).get());
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseStrategy() {
+        assertEquals(Supervisor.Strategy.ONE_FOR_ONE, Supervisor.Strategy.parse("one_for_one"));
+        assertEquals(Supervisor.Strategy.ONE_FOR_ALL, Supervisor.Strategy.parse("OneForAll"));
+        assertEquals(Supervisor.Strategy.REST_FOR_ONE, Supervisor.Strategy.parse("rest-for-one"));
+        assertThrows(IllegalArgumentException.class, () -> Supervisor.Strategy.parse("all_for_none"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.firefly.runtime.actor.persistence;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures journal write throughput and the recovery time of a persistent
+ * actor with one million journaled events, replaying the whole journal and
+ * only the tail after a snapshot. Not run by the test suite; run with
+ * {@code java -cp <runtime>:<test-classes> com.firefly.runtime.actor.persistence.JournalRecoveryBenchmark}.
+ */
+public class JournalRecoveryBenchmark {
+
+    private static final int EVENTS = 1_000_000;
+    private static final int BATCH = 64;
+
+    private static final Codec<Long> LONGS = new Codec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(8).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getLong();
+        }
+    };
+
+    private static final class Counter extends PersistentActor<Long, Long, Long> {
+        Counter(Journal journal, Codec<Long> snapshotCodec) {
+            super(journal, LONGS, snapshotCodec, snapshotCodec == null ? 0 : EVENTS - 1_000);
+        }
+
+        @Override
+        protected Long emptyState() {
+            return 0L;
+        }
+
+        @Override
+        protected List<Long> onCommand(Long command, Long state) {
+            return List.of(command);
+        }
+
+        @Override
+        protected Long applyEvent(Long state, Long event) {
+            return state + event;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        run("full replay", null);
+        run("snapshot + tail", LONGS);
+    }
+
+    private static void run(String mode, Codec<Long> snapshotCodec) throws Exception {
+        Path dir = Files.createTempDirectory("journal-bench");
+        try {
+            long start = System.nanoTime();
+            try (Journal journal = Journal.open(dir)) {
+                Counter writer = new Counter(journal, snapshotCodec);
+                Long state = writer.init();
+                List<Long> batch = new ArrayList<>(BATCH);
+                for (long i = 1; i <= EVENTS; i++) {
+                    batch.add(i);
+                    if (batch.size() == BATCH || i == EVENTS) {
+                        state = writer.handleBatch(batch, state);
+                        batch.clear();
+                    }
+                }
+            }
+            long written = System.nanoTime() - start;
+
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                try (Journal journal = Journal.open(dir)) {
+                    long recoverStart = System.nanoTime();
+                    Long state = new Counter(journal, snapshotCodec).init();
+                    best = Math.min(best, System.nanoTime() - recoverStart);
+                    if (state != (long) EVENTS * (EVENTS + 1) / 2) {
+                        throw new IllegalStateException("Wrong recovered state: " + state);
+                    }
+                }
+            }
+            System.out.printf("%-16s write %8.0f events/sec, recovery %6d ms%n",
+                mode, EVENTS * 1e9 / written, best / 1_000_000);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
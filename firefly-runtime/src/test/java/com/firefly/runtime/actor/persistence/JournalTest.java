@@ -0,0 +1,121 @@
+package com.firefly.runtime.actor.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Journal.
+ */
+public class JournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> replay(Journal journal, long from) {
+        List<String> events = new ArrayList<>();
+        journal.replay(from, (payload, seq) -> events.add(seq + "=" + new String(payload, StandardCharsets.UTF_8)));
+        return events;
+    }
+
+    @Test
+    public void testAppendAndReplay() throws Exception {
+        try (Journal journal = Journal.open(dir)) {
+            assertEquals(0, journal.lastSequenceNr());
+            assertEquals(1, journal.append(bytes("a")));
+            assertEquals(3, journal.append(Arrays.asList(bytes("b"), bytes(""))));
+            assertEquals(Arrays.asList("1=a", "2=b", "3="), replay(journal, 1));
+            assertEquals(Arrays.asList("3="), replay(journal, 3));
+        }
+        try (Journal journal = Journal.open(dir)) {
+            assertEquals(3, journal.lastSequenceNr());
+            assertEquals(4, journal.append(bytes("d")));
+            assertEquals(Arrays.asList("2=b", "3=", "4=d"), replay(journal, 2));
+        }
+    }
+
+    @Test
+    public void testRotatesSegments() throws Exception {
+        try (Journal journal = Journal.open(dir, 64, Journal.Durability.PERIODIC)) {
+            for (int i = 1; i <= 10; i++) {
+                journal.append(bytes("event" + i));
+            }
+            assertThrows(IllegalArgumentException.class, () -> journal.append(new byte[64]));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.filter(f -> f.toString().endsWith(".seg")).count() > 1);
+        }
+        try (Journal journal = Journal.open(dir, 64, Journal.Durability.NONE)) {
+            assertEquals(10, journal.lastSequenceNr());
+            List<String> events = replay(journal, 7);
+            assertEquals(Arrays.asList("7=event7", "8=event8", "9=event9", "10=event10"), events);
+        }
+    }
+
+    @Test
+    public void testDropsTornWrite() throws Exception {
+        Path segment;
+        try (Journal journal = Journal.open(dir, 4096, Journal.Durability.SYNC)) {
+            journal.append(Arrays.asList(bytes("first"), bytes("second")));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(f -> f.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        // Corrupt the payload of the second record, as if the crash hit mid-write
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(16 + 5 + 16);
+            file.write('X');
+        }
+        try (Journal journal = Journal.open(dir, 4096, Journal.Durability.SYNC)) {
+            assertEquals(1, journal.lastSequenceNr());
+            assertEquals(2, journal.append(bytes("again")));
+            assertEquals(Arrays.asList("1=first", "2=again"), replay(journal, 1));
+        }
+    }
+
+    @Test
+    public void testSnapshots() throws Exception {
+        try (Journal journal = Journal.open(dir)) {
+            assertFalse(journal.loadSnapshot().isPresent());
+            journal.saveSnapshot(10, bytes("ten"));
+            journal.saveSnapshot(20, bytes("twenty"));
+            journal.saveSnapshot(30, bytes("thirty"));
+            Journal.Snapshot snapshot = journal.loadSnapshot().orElseThrow();
+            assertEquals(30, snapshot.getSequenceNr());
+            assertEquals("thirty", new String(snapshot.getState(), StandardCharsets.UTF_8));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.filter(f -> f.toString().endsWith(".snap")).count());
+        }
+
+        // A damaged newest snapshot falls back to the previous one
+        Path newest = dir.resolve(String.format("snapshot-%020d.snap", 30));
+        byte[] content = Files.readAllBytes(newest);
+        content[content.length - 1] ^= 1;
+        Files.write(newest, content);
+        try (Journal journal = Journal.open(dir)) {
+            assertEquals(20, journal.loadSnapshot().orElseThrow().getSequenceNr());
+        }
+    }
+
+    @Test
+    public void testClosedJournalRejectsAppends() throws Exception {
+        Journal journal = Journal.open(dir);
+        journal.close();
+        assertThrows(IllegalStateException.class, () -> journal.append(bytes("late")));
+    }
+}
@@ -0,0 +1,110 @@
+package com.firefly.runtime.actor.persistence;
+
+import com.firefly.runtime.actor.Actor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PersistentActor.
+ */
+public class PersistentActorTest {
+
+    @TempDir
+    Path dir;
+
+    private static final Codec<Long> LONGS = new Codec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(8).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getLong();
+        }
+    };
+
+    /** Sums deposits; rejects negative ones. Replies with the balance. */
+    private static final class Account extends PersistentActor<Long, Long, Long> {
+        final AtomicInteger applied = new AtomicInteger();
+
+        Account(Journal journal, int snapshotInterval) {
+            super(journal, LONGS, LONGS, snapshotInterval);
+        }
+
+        @Override
+        protected Long emptyState() {
+            return 0L;
+        }
+
+        @Override
+        protected List<Long> onCommand(Long amount, Long balance) {
+            return amount < 0 ? Collections.emptyList() : Collections.singletonList(amount);
+        }
+
+        @Override
+        protected Long applyEvent(Long balance, Long amount) {
+            applied.incrementAndGet();
+            return balance + amount;
+        }
+
+        @Override
+        protected void onPersisted(Long amount, Long balance) {
+            Actor.reply(balance);
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testRecoversFromSnapshotAndTail() throws Exception {
+        Actor.ActorSystem system = new Actor.ActorSystem(2);
+        try {
+            try (Journal journal = Journal.open(dir)) {
+                Actor.ActorRef<Long> account = system.spawn(new Account(journal, 10));
+                for (long i = 1; i <= 25; i++) {
+                    account.send(i);
+                }
+                account.send(-5L);
+                assertEquals(325L + 100, account.<Long>ask(100L, 2_000).get());
+                account.stop();
+            }
+
+            try (Journal journal = Journal.open(dir)) {
+                assertEquals(26, journal.lastSequenceNr());
+                Account recovered = new Account(journal, 10);
+                Actor.ActorRef<Long> account = system.spawn(recovered);
+                assertEquals(426L, account.<Long>ask(1L, 2_000).get());
+                // Only the events after the latest snapshot were replayed
+                assertTrue(recovered.applied.get() < 10, "replayed " + recovered.applied.get() + " events");
+                account.stop();
+            }
+        } finally {
+            system.shutdown();
+        }
+    }
+
+    @Test
+    public void testRecoversWithoutSnapshots() throws Exception {
+        try (Journal journal = Journal.open(dir)) {
+            Account account = new Account(journal, 1_000);
+            Long balance = account.init();
+            balance = account.handleBatch(Arrays.asList(1L, 2L, -3L, 4L), balance);
+            assertEquals(7L, balance);
+            assertEquals(3, journal.lastSequenceNr());
+        }
+        try (Journal journal = Journal.open(dir)) {
+            assertFalse(journal.loadSnapshot().isPresent());
+            assertEquals(7L, new Account(journal, 1_000).init());
+        }
+    }
+}
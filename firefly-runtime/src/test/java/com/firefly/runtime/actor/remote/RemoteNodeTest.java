@@ -0,0 +1,219 @@
+package com.firefly.runtime.actor.remote;
+
+import com.firefly.runtime.actor.Actor;
+import com.firefly.runtime.actor.Mailbox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RemoteNode and RemoteActorRef, with two nodes on loopback.
+ */
+public class RemoteNodeTest {
+
+    /** Records what it receives; replies to an ask with the message doubled. */
+    private static final class Recorder implements Actor<Integer, Object> {
+        final List<Object> received = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Integer init() {
+            return 0;
+        }
+
+        @Override
+        public Integer handle(Object message, Integer state) {
+            if ("fail".equals(message)) {
+                throw new IllegalStateException("asked to fail");
+            }
+            received.add(message);
+            if (message instanceof Integer) {
+                Actor.reply((Integer) message * 2);
+            }
+            return state + 1;
+        }
+    }
+
+    private Actor.ActorSystem system;
+    private RemoteNode server;
+    private RemoteNode client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        system = new Actor.ActorSystem(2);
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        server = RemoteNode.start(loopback, new WireCodec());
+        client = RemoteNode.start(loopback, new WireCodec());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.close();
+        system.shutdown();
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, list.size());
+    }
+
+    @Test
+    @Timeout(10)
+    public void testSendKeepsOrder() throws Exception {
+        Recorder recorder = new Recorder();
+        server.register("recorder", system.spawn(recorder));
+
+        // Used as a plain ActorRef, the way compiled `>>` code sees it
+        Actor.ActorRef<Object> ref = client.ref(server.address(), "recorder");
+        for (int i = 0; i < 1_000; i++) {
+            ref.send("m" + i);
+        }
+        awaitSize(recorder.received, 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals("m" + i, recorder.received.get(i));
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testAsk() throws Exception {
+        server.register("recorder", system.spawn(new Recorder()));
+        RemoteActorRef<Object> ref = client.ref(server.address(), "recorder");
+        assertEquals(42, ref.<Integer>ask(21, 2_000).get());
+        assertNull(ref.ask("no reply", 2_000).get());
+
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> ref.ask("fail", 2_000).get());
+        assertInstanceOf(RemoteException.class, failed.getCause());
+    }
+
+    @Test
+    @Timeout(10)
+    public void testUnknownNames() throws Exception {
+        RemoteActorRef<Object> ref = client.ref(server.address(), "nobody");
+        ref.send("lost");
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> ref.ask(1, 2_000).get());
+        assertInstanceOf(RemoteException.class, failed.getCause());
+        assertTrue(failed.getCause().getMessage().contains("nobody"));
+        assertEquals(2, server.deadLetterCount());
+    }
+
+    @Test
+    @Timeout(10)
+    public void testUnencodableMessageFailsAtSender() throws Exception {
+        Recorder recorder = new Recorder();
+        server.register("recorder", system.spawn(recorder));
+        RemoteActorRef<Object> ref = client.ref(server.address(), "recorder");
+        assertThrows(IllegalArgumentException.class, () -> ref.send(new Object()));
+        ref.send("after");
+        awaitSize(recorder.received, 1);
+    }
+
+    @Test
+    @Timeout(10)
+    public void testStopStopsRemoteActor() throws Exception {
+        Recorder recorder = new Recorder();
+        Actor.ActorRef<Object> local = system.spawn(recorder);
+        server.register("recorder", local);
+        RemoteActorRef<Object> ref = client.ref(server.address(), "recorder");
+        ref.send("before");
+        awaitSize(recorder.received, 1);
+        ref.stop();
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (local.isRunning() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(local.isRunning());
+
+        // The name is gone, so later messages are dead letters
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> ref.ask(1, 2_000).get());
+        assertInstanceOf(RemoteException.class, failed.getCause());
+        assertEquals(1, server.deadLetterCount());
+        assertEquals(0, ref.mailboxSize());
+    }
+
+    @Test
+    @Timeout(10)
+    public void testFullBlockingMailboxDoesNotStallNode() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        Actor.ActorRef<Object> stuck = system.spawn(new Actor<Integer, Object>() {
+            @Override
+            public Integer init() {
+                return 0;
+            }
+
+            @Override
+            public Integer handle(Object message, Integer state) {
+                started.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return state;
+            }
+        }, Mailbox.bounded(1, 30, TimeUnit.SECONDS));
+        server.register("stuck", stuck);
+        server.register("recorder", system.spawn(new Recorder()));
+        try {
+            RemoteActorRef<Object> ref = client.ref(server.address(), "stuck");
+            ref.send("first");
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // One message fills the mailbox, the rest overflow
+            for (int i = 0; i < 4; i++) {
+                ref.send("fill" + i);
+            }
+            ExecutionException failed = assertThrows(ExecutionException.class, () -> ref.ask("more", 5_000).get());
+            assertInstanceOf(RemoteException.class, failed.getCause());
+
+            // The I/O thread is still serving other actors
+            assertEquals(8, client.ref(server.address(), "recorder").<Integer>ask(4, 2_000).get());
+            assertTrue(server.deadLetterCount() >= 1);
+        } finally {
+            gate.countDown();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    public void testClosedNodeFailsPendingAsks() throws Exception {
+        Actor.ActorRef<Object> slow = system.spawn(new Actor<Integer, Object>() {
+            @Override
+            public Integer init() {
+                return 0;
+            }
+
+            @Override
+            public Integer handle(Object message, Integer state) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return state;
+            }
+        });
+        server.register("slow", slow);
+        RemoteActorRef<Object> ref = client.ref(server.address(), "slow");
+        var reply = ref.ask("wait", 5_000);
+        Thread.sleep(100);
+        server.close();
+        ExecutionException failed = assertThrows(ExecutionException.class, reply::get);
+        assertInstanceOf(RemoteException.class, failed.getCause());
+    }
+}
@@ -0,0 +1,83 @@
+package com.firefly.runtime.actor.remote;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for WireCodec.
+ */
+public class WireCodecTest {
+
+    private static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    @Test
+    public void testRoundTripsBuiltInTypes() {
+        WireCodec codec = new WireCodec();
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put(2L, Arrays.asList(true, null, 'c'));
+        Object[] values = {
+            null, true, false, 0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, 3.5, 1.5f,
+            (short) -7, (byte) 9, 'z', "", "héllo", Arrays.asList(1, "two", 3.0),
+            new LinkedHashSet<>(Arrays.asList("x", "y")), map
+        };
+        for (Object value : values) {
+            assertEquals(value, codec.decode(codec.encode(value)), String.valueOf(value));
+        }
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) codec.decode(codec.encode(new byte[] {1, 2, 3})));
+    }
+
+    @Test
+    public void testSmallValuesAreCompact() {
+        WireCodec codec = new WireCodec();
+        assertEquals(2, codec.encode(42).length);
+        assertEquals(2, codec.encode(-3L).length);
+        assertEquals(4, codec.encode("hi").length);
+    }
+
+    @Test
+    public void testRegisteredTypes() {
+        WireCodec codec = new WireCodec().register(1, Point.class, new WireCodec.Serializer<Point>() {
+            @Override
+            public void write(WireCodec.Output out, Point value) {
+                out.writeVarLong(value.x);
+                out.writeVarLong(value.y);
+            }
+
+            @Override
+            public Point read(WireCodec.Input in) {
+                return new Point((int) in.readVarLong(), (int) in.readVarLong());
+            }
+        });
+        @SuppressWarnings("unchecked")
+        List<Point> points = (List<Point>) codec.decode(codec.encode(Arrays.asList(new Point(1, -2), new Point(3, 4))));
+        assertEquals(-2, points.get(0).y);
+        assertEquals(3, points.get(1).x);
+
+        assertThrows(IllegalArgumentException.class, () -> codec.register(1, String.class, null));
+        assertThrows(IllegalArgumentException.class, () -> new WireCodec().encode(new Point(0, 0)));
+        assertThrows(IllegalArgumentException.class, () -> new WireCodec().decode(codec.encode(new Point(0, 0))));
+    }
+
+    @Test
+    public void testRejectsTruncatedInput() {
+        WireCodec codec = new WireCodec();
+        byte[] bytes = codec.encode("a longer string");
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(Arrays.copyOf(bytes, 5)));
+    }
+}
@@ -0,0 +1,118 @@
+package com.firefly.runtime.collections;
+
+import org.junit.jupiter.api.Test;
+import java.util.PrimitiveIterator;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for IntVector.
+ */
+class IntVectorTest {
+
+    @Test
+    void testEmpty() {
+        IntVector vec = IntVector.empty();
+        assertTrue(vec.isEmpty());
+        assertEquals(0, vec.size());
+        assertEquals("[]", vec.toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> vec.getInt(0));
+    }
+
+    @Test
+    void testOfMatchesAppend() {
+        int[] values = new int[2_500];
+        IntVector appended = IntVector.empty();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i * 3;
+            appended = appended.append(i * 3);
+        }
+
+        IntVector built = IntVector.of(values);
+        assertEquals(appended, built);
+        assertEquals(appended.hashCode(), built.hashCode());
+        assertEquals(7_497, built.getInt(2_499));
+        assertArrayEquals(values, built.toArray());
+    }
+
+    @Test
+    void testSetAcrossTrieLevels() {
+        IntVector vec = IntVector.empty();
+        for (int i = 0; i < 2_000; i++) {
+            vec = vec.append(i);
+        }
+
+        IntVector updated = vec.set(0, -1).set(1_055, -2).set(1_999, -3);
+
+        assertEquals(-1, updated.getInt(0));
+        assertEquals(-2, updated.getInt(1_055));
+        assertEquals(-3, updated.getInt(1_999));
+
+        // Original unchanged
+        assertEquals(0, vec.getInt(0));
+        assertEquals(1_055, vec.getInt(1_055));
+        assertEquals(1_999, vec.getInt(1_999));
+    }
+
+    @Test
+    void testReduceMapAndFilter() {
+        IntVector vec = IntVector.empty();
+        for (int i = 0; i < 1_000; i++) {
+            vec = vec.append(i);
+        }
+
+        assertEquals(499_500, vec.reduce(0, Integer::sum));
+        assertEquals(999_000, vec.map(x -> x * 2).reduce(0, Integer::sum));
+        assertEquals(500, vec.filter(x -> x % 2 == 0).size());
+        assertSame(vec, vec.filter(x -> true));
+        assertEquals("#999", vec.mapToObj(x -> "#" + x).get(999));
+    }
+
+    @Test
+    void testIteratorAndBoxedView() {
+        IntVector vec = IntVector.of(1, 2, 3);
+
+        PrimitiveIterator.OfInt it = vec.iterator();
+        int sum = 0;
+        while (it.hasNext()) {
+            sum += it.nextInt();
+        }
+        assertEquals(6, sum);
+
+        assertArrayEquals(new int[] {1, 2, 3}, vec.chunkFor(2));
+
+        PersistentVector<Integer> boxed = vec.boxed();
+        assertEquals(PersistentVector.of(1, 2, 3), boxed);
+        assertEquals(boxed.hashCode(), vec.hashCode());
+        assertEquals(boxed.toString(), vec.toString());
+    }
+
+    @Test
+    void testDoubleAndLongVectors() {
+        DoubleVector doubles = DoubleVector.of(0.5, 1.5).append(2.0);
+        assertEquals(4.0, doubles.reduce(0.0, Double::sum));
+        assertEquals("[0.5, 1.5, 2.0]", doubles.toString());
+        assertEquals(DoubleVector.of(Double.NaN), DoubleVector.of(Double.NaN));
+
+        LongVector longs = LongVector.of(Long.MAX_VALUE, 1L);
+        assertEquals(Long.MAX_VALUE, longs.getLong(0));
+        assertEquals(longs.boxed().hashCode(), longs.hashCode());
+    }
+
+    @Test
+    void testEqualsAcrossVectorKinds() {
+        IntVector ints = IntVector.of(1, 2, 3);
+        PersistentVector<Integer> boxed = PersistentVector.of(1, 2, 3);
+        assertEquals(boxed, ints);
+        assertEquals(ints, boxed);
+        assertEquals(boxed.hashCode(), ints.hashCode());
+        assertNotEquals(ints, LongVector.of(1L, 2L, 3L));
+        assertEquals(LongVector.of(1L, 2L), PersistentVector.of(1L, 2L));
+        assertEquals(PersistentVector.of(0.5), DoubleVector.of(0.5));
+
+        // Code that only knows it has a vector reads boxed elements
+        AbstractVector<?> vector = ints;
+        assertEquals(3, vector.size());
+        assertEquals(2, vector.get(1));
+        assertEquals(2.5, ((AbstractVector<?>) DoubleVector.of(1.0, 2.5)).get(1));
+    }
+}
@@ -1,8 +1,14 @@
 package com.firefly.runtime.collections;
 
 import org.junit.jupiter.api.Test;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -195,5 +201,221 @@ class PersistentHashMapTest {
         assertEquals(2, map2.size());
         assertEquals(0, map3.size());
     }
-}
 
+    @Test
+    void testLargeMapMatchesHashMap() {
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 10_000; i++) {
+            map = map.put(i, i * 2);
+            expected.put(i, i * 2);
+        }
+        for (int i = 0; i < 10_000; i += 3) {
+            map = map.remove(i);
+            expected.remove(i);
+        }
+        
+        assertEquals(expected.size(), map.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(expected.get(i), map.get(i));
+        }
+        
+        int count = 0;
+        for (Map.Entry<Integer, Integer> entry : map) {
+            assertEquals(expected.get(entry.getKey()), entry.getValue());
+            count++;
+        }
+        assertEquals(expected.size(), count);
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    void testHashCollisions() {
+        PersistentHashMap<CollidingKey, String> map = PersistentHashMap.empty();
+        for (int i = 0; i < 10; i++) {
+            map = map.put(new CollidingKey(i), "v" + i);
+        }
+        
+        assertEquals(10, map.size());
+        assertEquals("v7", map.get(new CollidingKey(7)));
+        
+        for (int i = 0; i < 9; i++) {
+            map = map.remove(new CollidingKey(i));
+        }
+        assertEquals(1, map.size());
+        assertEquals("v9", map.get(new CollidingKey(9)));
+        assertNull(map.get(new CollidingKey(0)));
+    }
+
+    @Test
+    void testNullKeyAndValue() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.<String, Integer>empty()
+            .put(null, 1)
+            .put("two", null);
+        
+        assertEquals(1, map.get(null));
+        assertTrue(map.containsKey("two"));
+        assertNull(map.get("two"));
+        assertFalse(map.remove(null).containsKey(null));
+    }
+
+    @Test
+    void testEqualsIgnoresInsertionOrder() {
+        PersistentHashMap<Integer, Integer> forward = PersistentHashMap.empty();
+        PersistentHashMap<Integer, Integer> backward = PersistentHashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            forward = forward.put(i, i);
+            backward = backward.put(999 - i, 999 - i);
+        }
+        
+        assertEquals(forward, backward);
+        assertEquals(forward.hashCode(), backward.hashCode());
+        assertEquals(forward.toString(), backward.toString());
+        assertNotEquals(forward, backward.put(5, 6));
+    }
+
+    @Test
+    void testAllocationAgainstCopyOnWrite() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().threadId();
+        int n = 2_000;
+        
+        long before = threads.getThreadAllocatedBytes(threadId);
+        PersistentHashMap<Integer, Integer> trie = PersistentHashMap.empty();
+        for (int i = 0; i < n; i++) {
+            trie = trie.put(i, i);
+        }
+        long trieBytes = threads.getThreadAllocatedBytes(threadId) - before;
+        
+        // The previous implementation copied its backing HashMap on every put
+        before = threads.getThreadAllocatedBytes(threadId);
+        Map<Integer, Integer> copyOnWrite = Collections.emptyMap();
+        for (int i = 0; i < n; i++) {
+            Map<Integer, Integer> next = new HashMap<>(copyOnWrite);
+            next.put(i, i);
+            copyOnWrite = Collections.unmodifiableMap(new HashMap<>(next));
+        }
+        long copyBytes = threads.getThreadAllocatedBytes(threadId) - before;
+        
+        assertEquals(n, trie.size());
+        assertEquals(n, copyOnWrite.size());
+        assertTrue(trieBytes * 10 < copyBytes,
+            "trie allocated " + trieBytes + " bytes, copy-on-write allocated " + copyBytes);
+    }
+
+    private record CollidingKey(int id) {
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+
+    @Test
+    void testTransientBuildAndFreeze() {
+        PersistentHashMap<Integer, String> base = PersistentHashMap.<Integer, String>empty().put(1, "one");
+        PersistentHashMap.Transient<Integer, String> builder = base.asTransient();
+        for (int i = 0; i < 1_000; i++) {
+            builder.put(i, "v" + i);
+        }
+        builder.remove(500);
+        
+        PersistentHashMap<Integer, String> built = builder.persistent();
+        assertEquals(999, built.size());
+        assertEquals("v1", built.get(1));
+        assertFalse(built.containsKey(500));
+        assertEquals("one", base.get(1));
+        assertEquals(1, base.size());
+        
+        assertThrows(IllegalStateException.class, () -> builder.put(2_000, "late"));
+    }
+
+    @Test
+    void testSpliteratorAndParallelForEach() {
+        PersistentHashMap.Transient<Object, Integer> builder = PersistentHashMap.<Object, Integer>empty().asTransient();
+        for (int i = 0; i < 50_000; i++) {
+            builder.put(i, i);
+        }
+        for (int i = 0; i < 10; i++) {
+            builder.put(new CollidingKey(i), -i);
+        }
+        PersistentHashMap<Object, Integer> map = builder.persistent();
+        
+        Spliterator<Map.Entry<Object, Integer>> spliterator = map.spliterator();
+        assertEquals(50_010, spliterator.getExactSizeIfKnown());
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+        Spliterator<Map.Entry<Object, Integer>> split = spliterator.trySplit();
+        assertNotNull(split);
+        assertEquals(50_010, split.getExactSizeIfKnown() + spliterator.getExactSizeIfKnown());
+        
+        long expected = 0;
+        for (int i = 0; i < 50_000; i++) {
+            expected += i;
+        }
+        expected -= 45;
+        assertEquals(expected, map.stream().parallel().mapToLong(Map.Entry::getValue).sum());
+        assertEquals(50_010, map.stream().parallel().map(Map.Entry::getKey).distinct().count());
+        
+        LongAdder sum = new LongAdder();
+        map.parForEach((key, value) -> sum.add(value));
+        assertEquals(expected, sum.sum());
+    }
+
+    /** Value whose equals calls are counted. */
+    private record Tracked(int id, AtomicInteger comparisons) {
+        @Override
+        public boolean equals(Object obj) {
+            comparisons.incrementAndGet();
+            return obj instanceof Tracked other && id == other.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+
+    @Test
+    void testEqualsSkipsSharedSubtrees() {
+        AtomicInteger comparisons = new AtomicInteger();
+        PersistentHashMap.Transient<Integer, Tracked> builder = PersistentHashMap.<Integer, Tracked>empty().asTransient();
+        for (int i = 0; i < 20_000; i++) {
+            builder.put(i, new Tracked(i, comparisons));
+        }
+        PersistentHashMap<Integer, Tracked> map = builder.persistent();
+        PersistentHashMap<Integer, Tracked> roundTrip = map.put(7, new Tracked(-1, comparisons)).put(7, new Tracked(7, comparisons));
+        PersistentHashMap<Integer, Tracked> changed = map.put(7, new Tracked(-1, comparisons));
+
+        assertEquals(map, roundTrip);
+        assertNotEquals(map, changed);
+        assertTrue(comparisons.get() <= 2, "compared " + comparisons.get() + " values");
+
+        // Hashes are cached per node, and stay consistent with java.util.Map
+        Map<Integer, Tracked> expected = new HashMap<>();
+        map.forEach(entry -> expected.put(entry.getKey(), entry.getValue()));
+        assertEquals(expected.hashCode(), map.hashCode());
+        expected.put(7, new Tracked(-1, comparisons));
+        assertEquals(expected.hashCode(), changed.hashCode());
+        assertEquals(map.hashCode(), roundTrip.hashCode());
+    }
+
+    @Test
+    void testEqualsWithCollisionNodes() {
+        PersistentHashMap<CollidingKey, Integer> left = PersistentHashMap.empty();
+        PersistentHashMap<CollidingKey, Integer> right = PersistentHashMap.empty();
+        for (int i = 0; i < 10; i++) {
+            left = left.put(new CollidingKey(i), i);
+            right = right.put(new CollidingKey(9 - i), 9 - i);
+        }
+
+        assertEquals(left, right);
+        assertEquals(left.hashCode(), right.hashCode());
+        assertNotEquals(left, right.put(new CollidingKey(3), 0));
+        assertNotEquals(left, right.remove(new CollidingKey(3)).put(new CollidingKey(10), 3));
+        assertEquals(PersistentHashSet.of(1, 2, 3).hashCode(), Set.of(1, 2, 3).hashCode());
+    }
+}
@@ -2,6 +2,7 @@ package com.firefly.runtime.collections;
 
 import org.junit.jupiter.api.Test;
 import java.util.Arrays;
+import java.util.HashSet;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -171,5 +172,68 @@ class PersistentHashSetTest {
         assertEquals(3, set2.size());
         assertEquals(1, set3.size());
     }
-}
 
+    @Test
+    void testUnionReusesSharedStructure() {
+        PersistentHashSet<Integer> base = PersistentHashSet.empty();
+        for (int i = 0; i < 10_000; i++) {
+            base = base.add(i);
+        }
+        PersistentHashSet<Integer> extended = base.add(-1);
+        
+        // Every subtree of base is already part of extended
+        assertSame(extended, base.union(extended));
+        assertSame(base, base.union(base));
+        assertSame(base, base.intersection(extended));
+    }
+
+    @Test
+    void testSetAlgebraOnRelatedSets() {
+        PersistentHashSet<Integer> base = PersistentHashSet.empty();
+        for (int i = 0; i < 5_000; i++) {
+            base = base.add(i);
+        }
+        PersistentHashSet<Integer> changed = base.remove(10).remove(20).add(7_000);
+        
+        PersistentHashSet<Integer> union = base.union(changed);
+        assertEquals(5_001, union.size());
+        assertTrue(union.contains(10));
+        assertTrue(union.contains(7_000));
+        
+        PersistentHashSet<Integer> intersection = changed.intersection(base);
+        assertEquals(4_998, intersection.size());
+        assertFalse(intersection.contains(7_000));
+        
+        assertEquals(PersistentHashSet.of(10, 20), base.difference(changed));
+        assertEquals(PersistentHashSet.of(7_000), changed.difference(base));
+        assertTrue(base.difference(base).isEmpty());
+    }
+
+    @Test
+    void testEqualsAndHashCode() {
+        PersistentHashSet<String> set1 = PersistentHashSet.of("a", "b", "c");
+        PersistentHashSet<String> set2 = PersistentHashSet.of("c", "b", "a");
+        
+        assertEquals(set1, set2);
+        assertEquals(set1.hashCode(), set2.hashCode());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")).hashCode(), set1.hashCode());
+        assertNotEquals(set1, set2.remove("a"));
+    }
+
+    @Test
+    void testTransientBuildAndFreeze() {
+        PersistentHashSet<Integer> base = PersistentHashSet.of(-1);
+        PersistentHashSet.Transient<Integer> builder = base.asTransient();
+        for (int i = 0; i < 1_000; i++) {
+            builder.add(i);
+        }
+        builder.remove(-1);
+        
+        PersistentHashSet<Integer> built = builder.persistent();
+        assertEquals(1_000, built.size());
+        assertFalse(built.contains(-1));
+        assertTrue(base.contains(-1));
+        
+        assertThrows(IllegalStateException.class, () -> builder.add(5_000));
+    }
+}
@@ -0,0 +1,152 @@
+package com.firefly.runtime.collections;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PersistentTreeMap.
+ */
+class PersistentTreeMapTest {
+
+    private static List<Integer> keys(PersistentTreeMap<Integer, ?> map) {
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, ?> entry : map) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    @Test
+    void testEmpty() {
+        PersistentTreeMap<String, Integer> map = PersistentTreeMap.empty();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.size());
+        assertNull(map.get("a"));
+        assertNull(map.firstEntry());
+        assertEquals("{}", map.toString());
+    }
+
+    @Test
+    void testPutGetRemoveAndOrder() {
+        PersistentTreeMap<Integer, String> map = PersistentTreeMap.<Integer, String>empty()
+            .put(30, "thirty")
+            .put(10, "ten")
+            .put(20, "twenty");
+
+        assertEquals("{10=ten, 20=twenty, 30=thirty}", map.toString());
+        assertEquals("twenty", map.get(20));
+        assertEquals("none", map.getOrDefault(25, "none"));
+
+        PersistentTreeMap<Integer, String> updated = map.put(20, "TWENTY").remove(10);
+        assertEquals("{20=TWENTY, 30=thirty}", updated.toString());
+        assertEquals("twenty", map.get(20));
+        assertSame(map, map.remove(99));
+        assertEquals(map, PersistentTreeMap.of(
+            PersistentHashMap.entry(20, "twenty"), PersistentHashMap.entry(30, "thirty"), PersistentHashMap.entry(10, "ten")));
+    }
+
+    @Test
+    void testNeighbourQueries() {
+        PersistentTreeMap<Integer, String> map = PersistentTreeMap.empty();
+        for (int i = 0; i < 100; i += 10) {
+            map = map.put(i, "v" + i);
+        }
+
+        assertEquals(20, map.floorKey(25));
+        assertEquals(20, map.floorKey(20));
+        assertEquals(30, map.ceilingKey(25));
+        assertEquals(10, map.lowerEntry(20).getKey());
+        assertEquals(30, map.higherEntry(20).getKey());
+        assertNull(map.floorKey(-1));
+        assertNull(map.ceilingKey(91));
+        assertEquals(0, map.firstEntry().getKey());
+        assertEquals(90, map.lastEntry().getKey());
+    }
+
+    @Test
+    void testRankAndSelect() {
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+        for (int i = 0; i < 1_000; i++) {
+            map = map.put(i * 2, i);
+        }
+
+        assertEquals(0, map.rank(0));
+        assertEquals(500, map.rank(1_000));
+        assertEquals(501, map.rank(1_001));
+        assertEquals(1_000, map.rank(5_000));
+        assertEquals(1_000, map.select(500).getKey());
+        assertEquals(1_998, map.select(999).getKey());
+        PersistentTreeMap<Integer, Integer> finalMap = map;
+        assertThrows(IndexOutOfBoundsException.class, () -> finalMap.select(1_000));
+    }
+
+    @Test
+    void testRangesShareOriginal() {
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+        for (int i = 0; i < 1_000; i++) {
+            map = map.put(i, i * i);
+        }
+
+        PersistentTreeMap<Integer, Integer> sub = map.subMap(100, 200);
+        assertEquals(100, sub.size());
+        assertEquals(100, sub.firstEntry().getKey());
+        assertEquals(199, sub.lastEntry().getKey());
+        assertEquals(150 * 150, sub.get(150));
+        assertFalse(sub.containsKey(200));
+        assertEquals(50, sub.rank(150));
+
+        assertEquals(10, map.headMap(10).size());
+        assertEquals(10, map.tailMap(990).size());
+        assertEquals(0, map.subMap(5, 5).size());
+        assertEquals(1_000, map.size());
+        PersistentTreeMap<Integer, Integer> finalMap = map;
+        assertThrows(IllegalArgumentException.class, () -> finalMap.subMap(10, 5));
+    }
+
+    @Test
+    void testCustomComparator() {
+        PersistentTreeMap<String, Integer> map = PersistentTreeMap.<String, Integer>empty(Comparator.reverseOrder())
+            .put("a", 1)
+            .put("c", 3)
+            .put("b", 2);
+
+        assertEquals("{c=3, b=2, a=1}", map.toString());
+        assertEquals("c", map.floorKey("bb"));
+        assertEquals("b", map.ceilingKey("bb"));
+        assertEquals("{b=2, a=1}", map.tailMap("b").toString());
+    }
+
+    @Test
+    void testMatchesTreeMapUnderRandomUpdates() {
+        Random random = new Random(42);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.keySet()), keys(map));
+        for (int probe = -5; probe < 2_005; probe += 7) {
+            assertEquals(expected.floorKey(probe), map.floorKey(probe));
+            assertEquals(expected.ceilingKey(probe), map.ceilingKey(probe));
+            assertEquals(expected.headMap(probe).size(), map.rank(probe));
+        }
+        assertEquals(new ArrayList<>(expected.subMap(500, 1_500).keySet()), keys(map.subMap(500, 1_500)));
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+}
@@ -0,0 +1,67 @@
+package com.firefly.runtime.collections;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PersistentTreeSet.
+ */
+class PersistentTreeSetTest {
+
+    /** Stands in for a spark compiled with @derive(Ord). */
+    private record Point(int x, int y) implements Comparable<Point> {
+        @Override
+        public int compareTo(Point other) {
+            int c = Integer.compare(x, other.x);
+            return c != 0 ? c : Integer.compare(y, other.y);
+        }
+    }
+
+    @Test
+    void testOfSortsAndDeduplicates() {
+        PersistentTreeSet<Integer> set = PersistentTreeSet.of(50, 10, 40, 20, 30, 10);
+
+        assertEquals(5, set.size());
+        assertEquals("[10, 20, 30, 40, 50]", set.toString());
+        assertEquals(10, set.first());
+        assertEquals(50, set.last());
+        assertSame(set, set.add(30));
+        assertEquals(PersistentTreeSet.of(10, 20, 30, 40, 50), set);
+        assertEquals(Set.of(10, 20, 30, 40, 50).hashCode(), set.hashCode());
+        assertThrows(NoSuchElementException.class, () -> PersistentTreeSet.empty().first());
+    }
+
+    @Test
+    void testQueriesAndRanges() {
+        PersistentTreeSet<Integer> set = PersistentTreeSet.of(50, 10, 40, 20, 30);
+
+        assertEquals(30, set.floor(35));
+        assertEquals(40, set.ceiling(35));
+        assertEquals(20, set.lower(30));
+        assertEquals(40, set.higher(30));
+        assertEquals(2, set.rank(30));
+        assertEquals(50, set.select(4));
+        assertEquals("[20, 30]", set.subSet(20, 40).toString());
+        assertEquals("[10, 20]", set.headSet(30).toString());
+        assertEquals("[30, 40, 50]", set.tailSet(30).toString());
+        assertEquals("[10, 30, 40, 50]", set.remove(20).toString());
+    }
+
+    @Test
+    void testComparableElementsNeedNoComparator() {
+        PersistentTreeSet<Point> set = PersistentTreeSet.<Point>empty()
+            .add(new Point(2, 0))
+            .add(new Point(1, 5))
+            .add(new Point(1, 3));
+
+        List<Point> ordered = new ArrayList<>();
+        set.forEach(ordered::add);
+        assertEquals(List.of(new Point(1, 3), new Point(1, 5), new Point(2, 0)), ordered);
+        assertEquals(new Point(1, 5), set.floor(new Point(1, 9)));
+        assertTrue(set.contains(new Point(2, 0)));
+    }
+}
@@ -1,6 +1,12 @@
 package com.firefly.runtime.collections;
 
 import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -136,5 +142,311 @@ class PersistentVectorTest {
         assertEquals(PersistentVector.of(10, 2, 3), vec2);
         assertEquals(PersistentVector.of(1, 2, 3, 4), vec3);
     }
+
+    @Test
+    void testLargeAppendAndGet() {
+        PersistentVector<Integer> vec = PersistentVector.empty();
+        for (int i = 0; i < 100_000; i++) {
+            vec = vec.append(i);
+        }
+        
+        assertEquals(100_000, vec.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, vec.get(i));
+        }
+        
+        int expected = 0;
+        for (Integer value : vec) {
+            assertEquals(expected++, value);
+        }
+        assertEquals(100_000, expected);
+    }
+
+    @Test
+    void testSetAcrossTrieLevels() {
+        PersistentVector<Integer> vec = PersistentVector.empty();
+        for (int i = 0; i < 2_000; i++) {
+            vec = vec.append(i);
+        }
+        
+        PersistentVector<Integer> updated = vec.set(0, -1).set(1_055, -2).set(1_999, -3);
+        
+        assertEquals(-1, updated.get(0));
+        assertEquals(-2, updated.get(1_055));
+        assertEquals(-3, updated.get(1_999));
+        assertEquals(1_056, updated.get(1_056));
+        
+        // Original unchanged
+        assertEquals(0, vec.get(0));
+        assertEquals(1_055, vec.get(1_055));
+        assertEquals(1_999, vec.get(1_999));
+    }
+
+    @Test
+    void testMapAndReduceOnLargeVector() {
+        PersistentVector<Integer> vec = PersistentVector.empty();
+        for (int i = 0; i < 5_000; i++) {
+            vec = vec.append(i);
+        }
+        
+        PersistentVector<Integer> doubled = vec.map(x -> x * 2);
+        assertEquals(5_000, doubled.size());
+        assertEquals(9_998, doubled.get(4_999));
+        assertEquals(2L * 4_999 * 5_000 / 2, (long) doubled.reduce(0L, (acc, x) -> acc + x));
+        assertEquals(2_500, vec.filter(x -> x % 2 == 0).size());
+    }
+
+    @Test
+    void testTransientBuildAndFreeze() {
+        PersistentVector<Integer> base = PersistentVector.of(1, 2, 3);
+        PersistentVector.Transient<Integer> builder = base.asTransient();
+        for (int i = 4; i <= 2_000; i++) {
+            builder.append(i);
+        }
+        builder.set(0, -1);
+        
+        PersistentVector<Integer> built = builder.persistent();
+        assertEquals(2_000, built.size());
+        assertEquals(-1, built.get(0));
+        assertEquals(2_000, built.get(1_999));
+        assertEquals(1, base.get(0));
+        assertEquals(3, base.size());
+        
+        assertThrows(IllegalStateException.class, () -> builder.append(0));
+    }
+
+    @Test
+    void testChunkWalkMatchesElements() {
+        PersistentVector<Integer> vec = PersistentVector.empty();
+        for (int i = 0; i < 1_100; i++) {
+            vec = vec.append(i);
+        }
+        
+        int index = 0;
+        for (int base = 0; base < vec.size(); ) {
+            Object[] chunk = vec.chunkFor(base);
+            for (Object element : chunk) {
+                assertEquals(index++, element);
+            }
+            base += chunk.length;
+        }
+        assertEquals(1_100, index);
+        assertThrows(IndexOutOfBoundsException.class, () -> PersistentVector.empty().chunkFor(0));
+    }
+
+    @Test
+    void testParallelOperationsMatchSequential() {
+        PersistentVector.Transient<Integer> builder = PersistentVector.<Integer>empty().asTransient();
+        for (int i = 0; i < 100_000; i++) {
+            builder.append(i);
+        }
+        PersistentVector<Integer> vec = builder.persistent();
+        
+        assertEquals(vec.map(x -> x * 2), vec.parMap(x -> x * 2));
+        assertEquals(vec.filter(x -> x % 7 == 0), vec.parFilter(x -> x % 7 == 0));
+        assertSame(vec, vec.parFilter(x -> true));
+        assertEquals(4_999_950_000L, (long) vec.parReduce(0L, (acc, x) -> acc + x, Long::sum));
+        
+        LongAdder sum = new LongAdder();
+        vec.parForEach(sum::add);
+        assertEquals(4_999_950_000L, sum.sum());
+        
+        // Below the threshold the same methods run sequentially
+        PersistentVector<Integer> small = PersistentVector.of(1, 2, 3);
+        assertEquals(PersistentVector.of(2, 4, 6), small.parMap(x -> x * 2));
+        assertEquals(6, small.parReduce(0, Integer::sum, Integer::sum));
+    }
+
+    @Test
+    void testSpliteratorSplitsOnLeafBoundaries() {
+        PersistentVector<Integer> vec = PersistentVector.empty();
+        for (int i = 0; i < 1_000; i++) {
+            vec = vec.append(i);
+        }
+        
+        Spliterator<Integer> right = vec.spliterator();
+        assertTrue(right.hasCharacteristics(Spliterator.SUBSIZED));
+        Spliterator<Integer> left = right.trySplit();
+        assertEquals(480, left.getExactSizeIfKnown());
+        assertEquals(520, right.getExactSizeIfKnown());
+        
+        List<Integer> seen = new ArrayList<>();
+        assertTrue(left.tryAdvance(seen::add));
+        left.forEachRemaining(seen::add);
+        right.forEachRemaining(seen::add);
+        assertEquals(vec.stream().toList(), seen);
+        assertEquals(1_000, seen.size());
+        assertEquals(499_500, vec.stream().parallel().mapToInt(Integer::intValue).sum());
+    }
+
+    private static PersistentVector<Integer> rangeVector(int from, int to) {
+        PersistentVector.Transient<Integer> builder = PersistentVector.<Integer>empty().asTransient();
+        for (int i = from; i < to; i++) {
+            builder.append(i);
+        }
+        return builder.persistent();
+    }
+
+    private static void assertElements(PersistentVector<Integer> vec, List<Integer> expected) {
+        assertEquals(expected.size(), vec.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), vec.get(i));
+        }
+        List<Integer> walked = new ArrayList<>();
+        for (int base = 0; base < vec.size(); ) {
+            Object[] chunk = vec.chunkFor(base);
+            for (Object element : chunk) {
+                walked.add((Integer) element);
+            }
+            base += chunk.length;
+        }
+        assertEquals(expected, walked);
+        assertEquals(expected, vec.stream().toList());
+    }
+
+    @Test
+    void testConcatSharesAndPreservesOrder() {
+        PersistentVector<Integer> left = rangeVector(0, 1_037);
+        PersistentVector<Integer> right = rangeVector(1_037, 5_000);
+        
+        PersistentVector<Integer> joined = left.concat(right);
+        assertElements(joined, rangeVector(0, 5_000).stream().toList());
+        assertEquals(rangeVector(0, 5_000), joined);
+        assertEquals(rangeVector(0, 5_000).hashCode(), joined.hashCode());
+        
+        // Inputs unchanged
+        assertEquals(1_037, left.size());
+        assertEquals(1_037, right.get(0));
+        
+        assertSame(left, left.concat(PersistentVector.empty()));
+        assertSame(right, PersistentVector.<Integer>empty().concat(right));
+        assertEquals(PersistentVector.of(1, 2, 3, 4), PersistentVector.of(1, 2).concat(PersistentVector.of(3, 4)));
+    }
+
+    @Test
+    void testTakeDropAndSlice() {
+        PersistentVector<Integer> vec = rangeVector(0, 3_000);
+        
+        assertElements(vec.take(1_000), rangeVector(0, 1_000).stream().toList());
+        assertElements(vec.drop(1_001), rangeVector(1_001, 3_000).stream().toList());
+        assertElements(vec.slice(33, 2_990), rangeVector(33, 2_990).stream().toList());
+        assertEquals(PersistentVector.of(2_999), vec.drop(2_999));
+        assertSame(vec, vec.take(5_000));
+        assertSame(vec, vec.drop(0));
+        assertTrue(vec.slice(10, 10).isEmpty());
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> vec.slice(5, 3_001));
+        assertThrows(IllegalArgumentException.class, () -> vec.take(-1));
+    }
+
+    @Test
+    void testInsertAndPrependStayBalanced() {
+        List<Integer> expected = new ArrayList<>();
+        PersistentVector<Integer> vec = PersistentVector.empty();
+        Random random = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            int index = random.nextInt(expected.size() + 1);
+            vec = vec.insert(index, i);
+            expected.add(index, i);
+        }
+        for (int i = 0; i < 500; i++) {
+            vec = vec.prepend(-i);
+            expected.add(0, -i);
+        }
+        assertElements(vec, expected);
+        
+        // Concatenation keeps leaves nearly full, so the chunk count stays close to the minimum
+        int chunks = 0;
+        for (int base = 0; base < vec.size(); base += vec.chunkFor(base).length) {
+            chunks++;
+        }
+        assertTrue(chunks < expected.size() / 32 * 1.2, "too many chunks: " + chunks);
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> PersistentVector.of(1).insert(2, 0));
+    }
+
+    @Test
+    void testUpdatesOnRelaxedVector() {
+        PersistentVector<Integer> relaxed = rangeVector(0, 700).drop(5).concat(rangeVector(700, 2_000));
+        List<Integer> expected = new ArrayList<>(rangeVector(5, 2_000).stream().toList());
+        
+        PersistentVector<Integer> updated = relaxed.set(1_000, -1);
+        assertEquals(-1, updated.get(1_000));
+        assertEquals(1_005, relaxed.get(1_000));
+        
+        PersistentVector.Transient<Integer> builder = relaxed.asTransient();
+        for (int i = 2_000; i < 12_000; i++) {
+            builder.append(i);
+            expected.add(i);
+        }
+        builder.set(3, -3);
+        expected.set(3, -3);
+        assertEquals(-3, builder.get(3));
+        PersistentVector<Integer> built = builder.persistent();
+        assertElements(built, expected);
+        assertEquals(built.map(x -> x * 2), built.parMap(x -> x * 2));
+        assertElements(relaxed, rangeVector(5, 2_000).stream().toList());
+    }
+
+    @Test
+    void testHashCodeIsCachedAndMatchesList() {
+        PersistentVector<Integer> vec = rangeVector(0, 5_000);
+        List<Integer> expected = new ArrayList<>(vec.stream().toList());
+        assertEquals(expected.hashCode(), vec.hashCode());
+
+        // Rehashing a derived vector reuses the cached hashes of shared nodes
+        PersistentVector<Integer> updated = vec.set(2_500, -1).append(7);
+        expected.set(2_500, -1);
+        expected.add(7);
+        assertEquals(expected.hashCode(), updated.hashCode());
+
+        // Relaxed tries hash the same as regular ones with the same elements
+        PersistentVector<Integer> relaxed = rangeVector(0, 1_037).concat(rangeVector(1_037, 5_000));
+        assertEquals(vec.hashCode(), relaxed.hashCode());
+        assertEquals(vec, relaxed);
+        assertEquals(relaxed, vec);
+        assertEquals(PersistentVector.of().hashCode(), List.of().hashCode());
+    }
+
+    @Test
+    void testEqualsSkipsSharedSubtrees() {
+        AtomicInteger comparisons = new AtomicInteger();
+        class Tracked {
+            final int id;
+
+            Tracked(int id) {
+                this.id = id;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                comparisons.incrementAndGet();
+                return obj instanceof Tracked other && id == other.id;
+            }
+
+            @Override
+            public int hashCode() {
+                return id;
+            }
+        }
+
+        PersistentVector.Transient<Tracked> builder = PersistentVector.<Tracked>empty().asTransient();
+        for (int i = 0; i < 20_000; i++) {
+            builder.append(new Tracked(i));
+        }
+        PersistentVector<Tracked> vec = builder.persistent();
+        PersistentVector<Tracked> roundTrip = vec.set(9_000, new Tracked(-1)).set(9_000, new Tracked(9_000));
+
+        assertEquals(vec, roundTrip);
+        // Only the leaf on the changed path is compared element by element
+        assertTrue(comparisons.get() <= 32, "compared " + comparisons.get() + " elements");
+
+        comparisons.set(0);
+        vec.hashCode();
+        PersistentVector<Tracked> changed = vec.set(9_000, new Tracked(-1));
+        changed.hashCode();
+        assertNotEquals(vec, changed);
+        assertEquals(0, comparisons.get());
+    }
 }
 
@@ -0,0 +1,133 @@
+package com.firefly.runtime.collections;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Seq.
+ */
+class SeqTest {
+
+    private static PersistentVector<Integer> range(int n) {
+        PersistentVector.Transient<Integer> t = PersistentVector.<Integer>empty().asTransient();
+        for (int i = 0; i < n; i++) {
+            t.append(i);
+        }
+        return t.persistent();
+    }
+
+    @Test
+    void testFusedChainMatchesEagerChain() {
+        PersistentVector<Integer> vec = range(10_000);
+
+        PersistentVector<String> eager = vec.map(x -> x * 3).filter(x -> x % 2 == 0).map(x -> "#" + x);
+        PersistentVector<String> lazy = vec.seq().map(x -> x * 3).filter(x -> x % 2 == 0).map(x -> "#" + x).toVector();
+
+        assertEquals(eager, lazy);
+        assertEquals(5_000, vec.seq().filter(x -> x % 2 == 0).count());
+        assertEquals(49_995_000, vec.seq().reduce(0, Integer::sum));
+    }
+
+    @Test
+    void testStagesRunOnlyAtTerminal() {
+        AtomicInteger calls = new AtomicInteger();
+        Seq<Integer> pipeline = range(100).seq().map(x -> {
+            calls.incrementAndGet();
+            return x + 1;
+        });
+        assertEquals(0, calls.get());
+
+        pipeline.toVector();
+        assertEquals(100, calls.get());
+        // Sequences re-run their pipeline on each terminal
+        assertEquals(100, pipeline.count());
+        assertEquals(200, calls.get());
+    }
+
+    @Test
+    void testTakeShortCircuits() {
+        AtomicInteger calls = new AtomicInteger();
+        PersistentVector<Integer> firstTen = range(1_000_000).seq()
+            .map(x -> {
+                calls.incrementAndGet();
+                return x * 2;
+            })
+            .take(10)
+            .toVector();
+
+        assertEquals(PersistentVector.of(0, 2, 4, 6, 8, 10, 12, 14, 16, 18), firstTen);
+        assertEquals(10, calls.get());
+
+        // An unbounded source is fine as long as something downstream stops it
+        Iterable<Integer> naturals = () -> new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+        };
+        assertEquals(PersistentVector.of(0, 3, 6), Seq.from(naturals).filter(x -> x % 3 == 0).take(3).toVector());
+        assertTrue(Seq.from(naturals).anyMatch(x -> x > 1_000));
+    }
+
+    @Test
+    void testFlatMapDropAndZip() {
+        Seq<Integer> pairs = Seq.of(1, 2, 3).flatMap(x -> PersistentVector.of(x, x * 10));
+        assertEquals(PersistentVector.of(1, 10, 2, 20, 3, 30), pairs.toVector());
+        assertEquals(PersistentVector.of(2, 20), pairs.drop(2).take(2).toVector());
+        assertEquals(PersistentVector.of(), pairs.drop(100).toVector());
+
+        Seq<String> zipped = Seq.of("a", "b", "c").zip(PersistentList.of(1, 2), (s, i) -> s + i);
+        assertEquals(PersistentVector.of("a1", "b2"), zipped.toVector());
+
+        // take after flatMap stops the outer source as well
+        AtomicInteger outer = new AtomicInteger();
+        Seq.from(range(1_000)).flatMap(x -> {
+            outer.incrementAndGet();
+            return PersistentVector.of(x, x);
+        }).take(3).toVector();
+        assertEquals(2, outer.get());
+    }
+
+    @Test
+    void testIteratorMatchesTraversal() {
+        Seq<Integer> pipeline = range(200).seq()
+            .filter(x -> x % 3 == 0)
+            .flatMap(x -> PersistentList.of(x, -x))
+            .drop(5)
+            .take(50)
+            .zip(range(40), Integer::sum);
+
+        List<Integer> iterated = new ArrayList<>();
+        for (Integer value : pipeline) {
+            iterated.add(value);
+        }
+        List<Integer> pushed = new ArrayList<>();
+        pipeline.forEach(pushed::add);
+
+        assertEquals(40, iterated.size());
+        assertEquals(pushed, iterated);
+    }
+
+    @Test
+    void testListSeqAndLongListOperations() {
+        PersistentList<Integer> list = range(100_000).seq().toList();
+        assertEquals(100_000, list.size());
+        assertEquals(0, list.head());
+
+        // map and filter on long lists no longer recurse per element
+        PersistentList<Integer> evens = list.map(x -> x * 2).filter(x -> x % 4 == 0);
+        assertEquals(50_000, evens.size());
+        assertEquals(PersistentList.of(0, 4, 8).toString(), evens.seq().take(3).toList().toString());
+    }
+}
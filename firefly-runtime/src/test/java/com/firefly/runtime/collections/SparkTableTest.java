@@ -0,0 +1,180 @@
+package com.firefly.runtime.collections;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SparkTable.
+ */
+class SparkTableTest {
+
+    /** Stands in for a compiled spark { symbol: String, quantity: Int, price: Float, open: Bool }. */
+    static final class Trade {
+        private final String symbol;
+        private final int quantity;
+        private final double price;
+        private final boolean open;
+
+        Trade(String symbol, int quantity, double price, boolean open) {
+            this.symbol = symbol;
+            this.quantity = quantity;
+            this.price = price;
+            this.open = open;
+        }
+
+        public String getSymbol() { return symbol; }
+        public int getQuantity() { return quantity; }
+        public double getPrice() { return price; }
+        public boolean isOpen() { return open; }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Trade t && symbol.equals(t.symbol) && quantity == t.quantity
+                && price == t.price && open == t.open;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(symbol, quantity, price, open);
+        }
+
+        /** Mirrors the compiler-generated {@code Trade$Row}. */
+        static final class Row extends SparkTable.Row {
+            public String getSymbol() { return (String) ((Object[]) columns[0])[index]; }
+            public int getQuantity() { return ((int[]) columns[1])[index]; }
+            public double getPrice() { return ((double[]) columns[2])[index]; }
+            public boolean isOpen() { return ((boolean[]) columns[3])[index]; }
+        }
+
+        /** Mirrors the compiler-generated {@code Trade$Schema}. */
+        static final class Schema implements SparkTable.Schema<Trade> {
+            public static final Schema INSTANCE = new Schema();
+
+            @Override
+            public String[] columnNames() {
+                return new String[] {"symbol", "quantity", "price", "open"};
+            }
+
+            @Override
+            public Class<?>[] columnTypes() {
+                return new Class<?>[] {Object.class, int.class, double.class, boolean.class};
+            }
+
+            @Override
+            public void store(Trade spark, Object[] columns, int row) {
+                ((Object[]) columns[0])[row] = spark.getSymbol();
+                ((int[]) columns[1])[row] = spark.getQuantity();
+                ((double[]) columns[2])[row] = spark.getPrice();
+                ((boolean[]) columns[3])[row] = spark.isOpen();
+            }
+
+            @Override
+            public Trade load(Object[] columns, int row) {
+                return new Trade((String) ((Object[]) columns[0])[row], ((int[]) columns[1])[row],
+                    ((double[]) columns[2])[row], ((boolean[]) columns[3])[row]);
+            }
+
+            @Override
+            public Row newRow() {
+                return new Row();
+            }
+        }
+    }
+
+    private static PersistentVector<Trade> trades(int n) {
+        PersistentVector<Trade> result = PersistentVector.empty();
+        for (int i = 0; i < n; i++) {
+            result = result.append(new Trade("S" + (i % 7), i, i * 0.5, i % 3 == 0));
+        }
+        return result;
+    }
+
+    @Test
+    void testRoundTripThroughVector() {
+        PersistentVector<Trade> rows = trades(1000);
+        SparkTable<Trade> table = SparkTable.fromVector(Trade.class, rows);
+
+        assertEquals(1000, table.size());
+        assertArrayEquals(new String[] {"symbol", "quantity", "price", "open"}, table.columnNames());
+        assertEquals(rows.get(123), table.get(123));
+        assertEquals(rows, table.toVector());
+
+        List<Trade> iterated = new ArrayList<>();
+        table.forEach(iterated::add);
+        assertEquals(rows.size(), iterated.size());
+        assertEquals(rows.get(999), iterated.get(999));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.get(1000));
+    }
+
+    @Test
+    void testColumnAccessAndAggregates() {
+        SparkTable<Trade> table = SparkTable.fromVector(Trade.Schema.INSTANCE, trades(100));
+        int quantity = table.columnIndex("quantity");
+
+        assertEquals(42, table.getInt(42, quantity));
+        assertEquals(21.0, table.getDouble(42, table.columnIndex("price")));
+        assertEquals("S0", table.getObject(42, 0));
+        assertEquals(4950L, table.sumLong("quantity"));
+        assertEquals(2475.0, table.sumDouble("price"));
+        assertEquals(49.5, table.average("quantity"));
+        assertEquals(34, table.count(row -> row.getBoolean(3)));
+        assertEquals(4950.0, table.sumDouble(row -> row.getInt(quantity)));
+        assertThrows(IllegalArgumentException.class, () -> table.sumLong("symbol"));
+        assertThrows(IllegalArgumentException.class, () -> table.columnIndex("missing"));
+        assertTrue(Double.isNaN(SparkTable.empty(Trade.Schema.INSTANCE).average("price")));
+    }
+
+    @Test
+    void testScansReuseTypedRowView() {
+        SparkTable<Trade> table = SparkTable.fromVector(Trade.class, trades(50));
+        List<SparkTable.Row> seen = new ArrayList<>();
+        int[] total = {0};
+
+        table.forEachRow(row -> {
+            if (seen.isEmpty() || seen.get(0) != row) seen.add(row);
+            total[0] += ((Trade.Row) row).getQuantity();
+        });
+
+        assertEquals(1, seen.size());
+        assertEquals(1225, total[0]);
+    }
+
+    @Test
+    void testFilterCopiesMatchingColumns() {
+        PersistentVector<Trade> rows = trades(200);
+        SparkTable<Trade> table = SparkTable.fromVector(Trade.class, rows);
+
+        SparkTable<Trade> open = table.filter(row -> ((Trade.Row) row).isOpen());
+        assertEquals(67, open.size());
+        for (int i = 0; i < open.size(); i++) {
+            assertEquals(rows.get(i * 3), open.get(i));
+        }
+        assertEquals(table.count(row -> row.getBoolean(3)), open.size());
+        assertSame(table, table.filter(row -> true));
+        assertTrue(table.filter(row -> false).isEmpty());
+    }
+
+    @Test
+    void testBuilderGrowsAndSnapshots() {
+        SparkTable.Builder<Trade> builder = SparkTable.builder(Trade.Schema.INSTANCE, 0);
+        builder.append(new Trade("A", 1, 1.0, true));
+        SparkTable<Trade> first = builder.build();
+        for (int i = 0; i < 40; i++) {
+            builder.append(new Trade("B", i, i, false));
+        }
+        SparkTable<Trade> second = builder.build();
+
+        assertEquals(1, first.size());
+        assertEquals(41, second.size());
+        assertEquals(new Trade("A", 1, 1.0, true), second.get(0));
+        assertEquals(780L + 1L, second.sumLong("quantity"));
+    }
+
+    @Test
+    void testSchemaForRejectsPlainClasses() {
+        assertThrows(IllegalArgumentException.class, () -> SparkTable.schemaFor(String.class));
+    }
+}